@@ -44,6 +44,13 @@ public @interface Options {
 
   boolean useCache() default true;
 
+  /**
+   * Whether the results are kept in the session's local cache once the query and its nested queries are done.
+   *
+   * @since 3.5.1
+   */
+  boolean useLocalCache() default true;
+
   FlushCachePolicy flushCache() default FlushCachePolicy.DEFAULT;
 
   ResultSetType resultSetType() default ResultSetType.DEFAULT;
@@ -61,4 +68,12 @@ public @interface Options {
   String keyColumn() default "";
 
   String resultSets() default "";
+
+  /**
+   * Whether the rows of the nested result maps of a result object are returned together, so that each result object
+   * is released as soon as the rows of the next one start.
+   *
+   * @since 3.5.1
+   */
+  boolean resultOrdered() default false;
 }
@@ -93,6 +93,17 @@ public abstract class BaseBuilder {
     return value == null ? defaultValue : Integer.valueOf(value);
   }
 
+  /**
+   * 字符串转 Long
+   *
+   * @param value
+   * @param defaultValue
+   * @return
+   */
+  protected Long longValueOf(String value, Long defaultValue) {
+    return value == null ? defaultValue : Long.valueOf(value);
+  }
+
   /**
    * 字符串通过 , 分隔，转为 HashSet
    *
@@ -313,6 +313,8 @@ public class MapperAnnotationBuilder {
       boolean isSelect = sqlCommandType == SqlCommandType.SELECT;
       boolean flushCache = !isSelect;
       boolean useCache = isSelect;
+      boolean useLocalCache = true;
+      boolean resultOrdered = false;
 
       KeyGenerator keyGenerator;
       String keyProperty = null;
@@ -341,6 +343,8 @@ public class MapperAnnotationBuilder {
           flushCache = false;
         }
         useCache = options.useCache();
+        useLocalCache = options.useLocalCache();
+        resultOrdered = options.resultOrdered();
         fetchSize = options.fetchSize() > -1 || options.fetchSize() == Integer.MIN_VALUE ? options.fetchSize() : null; //issue #348
         timeout = options.timeout() > -1 ? options.timeout() : null;
         statementType = options.statementType();
@@ -370,8 +374,7 @@ public class MapperAnnotationBuilder {
           resultSetType,
           flushCache,
           useCache,
-          // TODO gcode issue #577
-          false,
+          resultOrdered,
           keyGenerator,
           keyProperty,
           keyColumn,
@@ -379,7 +382,10 @@ public class MapperAnnotationBuilder {
           null,
           languageDriver,
           // ResultSets
-          options != null ? nullOrEmpty(options.resultSets()) : null);
+          options != null ? nullOrEmpty(options.resultSets()) : null,
+          // Tables
+          null,
+          useLocalCache);
     }
   }
 
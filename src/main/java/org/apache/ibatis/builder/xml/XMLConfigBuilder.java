@@ -17,6 +17,8 @@ package org.apache.ibatis.builder.xml;
 
 import org.apache.ibatis.builder.BaseBuilder;
 import org.apache.ibatis.builder.BuilderException;
+import org.apache.ibatis.cache.CacheMemoryBudget;
+import org.apache.ibatis.cache.cluster.InvalidationTransport;
 import org.apache.ibatis.datasource.DataSourceFactory;
 import org.apache.ibatis.executor.ErrorContext;
 import org.apache.ibatis.executor.loader.ProxyFactory;
@@ -40,7 +42,11 @@ import org.apache.ibatis.type.JdbcType;
 import javax.sql.DataSource;
 import java.io.InputStream;
 import java.io.Reader;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
 import java.util.Properties;
+import java.util.Set;
 
 /**
  * XML 配置解析入口
@@ -366,24 +372,39 @@ public class XMLConfigBuilder extends BaseBuilder {
     configuration.setAutoMappingBehavior(AutoMappingBehavior.valueOf(props.getProperty("autoMappingBehavior", "PARTIAL")));
     configuration.setAutoMappingUnknownColumnBehavior(AutoMappingUnknownColumnBehavior.valueOf(props.getProperty("autoMappingUnknownColumnBehavior", "NONE")));
     configuration.setCacheEnabled(booleanValueOf(props.getProperty("cacheEnabled"), true));
+    Long cacheMemoryBudget = longValueOf(props.getProperty("cacheMemoryBudget"), null);
+    configuration.setCacheMemoryBudget(cacheMemoryBudget == null ? null : new CacheMemoryBudget(cacheMemoryBudget));
+    configuration.setCacheInvalidation(CacheInvalidation.valueOf(props.getProperty("cacheInvalidation", "NAMESPACE")));
+    configuration.setCacheInvalidationBatchInterval(longValueOf(props.getProperty("cacheInvalidationBatchInterval"), 0L));
+    configuration.setCacheInvalidationTransport((InvalidationTransport) createInstance(props.getProperty("cacheInvalidationTransport")));
+    configuration.setCacheStatisticsEnabled(booleanValueOf(props.getProperty("cacheStatisticsEnabled"), false));
     configuration.setProxyFactory((ProxyFactory) createInstance(props.getProperty("proxyFactory")));
     configuration.setLazyLoadingEnabled(booleanValueOf(props.getProperty("lazyLoadingEnabled"), false));
     configuration.setAggressiveLazyLoading(booleanValueOf(props.getProperty("aggressiveLazyLoading"), false));
     configuration.setMultipleResultSetsEnabled(booleanValueOf(props.getProperty("multipleResultSetsEnabled"), true));
     configuration.setUseColumnLabel(booleanValueOf(props.getProperty("useColumnLabel"), true));
+    configuration.setUseColumnIndex(booleanValueOf(props.getProperty("useColumnIndex"), false));
     configuration.setUseGeneratedKeys(booleanValueOf(props.getProperty("useGeneratedKeys"), false));
     configuration.setDefaultExecutorType(ExecutorType.valueOf(props.getProperty("defaultExecutorType", "SIMPLE")));
+    configuration.setBatchGrouping(BatchGrouping.valueOf(props.getProperty("batchGrouping", "STATEMENT")));
+    configuration.setMaxBatchSize(integerValueOf(props.getProperty("maxBatchSize"), null));
+    configuration.setBatchTableDependencies(tableDependenciesOf(props.getProperty("batchTableDependencies")));
     configuration.setDefaultStatementTimeout(integerValueOf(props.getProperty("defaultStatementTimeout"), null));
     configuration.setDefaultFetchSize(integerValueOf(props.getProperty("defaultFetchSize"), null));
     configuration.setMapUnderscoreToCamelCase(booleanValueOf(props.getProperty("mapUnderscoreToCamelCase"), false));
     configuration.setSafeRowBoundsEnabled(booleanValueOf(props.getProperty("safeRowBoundsEnabled"), false));
     configuration.setLocalCacheScope(LocalCacheScope.valueOf(props.getProperty("localCacheScope", "SESSION")));
+    configuration.setLocalCacheSize(integerValueOf(props.getProperty("localCacheSize"), null));
+    configuration.setLocalCacheRows(longValueOf(props.getProperty("localCacheRows"), null));
     configuration.setJdbcTypeForNull(JdbcType.valueOf(props.getProperty("jdbcTypeForNull", "OTHER")));
     configuration.setLazyLoadTriggerMethods(stringSetValueOf(props.getProperty("lazyLoadTriggerMethods"), "equals,clone,hashCode,toString"));
     configuration.setSafeResultHandlerEnabled(booleanValueOf(props.getProperty("safeResultHandlerEnabled"), true));
     configuration.setDefaultScriptingLanguage(resolveClass(props.getProperty("defaultScriptingLanguage")));
     configuration.setDefaultEnumTypeHandler(resolveClass(props.getProperty("defaultEnumTypeHandler")));
     configuration.setCallSettersOnNulls(booleanValueOf(props.getProperty("callSettersOnNulls"), false));
+    configuration.setRowMappingPlansEnabled(booleanValueOf(props.getProperty("rowMappingPlansEnabled"), false));
+    configuration.setNestedSelectBatchSize(integerValueOf(props.getProperty("nestedSelectBatchSize"), 500));
+    configuration.setNestedResultSpillThreshold(integerValueOf(props.getProperty("nestedResultSpillThreshold"), null));
     configuration.setUseActualParamName(booleanValueOf(props.getProperty("useActualParamName"), true));
     configuration.setReturnInstanceForEmptyRow(booleanValueOf(props.getProperty("returnInstanceForEmptyRow"), false));
     configuration.setLogPrefix(props.getProperty("logPrefix"));
@@ -424,6 +445,27 @@ public class XMLConfigBuilder extends BaseBuilder {
     }
   }
 
+  /**
+   * 解析 "table:dependency,..." 形式的表依赖
+   */
+  private Map<String, Set<String>> tableDependenciesOf(String value) {
+    Map<String, Set<String>> dependencies = new HashMap<>();
+    if (value == null) {
+      return dependencies;
+    }
+    for (String pair : value.split(",")) {
+      if (pair.trim().isEmpty()) {
+        continue;
+      }
+      String[] tables = pair.split(":");
+      if (tables.length != 2 || tables[0].trim().isEmpty() || tables[1].trim().isEmpty()) {
+        throw new BuilderException("Invalid batch table dependency '" + pair.trim() + "'. Expected table:dependency.");
+      }
+      dependencies.computeIfAbsent(tables[0].trim(), k -> new HashSet<>()).add(tables[1].trim());
+    }
+    return dependencies;
+  }
+
   /**
    * 解析 databaseIdProvider 元素并创建数据库厂商信息配置实例
    *
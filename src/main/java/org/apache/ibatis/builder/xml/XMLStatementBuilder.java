@@ -75,6 +75,8 @@ public class XMLStatementBuilder extends BaseBuilder {
     boolean flushCache = context.getBooleanAttribute("flushCache", !isSelect);
     // 获取 useCache 属性，查询默认为 true，其它默认为 false
     boolean useCache = context.getBooleanAttribute("useCache", isSelect);
+    // 获取 useLocalCache 属性，默认为 true
+    boolean useLocalCache = context.getBooleanAttribute("useLocalCache", true);
     // 获取 resultOrdered 属性，默认为 false
     boolean resultOrdered = context.getBooleanAttribute("resultOrdered", false);
 
@@ -135,12 +137,14 @@ public class XMLStatementBuilder extends BaseBuilder {
     String keyColumn = context.getStringAttribute("keyColumn");
     // 指定多结果集名称
     String resultSets = context.getStringAttribute("resultSets");
+    // 读写的表，未指定时从 SQL 中解析
+    String tables = context.getStringAttribute("tables");
 
     // 新增 MappedStatement
     builderAssistant.addMappedStatement(id, sqlSource, statementType, sqlCommandType,
         fetchSize, timeout, parameterMap, parameterTypeClass, resultMap, resultTypeClass,
         resultSetTypeEnum, flushCache, useCache, resultOrdered,
-        keyGenerator, keyProperty, keyColumn, databaseId, langDriver, resultSets);
+        keyGenerator, keyProperty, keyColumn, databaseId, langDriver, resultSets, tables, useLocalCache);
   }
 
   /**
@@ -15,6 +15,8 @@
  */
 package org.apache.ibatis.cache;
 
+import java.util.Collection;
+import java.util.Map;
 import java.util.concurrent.locks.ReadWriteLock;
 
 /**
@@ -58,6 +60,20 @@ public interface Cache {
    */
   void putObject(Object key, Object value);
 
+  /**
+   * Optional. Puts several entries at once, e.g. when a transaction commits. Caches backed by a remote store should
+   * write them in a single call; by default, each entry is put in turn.
+   * 批量设置缓存
+   *
+   * @param entries the entries to put, whose values may be null as for {@link #putObject(Object, Object)}
+   * @since 3.5.1
+   */
+  default void putAll(Map<Object, Object> entries) {
+    for (Map.Entry<Object, Object> entry : entries.entrySet()) {
+      putObject(entry.getKey(), entry.getValue());
+    }
+  }
+
   /**
    * 获取缓存
    *
@@ -82,6 +98,21 @@ public interface Cache {
    */
   Object removeObject(Object key);
 
+  /**
+   * Optional. Removes entries that are no longer valid, e.g. because the tables they depend on have been written.
+   * Unlike {@link #removeObject(Object)}, which only releases keys on rollback, this is a real invalidation: caches
+   * backed by a shared store should remove the keys from it as well. By default, each key is removed in turn.
+   * 批量失效缓存
+   *
+   * @param keys the keys to invalidate
+   * @since 3.5.1
+   */
+  default void removeAll(Collection<Object> keys) {
+    for (Object key : keys) {
+      removeObject(key);
+    }
+  }
+
   /**
    * 清空缓存
    *
@@ -107,4 +138,18 @@ public interface Cache {
    */
   ReadWriteLock getReadWriteLock();
 
+  /**
+   * Optional. Whether this cache can be used by several threads at once without external synchronization.
+   * <p>
+   * Decorators should answer true only if they are thread-safe themselves and so is their delegate. When the base
+   * cache and every decorator of a namespace are thread-safe, the core does not add a synchronizing decorator.
+   * 是否线程安全
+   *
+   * @return true if this cache is thread-safe
+   * @since 3.5.1
+   */
+  default boolean isThreadSafe() {
+    return false;
+  }
+
 }
@@ -80,7 +80,7 @@ public class CacheKey implements Cloneable, Serializable {
     if (this == object) {
       return true;
     }
-    if (!(object instanceof CacheKey)) {
+    if (!(object instanceof CacheKey) || object instanceof StatementCacheKey) {
       return false;
     }
 
@@ -0,0 +1,112 @@
+/**
+ *    Copyright 2009-2019 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.cache;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A heap budget, in bytes, shared by the second level caches of a configuration.
+ * <p>
+ * Each participating cache charges the estimated size of the entries it holds. When a write takes the total over
+ * the budget, the participants holding the most memory are asked to evict entries until the total fits again.
+ *
+ * 二级缓存共享的内存预算
+ *
+ * @since 3.5.1
+ */
+public class CacheMemoryBudget {
+
+  private final long maximumBytes;
+
+  private final AtomicLong usedBytes = new AtomicLong();
+
+  private final List<Participant> participants = new CopyOnWriteArrayList<>();
+
+  public CacheMemoryBudget(long maximumBytes) {
+    if (maximumBytes <= 0) {
+      throw new CacheException("The cache memory budget must be positive but was " + maximumBytes);
+    }
+    this.maximumBytes = maximumBytes;
+  }
+
+  public long getMaximumBytes() {
+    return maximumBytes;
+  }
+
+  public long getUsedBytes() {
+    return usedBytes.get();
+  }
+
+  public boolean isExceeded() {
+    return usedBytes.get() > maximumBytes;
+  }
+
+  public void register(Participant participant) {
+    participants.add(participant);
+  }
+
+  public void charge(long bytes) {
+    usedBytes.addAndGet(bytes);
+  }
+
+  public void release(long bytes) {
+    usedBytes.addAndGet(-bytes);
+  }
+
+  /**
+   * Asks the participants, largest first, to evict entries until the budget is no longer exceeded. A participant
+   * that is busy is skipped rather than waited for, so a cache reclaiming while holding its own lock can never
+   * deadlock with another one.
+   */
+  public void reclaim() {
+    if (!isExceeded()) {
+      return;
+    }
+    List<Participant> candidates = new ArrayList<>(participants);
+    candidates.sort(Comparator.comparingLong(Participant::getChargedBytes).reversed());
+    for (Participant participant : candidates) {
+      long excess = usedBytes.get() - maximumBytes;
+      if (excess <= 0) {
+        return;
+      }
+      participant.tryReclaim(excess);
+    }
+  }
+
+  /**
+   * A cache whose entries are charged against a {@link CacheMemoryBudget}.
+   */
+  public interface Participant {
+
+    /**
+     * @return the bytes currently charged by this participant
+     */
+    long getChargedBytes();
+
+    /**
+     * Evicts entries to free at least the given number of bytes, unless the participant is busy.
+     *
+     * @param bytes the number of bytes to free
+     */
+    void tryReclaim(long bytes);
+
+  }
+
+}
@@ -0,0 +1,163 @@
+/**
+ *    Copyright 2009-2019 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.cache;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counters of a second level cache or of a statement using it, see {@link CacheStatisticsRegistry}.
+ * <p>
+ * Hits, misses, load time and weight are recorded both per cache and per statement. Puts and evictions happen in
+ * the cache itself and are only recorded per cache. Counters are striped, so recording never contends on a lock;
+ * a read is not an atomic snapshot of all the counters.
+ *
+ * 缓存统计计数器
+ *
+ * @since 3.5.1
+ */
+public class CacheStatistics {
+
+  private final String id;
+
+  private final CacheStatisticsRegistry registry;
+
+  private final LongAdder hits = new LongAdder();
+
+  private final LongAdder misses = new LongAdder();
+
+  /**
+   * 未命中时查询数据库的总耗时（纳秒）
+   */
+  private final LongAdder loadTime = new LongAdder();
+
+  /**
+   * 未命中时加载的总行数
+   */
+  private final LongAdder weight = new LongAdder();
+
+  private final LongAdder puts = new LongAdder();
+
+  private final LongAdder evictions = new LongAdder();
+
+  CacheStatistics(String id, CacheStatisticsRegistry registry) {
+    this.id = id;
+    this.registry = registry;
+  }
+
+  /**
+   * @return the id of the cache or of the statement
+   */
+  public String getId() {
+    return id;
+  }
+
+  public long getHits() {
+    return hits.sum();
+  }
+
+  public long getMisses() {
+    return misses.sum();
+  }
+
+  /**
+   * @return the hits divided by the lookups, or 0 if there was no lookup
+   */
+  public double getHitRatio() {
+    long hitCount = hits.sum();
+    long lookups = hitCount + misses.sum();
+    return lookups == 0 ? 0 : (double) hitCount / lookups;
+  }
+
+  /**
+   * @return the total time spent querying the database on misses, in nanoseconds
+   */
+  public long getLoadTime() {
+    return loadTime.sum();
+  }
+
+  /**
+   * @return the total number of rows loaded on misses
+   */
+  public long getWeight() {
+    return weight.sum();
+  }
+
+  /**
+   * @return the number of entries written into the cache, after their transaction committed
+   */
+  public long getPuts() {
+    return puts.sum();
+  }
+
+  /**
+   * @return the number of entries the cache dropped by itself, e.g. because of its eviction policy, its memory
+   *         budget or the garbage collector, not counting the removals asked for by invalidations
+   */
+  public long getEvictions() {
+    return evictions.sum();
+  }
+
+  /**
+   * Records entries written into the cache.
+   *
+   * @param count the number of entries
+   */
+  public void recordPuts(int count) {
+    puts.add(count);
+    for (CacheStatisticsListener listener : registry.getListeners()) {
+      listener.onPut(id, count);
+    }
+  }
+
+  /**
+   * Records an entry dropped by the cache itself.
+   *
+   * @param key the key of the entry
+   */
+  public void recordEviction(Object key) {
+    evictions.increment();
+    for (CacheStatisticsListener listener : registry.getListeners()) {
+      listener.onEviction(id, key);
+    }
+  }
+
+  void recordHit() {
+    hits.increment();
+  }
+
+  void recordMiss(long time, int rows) {
+    misses.increment();
+    loadTime.add(time);
+    weight.add(rows);
+  }
+
+  void reset() {
+    hits.reset();
+    misses.reset();
+    loadTime.reset();
+    weight.reset();
+    puts.reset();
+    evictions.reset();
+  }
+
+  @Override
+  public String toString() {
+    return id + " [hits=" + getHits() + ", misses=" + getMisses() + ", hitRatio=" + getHitRatio()
+        + ", loadTime=" + getLoadTime() + ", weight=" + getWeight() + ", puts=" + getPuts()
+        + ", evictions=" + getEvictions() + "]";
+  }
+
+}
@@ -0,0 +1,67 @@
+/**
+ *    Copyright 2009-2019 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.cache;
+
+/**
+ * Callbacks for the events counted by a {@link CacheStatisticsRegistry}.
+ * <p>
+ * Listeners are called synchronously by the thread that caused the event, so they must be thread-safe and fast.
+ *
+ * 缓存统计事件监听器
+ *
+ * @since 3.5.1
+ */
+public interface CacheStatisticsListener {
+
+  /**
+   * Called when a statement finds its result in a second level cache.
+   *
+   * @param cacheId the id of the cache
+   * @param statementId the id of the statement
+   */
+  default void onHit(String cacheId, String statementId) {
+  }
+
+  /**
+   * Called when a statement misses a second level cache and has queried the database.
+   *
+   * @param cacheId the id of the cache
+   * @param statementId the id of the statement
+   * @param loadTime the time spent querying the database, in nanoseconds
+   * @param weight the number of rows loaded
+   */
+  default void onMiss(String cacheId, String statementId, long loadTime, int weight) {
+  }
+
+  /**
+   * Called when entries are written into a cache.
+   *
+   * @param cacheId the id of the cache
+   * @param count the number of entries
+   */
+  default void onPut(String cacheId, int count) {
+  }
+
+  /**
+   * Called when a cache drops an entry by itself.
+   *
+   * @param cacheId the id of the cache
+   * @param key the key of the entry
+   */
+  default void onEviction(String cacheId, Object key) {
+  }
+
+}
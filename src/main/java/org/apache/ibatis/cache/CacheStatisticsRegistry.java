@@ -0,0 +1,118 @@
+/**
+ *    Copyright 2009-2019 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.cache;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Statistics of the second level caches, per cache and per statement, see
+ * {@link org.apache.ibatis.session.Configuration#setCacheStatisticsEnabled(boolean)}.
+ * <p>
+ * The statistics can be read at any time, or followed as they happen with a {@link CacheStatisticsListener}.
+ * Comparing the statements of a cache shows which ones benefit from it and which ones only load entries that are
+ * evicted or invalidated before being read.
+ *
+ * 二级缓存统计注册表，按缓存与 statement 统计
+ *
+ * @since 3.5.1
+ */
+public class CacheStatisticsRegistry {
+
+  private final ConcurrentHashMap<String, CacheStatistics> caches = new ConcurrentHashMap<>();
+
+  private final ConcurrentHashMap<String, CacheStatistics> statements = new ConcurrentHashMap<>();
+
+  private final List<CacheStatisticsListener> listeners = new CopyOnWriteArrayList<>();
+
+  /**
+   * @param cacheId the id of a cache
+   * @return the statistics of the cache, created empty if none was recorded yet
+   */
+  public CacheStatistics getCacheStatistics(String cacheId) {
+    return caches.computeIfAbsent(cacheId, id -> new CacheStatistics(id, this));
+  }
+
+  /**
+   * @param statementId the id of a statement
+   * @return the statistics of the statement, created empty if none was recorded yet
+   */
+  public CacheStatistics getStatementStatistics(String statementId) {
+    return statements.computeIfAbsent(statementId, id -> new CacheStatistics(id, this));
+  }
+
+  public Set<String> getCacheIds() {
+    return Collections.unmodifiableSet(caches.keySet());
+  }
+
+  public Set<String> getStatementIds() {
+    return Collections.unmodifiableSet(statements.keySet());
+  }
+
+  public void addListener(CacheStatisticsListener listener) {
+    listeners.add(listener);
+  }
+
+  public void removeListener(CacheStatisticsListener listener) {
+    listeners.remove(listener);
+  }
+
+  List<CacheStatisticsListener> getListeners() {
+    return listeners;
+  }
+
+  /**
+   * Records a statement finding its result in a cache.
+   *
+   * @param cacheId the id of the cache
+   * @param statementId the id of the statement
+   */
+  public void recordHit(String cacheId, String statementId) {
+    getCacheStatistics(cacheId).recordHit();
+    getStatementStatistics(statementId).recordHit();
+    for (CacheStatisticsListener listener : listeners) {
+      listener.onHit(cacheId, statementId);
+    }
+  }
+
+  /**
+   * Records a statement missing a cache and querying the database.
+   *
+   * @param cacheId the id of the cache
+   * @param statementId the id of the statement
+   * @param loadTime the time spent querying the database, in nanoseconds
+   * @param weight the number of rows loaded
+   */
+  public void recordMiss(String cacheId, String statementId, long loadTime, int weight) {
+    getCacheStatistics(cacheId).recordMiss(loadTime, weight);
+    getStatementStatistics(statementId).recordMiss(loadTime, weight);
+    for (CacheStatisticsListener listener : listeners) {
+      listener.onMiss(cacheId, statementId, loadTime, weight);
+    }
+  }
+
+  /**
+   * Resets all the counters to zero.
+   */
+  public void reset() {
+    caches.values().forEach(CacheStatistics::reset);
+    statements.values().forEach(CacheStatistics::reset);
+  }
+
+}
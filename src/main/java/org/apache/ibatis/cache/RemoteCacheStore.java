@@ -0,0 +1,67 @@
+/**
+ *    Copyright 2009-2019 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.cache;
+
+import java.util.Collection;
+import java.util.Map;
+
+/**
+ * SPI for the shared tier of a {@link org.apache.ibatis.cache.impl.NearCache}, such as a remote key/value store.
+ * <p>
+ * Implementations must be thread-safe and have a public constructor receiving the cache id, or a public no-arg
+ * constructor. They are responsible for turning keys and values into whatever the store holds; keys are usually
+ * {@link CacheKey} instances and values are lists of result objects.
+ *
+ * 二级缓存远程存储层
+ *
+ * @since 3.5.1
+ */
+public interface RemoteCacheStore {
+
+  /**
+   * @param key the key
+   * @return the value, or null if the store does not hold the key
+   */
+  Object get(Object key);
+
+  /**
+   * Writes several entries in a single call.
+   *
+   * @param entries the entries, whose values are never null
+   */
+  void putAll(Map<Object, Object> entries);
+
+  void remove(Object key);
+
+  /**
+   * Removes several keys, in a single call if the store supports it. By default, each key is removed in turn.
+   *
+   * @param keys the keys
+   */
+  default void removeAll(Collection<Object> keys) {
+    for (Object key : keys) {
+      remove(key);
+    }
+  }
+
+  void clear();
+
+  /**
+   * @return the number of entries, or -1 if unknown
+   */
+  int size();
+
+}
@@ -0,0 +1,247 @@
+/**
+ *    Copyright 2009-2019 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.cache;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * Finds the tables a SQL statement reads or writes, for table-level cache invalidation.
+ * <p>
+ * Tables are the names following {@code FROM}, {@code JOIN}, {@code INTO}, {@code UPDATE}, {@code TABLE},
+ * {@code USING}, {@code DELETE} and {@code INSERT}, and the comma-separated names and derived tables following
+ * {@code FROM}. Names are lower-cased, unquoted and stripped of their schema. String literals and comments are
+ * ignored. The result may contain too many tables, never too few. It is empty when the statement calls a procedure,
+ * has a shape that is not understood or reads no table, in which case the statement must be considered to depend
+ * on every table.
+ * <p>
+ * Views and triggers are not resolved: a query of a view only depends on the view, and a write only writes the
+ * tables it names. Statements involving them must declare their tables with the {@code tables} attribute.
+ *
+ * SQL 表名解析
+ *
+ * @since 3.5.1
+ */
+public final class SqlTableParser {
+
+  private static final Set<String> TABLE_KEYWORDS = new HashSet<>(
+      Arrays.asList("from", "join", "into", "update", "table", "using", "delete", "insert"));
+
+  /**
+   * 可解析的语句开头
+   */
+  private static final Set<String> STATEMENT_KEYWORDS = new HashSet<>(Arrays.asList(
+      "select", "with", "insert", "update", "delete", "merge", "truncate", "replace", "upsert"));
+
+  /**
+   * INSERT、DELETE 与表名之间的修饰词
+   */
+  private static final Set<String> MODIFIER_KEYWORDS = new HashSet<>(Arrays.asList(
+      "ignore", "low_priority", "high_priority", "delayed", "quick", "overwrite", "all", "first"));
+
+  /**
+   * 表名之后不作为别名的关键字
+   */
+  private static final Set<String> CLAUSE_KEYWORDS = new HashSet<>(Arrays.asList(
+      "where", "join", "inner", "left", "right", "full", "outer", "cross", "natural", "on", "group", "order",
+      "having", "limit", "offset", "fetch", "union", "intersect", "except", "minus", "set", "values", "select",
+      "start", "connect", "window", "for", "returning", "lateral", "partition", "with", "when", "then", "as",
+      "default", "output", "only"));
+
+  private SqlTableParser() {
+    // Prevent Instantiation
+  }
+
+  /**
+   * @param sql a SQL statement
+   * @return the lower-cased tables of the statement, or an empty set if unknown
+   */
+  public static Set<String> parse(String sql) {
+    List<String> tokens = tokenize(sql);
+    if (!isUnderstood(tokens)) {
+      return Collections.emptySet();
+    }
+    Set<String> tables = new LinkedHashSet<>();
+    for (int i = 0; i < tokens.size(); i++) {
+      String token = tokens.get(i);
+      if ("from".equals(token)) {
+        readTableList(tokens, i + 1, tables);
+      } else if (TABLE_KEYWORDS.contains(token)) {
+        int next = skipModifiers(tokens, i + 1);
+        if (next < tokens.size() && isName(tokens.get(next))) {
+          tables.add(tableName(tokens.get(next)));
+        }
+      }
+    }
+    return tables;
+  }
+
+  /**
+   * 仅识别查询与 DML，且 INSERT、DELETE 之后须为表名
+   */
+  private static boolean isUnderstood(List<String> tokens) {
+    int first = 0;
+    while (first < tokens.size() && "(".equals(tokens.get(first))) {
+      first++;
+    }
+    if (first == tokens.size() || !STATEMENT_KEYWORDS.contains(tokens.get(first))) {
+      return false;
+    }
+    String verb = tokens.get(first);
+    if (!"insert".equals(verb) && !"delete".equals(verb)) {
+      return true;
+    }
+    int next = skipModifiers(tokens, first + 1);
+    if (next == tokens.size()) {
+      return false;
+    }
+    String target = tokens.get(next);
+    return "from".equals(target) || "into".equals(target) || "table".equals(target) || isName(target);
+  }
+
+  /**
+   * 读取 FROM 之后以逗号分隔的表与派生表，派生表内的表由外层循环读取
+   */
+  private static void readTableList(List<String> tokens, int start, Set<String> tables) {
+    int next = start;
+    while (next < tokens.size()) {
+      if ("lateral".equals(tokens.get(next)) || "only".equals(tokens.get(next))) {
+        next++;
+        continue;
+      }
+      if ("(".equals(tokens.get(next))) {
+        next = skipParentheses(tokens, next);
+      } else if (isName(tokens.get(next))) {
+        tables.add(tableName(tokens.get(next)));
+        next++;
+        // 表函数的参数
+        if (next < tokens.size() && "(".equals(tokens.get(next))) {
+          next = skipParentheses(tokens, next);
+        }
+      } else {
+        return;
+      }
+      // 跳过别名及其列名
+      if (next < tokens.size() && "as".equals(tokens.get(next))) {
+        next++;
+      }
+      if (next < tokens.size() && isName(tokens.get(next))) {
+        next++;
+        if (next < tokens.size() && "(".equals(tokens.get(next))) {
+          next = skipParentheses(tokens, next);
+        }
+      }
+      if (next < tokens.size() && ",".equals(tokens.get(next))) {
+        next++;
+      } else {
+        return;
+      }
+    }
+  }
+
+  /**
+   * @return the index after the parenthesis closing the one at {@code open}
+   */
+  private static int skipParentheses(List<String> tokens, int open) {
+    int depth = 0;
+    for (int i = open; i < tokens.size(); i++) {
+      if ("(".equals(tokens.get(i))) {
+        depth++;
+      } else if (")".equals(tokens.get(i)) && --depth == 0) {
+        return i + 1;
+      }
+    }
+    return tokens.size();
+  }
+
+  private static int skipModifiers(List<String> tokens, int start) {
+    int next = start;
+    while (next < tokens.size() && MODIFIER_KEYWORDS.contains(tokens.get(next))) {
+      next++;
+    }
+    return next;
+  }
+
+  private static boolean isName(String token) {
+    char first = token.charAt(0);
+    return (Character.isLetter(first) || first == '_' || first == '"' || first == '`' || first == '[')
+        && !CLAUSE_KEYWORDS.contains(token) && !TABLE_KEYWORDS.contains(token);
+  }
+
+  private static String tableName(String token) {
+    String name = token.substring(token.lastIndexOf('.') + 1);
+    if (name.length() > 1 && (name.charAt(0) == '"' || name.charAt(0) == '`' || name.charAt(0) == '[')) {
+      name = name.substring(1, name.length() - 1);
+    }
+    return name.toLowerCase(Locale.ENGLISH);
+  }
+
+  /**
+   * 分解为小写的名称与标点，忽略字符串与注释
+   */
+  private static List<String> tokenize(String sql) {
+    List<String> tokens = new ArrayList<>();
+    int length = sql.length();
+    int i = 0;
+    while (i < length) {
+      char c = sql.charAt(i);
+      if (Character.isWhitespace(c)) {
+        i++;
+      } else if (c == '\'') {
+        i = skipQuoted(sql, i, '\'');
+      } else if (c == '-' && i + 1 < length && sql.charAt(i + 1) == '-') {
+        int end = sql.indexOf('\n', i);
+        i = end < 0 ? length : end + 1;
+      } else if (c == '/' && i + 1 < length && sql.charAt(i + 1) == '*') {
+        int end = sql.indexOf("*/", i + 2);
+        i = end < 0 ? length : end + 2;
+      } else if (Character.isLetterOrDigit(c) || c == '_' || c == '"' || c == '`' || c == '[' || c == '$'
+          || c == '#') {
+        int start = i;
+        while (i < length) {
+          char ch = sql.charAt(i);
+          if (ch == '"' || ch == '`' || ch == '[') {
+            i = skipQuoted(sql, i, ch == '[' ? ']' : ch);
+          } else if (Character.isLetterOrDigit(ch) || ch == '_' || ch == '$' || ch == '#' || ch == '.') {
+            i++;
+          } else {
+            break;
+          }
+        }
+        tokens.add(sql.substring(start, i).toLowerCase(Locale.ENGLISH));
+      } else {
+        tokens.add(String.valueOf(c));
+        i++;
+      }
+    }
+    return tokens;
+  }
+
+  /**
+   * @return the index after the closing quote
+   */
+  private static int skipQuoted(String sql, int start, char quote) {
+    int end = sql.indexOf(quote, start + 1);
+    return end < 0 ? sql.length() : end + 1;
+  }
+
+}
@@ -0,0 +1,206 @@
+/**
+ *    Copyright 2009-2019 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.cache;
+
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Set;
+import java.util.StringJoiner;
+
+import org.apache.ibatis.reflection.ArrayUtil;
+
+/**
+ * Cache key of a query, made of an interned prefix for the statement and its SQL, the row bounds and the parameter
+ * values in a flat array.
+ * <p>
+ * The prefix holds the statement id, the SQL and their hash, and is shared by all the keys of the same statement and
+ * SQL, see {@link org.apache.ibatis.mapping.MappedStatement#getCacheKeyPrefix(String)}. Hashing a key therefore never
+ * reads the SQL again, and keys with the same prefix compare it by reference. Executors build a key with
+ * {@link #StatementCacheKey(Prefix, int, int, int)} followed by one {@link #update(Object)} per parameter value.
+ * A statement key is never equal to a plain {@link CacheKey}.
+ *
+ * 查询缓存键：共享的 statement 与 SQL 前缀加扁平参数数组
+ *
+ * @since 3.5.1
+ */
+public class StatementCacheKey extends CacheKey {
+
+  private static final long serialVersionUID = -2836482216419583105L;
+
+  private static final Object[] NO_VALUES = new Object[0];
+
+  private final Prefix prefix;
+  private final int offset;
+  private final int limit;
+  private int hashcode;
+  private int count;
+  private Object[] values;
+
+  /**
+   * @param prefix the prefix of the statement and SQL
+   * @param offset the offset of the row bounds
+   * @param limit the limit of the row bounds
+   * @param expectedValues the number of values that will be added, used to size the array
+   */
+  public StatementCacheKey(Prefix prefix, int offset, int limit, int expectedValues) {
+    this.prefix = prefix;
+    this.offset = offset;
+    this.limit = limit;
+    this.hashcode = (31 * prefix.hashcode + offset) * 31 + limit;
+    this.values = expectedValues > 0 ? new Object[expectedValues] : NO_VALUES;
+  }
+
+  public Prefix getPrefix() {
+    return prefix;
+  }
+
+  /**
+   * @return the number of values added, plus the statement id, offset, limit and SQL
+   */
+  @Override
+  public int getUpdateCount() {
+    return count + 4;
+  }
+
+  @Override
+  public void update(Object object) {
+    if (count == values.length) {
+      values = Arrays.copyOf(values, Math.max(4, count * 2));
+    }
+    values[count++] = object;
+    hashcode = 31 * hashcode + (object == null ? 1 : ArrayUtil.hashCode(object));
+  }
+
+  @Override
+  public void updateAll(Object[] objects) {
+    for (Object o : objects) {
+      update(o);
+    }
+  }
+
+  @Override
+  public boolean equals(Object object) {
+    if (this == object) {
+      return true;
+    }
+    if (!(object instanceof StatementCacheKey)) {
+      return false;
+    }
+    StatementCacheKey cacheKey = (StatementCacheKey) object;
+    if (hashcode != cacheKey.hashcode || count != cacheKey.count || offset != cacheKey.offset
+        || limit != cacheKey.limit) {
+      return false;
+    }
+    // 同一前缀实例无需比较 SQL
+    if (prefix != cacheKey.prefix && !prefix.equals(cacheKey.prefix)) {
+      return false;
+    }
+    for (int i = 0; i < count; i++) {
+      if (!ArrayUtil.equals(values[i], cacheKey.values[i])) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  @Override
+  public int hashCode() {
+    return hashcode;
+  }
+
+  @Override
+  public String toString() {
+    StringJoiner returnValue = new StringJoiner(":");
+    returnValue.add(String.valueOf(hashcode));
+    returnValue.add(prefix.id);
+    returnValue.add(String.valueOf(offset));
+    returnValue.add(String.valueOf(limit));
+    returnValue.add(prefix.sql);
+    for (int i = 0; i < count; i++) {
+      returnValue.add(ArrayUtil.toString(values[i]));
+    }
+    return returnValue.toString();
+  }
+
+  @Override
+  public StatementCacheKey clone() throws CloneNotSupportedException {
+    StatementCacheKey clonedCacheKey = (StatementCacheKey) super.clone();
+    clonedCacheKey.values = values.clone();
+    return clonedCacheKey;
+  }
+
+  /**
+   * Statement id and SQL shared by the keys of a statement, with their hash computed once.
+   */
+  public static final class Prefix implements Serializable {
+
+    private static final long serialVersionUID = 6240181472049167301L;
+
+    private final String id;
+    private final String sql;
+    private final int hashcode;
+
+    /**
+     * SQL 中的表名，首次使用时解析
+     */
+    private transient volatile Set<String> tables;
+
+    public Prefix(String id, String sql) {
+      this.id = id;
+      this.sql = sql;
+      this.hashcode = 31 * id.hashCode() + sql.hashCode();
+    }
+
+    public String getId() {
+      return id;
+    }
+
+    public String getSql() {
+      return sql;
+    }
+
+    /**
+     * @return the tables of the SQL, parsed once by {@link SqlTableParser}
+     */
+    public Set<String> getTables() {
+      Set<String> result = tables;
+      if (result == null) {
+        result = Collections.unmodifiableSet(SqlTableParser.parse(sql));
+        tables = result;
+      }
+      return result;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (!(o instanceof Prefix)) {
+        return false;
+      }
+      Prefix other = (Prefix) o;
+      return hashcode == other.hashcode && id.equals(other.id) && sql.equals(other.sql);
+    }
+
+    @Override
+    public int hashCode() {
+      return hashcode;
+    }
+  }
+
+}
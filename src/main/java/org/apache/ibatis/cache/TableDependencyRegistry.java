@@ -0,0 +1,86 @@
+/**
+ *    Copyright 2009-2019 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.cache;
+
+import java.util.Collection;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+import org.apache.ibatis.cache.decorators.TableDependencyCache;
+
+/**
+ * Second level caches whose entries are invalidated by the tables they depend on, see
+ * {@link org.apache.ibatis.session.CacheInvalidation#TABLE}.
+ *
+ * 按表失效的二级缓存注册表
+ *
+ * @since 3.5.1
+ */
+public class TableDependencyRegistry {
+
+  private final ConcurrentHashMap<String, TableDependencyCache> caches = new ConcurrentHashMap<>();
+
+  private final Function<Object, Set<String>> dependencies;
+
+  /**
+   * @param dependencies returns the tables a cache key depends on, or an empty set if unknown
+   */
+  public TableDependencyRegistry(Function<Object, Set<String>> dependencies) {
+    this.dependencies = dependencies;
+  }
+
+  public void register(TableDependencyCache cache) {
+    caches.put(cache.getId(), cache);
+  }
+
+  /**
+   * @param cache a cache
+   * @return true if the entries of the cache are invalidated by table
+   */
+  public boolean isRegistered(Cache cache) {
+    return caches.containsKey(cache.getId());
+  }
+
+  /**
+   * @param key a cache key
+   * @return the tables the key depends on, or an empty set if unknown
+   */
+  public Set<String> getTables(Object key) {
+    return dependencies.apply(key);
+  }
+
+  /**
+   * Removes the entries depending on any of the tables from all the caches.
+   *
+   * @param tables the lower-cased tables that have been written
+   */
+  public void invalidate(Collection<String> tables) {
+    for (TableDependencyCache cache : caches.values()) {
+      cache.invalidate(tables);
+    }
+  }
+
+  /**
+   * Clears all the caches, after a write to unknown tables.
+   */
+  public void invalidateAll() {
+    for (TableDependencyCache cache : caches.values()) {
+      cache.clear();
+    }
+  }
+
+}
@@ -15,9 +15,16 @@
  */
 package org.apache.ibatis.cache;
 
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
 
+import org.apache.ibatis.cache.cluster.InvalidationBus;
 import org.apache.ibatis.cache.decorators.TransactionalCache;
 
 /**
@@ -27,6 +34,33 @@ public class TransactionalCacheManager {
 
   private final Map<Cache, TransactionalCache> transactionalCaches = new HashMap<>();
 
+  /**
+   * 本事务写入的表，提交时使依赖它们的缓存项失效
+   */
+  private final Set<String> writtenTables = new HashSet<>();
+
+  /**
+   * 本事务是否写入了未知的表
+   */
+  private boolean writtenUnknownTables;
+
+  private TableDependencyRegistry tableDependencies;
+
+  /**
+   * 集群失效总线，提交后广播本事务的失效信息
+   */
+  private InvalidationBus invalidationBus;
+
+  /**
+   * Sets the bus broadcasting the invalidations of the transaction to the other nodes once committed.
+   *
+   * @param invalidationBus the bus, or null if caches are not shared by a cluster
+   * @since 3.5.1
+   */
+  public void setInvalidationBus(InvalidationBus invalidationBus) {
+    this.invalidationBus = invalidationBus;
+  }
+
   public void clear(Cache cache) {
     getTransactionalCache(cache).clear();
   }
@@ -39,16 +73,95 @@ public class TransactionalCacheManager {
     getTransactionalCache(cache).putObject(key, value);
   }
 
+  /**
+   * Registers how to reload an entry put by the transaction, once it commits.
+   *
+   * @param cache the cache
+   * @param key the key of the entry
+   * @param loader the loader
+   * @since 3.5.1
+   */
+  public void putLoader(Cache cache, CacheKey key, Callable<Object> loader) {
+    getTransactionalCache(cache).putLoader(key, loader);
+  }
+
+  /**
+   * Records that the transaction writes tables, so that the entries depending on them are invalidated on commit.
+   *
+   * @param registry the registry of the caches to invalidate
+   * @param tables the tables written, or an empty set if unknown
+   * @since 3.5.1
+   */
+  public void invalidateTables(TableDependencyRegistry registry, Set<String> tables) {
+    tableDependencies = registry;
+    if (tables.isEmpty()) {
+      writtenUnknownTables = true;
+    } else {
+      writtenTables.addAll(tables);
+    }
+  }
+
+  /**
+   * @return true if the transaction has written tables to invalidate on commit
+   * @since 3.5.1
+   */
+  public boolean hasWrittenTables() {
+    return tableDependencies != null;
+  }
+
+  /**
+   * @param tables the tables a query depends on, or an empty set if unknown
+   * @return true if the transaction has written any of the tables, so that the query must not use the cache
+   * @since 3.5.1
+   */
+  public boolean isInvalidated(Set<String> tables) {
+    if (tableDependencies == null) {
+      return false;
+    }
+    if (writtenUnknownTables || tables.isEmpty()) {
+      return true;
+    }
+    for (String table : tables) {
+      if (writtenTables.contains(table)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
   public void commit() {
+    List<String> clearedNamespaces = invalidationBus == null ? Collections.emptyList() : new ArrayList<>();
     for (TransactionalCache txCache : transactionalCaches.values()) {
+      if (invalidationBus != null && txCache.isClearOnCommit()) {
+        clearedNamespaces.add(txCache.getId());
+      }
       txCache.commit();
     }
+    if (tableDependencies != null) {
+      if (writtenUnknownTables) {
+        tableDependencies.invalidateAll();
+      } else {
+        tableDependencies.invalidate(writtenTables);
+      }
+    }
+    if (invalidationBus != null) {
+      // 本事务的失效信息合并为一条消息
+      invalidationBus.publish(clearedNamespaces, writtenTables, writtenUnknownTables);
+    }
+    resetWrittenTables();
   }
 
   public void rollback() {
     for (TransactionalCache txCache : transactionalCaches.values()) {
       txCache.rollback();
     }
+    resetWrittenTables();
+  }
+
+  private void resetWrittenTables() {
+    writtenTables.clear();
+    writtenUnknownTables = false;
+    tableDependencies = null;
   }
 
   private TransactionalCache getTransactionalCache(Cache cache) {
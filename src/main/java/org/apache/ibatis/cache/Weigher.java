@@ -0,0 +1,40 @@
+/**
+ *    Copyright 2009-2019 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.cache;
+
+/**
+ * Computes the relative weight of a cache entry, used by eviction policies that bound a cache by total weight
+ * rather than by number of entries.
+ * <p>
+ * Implementations must have a public no-argument constructor and must be thread-safe.
+ *
+ * 缓存项权重计算接口
+ *
+ * @since 3.5.1
+ */
+@FunctionalInterface
+public interface Weigher {
+
+  /**
+   * Returns the weight of an entry. The weight is computed once, when the entry is put into the cache.
+   *
+   * @param key the cache key
+   * @param value the cached value, possibly null
+   * @return a non-negative weight
+   */
+  int weigh(Object key, Object value);
+
+}
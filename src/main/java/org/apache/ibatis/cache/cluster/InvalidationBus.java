@@ -0,0 +1,202 @@
+/**
+ *    Copyright 2009-2019 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.cache.cluster;
+
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.ibatis.cache.CacheException;
+import org.apache.ibatis.cache.TableDependencyRegistry;
+import org.apache.ibatis.logging.Log;
+import org.apache.ibatis.logging.LogFactory;
+import org.apache.ibatis.session.Configuration;
+
+/**
+ * Broadcasts the second level cache invalidations committed on this node to the other nodes of a cluster, and
+ * applies theirs to the caches of this node.
+ * <p>
+ * The invalidations of a transaction are coalesced into a single message sent once it has committed. With a batch
+ * interval, the invalidations of all the commits within the interval are merged into one message as well. Messages
+ * name whole namespaces to clear and, when caches are invalidated by table, the written tables; an unknown set of
+ * tables coalesces all table invalidations. Sending is best-effort: a failure is logged and never fails the commit,
+ * which has already reached the database.
+ *
+ * 集群二级缓存失效总线：按事务合并失效信息并广播，接收其它节点的失效消息并应用到本地缓存
+ *
+ * @since 3.5.1
+ */
+public class InvalidationBus {
+
+  private static final Log log = LogFactory.getLog(InvalidationBus.class);
+
+  private static final ScheduledThreadPoolExecutor SCHEDULER = new ScheduledThreadPoolExecutor(1, runnable -> {
+    Thread thread = new Thread(runnable, "mybatis-cache-invalidation");
+    thread.setDaemon(true);
+    return thread;
+  });
+
+  private final UUID nodeId = UUID.randomUUID();
+
+  private final Configuration configuration;
+
+  private final InvalidationTransport transport;
+
+  /**
+   * 待批量发送的失效信息
+   */
+  private final Set<String> pendingNamespaces = new HashSet<>();
+
+  private final Set<String> pendingTables = new HashSet<>();
+
+  private boolean pendingAllTables;
+
+  private boolean flushScheduled;
+
+  private volatile long batchInterval;
+
+  private volatile boolean closed;
+
+  public InvalidationBus(Configuration configuration, InvalidationTransport transport) {
+    this.configuration = configuration;
+    this.transport = transport;
+    transport.start(this::receive);
+  }
+
+  public UUID getNodeId() {
+    return nodeId;
+  }
+
+  public InvalidationTransport getTransport() {
+    return transport;
+  }
+
+  public long getBatchInterval() {
+    return batchInterval;
+  }
+
+  /**
+   * Sets how long invalidations wait to be merged with those of later commits before being sent.
+   *
+   * @param batchInterval the interval in milliseconds, or 0 to send the invalidations of each commit right away
+   */
+  public void setBatchInterval(long batchInterval) {
+    this.batchInterval = batchInterval;
+  }
+
+  /**
+   * Broadcasts the invalidations of a commit.
+   *
+   * @param namespaces the namespaces whose caches have been cleared
+   * @param tables the tables written, ignored if allTables is true
+   * @param allTables true if unknown tables have been written
+   */
+  public void publish(Collection<String> namespaces, Collection<String> tables, boolean allTables) {
+    if (closed || namespaces.isEmpty() && tables.isEmpty() && !allTables) {
+      return;
+    }
+    long interval = batchInterval;
+    if (interval <= 0) {
+      send(new InvalidationMessage(nodeId, new HashSet<>(namespaces), new HashSet<>(tables), allTables));
+      return;
+    }
+    synchronized (this) {
+      pendingNamespaces.addAll(namespaces);
+      if (allTables) {
+        pendingAllTables = true;
+        pendingTables.clear();
+      } else if (!pendingAllTables) {
+        pendingTables.addAll(tables);
+      }
+      if (!flushScheduled) {
+        flushScheduled = true;
+        SCHEDULER.schedule(this::flush, interval, TimeUnit.MILLISECONDS);
+      }
+    }
+  }
+
+  /**
+   * Sends the pending invalidations right away.
+   */
+  public void flush() {
+    InvalidationMessage message;
+    synchronized (this) {
+      flushScheduled = false;
+      message = new InvalidationMessage(nodeId, pendingNamespaces, pendingTables, pendingAllTables);
+      pendingNamespaces.clear();
+      pendingTables.clear();
+      pendingAllTables = false;
+    }
+    if (!message.isEmpty()) {
+      send(message);
+    }
+  }
+
+  /**
+   * Sends the pending invalidations and leaves the cluster.
+   */
+  public void close() {
+    flush();
+    closed = true;
+    transport.close();
+  }
+
+  /**
+   * Applies a message received from another node.
+   *
+   * @param bytes the encoded message
+   */
+  void receive(byte[] bytes) {
+    InvalidationMessage message;
+    try {
+      message = InvalidationMessage.fromBytes(bytes);
+    } catch (CacheException e) {
+      log.warn("Ignoring a malformed cache invalidation message. Cause: " + e);
+      return;
+    }
+    if (closed || nodeId.equals(message.getOrigin())) {
+      return;
+    }
+    if (log.isDebugEnabled()) {
+      log.debug("Applying " + message);
+    }
+    for (String namespace : message.getNamespaces()) {
+      // 本节点未加载该命名空间时忽略
+      if (configuration.hasCache(namespace)) {
+        configuration.getCache(namespace).clear();
+      }
+    }
+    TableDependencyRegistry registry = configuration.getTableDependencyRegistry();
+    if (message.isAllTables()) {
+      registry.invalidateAll();
+    } else if (!message.getTables().isEmpty()) {
+      registry.invalidate(message.getTables());
+    }
+  }
+
+  private void send(InvalidationMessage message) {
+    try {
+      transport.send(message.toBytes());
+    } catch (RuntimeException e) {
+      // 数据库事务已提交，发送失败不能使提交失败
+      log.warn("Could not broadcast " + message + ". Cause: " + e);
+    }
+  }
+
+}
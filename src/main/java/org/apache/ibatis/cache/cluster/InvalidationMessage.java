@@ -0,0 +1,144 @@
+/**
+ *    Copyright 2009-2019 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.cache.cluster;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.UUID;
+
+import org.apache.ibatis.cache.CacheException;
+
+/**
+ * The invalidations of one or more commits of a node: the namespaces whose caches are cleared, and the tables whose
+ * dependent entries are evicted when caches are invalidated by table.
+ * <p>
+ * Cache keys are not sent: they hold arbitrary parameter objects and each node maps the written tables to its own
+ * cached keys, so a message only holds names.
+ *
+ * 集群缓存失效消息
+ *
+ * @since 3.5.1
+ */
+public final class InvalidationMessage {
+
+  private static final int VERSION = 1;
+
+  private static final int ALL_TABLES = 1;
+
+  private final UUID origin;
+
+  private final Set<String> namespaces;
+
+  private final Set<String> tables;
+
+  private final boolean allTables;
+
+  /**
+   * @param origin the node sending the message
+   * @param namespaces the namespaces whose caches are cleared
+   * @param tables the tables written, ignored if allTables is true
+   * @param allTables true if unknown tables have been written
+   */
+  public InvalidationMessage(UUID origin, Set<String> namespaces, Set<String> tables, boolean allTables) {
+    this.origin = origin;
+    this.namespaces = Collections.unmodifiableSet(new LinkedHashSet<>(namespaces));
+    this.tables = allTables ? Collections.emptySet() : Collections.unmodifiableSet(new LinkedHashSet<>(tables));
+    this.allTables = allTables;
+  }
+
+  public UUID getOrigin() {
+    return origin;
+  }
+
+  public Set<String> getNamespaces() {
+    return namespaces;
+  }
+
+  public Set<String> getTables() {
+    return tables;
+  }
+
+  public boolean isAllTables() {
+    return allTables;
+  }
+
+  /**
+   * @return true if the message invalidates nothing
+   */
+  public boolean isEmpty() {
+    return namespaces.isEmpty() && tables.isEmpty() && !allTables;
+  }
+
+  public byte[] toBytes() {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream(32 + 32 * (namespaces.size() + tables.size()));
+    try (DataOutputStream out = new DataOutputStream(bytes)) {
+      out.writeByte(VERSION);
+      out.writeLong(origin.getMostSignificantBits());
+      out.writeLong(origin.getLeastSignificantBits());
+      out.writeByte(allTables ? ALL_TABLES : 0);
+      writeNames(out, namespaces);
+      writeNames(out, tables);
+    } catch (IOException e) {
+      throw new CacheException("Error encoding invalidation message.  Cause: " + e, e);
+    }
+    return bytes.toByteArray();
+  }
+
+  public static InvalidationMessage fromBytes(byte[] message) {
+    try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(message))) {
+      int version = in.readUnsignedByte();
+      if (version != VERSION) {
+        throw new CacheException("Unsupported invalidation message version " + version);
+      }
+      UUID origin = new UUID(in.readLong(), in.readLong());
+      boolean allTables = (in.readUnsignedByte() & ALL_TABLES) != 0;
+      Set<String> namespaces = readNames(in);
+      Set<String> tables = readNames(in);
+      return new InvalidationMessage(origin, namespaces, tables, allTables);
+    } catch (IOException e) {
+      throw new CacheException("Error decoding invalidation message.  Cause: " + e, e);
+    }
+  }
+
+  private static void writeNames(DataOutputStream out, Set<String> names) throws IOException {
+    out.writeShort(names.size());
+    for (String name : names) {
+      out.writeUTF(name);
+    }
+  }
+
+  private static Set<String> readNames(DataInputStream in) throws IOException {
+    int size = in.readUnsignedShort();
+    Set<String> names = new LinkedHashSet<>(size * 2);
+    for (int i = 0; i < size; i++) {
+      names.add(in.readUTF());
+    }
+    return names;
+  }
+
+  @Override
+  public String toString() {
+    return "InvalidationMessage{origin=" + origin + ", namespaces=" + namespaces
+        + ", tables=" + (allTables ? "*" : tables) + "}";
+  }
+
+}
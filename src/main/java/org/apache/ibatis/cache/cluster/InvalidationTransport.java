@@ -0,0 +1,53 @@
+/**
+ *    Copyright 2009-2019 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.cache.cluster;
+
+import java.util.function.Consumer;
+
+/**
+ * Carries the invalidation messages of an {@link InvalidationBus} between the nodes of a cluster.
+ * <p>
+ * Implementations only move opaque messages: a message sent by a node must be delivered to the receiver of every
+ * other node, and may also be delivered back to its sender, in which case it is ignored. Delivery is best-effort;
+ * entries of a node that misses a message stay stale until they are evicted or expire, so caches shared through an
+ * unreliable transport should also set a flush interval.
+ *
+ * 集群缓存失效消息的传输层
+ *
+ * @since 3.5.1
+ */
+public interface InvalidationTransport {
+
+  /**
+   * Joins the cluster. Called once, before any message is sent.
+   *
+   * @param receiver consumes the messages sent by the other nodes, from any thread
+   */
+  void start(Consumer<byte[]> receiver);
+
+  /**
+   * Sends a message to the other nodes.
+   *
+   * @param message the encoded message, which must not be modified
+   */
+  void send(byte[] message);
+
+  /**
+   * Leaves the cluster. No message is sent nor received afterwards.
+   */
+  void close();
+
+}
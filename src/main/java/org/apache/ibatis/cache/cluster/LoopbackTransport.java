@@ -0,0 +1,78 @@
+/**
+ *    Copyright 2009-2019 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.cache.cluster;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.function.Consumer;
+
+/**
+ * Transport delivering messages to the other transports of the same group in the same JVM, synchronously in the
+ * sending thread. Meant for tests and for several configurations sharing a database within one application.
+ *
+ * 进程内传输，将消息同步投递给同组的其它节点
+ *
+ * @since 3.5.1
+ */
+public class LoopbackTransport implements InvalidationTransport {
+
+  private static final ConcurrentHashMap<String, Set<LoopbackTransport>> GROUPS = new ConcurrentHashMap<>();
+
+  private final String group;
+
+  private volatile Consumer<byte[]> receiver;
+
+  public LoopbackTransport() {
+    this("default");
+  }
+
+  public LoopbackTransport(String group) {
+    this.group = group;
+  }
+
+  public String getGroup() {
+    return group;
+  }
+
+  @Override
+  public void start(Consumer<byte[]> receiver) {
+    this.receiver = receiver;
+    GROUPS.computeIfAbsent(group, name -> new CopyOnWriteArraySet<>()).add(this);
+  }
+
+  @Override
+  public void send(byte[] message) {
+    Set<LoopbackTransport> members = GROUPS.get(group);
+    if (members == null) {
+      return;
+    }
+    for (LoopbackTransport member : members) {
+      if (member != this) {
+        member.receiver.accept(message);
+      }
+    }
+  }
+
+  @Override
+  public void close() {
+    GROUPS.computeIfPresent(group, (name, members) -> {
+      members.remove(this);
+      return members.isEmpty() ? null : members;
+    });
+  }
+
+}
@@ -116,6 +116,11 @@ public class BlockingCache implements Cache {
     return null;
   }
 
+  @Override
+  public boolean isThreadSafe() {
+    return delegate.isThreadSafe();
+  }
+
   /**
    * 获取已有的锁或创建新锁
    *
@@ -0,0 +1,125 @@
+/**
+ *    Copyright 2009-2019 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.cache.decorators;
+
+import java.util.Map;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.function.Supplier;
+
+import org.apache.ibatis.cache.Cache;
+import org.apache.ibatis.cache.CacheStatistics;
+
+/**
+ * Counts the entries a cache drops by itself, see {@link CacheStatistics#getEvictions()}.
+ * <p>
+ * Decorates the base cache, below the eviction decorators: a removal reaching it is an eviction, unless it was asked
+ * for through the {@link LoggingCache} of the cache, e.g. by an invalidation.
+ *
+ * 淘汰计数装饰器，位于淘汰策略装饰器之下
+ *
+ * @since 3.5.1
+ */
+public class EvictionCountingCache implements Cache {
+
+  /**
+   * 当前线程是否正在执行调用方发起的删除
+   */
+  private static final ThreadLocal<Boolean> EXPLICIT = new ThreadLocal<>();
+
+  private final Cache delegate;
+
+  private final CacheStatistics statistics;
+
+  public EvictionCountingCache(Cache delegate, CacheStatistics statistics) {
+    this.delegate = delegate;
+    this.statistics = statistics;
+  }
+
+  /**
+   * Runs a removal asked for by the caller of a cache, which is not counted as an eviction.
+   */
+  static <T> T explicitly(Supplier<T> removal) {
+    if (EXPLICIT.get() != null) {
+      return removal.get();
+    }
+    EXPLICIT.set(Boolean.TRUE);
+    try {
+      return removal.get();
+    } finally {
+      EXPLICIT.remove();
+    }
+  }
+
+  @Override
+  public String getId() {
+    return delegate.getId();
+  }
+
+  @Override
+  public int getSize() {
+    return delegate.getSize();
+  }
+
+  @Override
+  public void putObject(Object key, Object value) {
+    delegate.putObject(key, value);
+  }
+
+  @Override
+  public void putAll(Map<Object, Object> entries) {
+    delegate.putAll(entries);
+  }
+
+  @Override
+  public Object getObject(Object key) {
+    return delegate.getObject(key);
+  }
+
+  @Override
+  public Object removeObject(Object key) {
+    Object value = delegate.removeObject(key);
+    if (value != null && EXPLICIT.get() == null) {
+      statistics.recordEviction(key);
+    }
+    return value;
+  }
+
+  @Override
+  public void clear() {
+    delegate.clear();
+  }
+
+  @Override
+  public ReadWriteLock getReadWriteLock() {
+    return null;
+  }
+
+  @Override
+  public boolean isThreadSafe() {
+    return delegate.isThreadSafe();
+  }
+
+  @Override
+  public int hashCode() {
+    return delegate.hashCode();
+  }
+
+  @Override
+  public boolean equals(Object obj) {
+    return delegate.equals(obj);
+  }
+
+}
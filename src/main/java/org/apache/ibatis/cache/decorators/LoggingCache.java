@@ -16,9 +16,13 @@
 package org.apache.ibatis.cache.decorators;
 
 import org.apache.ibatis.cache.Cache;
+import org.apache.ibatis.cache.CacheStatistics;
 import org.apache.ibatis.logging.Log;
 import org.apache.ibatis.logging.LogFactory;
 
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.concurrent.locks.ReadWriteLock;
 
 /**
@@ -34,12 +38,17 @@ public class LoggingCache implements Cache {
   /**
    * 查询缓存次数
    */
-  protected int requests = 0;
+  protected final LongAdder requests = new LongAdder();
 
   /**
    * 缓存命中次数
    */
-  protected int hits = 0;
+  protected final LongAdder hits = new LongAdder();
+
+  /**
+   * 缓存统计，未开启统计时为 null
+   */
+  private CacheStatistics statistics;
 
   public LoggingCache(Cache delegate) {
     this.delegate = delegate;
@@ -59,6 +68,17 @@ public class LoggingCache implements Cache {
   @Override
   public void putObject(Object key, Object object) {
     delegate.putObject(key, object);
+    if (statistics != null) {
+      statistics.recordPuts(1);
+    }
+  }
+
+  @Override
+  public void putAll(Map<Object, Object> entries) {
+    delegate.putAll(entries);
+    if (statistics != null) {
+      statistics.recordPuts(entries.size());
+    }
   }
 
   /**
@@ -70,11 +90,11 @@ public class LoggingCache implements Cache {
   @Override
   public Object getObject(Object key) {
     // 查询数+1
-    requests++;
+    requests.increment();
     final Object value = delegate.getObject(key);
     if (value != null) {
       // 命中数+1
-      hits++;
+      hits.increment();
     }
     if (log.isDebugEnabled()) {
       log.debug("Cache Hit Ratio [" + getId() + "]: " + getHitRatio());
@@ -84,12 +104,34 @@ public class LoggingCache implements Cache {
 
   @Override
   public Object removeObject(Object key) {
-    return delegate.removeObject(key);
+    if (statistics == null) {
+      return delegate.removeObject(key);
+    }
+    return EvictionCountingCache.explicitly(() -> delegate.removeObject(key));
+  }
+
+  @Override
+  public void removeAll(Collection<Object> keys) {
+    if (statistics == null) {
+      delegate.removeAll(keys);
+      return;
+    }
+    EvictionCountingCache.explicitly(() -> {
+      delegate.removeAll(keys);
+      return null;
+    });
   }
 
   @Override
   public void clear() {
-    delegate.clear();
+    if (statistics == null) {
+      delegate.clear();
+      return;
+    }
+    EvictionCountingCache.explicitly(() -> {
+      delegate.clear();
+      return null;
+    });
   }
 
   @Override
@@ -97,6 +139,11 @@ public class LoggingCache implements Cache {
     return null;
   }
 
+  @Override
+  public boolean isThreadSafe() {
+    return delegate.isThreadSafe();
+  }
+
   @Override
   public int hashCode() {
     return delegate.hashCode();
@@ -107,13 +154,31 @@ public class LoggingCache implements Cache {
     return delegate.equals(obj);
   }
 
+  /**
+   * @since 3.5.1
+   */
+  public CacheStatistics getStatistics() {
+    return statistics;
+  }
+
+  /**
+   * Records the puts of the cache, and marks its removals as asked for by the caller for
+   * {@link EvictionCountingCache}.
+   *
+   * @param statistics the statistics of the cache
+   * @since 3.5.1
+   */
+  public void setStatistics(CacheStatistics statistics) {
+    this.statistics = statistics;
+  }
+
   /**
    * 获取命中率
    *
    * @return
    */
   private double getHitRatio() {
-    return (double) hits / (double) requests;
+    return (double) hits.sum() / (double) requests.sum();
   }
 
 }
@@ -0,0 +1,220 @@
+/**
+ *    Copyright 2009-2019 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.cache.decorators;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.apache.ibatis.cache.Cache;
+
+/**
+ * Negative result decorator: empty query results, such as those of existence checks on absent rows, are kept apart
+ * from the other entries, for a shorter time to live and within their own size bound.
+ * <p>
+ * An empty result is stored as a small expiry time instead of going down to the delegate, so it neither evicts
+ * entries holding rows nor pays for serialization, and a hit returns a new empty list without reading the delegate.
+ *
+ * 空结果缓存装饰器：单独保存空查询结果，使用较短的存活时间与独立的容量上限
+ *
+ * @since 3.5.1
+ */
+public class NegativeResultCache implements Cache {
+
+  private static final int DEFAULT_SIZE = 1024;
+
+  private final Cache delegate;
+
+  private final ReentrantLock lock = new ReentrantLock();
+
+  /**
+   * 空结果的 key 到过期时间，按写入顺序淘汰
+   */
+  private final LinkedHashMap<Object, Long> negatives = new LinkedHashMap<Object, Long>() {
+    private static final long serialVersionUID = 1L;
+
+    @Override
+    protected boolean removeEldestEntry(Map.Entry<Object, Long> eldest) {
+      return size() > negativeResultSize;
+    }
+  };
+
+  private long negativeResultTtl;
+
+  private int negativeResultSize = DEFAULT_SIZE;
+
+  public NegativeResultCache(Cache delegate) {
+    this.delegate = delegate;
+  }
+
+  @Override
+  public String getId() {
+    return delegate.getId();
+  }
+
+  @Override
+  public int getSize() {
+    return delegate.getSize();
+  }
+
+  @Override
+  public void putObject(Object key, Object value) {
+    putAll(Collections.singletonMap(key, value));
+  }
+
+  @Override
+  public void putAll(Map<Object, Object> entries) {
+    Map<Object, Object> results = null;
+    List<Object> emptyKeys = null;
+    long expiresAt = System.currentTimeMillis() + negativeResultTtl;
+    lock.lock();
+    try {
+      for (Map.Entry<Object, Object> entry : entries.entrySet()) {
+        if (isEmptyResult(entry.getValue())) {
+          negatives.remove(entry.getKey());
+          negatives.put(entry.getKey(), expiresAt);
+          if (emptyKeys == null) {
+            emptyKeys = new ArrayList<>();
+          }
+          emptyKeys.add(entry.getKey());
+          continue;
+        }
+        if (entry.getValue() != null) {
+          negatives.remove(entry.getKey());
+        }
+        if (results == null) {
+          results = new LinkedHashMap<>();
+        }
+        results.put(entry.getKey(), entry.getValue());
+      }
+    } finally {
+      lock.unlock();
+    }
+    // 删除委托缓存中较早的非空结果，以免空结果过期后再次命中
+    if (emptyKeys != null) {
+      delegate.removeAll(emptyKeys);
+    }
+    if (results != null) {
+      delegate.putAll(results);
+    }
+  }
+
+  @Override
+  public Object getObject(Object key) {
+    lock.lock();
+    try {
+      Long expiresAt = negatives.get(key);
+      if (expiresAt != null) {
+        if (expiresAt > System.currentTimeMillis()) {
+          return new ArrayList<>(0);
+        }
+        negatives.remove(key);
+      }
+    } finally {
+      lock.unlock();
+    }
+    return delegate.getObject(key);
+  }
+
+  @Override
+  public Object removeObject(Object key) {
+    lock.lock();
+    try {
+      negatives.remove(key);
+    } finally {
+      lock.unlock();
+    }
+    return delegate.removeObject(key);
+  }
+
+  @Override
+  public void removeAll(Collection<Object> keys) {
+    lock.lock();
+    try {
+      for (Object key : keys) {
+        negatives.remove(key);
+      }
+    } finally {
+      lock.unlock();
+    }
+    delegate.removeAll(keys);
+  }
+
+  @Override
+  public void clear() {
+    lock.lock();
+    try {
+      negatives.clear();
+    } finally {
+      lock.unlock();
+    }
+    delegate.clear();
+  }
+
+  @Override
+  public ReadWriteLock getReadWriteLock() {
+    return null;
+  }
+
+  @Override
+  public boolean isThreadSafe() {
+    return delegate.isThreadSafe();
+  }
+
+  /**
+   * @return the number of empty results held, including expired ones not yet dropped
+   */
+  public int getNegativeSize() {
+    lock.lock();
+    try {
+      return negatives.size();
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  public long getNegativeResultTtl() {
+    return negativeResultTtl;
+  }
+
+  /**
+   * @param negativeResultTtl how long an empty result is returned, in milliseconds
+   */
+  public void setNegativeResultTtl(long negativeResultTtl) {
+    this.negativeResultTtl = negativeResultTtl;
+  }
+
+  public int getNegativeResultSize() {
+    return negativeResultSize;
+  }
+
+  /**
+   * @param negativeResultSize the maximum number of empty results held, 1024 by default
+   */
+  public void setNegativeResultSize(int negativeResultSize) {
+    this.negativeResultSize = negativeResultSize;
+  }
+
+  private static boolean isEmptyResult(Object value) {
+    return value instanceof List && ((List<?>) value).isEmpty();
+  }
+
+}
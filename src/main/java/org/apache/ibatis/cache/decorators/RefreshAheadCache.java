@@ -0,0 +1,344 @@
+/**
+ *    Copyright 2009-2019 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.cache.decorators;
+
+import java.util.Collection;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import org.apache.ibatis.cache.Cache;
+import org.apache.ibatis.logging.Log;
+import org.apache.ibatis.logging.LogFactory;
+
+/**
+ * Expires each entry on its own once its time to live has elapsed, and reloads entries in the background shortly
+ * before they expire.
+ * <p>
+ * Unlike {@link ScheduledCache}, which clears the whole cache at once, entries expire independently of each other.
+ * An entry accessed within {@code refreshAhead} milliseconds of its expiry, or after it, is returned as is while a
+ * background thread reloads it with the loader registered when the transaction that loaded the entry committed, so
+ * callers never wait for the database. Reloads finishing after a clear, a removal or a table invalidation of their
+ * entry are discarded, see {@link #setTableDependencyCache(TableDependencyCache)}. An entry is only reported missing
+ * once it has expired and cannot be reloaded, or when it has been stale for more than another time to live because
+ * its reloads keep failing or hanging.
+ *
+ * 缓存提前刷新装饰器：按缓存项过期，并在过期前异步重新执行查询，期间调用方继续得到旧值
+ *
+ * @since 3.5.1
+ */
+public class RefreshAheadCache implements Cache {
+
+  private static final Log log = LogFactory.getLog(RefreshAheadCache.class);
+
+  /**
+   * 所有缓存共享的刷新线程池，同一 key 同一时刻只有一个刷新任务
+   */
+  private static final ThreadPoolExecutor REFRESHER;
+
+  static {
+    int threads = Math.max(2, Runtime.getRuntime().availableProcessors() / 2);
+    REFRESHER = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), runnable -> {
+      Thread thread = new Thread(runnable, "mybatis-cache-refresher");
+      thread.setDaemon(true);
+      return thread;
+    });
+    REFRESHER.allowCoreThreadTimeOut(true);
+  }
+
+  private final Cache delegate;
+
+  /**
+   * 缓存项的写入时间与加载器
+   */
+  private final ConcurrentHashMap<Object, Entry> entries = new ConcurrentHashMap<>();
+
+  /**
+   * 每次清空缓存递增，清空前开始的刷新结果被丢弃
+   */
+  private final AtomicLong generation = new AtomicLong();
+
+  /**
+   * 清空与删除持有写锁，刷新结果在读锁下检查并写入，不会在清空后写回旧值
+   */
+  private final ReadWriteLock removalLock = new ReentrantReadWriteLock();
+
+  /**
+   * 按表失效装饰器，其失效的缓存项不再写回刷新结果
+   */
+  private TableDependencyCache tableDependencyCache;
+
+  private long timeToLive = 60 * 60 * 1000; // 1 hour
+
+  private long refreshAhead;
+
+  /**
+   * 下次清理过期元数据的时间
+   */
+  private volatile long nextPurge;
+
+  public RefreshAheadCache(Cache delegate) {
+    this.delegate = delegate;
+  }
+
+  @Override
+  public String getId() {
+    return delegate.getId();
+  }
+
+  @Override
+  public int getSize() {
+    return delegate.getSize();
+  }
+
+  @Override
+  public void putObject(Object key, Object value) {
+    delegate.putObject(key, value);
+    long now = System.currentTimeMillis();
+    if (value == null) {
+      entries.remove(key);
+    } else {
+      entries.computeIfAbsent(key, k -> new Entry(now)).expiresAt = now + timeToLive;
+    }
+    purgeWhenDue(now);
+  }
+
+  @Override
+  public Object getObject(Object key) {
+    Object value = delegate.getObject(key);
+    Entry entry = entries.get(key);
+    if (value == null) {
+      if (entry != null && entry.expiresAt != 0) {
+        // 已被淘汰，保留尚未写入的缓存项的加载器
+        entries.remove(key, entry);
+      }
+      return null;
+    }
+    if (entry == null || entry.expiresAt == 0) {
+      // 写入时间未知，视为已过期
+      return null;
+    }
+    long now = System.currentTimeMillis();
+    if (now < entry.expiresAt - refreshAhead) {
+      return value;
+    }
+    if (now >= entry.expiresAt + timeToLive || (now >= entry.expiresAt && entry.loader == null)) {
+      return null;
+    }
+    refresh(key, entry);
+    return value;
+  }
+
+  @Override
+  public Object removeObject(Object key) {
+    Lock lock = removalLock.writeLock();
+    lock.lock();
+    try {
+      entries.remove(key);
+      return delegate.removeObject(key);
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  @Override
+  public void removeAll(Collection<Object> keys) {
+    Lock lock = removalLock.writeLock();
+    lock.lock();
+    try {
+      forget(keys);
+      delegate.removeAll(keys);
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  @Override
+  public void clear() {
+    Lock lock = removalLock.writeLock();
+    lock.lock();
+    try {
+      generation.incrementAndGet();
+      entries.clear();
+      delegate.clear();
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  @Override
+  public ReadWriteLock getReadWriteLock() {
+    return null;
+  }
+
+  @Override
+  public boolean isThreadSafe() {
+    return delegate.isThreadSafe();
+  }
+
+  /**
+   * Registers how to reload an entry. Called when the transaction that loaded the entry commits, before the entry is
+   * put, see {@link TransactionalCache#putLoader(Object, Callable)}.
+   *
+   * @param key the key of the entry
+   * @param loader returns the current value of the entry, or null if it can no longer be reloaded
+   */
+  public void setLoader(Object key, Callable<Object> loader) {
+    entries.computeIfAbsent(key, k -> new Entry(System.currentTimeMillis())).loader = loader;
+  }
+
+  public TableDependencyCache getTableDependencyCache() {
+    return tableDependencyCache;
+  }
+
+  /**
+   * Discards the reloads of the entries a table dependency decorator below this one invalidates. Without it, a reload
+   * started before a write could put the value read before the write back once the write has removed it.
+   *
+   * @param tableDependencyCache the table dependency decorator below this one
+   */
+  public void setTableDependencyCache(TableDependencyCache tableDependencyCache) {
+    this.tableDependencyCache = tableDependencyCache;
+    tableDependencyCache.setInvalidationListener(keys -> {
+      Lock lock = removalLock.writeLock();
+      lock.lock();
+      try {
+        forget(keys);
+      } finally {
+        lock.unlock();
+      }
+    });
+  }
+
+  private void forget(Collection<Object> keys) {
+    for (Object key : keys) {
+      entries.remove(key);
+    }
+  }
+
+  public long getTimeToLive() {
+    return timeToLive;
+  }
+
+  /**
+   * @param timeToLive how long an entry is fresh after it has been put, in milliseconds; 1 hour by default
+   */
+  public void setTimeToLive(long timeToLive) {
+    this.timeToLive = timeToLive;
+  }
+
+  public long getRefreshAhead() {
+    return refreshAhead;
+  }
+
+  /**
+   * @param refreshAhead how long before its expiry an accessed entry is reloaded, in milliseconds; 0 by default,
+   *        i.e. entries are only reloaded once expired
+   */
+  public void setRefreshAhead(long refreshAhead) {
+    this.refreshAhead = refreshAhead;
+  }
+
+  private void refresh(Object key, Entry entry) {
+    Callable<Object> loader = entry.loader;
+    if (loader == null || !entry.refreshing.compareAndSet(false, true)) {
+      return;
+    }
+    long startGeneration = generation.get();
+    try {
+      REFRESHER.execute(() -> {
+        try {
+          Object value = loader.call();
+          if (value == null) {
+            entry.loader = null;
+          } else {
+            putRefreshed(key, entry, value, startGeneration);
+          }
+        } catch (Exception e) {
+          // 刷新失败后不再刷新，过期后重新查询
+          entry.loader = null;
+          log.warn("Failed to refresh the entry " + key + " of the cache " + getId() + ". Cause: " + e);
+        } finally {
+          entry.refreshing.set(false);
+        }
+      });
+    } catch (RejectedExecutionException e) {
+      entry.refreshing.set(false);
+    }
+  }
+
+  private void putRefreshed(Object key, Entry entry, Object value, long startGeneration) {
+    Lock lock = removalLock.readLock();
+    lock.lock();
+    try {
+      if (generation.get() == startGeneration && entries.get(key) == entry) {
+        putObject(key, value);
+      }
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * 清理被委托缓存淘汰后未再访问的缓存项元数据
+   */
+  private void purgeWhenDue(long now) {
+    if (now < nextPurge) {
+      return;
+    }
+    nextPurge = now + timeToLive;
+    entries.values().removeIf(entry -> entry.expiresAt == 0
+        ? entry.createdAt + timeToLive < now
+        : entry.expiresAt + timeToLive < now);
+  }
+
+  @Override
+  public int hashCode() {
+    return delegate.hashCode();
+  }
+
+  @Override
+  public boolean equals(Object obj) {
+    return delegate.equals(obj);
+  }
+
+  private static final class Entry {
+
+    final long createdAt;
+
+    /**
+     * 过期时间，0 表示尚未写入
+     */
+    volatile long expiresAt;
+
+    volatile Callable<Object> loader;
+
+    final AtomicBoolean refreshing = new AtomicBoolean();
+
+    Entry(long createdAt) {
+      this.createdAt = createdAt;
+    }
+  }
+
+}
@@ -17,6 +17,7 @@ package org.apache.ibatis.cache.decorators;
 
 import org.apache.ibatis.cache.Cache;
 
+import java.util.Map;
 import java.util.concurrent.locks.ReadWriteLock;
 
 /**
@@ -36,7 +37,7 @@ public class ScheduledCache implements Cache {
   /**
    * 上次清缓存时间戳
    */
-  protected long lastClear;
+  protected volatile long lastClear;
 
   public ScheduledCache(Cache delegate) {
     this.delegate = delegate;
@@ -65,6 +66,12 @@ public class ScheduledCache implements Cache {
     delegate.putObject(key, object);
   }
 
+  @Override
+  public void putAll(Map<Object, Object> entries) {
+    clearWhenStale();
+    delegate.putAll(entries);
+  }
+
   @Override
   public Object getObject(Object key) {
     return clearWhenStale() ? null : delegate.getObject(key);
@@ -87,6 +94,11 @@ public class ScheduledCache implements Cache {
     return null;
   }
 
+  @Override
+  public boolean isThreadSafe() {
+    return delegate.isThreadSafe();
+  }
+
   @Override
   public int hashCode() {
     return delegate.hashCode();
@@ -17,9 +17,15 @@ package org.apache.ibatis.cache.decorators;
 
 import org.apache.ibatis.cache.Cache;
 import org.apache.ibatis.cache.CacheException;
+import org.apache.ibatis.cache.CacheSerializer;
+import org.apache.ibatis.cache.impl.BinaryCacheSerializer;
+import org.apache.ibatis.cache.impl.JavaCacheSerializer;
+import org.apache.ibatis.cache.impl.ObjectCopier;
 import org.apache.ibatis.io.Resources;
 
 import java.io.*;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import java.util.concurrent.locks.ReadWriteLock;
 
 /**
@@ -31,6 +37,16 @@ public class SerializedCache implements Cache {
 
   private final Cache delegate;
 
+  /**
+   * 序列化实现，默认使用 Java 序列化
+   */
+  private CacheSerializer serializer = new JavaCacheSerializer();
+
+  /**
+   * 读时复制模式下的对象复制器，为 null 时按字节保存
+   */
+  private ObjectCopier copier;
+
   public SerializedCache(Cache delegate) {
     this.delegate = delegate;
   }
@@ -47,8 +63,21 @@ public class SerializedCache implements Cache {
 
   @Override
   public void putObject(Object key, Object object) {
+    delegate.putObject(key, copy(object));
+  }
+
+  @Override
+  public void putAll(Map<Object, Object> entries) {
+    Map<Object, Object> copies = new LinkedHashMap<>(entries.size() * 4 / 3 + 1);
+    for (Map.Entry<Object, Object> entry : entries.entrySet()) {
+      copies.put(entry.getKey(), copy(entry.getValue()));
+    }
+    delegate.putAll(copies);
+  }
+
+  private Object copy(Object object) {
     if (object == null || object instanceof Serializable) {
-      delegate.putObject(key, serialize((Serializable) object));
+      return copier == null ? serializer.serialize(object) : copier.copy(object);
     } else {
       throw new CacheException("SharedCache failed to make a copy of a non-serializable object: " + object);
     }
@@ -57,7 +86,10 @@ public class SerializedCache implements Cache {
   @Override
   public Object getObject(Object key) {
     Object object = delegate.getObject(key);
-    return object == null ? null : deserialize((byte[]) object);
+    if (object == null) {
+      return null;
+    }
+    return copier == null ? serializer.deserialize((byte[]) object) : copier.copy(object);
   }
 
   @Override
@@ -76,47 +108,70 @@ public class SerializedCache implements Cache {
   }
 
   @Override
-  public int hashCode() {
-    return delegate.hashCode();
+  public boolean isThreadSafe() {
+    return delegate.isThreadSafe();
   }
 
-  @Override
-  public boolean equals(Object obj) {
-    return delegate.equals(obj);
+  public CacheSerializer getSerializer() {
+    return serializer;
   }
 
   /**
-   * 序列化为二级制数据
+   * Sets how values are turned into bytes: {@code java} (the default), {@code binary} for
+   * {@link BinaryCacheSerializer}, or the name of a {@link CacheSerializer} class.
    *
-   * @param value
-   * @return
+   * @param serializer the serializer alias or class name
+   * @since 3.5.1
    */
-  private byte[] serialize(Serializable value) {
-    try (ByteArrayOutputStream bos = new ByteArrayOutputStream();
-         ObjectOutputStream oos = new ObjectOutputStream(bos)) {
-      oos.writeObject(value);
-      oos.flush();
-      return bos.toByteArray();
-    } catch (Exception e) {
-      throw new CacheException("Error serializing object.  Cause: " + e, e);
-    }
+  public void setSerializer(String serializer) {
+    this.serializer = newSerializer(serializer);
+  }
+
+  public boolean isCopyOnRead() {
+    return copier != null;
+  }
+
+  /**
+   * Sets whether the cache stores and returns deep copies made with an {@link ObjectCopier} instead of serialized
+   * bytes. Copies are cheaper to make than to serialize and deserialize, but the cached values stay on heap in
+   * their object form.
+   *
+   * @param copyOnRead true to copy values instead of serializing them
+   * @since 3.5.1
+   */
+  public void setCopyOnRead(boolean copyOnRead) {
+    this.copier = copyOnRead ? new ObjectCopier() : null;
   }
 
   /**
-   * 反序列化
+   * 按别名或类名创建序列化实现
    *
-   * @param value
-   * @return
+   * @param serializer {@code java}, {@code binary} or the name of a {@link CacheSerializer} class
+   * @return a new serializer
+   * @since 3.5.1
    */
-  private Serializable deserialize(byte[] value) {
-    Serializable result;
-    try (ByteArrayInputStream bis = new ByteArrayInputStream(value);
-         ObjectInputStream ois = new CustomObjectInputStream(bis)) {
-      result = (Serializable) ois.readObject();
+  public static CacheSerializer newSerializer(String serializer) {
+    if ("java".equalsIgnoreCase(serializer)) {
+      return new JavaCacheSerializer();
+    }
+    if ("binary".equalsIgnoreCase(serializer)) {
+      return new BinaryCacheSerializer();
+    }
+    try {
+      return (CacheSerializer) Resources.classForName(serializer).newInstance();
     } catch (Exception e) {
-      throw new CacheException("Error deserializing object.  Cause: " + e, e);
+      throw new CacheException("Error creating cache serializer '" + serializer + "'.  Cause: " + e, e);
     }
-    return result;
+  }
+
+  @Override
+  public int hashCode() {
+    return delegate.hashCode();
+  }
+
+  @Override
+  public boolean equals(Object obj) {
+    return delegate.equals(obj);
   }
 
   public static class CustomObjectInputStream extends ObjectInputStream {
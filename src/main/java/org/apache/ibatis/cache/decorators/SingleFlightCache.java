@@ -0,0 +1,256 @@
+/**
+ *    Copyright 2009-2019 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.cache.decorators;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.locks.ReadWriteLock;
+
+import org.apache.ibatis.cache.Cache;
+import org.apache.ibatis.cache.CacheException;
+
+/**
+ * Single-flight blocking decorator.
+ * <p>
+ * The first thread that misses a key becomes its loader and gets {@code null}; the other threads missing the same
+ * key wait for the value the loader puts instead of hitting the database. Unlike {@link BlockingCache}:
+ * <ul>
+ * <li>hits never touch any per-key state, and a key only has state while it is being loaded;</li>
+ * <li>a load is not bound to the loader thread, so it is released whichever thread commits or rolls back;</li>
+ * <li>a waiter that times out takes the load over and queries the database itself instead of failing, so a
+ * load abandoned by its session cannot block the key forever;</li>
+ * <li>with a read-only cache, waiters share the loaded value without reading the delegate again.</li>
+ * </ul>
+ * When the entries are written behind, see {@link #setWriteBehindCache(WriteBehindCache)}, the waiters that read the
+ * delegate again are only woken once the entry is written, or discarded.
+ *
+ *
+ * 缓存阻塞装饰器。相同 key 同一时刻只有一个线程执行数据库查询，其它线程等待其结果，不为每个 key 常驻锁对象。
+ *
+ * @since 3.5.1
+ */
+public class SingleFlightCache implements Cache {
+
+  /**
+   * 取消结果，表示加载未写入缓存（回滚或查询异常）
+   */
+  private static final Object ABANDONED = new Object();
+
+  private final Cache delegate;
+
+  /**
+   * 正在加载的 key，加载完成即移除
+   */
+  private final ConcurrentHashMap<Object, Flight> flights = new ConcurrentHashMap<>();
+
+  /**
+   * 等待加载结果的超时时间，超时后接管加载
+   */
+  private long timeout;
+
+  /**
+   * 等待者是否直接共享加载结果（只读缓存）
+   */
+  private boolean shareLoadedValue;
+
+  /**
+   * 异步写入装饰器，缓存项写入后才唤醒需要重新读取的等待者
+   */
+  private WriteBehindCache writeBehindCache;
+
+  public SingleFlightCache(Cache delegate) {
+    this.delegate = delegate;
+  }
+
+  @Override
+  public String getId() {
+    return delegate.getId();
+  }
+
+  @Override
+  public int getSize() {
+    return delegate.getSize();
+  }
+
+  /**
+   * 写缓存并唤醒等待该 key 的线程
+   */
+  @Override
+  public void putObject(Object key, Object value) {
+    try {
+      delegate.putObject(key, value);
+    } finally {
+      // 等待者需要重新读取时，待写入的缓存项由写入回调唤醒等待者
+      if (value == null || shareLoadedValue || writeBehindCache == null || !writeBehindCache.isPending(key)) {
+        land(key, value == null ? ABANDONED : value);
+      }
+    }
+  }
+
+  @Override
+  public Object getObject(Object key) {
+    Object value = delegate.getObject(key);
+    while (value == null) {
+      Flight flight = new Flight();
+      Flight current = flights.putIfAbsent(key, flight);
+      if (current == null) {
+        // 成为加载者，注册前其它线程可能已写入缓存
+        value = delegate.getObject(key);
+        if (value != null) {
+          land(key, value);
+        }
+        return value;
+      }
+      if (current.loader == Thread.currentThread()) {
+        // 同一线程再次未命中（如嵌套会话），等待自己会导致死锁
+        return null;
+      }
+      Object result = await(key, current);
+      if (result == null) {
+        // 等待超时，接管加载
+        if (flights.replace(key, current, flight)) {
+          return null;
+        }
+      } else if (result != ABANDONED && shareLoadedValue) {
+        return result;
+      }
+      value = delegate.getObject(key);
+    }
+    return value;
+  }
+
+  /**
+   * Releases the load of a key that will not be put, e.g. because the transaction rolled back.
+   *
+   * @param key The key
+   * @return always null
+   */
+  @Override
+  public Object removeObject(Object key) {
+    // despite of its name, this method is called only to release loads
+    land(key, ABANDONED);
+    return null;
+  }
+
+  @Override
+  public void clear() {
+    delegate.clear();
+  }
+
+  @Override
+  public ReadWriteLock getReadWriteLock() {
+    return null;
+  }
+
+  @Override
+  public boolean isThreadSafe() {
+    return delegate.isThreadSafe();
+  }
+
+  public long getTimeout() {
+    return timeout;
+  }
+
+  /**
+   * Sets how long a miss waits for the value being loaded by another thread before loading it itself.
+   *
+   * @param timeout the timeout in milliseconds, or 0 to wait indefinitely
+   */
+  public void setTimeout(long timeout) {
+    this.timeout = timeout;
+  }
+
+  public boolean isShareLoadedValue() {
+    return shareLoadedValue;
+  }
+
+  /**
+   * Sets whether waiters get the instance put by the loader. Must only be enabled when the delegate returns the
+   * cached instances themselves, i.e. for read-only caches; otherwise waiters read their own copy from the delegate.
+   *
+   * @param shareLoadedValue true to share the loaded instance
+   */
+  public void setShareLoadedValue(boolean shareLoadedValue) {
+    this.shareLoadedValue = shareLoadedValue;
+  }
+
+  public WriteBehindCache getWriteBehindCache() {
+    return writeBehindCache;
+  }
+
+  /**
+   * Wakes the waiters that read the delegate again only once the entries queued by a write-behind decorator below
+   * this one are written. Without it, they would read the delegate before the write, miss, and query the database.
+   *
+   * @param writeBehindCache the write-behind decorator below this one
+   */
+  public void setWriteBehindCache(WriteBehindCache writeBehindCache) {
+    this.writeBehindCache = writeBehindCache;
+    writeBehindCache.setWriteListener(new WriteBehindCache.WriteListener() {
+      @Override
+      public void entryWritten(Object key, Object value) {
+        land(key, value == null ? ABANDONED : value);
+      }
+
+      @Override
+      public void entryDiscarded(Object key) {
+        land(key, ABANDONED);
+      }
+    });
+  }
+
+  private void land(Object key, Object result) {
+    Flight flight = flights.remove(key);
+    if (flight != null) {
+      flight.result.complete(result);
+    }
+  }
+
+  /**
+   * @return the result of the flight, or null if the timeout elapsed
+   */
+  private Object await(Object key, Flight flight) {
+    try {
+      if (timeout > 0) {
+        return flight.result.get(timeout, TimeUnit.MILLISECONDS);
+      }
+      return flight.result.get();
+    } catch (TimeoutException e) {
+      return null;
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new CacheException("Got interrupted while waiting for key " + key + " at the cache " + getId(), e);
+    } catch (ExecutionException e) {
+      // 结果只会正常完成
+      throw new CacheException("Unexpected failure of the load at the cache " + getId(), e);
+    }
+  }
+
+  /**
+   * A load in progress.
+   */
+  private static final class Flight {
+
+    final Thread loader = Thread.currentThread();
+
+    final CompletableFuture<Object> result = new CompletableFuture<>();
+
+  }
+
+}
@@ -17,6 +17,7 @@ package org.apache.ibatis.cache.decorators;
 
 import org.apache.ibatis.cache.Cache;
 
+import java.util.Map;
 import java.util.concurrent.locks.ReadWriteLock;
 
 /**
@@ -46,6 +47,11 @@ public class SynchronizedCache implements Cache {
     delegate.putObject(key, object);
   }
 
+  @Override
+  public synchronized void putAll(Map<Object, Object> entries) {
+    delegate.putAll(entries);
+  }
+
   @Override
   public synchronized Object getObject(Object key) {
     return delegate.getObject(key);
@@ -76,4 +82,9 @@ public class SynchronizedCache implements Cache {
     return null;
   }
 
+  @Override
+  public boolean isThreadSafe() {
+    return true;
+  }
+
 }
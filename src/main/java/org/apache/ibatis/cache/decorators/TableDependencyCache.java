@@ -0,0 +1,300 @@
+/**
+ *    Copyright 2009-2019 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.cache.decorators;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.apache.ibatis.cache.Cache;
+import org.apache.ibatis.cache.TableDependencyRegistry;
+
+/**
+ * Indexes the entries of a cache by the tables they depend on, so that a write removes only the entries depending
+ * on the tables it touched, see {@link TableDependencyRegistry}.
+ * <p>
+ * The index is not told about entries evicted by the delegate. A key is dropped from the index once a write removes
+ * it, whichever of its tables was written. To bound the size of the index, the oldest tracked keys are removed from
+ * the cache once the index tracks many more distinct keys than the delegate holds; most of them have already been
+ * evicted.
+ *
+ * 按表索引缓存项的装饰器
+ *
+ * @since 3.5.1
+ */
+public class TableDependencyCache implements Cache {
+
+  /**
+   * 依赖未知的缓存项，任意写操作都会使其失效
+   */
+  private static final String ANY_TABLE = "*";
+
+  private static final int MIN_TRACKED_KEYS = 4096;
+
+  private final Cache delegate;
+
+  private final TableDependencyRegistry registry;
+
+  /**
+   * 索引由该锁保护，不在持有该锁时访问被装饰的缓存
+   */
+  private final ReentrantLock indexLock = new ReentrantLock();
+
+  /**
+   * 表名到依赖该表的 key
+   */
+  private final Map<String, Set<Object>> keysByTable = new HashMap<>();
+
+  /**
+   * key 到其依赖的表，按最近一次写入的顺序
+   */
+  private final LinkedHashMap<Object, Set<String>> tablesByKey = new LinkedHashMap<>();
+
+  private volatile InvalidationListener invalidationListener;
+
+  public TableDependencyCache(Cache delegate, TableDependencyRegistry registry) {
+    this.delegate = delegate;
+    this.registry = registry;
+  }
+
+  @Override
+  public String getId() {
+    return delegate.getId();
+  }
+
+  @Override
+  public int getSize() {
+    return delegate.getSize();
+  }
+
+  @Override
+  public void putObject(Object key, Object value) {
+    delegate.putObject(key, value);
+    indexLock.lock();
+    try {
+      trackTables(key, value);
+    } finally {
+      indexLock.unlock();
+    }
+    sweepIfStale();
+  }
+
+  @Override
+  public void putAll(Map<Object, Object> entries) {
+    delegate.putAll(entries);
+    indexLock.lock();
+    try {
+      for (Map.Entry<Object, Object> entry : entries.entrySet()) {
+        trackTables(entry.getKey(), entry.getValue());
+      }
+    } finally {
+      indexLock.unlock();
+    }
+    sweepIfStale();
+  }
+
+  @Override
+  public Object getObject(Object key) {
+    return delegate.getObject(key);
+  }
+
+  @Override
+  public Object removeObject(Object key) {
+    return delegate.removeObject(key);
+  }
+
+  @Override
+  public void removeAll(Collection<Object> keys) {
+    delegate.removeAll(keys);
+  }
+
+  @Override
+  public void clear() {
+    indexLock.lock();
+    try {
+      keysByTable.clear();
+      tablesByKey.clear();
+    } finally {
+      indexLock.unlock();
+    }
+    delegate.clear();
+  }
+
+  @Override
+  public ReadWriteLock getReadWriteLock() {
+    return null;
+  }
+
+  @Override
+  public boolean isThreadSafe() {
+    return delegate.isThreadSafe();
+  }
+
+  /**
+   * @return the number of distinct keys in the index, including those already evicted by the delegate
+   */
+  public int getTrackedKeyCount() {
+    indexLock.lock();
+    try {
+      return tablesByKey.size();
+    } finally {
+      indexLock.unlock();
+    }
+  }
+
+  /**
+   * Removes the entries depending on any of the tables, or on unknown tables.
+   *
+   * @param tables the lower-cased tables that have been written
+   */
+  public void invalidate(Collection<String> tables) {
+    List<Object> keys = new ArrayList<>();
+    indexLock.lock();
+    try {
+      for (String table : tables) {
+        collectKeys(table, keys);
+      }
+      collectKeys(ANY_TABLE, keys);
+    } finally {
+      indexLock.unlock();
+    }
+    if (keys.isEmpty()) {
+      return;
+    }
+    InvalidationListener listener = invalidationListener;
+    if (listener != null) {
+      // 先通知上层装饰器，使其不再写回失效前开始加载的值
+      listener.keysInvalidated(keys);
+    }
+    delegate.removeAll(keys);
+  }
+
+  /**
+   * Sets the listener told about the keys a write invalidates, before they are removed from the delegate.
+   *
+   * @param invalidationListener the listener, or null
+   */
+  public void setInvalidationListener(InvalidationListener invalidationListener) {
+    this.invalidationListener = invalidationListener;
+  }
+
+  private void trackTables(Object key, Object value) {
+    if (value == null) {
+      return;
+    }
+    Set<String> tables = registry.getTables(key);
+    if (tables.isEmpty()) {
+      tables = new HashSet<>();
+      tables.add(ANY_TABLE);
+    }
+    // 重新插入，使 key 按最近一次写入排序
+    Set<String> previous = tablesByKey.remove(key);
+    Set<String> tracked = previous == null ? new HashSet<>() : previous;
+    for (String table : tables) {
+      if (tracked.add(table)) {
+        keysByTable.computeIfAbsent(table, t -> new HashSet<>()).add(key);
+      }
+    }
+    tablesByKey.put(key, tracked);
+  }
+
+  /**
+   * Moves the keys depending on a table out of the index, along with the other tables they depend on.
+   */
+  private void collectKeys(String table, List<Object> keys) {
+    Set<Object> tableKeys = keysByTable.remove(table);
+    if (tableKeys == null) {
+      return;
+    }
+    for (Object key : tableKeys) {
+      untrack(key, table);
+      keys.add(key);
+    }
+  }
+
+  private void untrack(Object key, String removedTable) {
+    Set<String> tables = tablesByKey.remove(key);
+    if (tables == null) {
+      return;
+    }
+    for (String table : tables) {
+      if (!table.equals(removedTable)) {
+        Set<Object> tableKeys = keysByTable.get(table);
+        if (tableKeys != null) {
+          tableKeys.remove(key);
+          if (tableKeys.isEmpty()) {
+            keysByTable.remove(table);
+          }
+        }
+      }
+    }
+  }
+
+  private void sweepIfStale() {
+    final int size = delegate.getSize();
+    List<Object> keys = new ArrayList<>();
+    indexLock.lock();
+    try {
+      if (tablesByKey.size() <= Math.max(MIN_TRACKED_KEYS, 2 * size)) {
+        return;
+      }
+      // 最早写入的 key 多已被淘汰，从索引与缓存中一并移除
+      int target = Math.max(MIN_TRACKED_KEYS, size);
+      Iterator<Object> iterator = tablesByKey.keySet().iterator();
+      while (tablesByKey.size() - keys.size() > target && iterator.hasNext()) {
+        keys.add(iterator.next());
+      }
+      for (Object key : keys) {
+        untrack(key, null);
+      }
+    } finally {
+      indexLock.unlock();
+    }
+    delegate.removeAll(keys);
+  }
+
+  @Override
+  public int hashCode() {
+    return delegate.hashCode();
+  }
+
+  @Override
+  public boolean equals(Object obj) {
+    return delegate.equals(obj);
+  }
+
+  /**
+   * Told about the keys invalidated by writes to the tables they depend on, e.g. by decorators above this one that
+   * keep their own state per key.
+   */
+  public interface InvalidationListener {
+
+    /**
+     * @param keys the keys about to be removed from the delegate
+     */
+    void keysInvalidated(Collection<Object> keys);
+
+  }
+
+}
@@ -0,0 +1,784 @@
+/**
+ *    Copyright 2009-2019 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.cache.decorators;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.apache.ibatis.cache.Cache;
+import org.apache.ibatis.cache.CacheException;
+import org.apache.ibatis.cache.CacheMemoryBudget;
+import org.apache.ibatis.cache.Weigher;
+import org.apache.ibatis.cache.impl.ByteSizeWeigher;
+import org.apache.ibatis.cache.impl.RowCountWeigher;
+import org.apache.ibatis.io.Resources;
+
+/**
+ * W-TinyLFU cache decorator.
+ * <p>
+ * New entries enter a small LRU admission window. An entry leaving the window is only admitted into the main,
+ * segmented LRU region (probation and protected segments) if a frequency sketch says it has been used more often
+ * than the entry it would evict, so a scan of one-off queries cannot flush the frequently used entries.
+ * <p>
+ * Reads do not lock: a hit is recorded into a lossy striped buffer and replayed against the policy in batches,
+ * under a lock that readers only ever try. Writes take the lock. The decorator is therefore thread-safe as long as
+ * the decorated cache is, see {@link org.apache.ibatis.cache.impl.ConcurrentPerpetualCache}.
+ * <p>
+ * The cache is bounded by number of entries ({@code size}) or, when {@code maximumWeight} is set, by the total
+ * weight of its entries as computed by a {@link Weigher} (rows of the cached results by default). Setting
+ * {@code maximumBytes} bounds it by the estimated size of its entries, see {@link ByteSizeWeigher}. When a
+ * {@link CacheMemoryBudget} is set, the size of the entries is also charged against that budget, shared with the
+ * other caches of the configuration. Unless the decorated cache is thread-safe, the bytes another cache asks this one
+ * to free are evicted by its own next write, as only the writes of this cache are synchronized with its reads.
+ *
+ * 基于频率准入的缓存淘汰装饰器（W-TinyLFU），读操作无锁
+ *
+ * @since 3.5.1
+ */
+public class TinyLfuCache implements Cache {
+
+  private static final int DEFAULT_SIZE = 1024;
+
+  /**
+   * 准入窗口占容量的百分比
+   */
+  private static final int WINDOW_PERCENT = 1;
+
+  /**
+   * 保护区占主区容量的百分比
+   */
+  private static final int PROTECTED_PERCENT = 80;
+
+  private final Cache delegate;
+
+  /**
+   * 淘汰策略的所有状态均由该锁保护
+   */
+  private final ReentrantLock evictionLock = new ReentrantLock();
+
+  private final ReadBuffer readBuffer = new ReadBuffer();
+
+  private final FrequencySketch sketch = new FrequencySketch();
+
+  private final Map<Object, Node> nodes = new HashMap<>();
+
+  private final AccessOrderDeque window = new AccessOrderDeque();
+
+  private final AccessOrderDeque probation = new AccessOrderDeque();
+
+  private final AccessOrderDeque protectedSegment = new AccessOrderDeque();
+
+  private int size;
+
+  private long maximumWeight;
+
+  private Weigher weigher;
+
+  private long maximum;
+
+  private long windowMaximum;
+
+  private long protectedMaximum;
+
+  private long windowWeight;
+
+  private long protectedWeight;
+
+  private long totalWeight;
+
+  /**
+   * 所有缓存共享的内存预算
+   */
+  private CacheMemoryBudget memoryBudget;
+
+  private final CacheMemoryBudget.Participant budgetParticipant = new BudgetParticipant();
+
+  /**
+   * 计入共享内存预算的字节数
+   */
+  private volatile long chargedBytes;
+
+  /**
+   * 其他缓存请求回收的字节数，被装饰的缓存不是线程安全的时由本缓存的下一次写操作回收
+   */
+  private final AtomicLong pendingReclaim = new AtomicLong();
+
+  public TinyLfuCache(Cache delegate) {
+    this.delegate = delegate;
+    setSize(DEFAULT_SIZE);
+  }
+
+  @Override
+  public String getId() {
+    return delegate.getId();
+  }
+
+  @Override
+  public int getSize() {
+    return delegate.getSize();
+  }
+
+  /**
+   * Sets the maximum number of entries. Also used to size the frequency sketch when the cache is bounded by weight.
+   *
+   * @param size the maximum number of entries
+   */
+  public void setSize(int size) {
+    evictionLock.lock();
+    try {
+      this.size = size;
+      sketch.ensureCapacity(size);
+      resize();
+    } finally {
+      evictionLock.unlock();
+    }
+  }
+
+  /**
+   * Bounds the cache by total weight instead of number of entries.
+   *
+   * @param maximumWeight the maximum total weight, or 0 to bound by {@code size}
+   */
+  public void setMaximumWeight(long maximumWeight) {
+    evictionLock.lock();
+    try {
+      this.maximumWeight = maximumWeight;
+      resize();
+    } finally {
+      evictionLock.unlock();
+    }
+  }
+
+  /**
+   * Bounds the cache by the estimated size in bytes of its entries.
+   *
+   * @param maximumBytes the maximum total size in bytes
+   */
+  public void setMaximumBytes(long maximumBytes) {
+    evictionLock.lock();
+    try {
+      this.weigher = new ByteSizeWeigher();
+      this.maximumWeight = maximumBytes;
+      resize();
+    } finally {
+      evictionLock.unlock();
+    }
+  }
+
+  /**
+   * Charges the size of the entries against a budget shared with other caches.
+   *
+   * @param memoryBudget the shared budget
+   */
+  public void setMemoryBudget(CacheMemoryBudget memoryBudget) {
+    evictionLock.lock();
+    try {
+      if (this.memoryBudget != null) {
+        throw new CacheException("A memory budget is already set on cache " + getId());
+      }
+      this.memoryBudget = memoryBudget;
+      memoryBudget.register(budgetParticipant);
+    } finally {
+      evictionLock.unlock();
+    }
+  }
+
+  /**
+   * Sets the {@link Weigher} used when the cache is bounded by weight.
+   *
+   * @param type the fully qualified class name of the weigher
+   */
+  public void setWeigher(String type) {
+    Weigher newWeigher;
+    try {
+      newWeigher = (Weigher) Resources.classForName(type).newInstance();
+    } catch (Exception e) {
+      throw new CacheException("Could not instantiate weigher (" + type + "). Cause: " + e, e);
+    }
+    evictionLock.lock();
+    try {
+      this.weigher = newWeigher;
+    } finally {
+      evictionLock.unlock();
+    }
+  }
+
+  @Override
+  public void putObject(Object key, Object value) {
+    evictionLock.lock();
+    try {
+      delegate.putObject(key, value);
+      drainReadBuffer();
+      int weight = weigh(key, value);
+      onWrite(key, weight, measure(value, weight));
+      reclaimPending();
+    } finally {
+      evictionLock.unlock();
+    }
+    if (memoryBudget != null) {
+      // 超出共享预算时由占用最多的缓存淘汰，本缓存的锁已释放，不会与其他缓存互相等待
+      memoryBudget.reclaim();
+      if (pendingReclaim.get() > 0) {
+        evictionLock.lock();
+        try {
+          reclaimPending();
+        } finally {
+          evictionLock.unlock();
+        }
+      }
+    }
+  }
+
+  @Override
+  public Object getObject(Object key) {
+    Object value = delegate.getObject(key);
+    // 命中时仅记录到读缓冲区，缓冲区满时才尝试获取锁批量回放
+    if (value != null && readBuffer.offer(key) && evictionLock.tryLock()) {
+      try {
+        drainReadBuffer();
+      } finally {
+        evictionLock.unlock();
+      }
+    }
+    return value;
+  }
+
+  @Override
+  public Object removeObject(Object key) {
+    evictionLock.lock();
+    try {
+      Node node = nodes.remove(key);
+      if (node != null) {
+        unlink(node);
+        release(node);
+      }
+      Object value = delegate.removeObject(key);
+      reclaimPending();
+      return value;
+    } finally {
+      evictionLock.unlock();
+    }
+  }
+
+  @Override
+  public void clear() {
+    evictionLock.lock();
+    try {
+      delegate.clear();
+      readBuffer.drain(null);
+      nodes.clear();
+      window.clear();
+      probation.clear();
+      protectedSegment.clear();
+      windowWeight = 0;
+      protectedWeight = 0;
+      totalWeight = 0;
+      pendingReclaim.set(0);
+      if (memoryBudget != null) {
+        memoryBudget.release(chargedBytes);
+        chargedBytes = 0;
+      }
+    } finally {
+      evictionLock.unlock();
+    }
+  }
+
+  @Override
+  public ReadWriteLock getReadWriteLock() {
+    return null;
+  }
+
+  @Override
+  public boolean isThreadSafe() {
+    return delegate.isThreadSafe();
+  }
+
+  private void resize() {
+    maximum = maximumWeight > 0 ? maximumWeight : size;
+    windowMaximum = Math.max(1, maximum * WINDOW_PERCENT / 100);
+    protectedMaximum = (maximum - windowMaximum) * PROTECTED_PERCENT / 100;
+    evict();
+  }
+
+  private int weigh(Object key, Object value) {
+    if (maximumWeight <= 0) {
+      return 1;
+    }
+    if (weigher == null) {
+      weigher = new RowCountWeigher();
+    }
+    return Math.max(0, weigher.weigh(key, value));
+  }
+
+  /**
+   * @return the size in bytes to charge against the memory budget, or 0 if there is none
+   */
+  private int measure(Object value, int weight) {
+    if (memoryBudget == null) {
+      return 0;
+    }
+    if (maximumWeight > 0 && weigher instanceof ByteSizeWeigher) {
+      return weight;
+    }
+    return (int) Math.min(Integer.MAX_VALUE, ByteSizeWeigher.estimate(value));
+  }
+
+  private void charge(Node node, int bytes) {
+    if (memoryBudget != null) {
+      memoryBudget.charge(bytes - node.bytes);
+      chargedBytes += bytes - node.bytes;
+      node.bytes = bytes;
+    }
+  }
+
+  private void release(Node node) {
+    if (memoryBudget != null) {
+      memoryBudget.release(node.bytes);
+      chargedBytes -= node.bytes;
+      node.bytes = 0;
+    }
+  }
+
+  private void drainReadBuffer() {
+    readBuffer.drain(this);
+  }
+
+  /**
+   * 回放一次命中：更新频率并调整所在区段的顺序
+   */
+  private void onAccess(Object key) {
+    Node node = nodes.get(key);
+    if (node == null) {
+      // 记录后已被淘汰或删除
+      return;
+    }
+    sketch.increment(key);
+    if (node.segment == Node.WINDOW) {
+      window.moveToBack(node);
+    } else if (node.segment == Node.PROBATION) {
+      // 试用区再次命中，晋升到保护区
+      probation.remove(node);
+      node.segment = Node.PROTECTED;
+      protectedSegment.add(node);
+      protectedWeight += node.weight;
+      demoteFromProtected();
+    } else {
+      protectedSegment.moveToBack(node);
+    }
+  }
+
+  private void onWrite(Object key, int weight, int bytes) {
+    sketch.increment(key);
+    Node node = nodes.get(key);
+    if (node == null) {
+      node = new Node(key, weight);
+      charge(node, bytes);
+      nodes.put(key, node);
+      window.add(node);
+      windowWeight += weight;
+      totalWeight += weight;
+    } else {
+      charge(node, bytes);
+      int delta = weight - node.weight;
+      node.weight = weight;
+      totalWeight += delta;
+      if (node.segment == Node.WINDOW) {
+        windowWeight += delta;
+        window.moveToBack(node);
+      } else if (node.segment == Node.PROTECTED) {
+        protectedWeight += delta;
+        protectedSegment.moveToBack(node);
+        demoteFromProtected();
+      } else {
+        probation.moveToBack(node);
+      }
+    }
+    evict();
+  }
+
+  private void demoteFromProtected() {
+    while (protectedWeight > protectedMaximum) {
+      Node demoted = protectedSegment.peekFirst();
+      if (demoted == null) {
+        return;
+      }
+      protectedSegment.remove(demoted);
+      protectedWeight -= demoted.weight;
+      demoted.segment = Node.PROBATION;
+      probation.add(demoted);
+    }
+  }
+
+  private void evict() {
+    // 窗口溢出的缓存项作为候选者，与主区中最久未使用的缓存项比较访问频率
+    while (windowWeight > windowMaximum) {
+      Node candidate = window.peekFirst();
+      if (candidate == null) {
+        break;
+      }
+      window.remove(candidate);
+      windowWeight -= candidate.weight;
+      candidate.segment = Node.PROBATION;
+      if (admit(candidate)) {
+        probation.add(candidate);
+      }
+    }
+    // 权重变化可能使总量仍超出上限
+    while (totalWeight > maximum) {
+      if (!evictVictim()) {
+        break;
+      }
+    }
+  }
+
+  /**
+   * Evicts the least valuable entry: the least recently used one of the probation segment, then of the protected
+   * segment, then of the window.
+   *
+   * @return false if the cache is empty
+   */
+  private boolean evictVictim() {
+    Node victim = probation.peekFirst();
+    if (victim == null) {
+      victim = protectedSegment.peekFirst();
+    }
+    if (victim == null) {
+      victim = window.peekFirst();
+    }
+    if (victim == null) {
+      return false;
+    }
+    unlink(victim);
+    evictNode(victim);
+    return true;
+  }
+
+  /**
+   * @return true if the candidate is admitted, false if it has been evicted
+   */
+  private boolean admit(Node candidate) {
+    while (totalWeight > maximum) {
+      Node victim = probation.peekFirst();
+      if (victim == null) {
+        victim = protectedSegment.peekFirst();
+      }
+      if (victim == null) {
+        break;
+      }
+      if (sketch.frequency(candidate.key) > sketch.frequency(victim.key)) {
+        unlink(victim);
+        evictNode(victim);
+      } else {
+        // 候选者已移出窗口，但权重仍计入总量
+        totalWeight -= candidate.weight;
+        evictNode(candidate);
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private void unlink(Node node) {
+    if (node.segment == Node.WINDOW) {
+      window.remove(node);
+      windowWeight -= node.weight;
+    } else if (node.segment == Node.PROTECTED) {
+      protectedSegment.remove(node);
+      protectedWeight -= node.weight;
+    } else {
+      probation.remove(node);
+    }
+    totalWeight -= node.weight;
+  }
+
+  /**
+   * Removes a node that is no longer linked into any segment.
+   */
+  private void evictNode(Node node) {
+    release(node);
+    nodes.remove(node.key);
+    delegate.removeObject(node.key);
+  }
+
+  /**
+   * Evicts the bytes other caches asked this one to free. Must be called by a write of this cache, holding the
+   * eviction lock.
+   */
+  private void reclaimPending() {
+    reclaim(pendingReclaim.getAndSet(0));
+  }
+
+  private void reclaim(long bytes) {
+    long target = chargedBytes - bytes;
+    while (chargedBytes > target) {
+      if (!evictVictim()) {
+        break;
+      }
+    }
+  }
+
+  private final class BudgetParticipant implements CacheMemoryBudget.Participant {
+
+    @Override
+    public long getChargedBytes() {
+      return chargedBytes;
+    }
+
+    @Override
+    public void tryReclaim(long bytes) {
+      if (bytes <= 0) {
+        return;
+      }
+      if (!delegate.isThreadSafe()) {
+        // 读操作不持有淘汰锁，只有外层的同步装饰器保护被装饰的缓存，不能在其他缓存的线程中修改它
+        pendingReclaim.accumulateAndGet(bytes, Math::max);
+        return;
+      }
+      if (!evictionLock.tryLock()) {
+        return;
+      }
+      try {
+        reclaim(bytes);
+      } finally {
+        evictionLock.unlock();
+      }
+    }
+  }
+
+  private static final class Node {
+
+    static final int WINDOW = 0;
+    static final int PROBATION = 1;
+    static final int PROTECTED = 2;
+
+    final Object key;
+    int weight;
+    int bytes;
+    int segment = WINDOW;
+    Node prev;
+    Node next;
+
+    Node(Object key, int weight) {
+      this.key = key;
+      this.weight = weight;
+    }
+  }
+
+  /**
+   * Intrusive doubly-linked list, least recently used first.
+   */
+  private static final class AccessOrderDeque {
+
+    private Node first;
+    private Node last;
+
+    Node peekFirst() {
+      return first;
+    }
+
+    void add(Node node) {
+      node.prev = last;
+      node.next = null;
+      if (last == null) {
+        first = node;
+      } else {
+        last.next = node;
+      }
+      last = node;
+    }
+
+    void remove(Node node) {
+      if (node.prev == null) {
+        first = node.next;
+      } else {
+        node.prev.next = node.next;
+      }
+      if (node.next == null) {
+        last = node.prev;
+      } else {
+        node.next.prev = node.prev;
+      }
+      node.prev = null;
+      node.next = null;
+    }
+
+    void moveToBack(Node node) {
+      if (node != last) {
+        remove(node);
+        add(node);
+      }
+    }
+
+    void clear() {
+      first = null;
+      last = null;
+    }
+  }
+
+  /**
+   * Lossy striped ring buffers recording hits. Producers never block: an offer that loses a race or finds its
+   * stripe full is dropped, which only makes the frequency estimate slightly less accurate.
+   */
+  private static final class ReadBuffer {
+
+    private static final int STRIPE_CAPACITY = 16;
+    private static final int STRIPE_MASK = STRIPE_CAPACITY - 1;
+
+    private final Stripe[] stripes;
+
+    ReadBuffer() {
+      int count = Integer.highestOneBit(Math.max(1, Runtime.getRuntime().availableProcessors()) * 2 - 1);
+      stripes = new Stripe[count];
+      for (int i = 0; i < count; i++) {
+        stripes[i] = new Stripe();
+      }
+    }
+
+    /**
+     * @return true if the stripe is full and should be drained
+     */
+    boolean offer(Object key) {
+      Stripe stripe = stripes[(int) Thread.currentThread().getId() & (stripes.length - 1)];
+      long head = stripe.readCounter;
+      long tail = stripe.writeCounter.get();
+      long used = tail - head;
+      if (used >= STRIPE_CAPACITY) {
+        return true;
+      }
+      if (stripe.writeCounter.compareAndSet(tail, tail + 1)) {
+        stripe.buffer.lazySet((int) (tail & STRIPE_MASK), key);
+        return used + 1 >= STRIPE_CAPACITY;
+      }
+      return false;
+    }
+
+    /**
+     * Replays the recorded hits. Must be called while holding the eviction lock.
+     *
+     * @param cache the cache to replay the hits on, or null to discard them
+     */
+    void drain(TinyLfuCache cache) {
+      for (Stripe stripe : stripes) {
+        long head = stripe.readCounter;
+        long tail = stripe.writeCounter.get();
+        for (; head < tail; head++) {
+          int index = (int) (head & STRIPE_MASK);
+          Object key = stripe.buffer.get(index);
+          if (key == null) {
+            // 写入方已占位但尚未发布，留待下次回放
+            break;
+          }
+          stripe.buffer.lazySet(index, null);
+          if (cache != null) {
+            cache.onAccess(key);
+          }
+        }
+        stripe.readCounter = head;
+      }
+    }
+
+    private static final class Stripe {
+      final AtomicReferenceArray<Object> buffer = new AtomicReferenceArray<>(STRIPE_CAPACITY);
+      final AtomicLong writeCounter = new AtomicLong();
+      volatile long readCounter;
+    }
+  }
+
+  /**
+   * Count-min sketch of 4-bit counters estimating how often each key was used recently. Counters are halved
+   * once the number of increments reaches ten times the cache size, so old popularity fades away.
+   */
+  private static final class FrequencySketch {
+
+    private static final long[] SEEDS = {
+        0xc3a5c85c97cb3127L, 0xb492b66fbe98f273L, 0x9ae16a3b2f90404fL, 0xcbf29ce484222325L};
+    private static final long RESET_MASK = 0x7777777777777777L;
+    private static final long ONE_MASK = 0x1111111111111111L;
+
+    private long[] table;
+    private int tableMask;
+    private int sampleSize;
+    private int additions;
+
+    void ensureCapacity(int maximumSize) {
+      int capacity = Math.max(1, Math.min(maximumSize, 1 << 30));
+      table = new long[Integer.highestOneBit(capacity * 2 - 1)];
+      tableMask = table.length - 1;
+      sampleSize = 10 * capacity;
+      additions = 0;
+    }
+
+    int frequency(Object key) {
+      int hash = spread(key.hashCode());
+      int start = (hash & 3) << 2;
+      int frequency = Integer.MAX_VALUE;
+      for (int i = 0; i < 4; i++) {
+        int index = indexOf(hash, i);
+        int count = (int) ((table[index] >>> ((start + i) << 2)) & 0xfL);
+        frequency = Math.min(frequency, count);
+      }
+      return frequency;
+    }
+
+    void increment(Object key) {
+      int hash = spread(key.hashCode());
+      int start = (hash & 3) << 2;
+      boolean added = false;
+      for (int i = 0; i < 4; i++) {
+        added |= incrementAt(indexOf(hash, i), start + i);
+      }
+      if (added && ++additions >= sampleSize) {
+        reset();
+      }
+    }
+
+    private boolean incrementAt(int index, int counter) {
+      int offset = counter << 2;
+      long mask = 0xfL << offset;
+      if ((table[index] & mask) != mask) {
+        table[index] += 1L << offset;
+        return true;
+      }
+      return false;
+    }
+
+    private void reset() {
+      int odd = 0;
+      for (int i = 0; i < table.length; i++) {
+        odd += Long.bitCount(table[i] & ONE_MASK);
+        table[i] = (table[i] >>> 1) & RESET_MASK;
+      }
+      additions = (additions >>> 1) - (odd >>> 2);
+    }
+
+    private int indexOf(int hash, int i) {
+      long h = (hash + SEEDS[i]) * SEEDS[i];
+      h += h >>> 32;
+      return (int) h & tableMask;
+    }
+
+    private static int spread(int x) {
+      x = ((x >>> 16) ^ x) * 0x45d9f3b;
+      x = ((x >>> 16) ^ x) * 0x45d9f3b;
+      return (x >>> 16) ^ x;
+    }
+  }
+
+}
@@ -23,6 +23,7 @@ import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Callable;
 import java.util.concurrent.locks.ReadWriteLock;
 
 /**
@@ -59,11 +60,17 @@ public class TransactionalCache implements Cache {
    */
   private final Set<Object> entriesMissedInCache;
 
+  /**
+   * 提交时登记到提前刷新缓存的加载器
+   */
+  private final Map<Object, Callable<Object>> loadersToAddOnCommit;
+
   public TransactionalCache(Cache delegate) {
     this.delegate = delegate;
     this.clearOnCommit = false;
     this.entriesToAddOnCommit = new HashMap<>();
     this.entriesMissedInCache = new HashSet<>();
+    this.loadersToAddOnCommit = new HashMap<>();
   }
 
   @Override
@@ -101,6 +108,20 @@ public class TransactionalCache implements Cache {
     entriesToAddOnCommit.put(key, object);
   }
 
+  /**
+   * Registers how to reload an entry put by this transaction once it commits, if the cache is a
+   * {@link RefreshAheadCache}. The loader is discarded on rollback.
+   *
+   * @param key the key of the entry
+   * @param loader the loader, see {@link RefreshAheadCache#setLoader(Object, Callable)}
+   * @since 3.5.1
+   */
+  public void putLoader(Object key, Callable<Object> loader) {
+    if (delegate instanceof RefreshAheadCache) {
+      loadersToAddOnCommit.put(key, loader);
+    }
+  }
+
   @Override
   public Object removeObject(Object key) {
     return null;
@@ -110,6 +131,15 @@ public class TransactionalCache implements Cache {
   public void clear() {
     clearOnCommit = true;
     entriesToAddOnCommit.clear();
+    loadersToAddOnCommit.clear();
+  }
+
+  /**
+   * @return true if the cache will be cleared on commit
+   * @since 3.5.1
+   */
+  public boolean isClearOnCommit() {
+    return clearOnCommit;
   }
 
   public void commit() {
@@ -129,20 +159,25 @@ public class TransactionalCache implements Cache {
     clearOnCommit = false;
     entriesToAddOnCommit.clear();
     entriesMissedInCache.clear();
+    loadersToAddOnCommit.clear();
   }
 
   /**
    * 事务提交，提交待提交的缓存。
    */
   private void flushPendingEntries() {
-    for (Map.Entry<Object, Object> entry : entriesToAddOnCommit.entrySet()) {
-      delegate.putObject(entry.getKey(), entry.getValue());
-    }
     for (Object entry : entriesMissedInCache) {
       if (!entriesToAddOnCommit.containsKey(entry)) {
-        delegate.putObject(entry, null);
+        entriesToAddOnCommit.put(entry, null);
+      }
+    }
+    for (Map.Entry<Object, Callable<Object>> loader : loadersToAddOnCommit.entrySet()) {
+      if (entriesToAddOnCommit.get(loader.getKey()) != null) {
+        ((RefreshAheadCache) delegate).setLoader(loader.getKey(), loader.getValue());
       }
     }
+    // 一次批量写入，远程缓存只需一次调用
+    delegate.putAll(entriesToAddOnCommit);
   }
 
   /**
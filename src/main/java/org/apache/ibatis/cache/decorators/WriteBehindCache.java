@@ -0,0 +1,308 @@
+/**
+ *    Copyright 2009-2019 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.cache.decorators;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.apache.ibatis.cache.Cache;
+import org.apache.ibatis.logging.Log;
+import org.apache.ibatis.logging.LogFactory;
+
+/**
+ * Write-behind decorator: puts, such as the entries of a committing transaction, are queued and applied to the
+ * delegate in bulk, with {@link Cache#putAll(Map)}, by a background writer, so that committing does not wait for the
+ * decorators and the base cache below.
+ * <p>
+ * Queued entries are not visible until written: a read in the meantime misses. {@link #clear()} and
+ * {@link #removeObject(Object)} discard the queued entries they cover and never interleave with a write in
+ * progress, so an entry committed before a clear or an invalidation is never written after it. Once more than
+ * {@code maxPending} entries are queued, the putting thread writes them itself. A {@link WriteListener} is told
+ * when each queued entry is written or discarded.
+ *
+ * 异步批量写入装饰器，事务提交时只将缓存项加入队列，由后台线程批量写入
+ *
+ * @since 3.5.1
+ */
+public class WriteBehindCache implements Cache {
+
+  private static final Log log = LogFactory.getLog(WriteBehindCache.class);
+
+  private static final int DEFAULT_MAX_PENDING = 8192;
+
+  private static final ThreadPoolExecutor WRITERS;
+
+  static {
+    int threads = Math.max(2, Runtime.getRuntime().availableProcessors());
+    WRITERS = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), runnable -> {
+      Thread thread = new Thread(runnable, "mybatis-cache-writer");
+      thread.setDaemon(true);
+      return thread;
+    });
+    WRITERS.allowCoreThreadTimeOut(true);
+  }
+
+  private final Cache delegate;
+
+  /**
+   * 写入与清除互斥，保证清除前提交的缓存项不会在清除后写入
+   */
+  private final ReentrantLock writeLock = new ReentrantLock();
+
+  /**
+   * 待写入的缓存项，由 this 保护
+   */
+  private Map<Object, Object> pending = new LinkedHashMap<>();
+
+  /**
+   * 正在写入的缓存项，由 this 保护
+   */
+  private Map<Object, Object> writing = Collections.emptyMap();
+
+  private boolean writeScheduled;
+
+  private int maxPending = DEFAULT_MAX_PENDING;
+
+  private volatile WriteListener writeListener;
+
+  public WriteBehindCache(Cache delegate) {
+    this.delegate = delegate;
+  }
+
+  @Override
+  public String getId() {
+    return delegate.getId();
+  }
+
+  @Override
+  public int getSize() {
+    return delegate.getSize();
+  }
+
+  @Override
+  public void putObject(Object key, Object value) {
+    putAll(Collections.singletonMap(key, value));
+  }
+
+  @Override
+  public void putAll(Map<Object, Object> entries) {
+    boolean writeNow = false;
+    synchronized (this) {
+      pending.putAll(entries);
+      if (pending.size() > maxPending) {
+        writeNow = true;
+      } else if (!writeScheduled) {
+        writeScheduled = true;
+        WRITERS.execute(this::writePendingInBackground);
+      }
+    }
+    if (writeNow) {
+      // 后台写入跟不上时由提交线程写入
+      flush();
+    }
+  }
+
+  @Override
+  public Object getObject(Object key) {
+    return delegate.getObject(key);
+  }
+
+  @Override
+  public Object removeObject(Object key) {
+    boolean discarded = false;
+    writeLock.lock();
+    try {
+      synchronized (this) {
+        discarded = pending.containsKey(key);
+        pending.remove(key);
+      }
+      return delegate.removeObject(key);
+    } finally {
+      writeLock.unlock();
+      if (discarded) {
+        notifyDiscarded(Collections.singleton(key));
+      }
+    }
+  }
+
+  @Override
+  public void removeAll(Collection<Object> keys) {
+    Collection<Object> discarded = new ArrayList<>();
+    writeLock.lock();
+    try {
+      synchronized (this) {
+        for (Object key : keys) {
+          if (pending.containsKey(key)) {
+            pending.remove(key);
+            discarded.add(key);
+          }
+        }
+      }
+      delegate.removeAll(keys);
+    } finally {
+      writeLock.unlock();
+      notifyDiscarded(discarded);
+    }
+  }
+
+  @Override
+  public void clear() {
+    Collection<Object> discarded;
+    writeLock.lock();
+    try {
+      synchronized (this) {
+        discarded = new ArrayList<>(pending.keySet());
+        pending.clear();
+      }
+      delegate.clear();
+    } finally {
+      writeLock.unlock();
+    }
+    notifyDiscarded(discarded);
+  }
+
+  @Override
+  public ReadWriteLock getReadWriteLock() {
+    return null;
+  }
+
+  @Override
+  public boolean isThreadSafe() {
+    return delegate.isThreadSafe();
+  }
+
+  /**
+   * Writes the queued entries to the delegate in the calling thread.
+   */
+  public void flush() {
+    Map<Object, Object> batch = Collections.emptyMap();
+    boolean written = false;
+    writeLock.lock();
+    try {
+      synchronized (this) {
+        batch = pending;
+        pending = new LinkedHashMap<>();
+        writeScheduled = false;
+        writing = batch;
+      }
+      if (!batch.isEmpty()) {
+        delegate.putAll(batch);
+      }
+      written = true;
+    } finally {
+      synchronized (this) {
+        writing = Collections.emptyMap();
+      }
+      writeLock.unlock();
+      if (written) {
+        notifyWritten(batch);
+      } else {
+        notifyDiscarded(batch.keySet());
+      }
+    }
+  }
+
+  /**
+   * @return the number of entries waiting to be written
+   */
+  public synchronized int getPendingSize() {
+    return pending.size();
+  }
+
+  /**
+   * @param key the key
+   * @return true if an entry of the key waits to be written or is being written
+   */
+  public synchronized boolean isPending(Object key) {
+    return pending.containsKey(key) || writing.containsKey(key);
+  }
+
+  /**
+   * Sets the listener told when queued entries are written or discarded.
+   *
+   * @param writeListener the listener, or null
+   */
+  public void setWriteListener(WriteListener writeListener) {
+    this.writeListener = writeListener;
+  }
+
+  private void notifyWritten(Map<Object, Object> entries) {
+    WriteListener listener = writeListener;
+    if (listener != null) {
+      for (Map.Entry<Object, Object> entry : entries.entrySet()) {
+        listener.entryWritten(entry.getKey(), entry.getValue());
+      }
+    }
+  }
+
+  private void notifyDiscarded(Collection<Object> keys) {
+    WriteListener listener = writeListener;
+    if (listener != null) {
+      for (Object key : keys) {
+        listener.entryDiscarded(key);
+      }
+    }
+  }
+
+  public int getMaxPending() {
+    return maxPending;
+  }
+
+  /**
+   * Sets how many entries may wait for the background writer before putting threads write them themselves.
+   *
+   * @param maxPending the number of entries, 8192 by default
+   */
+  public void setMaxPending(int maxPending) {
+    this.maxPending = maxPending;
+  }
+
+  private void writePendingInBackground() {
+    try {
+      flush();
+    } catch (RuntimeException e) {
+      // 写入失败只丢失缓存项
+      log.warn("Could not write the committed entries of cache " + getId() + ". Cause: " + e);
+    }
+  }
+
+  /**
+   * Told when the queued entries of a {@link WriteBehindCache} leave the queue.
+   */
+  public interface WriteListener {
+
+    /**
+     * @param key the key of the entry written to the delegate
+     * @param value the value written
+     */
+    void entryWritten(Object key, Object value);
+
+    /**
+     * @param key the key of the entry discarded by a clear, an invalidation or a failed write
+     */
+    void entryDiscarded(Object key);
+
+  }
+
+}
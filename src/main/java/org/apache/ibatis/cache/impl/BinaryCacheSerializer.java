@@ -0,0 +1,477 @@
+/**
+ *    Copyright 2009-2019 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.cache.impl;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.lang.reflect.Array;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.sql.Time;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.ibatis.cache.CacheException;
+import org.apache.ibatis.cache.CacheSerializer;
+import org.apache.ibatis.io.Resources;
+
+/**
+ * Compact binary serializer for query results.
+ * <p>
+ * Strings, boxed primitives, big numbers, dates, {@code java.time} values, byte arrays, the usual lists, sets and
+ * maps, enums and object arrays are written with a one-byte tag and their raw value; integers and lengths are
+ * written as variable-length quantities. Beans are written as their class
+ * name, once per value, followed by their properties in the order of a per-class plan derived from the
+ * {@link org.apache.ibatis.reflection.Reflector}; no field descriptor is written. Shared references and cycles are
+ * preserved. Any other object, including lazy loading proxies and classes that customize their serialization, is
+ * written with Java serialization.
+ * <p>
+ * The format depends on the properties of the classes and is only meant to be read back by the same version of the
+ * application.
+ *
+ * 紧凑的二进制缓存序列化实现
+ *
+ * @since 3.5.1
+ */
+public class BinaryCacheSerializer implements CacheSerializer {
+
+  private static final int NULL = 0;
+  private static final int REFERENCE = 1;
+  private static final int STRING = 2;
+  private static final int INTEGER = 3;
+  private static final int LONG = 4;
+  private static final int DOUBLE = 5;
+  private static final int FLOAT = 6;
+  private static final int SHORT = 7;
+  private static final int BYTE = 8;
+  private static final int BOOLEAN = 9;
+  private static final int CHARACTER = 10;
+  private static final int BIG_DECIMAL = 11;
+  private static final int BIG_INTEGER = 12;
+  private static final int DATE = 13;
+  private static final int SQL_DATE = 14;
+  private static final int SQL_TIME = 15;
+  private static final int TIMESTAMP = 16;
+  private static final int LOCAL_DATE = 17;
+  private static final int LOCAL_TIME = 18;
+  private static final int LOCAL_DATE_TIME = 19;
+  private static final int INSTANT = 20;
+  private static final int BYTES = 21;
+  private static final int ARRAY_LIST = 22;
+  private static final int LINKED_LIST = 23;
+  private static final int HASH_SET = 24;
+  private static final int LINKED_HASH_SET = 25;
+  private static final int HASH_MAP = 26;
+  private static final int LINKED_HASH_MAP = 27;
+  private static final int ENUM = 28;
+  private static final int OBJECT_ARRAY = 29;
+  private static final int BEAN = 30;
+  private static final int JAVA = 31;
+
+  /**
+   * 类引用编号 0 表示首次出现，随后写出类名
+   */
+  private static final int NEW_CLASS = 0;
+
+  private final JavaCacheSerializer javaSerializer = new JavaCacheSerializer();
+
+  @Override
+  public byte[] serialize(Object value) {
+    try {
+      Writer writer = new Writer();
+      writer.write(value);
+      return writer.toByteArray();
+    } catch (IOException e) {
+      throw new CacheException("Error serializing object.  Cause: " + e, e);
+    }
+  }
+
+  @Override
+  public Object deserialize(byte[] bytes) {
+    try {
+      return new Reader(bytes).read();
+    } catch (IOException | ClassNotFoundException e) {
+      throw new CacheException("Error deserializing object.  Cause: " + e, e);
+    }
+  }
+
+  /**
+   * 有符号数映射为无符号数，使绝对值小的负数也只占少量字节
+   */
+  private static long zigZag(long value) {
+    return (value << 1) ^ (value >> 63);
+  }
+
+  private static long unZigZag(long value) {
+    return (value >>> 1) ^ -(value & 1);
+  }
+
+  private final class Writer {
+
+    private final ByteArrayOutputStream bytes = new ByteArrayOutputStream(256);
+    private final DataOutputStream out = new DataOutputStream(bytes);
+
+    /**
+     * 已写出的可变对象及其编号
+     */
+    private final Map<Object, Integer> handles = new IdentityHashMap<>();
+
+    private final Map<Class<?>, Integer> classes = new HashMap<>();
+
+    byte[] toByteArray() throws IOException {
+      out.flush();
+      return bytes.toByteArray();
+    }
+
+    void write(Object value) throws IOException {
+      if (value == null) {
+        out.writeByte(NULL);
+        return;
+      }
+      if (writeImmutable(value)) {
+        return;
+      }
+      Integer handle = handles.get(value);
+      if (handle != null) {
+        out.writeByte(REFERENCE);
+        writeVarLong(handle);
+        return;
+      }
+      // 先登记再写出内容，以支持循环引用
+      handles.put(value, handles.size());
+      Class<?> type = value.getClass();
+      if (type == Date.class || type == java.sql.Date.class || type == Time.class) {
+        out.writeByte(type == Date.class ? DATE : type == Time.class ? SQL_TIME : SQL_DATE);
+        writeVarLong(zigZag(((Date) value).getTime()));
+      } else if (type == Timestamp.class) {
+        out.writeByte(TIMESTAMP);
+        writeVarLong(zigZag(((Timestamp) value).getTime()));
+        writeVarLong(((Timestamp) value).getNanos());
+      } else if (type == byte[].class) {
+        byte[] array = (byte[]) value;
+        out.writeByte(BYTES);
+        writeBytes(array);
+      } else if (type == ArrayList.class || type == LinkedList.class || type == HashSet.class
+          || type == LinkedHashSet.class) {
+        out.writeByte(type == ArrayList.class ? ARRAY_LIST : type == LinkedList.class ? LINKED_LIST
+            : type == HashSet.class ? HASH_SET : LINKED_HASH_SET);
+        Collection<?> collection = (Collection<?>) value;
+        writeVarLong(collection.size());
+        for (Object element : collection) {
+          write(element);
+        }
+      } else if (type == HashMap.class || type == LinkedHashMap.class) {
+        out.writeByte(type == HashMap.class ? HASH_MAP : LINKED_HASH_MAP);
+        Map<?, ?> map = (Map<?, ?>) value;
+        writeVarLong(map.size());
+        for (Map.Entry<?, ?> entry : map.entrySet()) {
+          write(entry.getKey());
+          write(entry.getValue());
+        }
+      } else if (type.isArray() && !type.getComponentType().isPrimitive()) {
+        Object[] array = (Object[]) value;
+        out.writeByte(OBJECT_ARRAY);
+        writeClass(type.getComponentType());
+        writeVarLong(array.length);
+        for (Object element : array) {
+          write(element);
+        }
+      } else {
+        CopyPlan plan = CopyPlan.forClass(type);
+        if (plan != null) {
+          out.writeByte(BEAN);
+          writeClass(type);
+          for (int i = 0; i < plan.size(); i++) {
+            write(plan.get(value, i));
+          }
+        } else {
+          byte[] serialized = javaSerializer.serialize(value);
+          out.writeByte(JAVA);
+          writeBytes(serialized);
+        }
+      }
+    }
+
+    private boolean writeImmutable(Object value) throws IOException {
+      Class<?> type = value.getClass();
+      if (type == String.class) {
+        out.writeByte(STRING);
+        writeString((String) value);
+      } else if (type == Integer.class) {
+        out.writeByte(INTEGER);
+        writeVarLong(zigZag((Integer) value));
+      } else if (type == Long.class) {
+        out.writeByte(LONG);
+        writeVarLong(zigZag((Long) value));
+      } else if (type == Double.class) {
+        out.writeByte(DOUBLE);
+        out.writeDouble((Double) value);
+      } else if (type == Float.class) {
+        out.writeByte(FLOAT);
+        out.writeFloat((Float) value);
+      } else if (type == Short.class) {
+        out.writeByte(SHORT);
+        writeVarLong(zigZag((Short) value));
+      } else if (type == Byte.class) {
+        out.writeByte(BYTE);
+        out.writeByte((Byte) value);
+      } else if (type == Boolean.class) {
+        out.writeByte(BOOLEAN);
+        out.writeBoolean((Boolean) value);
+      } else if (type == Character.class) {
+        out.writeByte(CHARACTER);
+        out.writeChar((Character) value);
+      } else if (type == BigDecimal.class) {
+        out.writeByte(BIG_DECIMAL);
+        writeBytes(((BigDecimal) value).unscaledValue().toByteArray());
+        writeVarLong(zigZag(((BigDecimal) value).scale()));
+      } else if (type == BigInteger.class) {
+        out.writeByte(BIG_INTEGER);
+        writeBytes(((BigInteger) value).toByteArray());
+      } else if (type == LocalDate.class) {
+        out.writeByte(LOCAL_DATE);
+        writeVarLong(zigZag(((LocalDate) value).toEpochDay()));
+      } else if (type == LocalTime.class) {
+        out.writeByte(LOCAL_TIME);
+        writeVarLong(((LocalTime) value).toNanoOfDay());
+      } else if (type == LocalDateTime.class) {
+        out.writeByte(LOCAL_DATE_TIME);
+        writeVarLong(zigZag(((LocalDateTime) value).toLocalDate().toEpochDay()));
+        writeVarLong(((LocalDateTime) value).toLocalTime().toNanoOfDay());
+      } else if (type == Instant.class) {
+        out.writeByte(INSTANT);
+        writeVarLong(zigZag(((Instant) value).getEpochSecond()));
+        writeVarLong(((Instant) value).getNano());
+      } else if (value instanceof Enum) {
+        out.writeByte(ENUM);
+        writeClass(((Enum<?>) value).getDeclaringClass());
+        writeString(((Enum<?>) value).name());
+      } else {
+        return false;
+      }
+      return true;
+    }
+
+    private void writeClass(Class<?> type) throws IOException {
+      Integer index = classes.get(type);
+      if (index == null) {
+        classes.put(type, classes.size());
+        writeVarLong(NEW_CLASS);
+        writeString(type.getName());
+      } else {
+        writeVarLong(index + 1L);
+      }
+    }
+
+    private void writeString(String value) throws IOException {
+      writeBytes(value.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private void writeBytes(byte[] value) throws IOException {
+      writeVarLong(value.length);
+      out.write(value);
+    }
+
+    /**
+     * 每字节 7 位，最高位表示后续还有字节
+     */
+    private void writeVarLong(long value) throws IOException {
+      while ((value & ~0x7FL) != 0) {
+        out.writeByte((int) (value & 0x7F) | 0x80);
+        value >>>= 7;
+      }
+      out.writeByte((int) value);
+    }
+  }
+
+  private final class Reader {
+
+    private final DataInputStream in;
+
+    private final List<Object> handles = new ArrayList<>();
+
+    private final List<Class<?>> classes = new ArrayList<>();
+
+    Reader(byte[] bytes) {
+      this.in = new DataInputStream(new ByteArrayInputStream(bytes));
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    Object read() throws IOException, ClassNotFoundException {
+      int tag = in.readUnsignedByte();
+      switch (tag) {
+        case NULL:
+          return null;
+        case REFERENCE:
+          return handles.get((int) readVarLong());
+        case STRING:
+          return readString();
+        case INTEGER:
+          return (int) unZigZag(readVarLong());
+        case LONG:
+          return unZigZag(readVarLong());
+        case DOUBLE:
+          return in.readDouble();
+        case FLOAT:
+          return in.readFloat();
+        case SHORT:
+          return (short) unZigZag(readVarLong());
+        case BYTE:
+          return in.readByte();
+        case BOOLEAN:
+          return in.readBoolean();
+        case CHARACTER:
+          return in.readChar();
+        case BIG_DECIMAL:
+          return new BigDecimal(new BigInteger(readBytes()), (int) unZigZag(readVarLong()));
+        case BIG_INTEGER:
+          return new BigInteger(readBytes());
+        case LOCAL_DATE:
+          return LocalDate.ofEpochDay(unZigZag(readVarLong()));
+        case LOCAL_TIME:
+          return LocalTime.ofNanoOfDay(readVarLong());
+        case LOCAL_DATE_TIME:
+          LocalDate date = LocalDate.ofEpochDay(unZigZag(readVarLong()));
+          return LocalDateTime.of(date, LocalTime.ofNanoOfDay(readVarLong()));
+        case INSTANT:
+          long seconds = unZigZag(readVarLong());
+          return Instant.ofEpochSecond(seconds, readVarLong());
+        case ENUM:
+          return Enum.valueOf((Class) readClass(), readString());
+        case DATE:
+          return register(new Date(unZigZag(readVarLong())));
+        case SQL_DATE:
+          return register(new java.sql.Date(unZigZag(readVarLong())));
+        case SQL_TIME:
+          return register(new Time(unZigZag(readVarLong())));
+        case TIMESTAMP:
+          Timestamp timestamp = new Timestamp(unZigZag(readVarLong()));
+          timestamp.setNanos((int) readVarLong());
+          return register(timestamp);
+        case BYTES:
+          return register(readBytes());
+        case ARRAY_LIST:
+          return readCollection(new ArrayList<>());
+        case LINKED_LIST:
+          return readCollection(new LinkedList<>());
+        case HASH_SET:
+          return readCollection(new HashSet<>());
+        case LINKED_HASH_SET:
+          return readCollection(new LinkedHashSet<>());
+        case HASH_MAP:
+          return readMap(new HashMap<>());
+        case LINKED_HASH_MAP:
+          return readMap(new LinkedHashMap<>());
+        case OBJECT_ARRAY:
+          Class<?> componentType = readClass();
+          Object[] array = (Object[]) Array.newInstance(componentType, (int) readVarLong());
+          register(array);
+          for (int i = 0; i < array.length; i++) {
+            array[i] = read();
+          }
+          return array;
+        case BEAN:
+          Class<?> type = readClass();
+          CopyPlan plan = CopyPlan.forClass(type);
+          if (plan == null) {
+            throw new CacheException("Class " + type.getName() + " can no longer be read as a bean");
+          }
+          Object bean = register(plan.newInstance());
+          for (int i = 0; i < plan.size(); i++) {
+            plan.set(bean, i, read());
+          }
+          return bean;
+        case JAVA:
+          return register(javaSerializer.deserialize(readBytes()));
+        default:
+          throw new CacheException("Unknown tag " + tag + " in serialized cache value");
+      }
+    }
+
+    private Object register(Object value) {
+      handles.add(value);
+      return value;
+    }
+
+    private Collection<Object> readCollection(Collection<Object> collection) throws IOException, ClassNotFoundException {
+      register(collection);
+      int size = (int) readVarLong();
+      for (int i = 0; i < size; i++) {
+        collection.add(read());
+      }
+      return collection;
+    }
+
+    private Map<Object, Object> readMap(Map<Object, Object> map) throws IOException, ClassNotFoundException {
+      register(map);
+      int size = (int) readVarLong();
+      for (int i = 0; i < size; i++) {
+        map.put(read(), read());
+      }
+      return map;
+    }
+
+    private Class<?> readClass() throws IOException, ClassNotFoundException {
+      int index = (int) readVarLong();
+      if (index == NEW_CLASS) {
+        Class<?> type = Resources.classForName(readString());
+        classes.add(type);
+        return type;
+      }
+      return classes.get(index - 1);
+    }
+
+    private String readString() throws IOException {
+      return new String(readBytes(), StandardCharsets.UTF_8);
+    }
+
+    private byte[] readBytes() throws IOException {
+      byte[] value = new byte[(int) readVarLong()];
+      in.readFully(value);
+      return value;
+    }
+
+    private long readVarLong() throws IOException {
+      long value = 0;
+      for (int shift = 0; ; shift += 7) {
+        int b = in.readUnsignedByte();
+        value |= (long) (b & 0x7F) << shift;
+        if ((b & 0x80) == 0) {
+          return value;
+        }
+      }
+    }
+  }
+
+}
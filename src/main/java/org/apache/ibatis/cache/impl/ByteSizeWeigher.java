@@ -0,0 +1,215 @@
+/**
+ *    Copyright 2009-2019 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.cache.impl;
+
+import java.lang.reflect.Array;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.RandomAccess;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.ibatis.cache.Weigher;
+import org.apache.ibatis.reflection.Reflector;
+
+/**
+ * Weighs an entry by its size in bytes.
+ * <p>
+ * A value serialized by {@link org.apache.ibatis.cache.decorators.SerializedCache} weighs its exact length. Any other
+ * value weighs an estimate of its retained heap size on a 64-bit JVM with compressed references, computed by walking
+ * its object graph. JDK types other than strings, arrays, collections and maps are counted shallowly, and framework
+ * objects such as lazy loading handlers are not counted at all.
+ *
+ * 按字节数计算缓存项权重，序列化后的缓存项取实际长度，其余估算对象图占用的堆内存
+ *
+ * @since 3.5.1
+ */
+public class ByteSizeWeigher implements Weigher {
+
+  private static final int OBJECT_HEADER = 12;
+  private static final int ARRAY_HEADER = 16;
+  private static final int REFERENCE = 4;
+
+  /**
+   * 链表、哈希表等集合中每个元素的节点开销
+   */
+  private static final int NODE_OVERHEAD = 32;
+
+  private static final String[] SHARED_PACKAGES = {
+      "org.apache.ibatis.executor.", "org.apache.ibatis.session.", "org.apache.ibatis.mapping.",
+      "org.apache.ibatis.reflection.", "org.apache.ibatis.type."};
+
+  private static final Map<Class<?>, ClassLayout> LAYOUTS = new ConcurrentHashMap<>();
+
+  @Override
+  public int weigh(Object key, Object value) {
+    return (int) Math.min(Integer.MAX_VALUE, estimate(value));
+  }
+
+  /**
+   * Estimates the heap retained by an object graph.
+   *
+   * @param root the root of the graph, possibly null
+   * @return the estimated size in bytes
+   */
+  public static long estimate(Object root) {
+    Deque<Object> pending = new ArrayDeque<>();
+    Map<Object, Object> visited = new IdentityHashMap<>();
+    push(pending, root);
+    long size = 0;
+    while (!pending.isEmpty()) {
+      Object object = pending.pop();
+      if (visited.put(object, object) == null) {
+        size += sizeOf(object, pending);
+      }
+    }
+    return size;
+  }
+
+  private static long sizeOf(Object object, Deque<Object> pending) {
+    Class<?> type = object.getClass();
+    if (type.isArray()) {
+      int length = Array.getLength(object);
+      Class<?> componentType = type.getComponentType();
+      if (componentType.isPrimitive()) {
+        return align(ARRAY_HEADER + (long) length * primitiveSize(componentType));
+      }
+      for (Object element : (Object[]) object) {
+        push(pending, element);
+      }
+      return align(ARRAY_HEADER + (long) length * REFERENCE);
+    }
+    if (object instanceof String) {
+      return align(OBJECT_HEADER + 8) + align(ARRAY_HEADER + 2L * ((String) object).length());
+    }
+    ClassLayout layout = layoutOf(type);
+    if (object instanceof Collection) {
+      Collection<?> collection = (Collection<?>) object;
+      for (Object element : collection) {
+        push(pending, element);
+      }
+      int nodeSize = object instanceof RandomAccess ? 0 : NODE_OVERHEAD;
+      return layout.shallowSize + align(ARRAY_HEADER + (long) collection.size() * REFERENCE)
+          + (long) collection.size() * nodeSize;
+    }
+    if (object instanceof Map) {
+      Map<?, ?> map = (Map<?, ?>) object;
+      for (Map.Entry<?, ?> entry : map.entrySet()) {
+        push(pending, entry.getKey());
+        push(pending, entry.getValue());
+      }
+      return layout.shallowSize + align(ARRAY_HEADER + (long) map.size() * REFERENCE)
+          + (long) map.size() * NODE_OVERHEAD;
+    }
+    for (Field field : layout.references) {
+      try {
+        push(pending, field.get(object));
+      } catch (IllegalAccessException e) {
+        // 无法访问的字段只计入引用本身
+      }
+    }
+    return layout.shallowSize;
+  }
+
+  private static void push(Deque<Object> pending, Object object) {
+    if (object != null && !isShared(object.getClass())) {
+      pending.push(object);
+    }
+  }
+
+  private static boolean isShared(Class<?> type) {
+    if (type == Class.class || type.isEnum() || ClassLoader.class.isAssignableFrom(type)
+        || Thread.class.isAssignableFrom(type)) {
+      return true;
+    }
+    String name = type.getName();
+    for (String sharedPackage : SHARED_PACKAGES) {
+      if (name.startsWith(sharedPackage)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private static ClassLayout layoutOf(Class<?> type) {
+    return LAYOUTS.computeIfAbsent(type, ClassLayout::new);
+  }
+
+  private static int primitiveSize(Class<?> type) {
+    if (type == long.class || type == double.class) {
+      return 8;
+    } else if (type == int.class || type == float.class) {
+      return 4;
+    } else if (type == short.class || type == char.class) {
+      return 2;
+    }
+    return 1;
+  }
+
+  private static long align(long size) {
+    return (size + 7) & ~7L;
+  }
+
+  /**
+   * Shallow size of a class and the reference fields to follow.
+   */
+  private static final class ClassLayout {
+
+    final long shallowSize;
+    final List<Field> references = new ArrayList<>();
+
+    ClassLayout(Class<?> type) {
+      // JDK 类型只估算浅层大小，不访问其内部字段
+      boolean traversable = !isJdkType(type) && Reflector.canControlMemberAccessible();
+      long size = OBJECT_HEADER;
+      for (Class<?> current = type; current != null; current = current.getSuperclass()) {
+        for (Field field : current.getDeclaredFields()) {
+          if (Modifier.isStatic(field.getModifiers())) {
+            continue;
+          }
+          Class<?> fieldType = field.getType();
+          if (fieldType.isPrimitive()) {
+            size += primitiveSize(fieldType);
+          } else {
+            size += REFERENCE;
+            if (traversable && !isJdkType(current)) {
+              try {
+                field.setAccessible(true);
+                references.add(field);
+              } catch (RuntimeException e) {
+                // 模块系统禁止访问时忽略该字段
+              }
+            }
+          }
+        }
+      }
+      this.shallowSize = align(size);
+    }
+
+    private static boolean isJdkType(Class<?> type) {
+      String name = type.getName();
+      return name.startsWith("java.") || name.startsWith("javax.") || name.startsWith("sun.")
+          || name.startsWith("jdk.");
+    }
+  }
+
+}
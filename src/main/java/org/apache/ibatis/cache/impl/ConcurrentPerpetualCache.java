@@ -0,0 +1,118 @@
+/**
+ *    Copyright 2009-2018 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.cache.impl;
+
+import org.apache.ibatis.cache.Cache;
+import org.apache.ibatis.cache.CacheException;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.locks.ReadWriteLock;
+
+/**
+ * Thread-safe counterpart of {@link PerpetualCache}.
+ * <p>
+ * Entries are kept in a {@link ConcurrentHashMap}: reads never lock and writes only lock the bin of their key, so
+ * hits on a hot namespace scale with the number of cores. Because the cache declares itself
+ * {@link #isThreadSafe() thread-safe}, {@link org.apache.ibatis.mapping.CacheBuilder} does not wrap it in a
+ * {@link org.apache.ibatis.cache.decorators.SynchronizedCache} when all other decorators are thread-safe too.
+ *
+ * 线程安全的 Cache 基本实现
+ */
+public class ConcurrentPerpetualCache implements Cache {
+
+  /**
+   * ConcurrentHashMap 不支持 null 值，使用占位对象代替
+   */
+  private static final Object NULL_VALUE = new Object();
+
+  private final String id;
+
+  private final ConcurrentMap<Object, Object> cache = new ConcurrentHashMap<>();
+
+  public ConcurrentPerpetualCache(String id) {
+    this.id = id;
+  }
+
+  @Override
+  public String getId() {
+    return id;
+  }
+
+  @Override
+  public int getSize() {
+    return cache.size();
+  }
+
+  @Override
+  public void putObject(Object key, Object value) {
+    cache.put(key, value == null ? NULL_VALUE : value);
+  }
+
+  @Override
+  public Object getObject(Object key) {
+    return unmask(cache.get(key));
+  }
+
+  @Override
+  public Object removeObject(Object key) {
+    return unmask(cache.remove(key));
+  }
+
+  @Override
+  public void clear() {
+    cache.clear();
+  }
+
+  @Override
+  public ReadWriteLock getReadWriteLock() {
+    return null;
+  }
+
+  @Override
+  public boolean isThreadSafe() {
+    return true;
+  }
+
+  private Object unmask(Object value) {
+    return value == NULL_VALUE ? null : value;
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    if (getId() == null) {
+      throw new CacheException("Cache instances require an ID.");
+    }
+    if (this == o) {
+      return true;
+    }
+    if (!(o instanceof Cache)) {
+      return false;
+    }
+
+    Cache otherCache = (Cache) o;
+    return getId().equals(otherCache.getId());
+  }
+
+  @Override
+  public int hashCode() {
+    if (getId() == null) {
+      throw new CacheException("Cache instances require an ID.");
+    }
+    return getId().hashCode();
+  }
+
+}
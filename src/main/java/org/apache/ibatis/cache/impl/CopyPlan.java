@@ -0,0 +1,168 @@
+/**
+ *    Copyright 2009-2019 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.cache.impl;
+
+import java.io.Serializable;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.apache.ibatis.cache.CacheException;
+import org.apache.ibatis.reflection.DefaultReflectorFactory;
+import org.apache.ibatis.reflection.Reflector;
+import org.apache.ibatis.reflection.ReflectorFactory;
+import org.apache.ibatis.reflection.invoker.Invoker;
+
+/**
+ * Precomputed way of reading and rebuilding the state of a serializable bean, derived from its {@link Reflector}.
+ * <p>
+ * The state of a bean is the value of each property that is both readable and writable and not backed by a
+ * static or transient field, in alphabetical order. Classes that customize their serialization, have no default
+ * constructor or belong to the JDK have no plan.
+ *
+ * 可序列化对象的属性复制计划
+ */
+final class CopyPlan {
+
+  private static final ReflectorFactory REFLECTOR_FACTORY = new DefaultReflectorFactory();
+
+  private static final ConcurrentMap<Class<?>, Optional<CopyPlan>> PLANS = new ConcurrentHashMap<>();
+
+  private static final Set<String> SERIALIZATION_HOOKS = new HashSet<>(
+      Arrays.asList("writeReplace", "readResolve", "writeObject", "readObject", "readObjectNoData", "writeExternal",
+          "readExternal"));
+
+  private final Constructor<?> constructor;
+
+  private final Invoker[] getters;
+
+  private final Invoker[] setters;
+
+  private CopyPlan(Constructor<?> constructor, Invoker[] getters, Invoker[] setters) {
+    this.constructor = constructor;
+    this.getters = getters;
+    this.setters = setters;
+  }
+
+  /**
+   * @param type the class of a bean
+   * @return the plan of the class, or null if its instances must go through Java serialization
+   */
+  static CopyPlan forClass(Class<?> type) {
+    return PLANS.computeIfAbsent(type, CopyPlan::build).orElse(null);
+  }
+
+  int size() {
+    return getters.length;
+  }
+
+  Object newInstance() {
+    try {
+      return constructor.newInstance();
+    } catch (Exception e) {
+      throw new CacheException("Could not instantiate " + constructor.getDeclaringClass() + ". Cause: " + e, e);
+    }
+  }
+
+  Object get(Object target, int property) {
+    try {
+      return getters[property].invoke(target, null);
+    } catch (Exception e) {
+      throw new CacheException("Could not read the state of " + target.getClass() + ". Cause: " + e, e);
+    }
+  }
+
+  void set(Object target, int property, Object value) {
+    try {
+      setters[property].invoke(target, new Object[] {value});
+    } catch (Exception e) {
+      throw new CacheException("Could not restore the state of " + target.getClass() + ". Cause: " + e, e);
+    }
+  }
+
+  private static Optional<CopyPlan> build(Class<?> type) {
+    if (!Serializable.class.isAssignableFrom(type) || Modifier.isAbstract(type.getModifiers()) || type.isArray()
+        || isJdkType(type) || hasSerializationHooks(type) || !Reflector.canControlMemberAccessible()) {
+      return Optional.empty();
+    }
+    Reflector reflector = REFLECTOR_FACTORY.findForClass(type);
+    if (!reflector.hasDefaultConstructor()) {
+      return Optional.empty();
+    }
+    Constructor<?> constructor = reflector.getDefaultConstructor();
+    try {
+      constructor.setAccessible(true);
+    } catch (RuntimeException e) {
+      return Optional.empty();
+    }
+    Set<String> writable = new HashSet<>(Arrays.asList(reflector.getSetablePropertyNames()));
+    List<String> properties = new ArrayList<>();
+    for (String property : reflector.getGetablePropertyNames()) {
+      if (writable.contains(property) && !isExcludedField(type, property)) {
+        properties.add(property);
+      }
+    }
+    // 固定属性顺序，序列化结果与 Reflector 内部的 HashMap 顺序无关
+    Collections.sort(properties);
+    Invoker[] getters = new Invoker[properties.size()];
+    Invoker[] setters = new Invoker[properties.size()];
+    for (int i = 0; i < getters.length; i++) {
+      getters[i] = reflector.getGetInvoker(properties.get(i));
+      setters[i] = reflector.getSetInvoker(properties.get(i));
+    }
+    return Optional.of(new CopyPlan(constructor, getters, setters));
+  }
+
+  private static boolean isExcludedField(Class<?> type, String property) {
+    for (Class<?> current = type; current != null; current = current.getSuperclass()) {
+      for (Field field : current.getDeclaredFields()) {
+        if (field.getName().equals(property)) {
+          int modifiers = field.getModifiers();
+          return Modifier.isStatic(modifiers) || Modifier.isTransient(modifiers);
+        }
+      }
+    }
+    return false;
+  }
+
+  private static boolean hasSerializationHooks(Class<?> type) {
+    for (Class<?> current = type; current != null && current != Object.class; current = current.getSuperclass()) {
+      for (Method method : current.getDeclaredMethods()) {
+        if (SERIALIZATION_HOOKS.contains(method.getName())) {
+          return true;
+        }
+      }
+    }
+    return false;
+  }
+
+  static boolean isJdkType(Class<?> type) {
+    String name = type.getName();
+    return name.startsWith("java.") || name.startsWith("javax.") || name.startsWith("sun.")
+        || name.startsWith("jdk.");
+  }
+
+}
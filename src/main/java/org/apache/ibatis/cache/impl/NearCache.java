@@ -0,0 +1,331 @@
+/**
+ *    Copyright 2009-2019 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.cache.impl;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.apache.ibatis.builder.InitializingObject;
+import org.apache.ibatis.cache.Cache;
+import org.apache.ibatis.cache.CacheException;
+import org.apache.ibatis.cache.RemoteCacheStore;
+import org.apache.ibatis.io.Resources;
+
+/**
+ * Two-tier cache: a small bounded local tier in front of a shared {@link RemoteCacheStore}.
+ * <p>
+ * A local miss reads the remote tier and promotes the value found into the local tier. Puts are written through to
+ * both tiers, and {@link #putAll(Map)} writes all the entries of a commit to the remote tier in a single call.
+ * Keys missing from the remote tier are remembered locally for {@code negativeTtl} milliseconds, as are the keys
+ * the transactional cache puts with a null value, so that repeated misses do not query the remote tier again.
+ * <p>
+ * The local tier returns the instances it holds, like a read-only cache. As with any custom cache type, no other
+ * decorator is applied, see {@link org.apache.ibatis.mapping.CacheBuilder}. Entries of the local tier are not
+ * invalidated by writes of other nodes to the remote tier; pair it with a flush interval or a cluster invalidation
+ * transport when nodes write the same namespaces.
+ *
+ * 两级缓存：本地有界缓存 + 远程共享缓存
+ *
+ * @since 3.5.1
+ */
+public class NearCache implements Cache, InitializingObject {
+
+  private static final int DEFAULT_LOCAL_SIZE = 256;
+
+  private static final long DEFAULT_NEGATIVE_TTL = 1000;
+
+  private final String id;
+
+  private final ReentrantLock lock = new ReentrantLock();
+
+  /**
+   * 本地缓存，值为缓存对象或 {@link Absent} 标记，按访问顺序淘汰
+   */
+  private final LinkedHashMap<Object, Object> local = new LinkedHashMap<Object, Object>(16, .75F, true) {
+    private static final long serialVersionUID = 1L;
+
+    @Override
+    protected boolean removeEldestEntry(Map.Entry<Object, Object> eldest) {
+      return size() > localSize;
+    }
+  };
+
+  /**
+   * 每次删除本地缓存项时递增，防止把删除前读到的远程值写回本地
+   */
+  private long generation;
+
+  private int localSize = DEFAULT_LOCAL_SIZE;
+
+  private long negativeTtl = DEFAULT_NEGATIVE_TTL;
+
+  private String store;
+
+  private RemoteCacheStore remote;
+
+  public NearCache(String id) {
+    this.id = id;
+  }
+
+  @Override
+  public void initialize() {
+    if (remote != null) {
+      return;
+    }
+    if (store == null) {
+      throw new CacheException("Near cache " + id + " requires the store property");
+    }
+    try {
+      Class<?> storeClass = Resources.classForName(store);
+      try {
+        remote = (RemoteCacheStore) storeClass.getConstructor(String.class).newInstance(id);
+      } catch (NoSuchMethodException e) {
+        remote = (RemoteCacheStore) storeClass.getConstructor().newInstance();
+      }
+    } catch (Exception e) {
+      throw new CacheException("Could not create the store " + store + " of near cache " + id + ". Cause: " + e, e);
+    }
+  }
+
+  @Override
+  public String getId() {
+    return id;
+  }
+
+  @Override
+  public int getSize() {
+    int size = remote.size();
+    if (size >= 0) {
+      return size;
+    }
+    lock.lock();
+    try {
+      return (int) local.values().stream().filter(value -> !(value instanceof Absent)).count();
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  @Override
+  public void putObject(Object key, Object value) {
+    putAll(Collections.singletonMap(key, value));
+  }
+
+  @Override
+  public void putAll(Map<Object, Object> entries) {
+    Map<Object, Object> values = new LinkedHashMap<>();
+    for (Map.Entry<Object, Object> entry : entries.entrySet()) {
+      if (entry.getValue() != null) {
+        values.put(entry.getKey(), entry.getValue());
+      }
+    }
+    if (!values.isEmpty()) {
+      remote.putAll(values);
+    }
+    long now = System.currentTimeMillis();
+    lock.lock();
+    try {
+      for (Map.Entry<Object, Object> entry : entries.entrySet()) {
+        if (entry.getValue() != null) {
+          local.put(entry.getKey(), entry.getValue());
+        } else if (negativeTtl > 0) {
+          // 事务提交的未命中 key，记为不存在
+          local.put(entry.getKey(), new Absent(now + negativeTtl));
+        }
+      }
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  @Override
+  public Object getObject(Object key) {
+    long expectedGeneration;
+    lock.lock();
+    try {
+      Object value = local.get(key);
+      if (value instanceof Absent) {
+        if (((Absent) value).expiresAt > System.currentTimeMillis()) {
+          return null;
+        }
+        local.remove(key);
+      } else if (value != null) {
+        return value;
+      }
+      expectedGeneration = generation;
+    } finally {
+      lock.unlock();
+    }
+    Object value = remote.get(key);
+    lock.lock();
+    try {
+      // 期间有写入或删除时不覆盖
+      if (generation == expectedGeneration && !local.containsKey(key)) {
+        if (value != null) {
+          local.put(key, value);
+        } else if (negativeTtl > 0) {
+          local.put(key, new Absent(System.currentTimeMillis() + negativeTtl));
+        }
+      }
+    } finally {
+      lock.unlock();
+    }
+    return value;
+  }
+
+  /**
+   * Drops the key from the local tier only: the core calls this method on rollback for keys that were missing, and
+   * removing them from the remote tier could delete entries other nodes have just written.
+   */
+  @Override
+  public Object removeObject(Object key) {
+    lock.lock();
+    try {
+      generation++;
+      local.remove(key);
+      return null;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Removes the keys from both tiers, e.g. when the tables they depend on are written.
+   */
+  @Override
+  public void removeAll(Collection<Object> keys) {
+    if (keys.isEmpty()) {
+      return;
+    }
+    lock.lock();
+    try {
+      generation++;
+      for (Object key : keys) {
+        local.remove(key);
+      }
+    } finally {
+      lock.unlock();
+    }
+    remote.removeAll(keys);
+  }
+
+  @Override
+  public void clear() {
+    lock.lock();
+    try {
+      generation++;
+      local.clear();
+    } finally {
+      lock.unlock();
+    }
+    remote.clear();
+  }
+
+  @Override
+  public ReadWriteLock getReadWriteLock() {
+    return null;
+  }
+
+  @Override
+  public boolean isThreadSafe() {
+    return true;
+  }
+
+  public int getLocalSize() {
+    return localSize;
+  }
+
+  /**
+   * Sets the maximum number of keys of the local tier, including the keys remembered as missing.
+   *
+   * @param localSize the size, 256 by default
+   */
+  public void setLocalSize(int localSize) {
+    this.localSize = localSize;
+  }
+
+  public long getNegativeTtl() {
+    return negativeTtl;
+  }
+
+  /**
+   * Sets how long a key missing from the remote tier is answered as missing without asking the remote tier again.
+   *
+   * @param negativeTtl the time in milliseconds, 1000 by default, or 0 to always ask the remote tier
+   */
+  public void setNegativeTtl(long negativeTtl) {
+    this.negativeTtl = negativeTtl;
+  }
+
+  public String getStore() {
+    return store;
+  }
+
+  /**
+   * @param store the name of the {@link RemoteCacheStore} class
+   */
+  public void setStore(String store) {
+    this.store = store;
+  }
+
+  /**
+   * @return the remote tier, once initialized
+   */
+  public RemoteCacheStore getRemoteStore() {
+    return remote;
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    if (getId() == null) {
+      throw new CacheException("Cache instances require an ID.");
+    }
+    if (this == o) {
+      return true;
+    }
+    if (!(o instanceof Cache)) {
+      return false;
+    }
+
+    Cache otherCache = (Cache) o;
+    return getId().equals(otherCache.getId());
+  }
+
+  @Override
+  public int hashCode() {
+    if (getId() == null) {
+      throw new CacheException("Cache instances require an ID.");
+    }
+    return getId().hashCode();
+  }
+
+  /**
+   * Marks a key missing from the remote tier.
+   */
+  private static final class Absent {
+
+    final long expiresAt;
+
+    Absent(long expiresAt) {
+      this.expiresAt = expiresAt;
+    }
+  }
+
+}
@@ -0,0 +1,132 @@
+/**
+ *    Copyright 2009-2019 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.cache.impl;
+
+import java.lang.reflect.Array;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.sql.Time;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.LinkedList;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Makes deep copies of query results without serializing them.
+ * <p>
+ * Immutable values are shared. Dates, arrays, the usual lists, sets and maps are copied directly, and beans are
+ * copied property by property following the same per-class plan as {@link BinaryCacheSerializer}. Shared
+ * references and cycles are preserved. Any other object, including lazy loading proxies and classes that customize
+ * their serialization, is copied through Java serialization.
+ *
+ * 不经过字节的深拷贝实现，用于读时复制模式
+ *
+ * @since 3.5.1
+ */
+public class ObjectCopier {
+
+  private final JavaCacheSerializer javaSerializer = new JavaCacheSerializer();
+
+  /**
+   * @param value the value to copy, possibly null
+   * @return a deep copy of the value
+   * @throws org.apache.ibatis.cache.CacheException if a part of the value cannot be copied
+   */
+  public Object copy(Object value) {
+    return copy(value, new IdentityHashMap<>());
+  }
+
+  @SuppressWarnings("unchecked")
+  private Object copy(Object value, Map<Object, Object> copies) {
+    if (value == null || isImmutable(value)) {
+      return value;
+    }
+    Object copy = copies.get(value);
+    if (copy != null) {
+      return copy;
+    }
+    Class<?> type = value.getClass();
+    if (type == Date.class || type == java.sql.Date.class || type == Time.class || type == Timestamp.class) {
+      copy = ((Date) value).clone();
+      copies.put(value, copy);
+    } else if (type.isArray()) {
+      int length = Array.getLength(value);
+      copy = Array.newInstance(type.getComponentType(), length);
+      copies.put(value, copy);
+      if (type.getComponentType().isPrimitive()) {
+        System.arraycopy(value, 0, copy, 0, length);
+      } else {
+        Object[] source = (Object[]) value;
+        Object[] target = (Object[]) copy;
+        for (int i = 0; i < length; i++) {
+          target[i] = copy(source[i], copies);
+        }
+      }
+    } else if (type == ArrayList.class || type == LinkedList.class || type == HashSet.class
+        || type == LinkedHashSet.class) {
+      Collection<Object> source = (Collection<Object>) value;
+      Collection<Object> target = type == ArrayList.class ? new ArrayList<>(source.size())
+          : type == LinkedList.class ? new LinkedList<>()
+          : type == HashSet.class ? new HashSet<>(source.size() * 4 / 3 + 1)
+          : new LinkedHashSet<>(source.size() * 4 / 3 + 1);
+      copy = target;
+      copies.put(value, copy);
+      for (Object element : source) {
+        target.add(copy(element, copies));
+      }
+    } else if (type == HashMap.class || type == LinkedHashMap.class) {
+      Map<Object, Object> source = (Map<Object, Object>) value;
+      Map<Object, Object> target = type == HashMap.class ? new HashMap<>(source.size() * 4 / 3 + 1)
+          : new LinkedHashMap<>(source.size() * 4 / 3 + 1);
+      copy = target;
+      copies.put(value, copy);
+      for (Map.Entry<Object, Object> entry : source.entrySet()) {
+        target.put(copy(entry.getKey(), copies), copy(entry.getValue(), copies));
+      }
+    } else {
+      CopyPlan plan = CopyPlan.forClass(type);
+      if (plan != null) {
+        copy = plan.newInstance();
+        // 先登记再复制属性，以支持循环引用
+        copies.put(value, copy);
+        for (int i = 0; i < plan.size(); i++) {
+          plan.set(copy, i, copy(plan.get(value, i), copies));
+        }
+      } else {
+        copy = javaSerializer.deserialize(javaSerializer.serialize(value));
+        copies.put(value, copy);
+      }
+    }
+    return copy;
+  }
+
+  private static boolean isImmutable(Object value) {
+    Class<?> type = value.getClass();
+    return type == String.class || type == Integer.class || type == Long.class || type == Double.class
+        || type == Float.class || type == Short.class || type == Byte.class || type == Boolean.class
+        || type == Character.class || type == BigDecimal.class || type == BigInteger.class || type == UUID.class
+        || value instanceof Enum || type.getName().startsWith("java.time.");
+  }
+
+}
@@ -0,0 +1,414 @@
+/**
+ *    Copyright 2009-2019 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.cache.impl;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.Serializable;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.apache.ibatis.builder.InitializingObject;
+import org.apache.ibatis.cache.Cache;
+import org.apache.ibatis.cache.CacheException;
+import org.apache.ibatis.cache.CacheSerializer;
+import org.apache.ibatis.cache.decorators.SerializedCache;
+
+/**
+ * Cache that keeps its entries serialized outside of the Java heap.
+ * <p>
+ * Values are serialized with Java serialization, or with the {@code serializer} property as for
+ * {@link SerializedCache}, and copied into fixed-size blocks of direct
+ * {@link ByteBuffer} slabs, or of a memory-mapped file when the {@code file} property is set. Only the keys and a
+ * small index entry per value stay on heap, so large read-mostly namespaces do not grow the old generation.
+ * Direct slabs are allocated as the cache fills up, to at most {@code capacity} bytes; the file is mapped whole on
+ * initialization and closed right away, its pages only being written as the cache fills up. Once full, the least
+ * recently used entries are evicted.
+ * <p>
+ * Every hit returns a new copy of the cached value. The cache is thread-safe: the lock is only held to copy bytes
+ * in and out of the slabs, never while serializing. As with any custom cache type, no other decorator is applied,
+ * see {@link org.apache.ibatis.mapping.CacheBuilder}.
+ *
+ * 堆外缓存：序列化后的缓存项保存在直接内存或内存映射文件中，自带索引与 LRU 淘汰
+ *
+ * @since 3.5.1
+ */
+public class OffHeapCache implements Cache, InitializingObject {
+
+  private static final long DEFAULT_CAPACITY = 64L * 1024 * 1024;
+
+  private static final int DEFAULT_BLOCK_SIZE = 1024;
+
+  /**
+   * 单个 slab 的最大字节数，按需分配
+   */
+  private static final int MAX_SLAB_SIZE = 16 * 1024 * 1024;
+
+  private final String id;
+
+  private final ReentrantLock lock = new ReentrantLock();
+
+  /**
+   * 缓存项索引，按访问顺序排列
+   */
+  private final LinkedHashMap<Object, Entry> index = new LinkedHashMap<>(16, .75F, true);
+
+  private final List<ByteBuffer> slabs = new ArrayList<>();
+
+  private long capacity = DEFAULT_CAPACITY;
+
+  private int blockSize = DEFAULT_BLOCK_SIZE;
+
+  private String file;
+
+  private CacheSerializer serializer = new JavaCacheSerializer();
+
+  private int blocksPerSlab;
+
+  private int totalBlocks;
+
+  /**
+   * 已分配 slab 中从未使用过的第一个块
+   */
+  private int nextUnusedBlock;
+
+  /**
+   * 已释放的块
+   */
+  private int[] freeBlocks = new int[0];
+
+  private int freeBlockCount;
+
+  private boolean initialized;
+
+  public OffHeapCache(String id) {
+    this.id = id;
+  }
+
+  @Override
+  public void initialize() {
+    lock.lock();
+    try {
+      if (initialized) {
+        return;
+      }
+      if (capacity <= 0 || blockSize <= 0) {
+        throw new CacheException("Off-heap cache " + id + " requires a positive capacity and block size");
+      }
+      long blocks = Math.max(1, capacity / blockSize);
+      if (blocks > Integer.MAX_VALUE) {
+        throw new CacheException("Off-heap cache " + id + " cannot hold more than " + Integer.MAX_VALUE + " blocks");
+      }
+      totalBlocks = (int) blocks;
+      blocksPerSlab = Math.max(1, Math.min(totalBlocks, MAX_SLAB_SIZE / blockSize));
+      if (file != null) {
+        mapFile(new File(file));
+      }
+      initialized = true;
+    } catch (IOException e) {
+      throw new CacheException("Could not map the file of off-heap cache " + id + ". Cause: " + e, e);
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  @Override
+  public String getId() {
+    return id;
+  }
+
+  @Override
+  public int getSize() {
+    lock.lock();
+    try {
+      return index.size();
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  @Override
+  public void putObject(Object key, Object value) {
+    if (value == null) {
+      removeObject(key);
+      return;
+    }
+    if (!(value instanceof Serializable)) {
+      throw new CacheException("OffHeapCache failed to make a copy of a non-serializable object: " + value);
+    }
+    // 在锁外序列化
+    byte[] bytes = serializer.serialize(value);
+    int blockCount = (bytes.length + blockSize - 1) / blockSize;
+    lock.lock();
+    try {
+      initialize();
+      release(index.remove(key));
+      if (blockCount > totalBlocks) {
+        // 超过总容量的缓存项不缓存
+        return;
+      }
+      while (availableBlocks() < blockCount) {
+        evictEldest();
+      }
+      int[] blocks = new int[blockCount];
+      for (int i = 0; i < blockCount; i++) {
+        blocks[i] = allocate();
+        int offset = i * blockSize;
+        write(blocks[i], bytes, offset, Math.min(blockSize, bytes.length - offset));
+      }
+      index.put(key, new Entry(blocks, bytes.length));
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  @Override
+  public Object getObject(Object key) {
+    byte[] bytes;
+    lock.lock();
+    try {
+      Entry entry = index.get(key);
+      if (entry == null) {
+        return null;
+      }
+      bytes = new byte[entry.length];
+      for (int i = 0; i < entry.blocks.length; i++) {
+        int offset = i * blockSize;
+        read(entry.blocks[i], bytes, offset, Math.min(blockSize, entry.length - offset));
+      }
+    } finally {
+      lock.unlock();
+    }
+    // 在锁外反序列化
+    return serializer.deserialize(bytes);
+  }
+
+  @Override
+  public Object removeObject(Object key) {
+    lock.lock();
+    try {
+      Entry entry = index.remove(key);
+      release(entry);
+      return null;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  @Override
+  public void clear() {
+    lock.lock();
+    try {
+      index.clear();
+      freeBlockCount = 0;
+      nextUnusedBlock = 0;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  @Override
+  public ReadWriteLock getReadWriteLock() {
+    return null;
+  }
+
+  @Override
+  public boolean isThreadSafe() {
+    return true;
+  }
+
+  public long getCapacity() {
+    return capacity;
+  }
+
+  /**
+   * Sets the maximum number of bytes of serialized entries.
+   *
+   * @param capacity the capacity in bytes, 64 MB by default
+   */
+  public void setCapacity(long capacity) {
+    this.capacity = capacity;
+  }
+
+  public int getBlockSize() {
+    return blockSize;
+  }
+
+  /**
+   * Sets the size of the blocks entries are split into. Each entry wastes on average half a block.
+   *
+   * @param blockSize the block size in bytes, 1024 by default
+   */
+  public void setBlockSize(int blockSize) {
+    this.blockSize = blockSize;
+  }
+
+  public String getFile() {
+    return file;
+  }
+
+  /**
+   * Stores the entries in a memory-mapped file instead of direct memory. The file is truncated when the cache is
+   * initialized and deleted when the JVM exits.
+   *
+   * @param file the path of the file
+   */
+  public void setFile(String file) {
+    this.file = file;
+  }
+
+  public CacheSerializer getSerializer() {
+    return serializer;
+  }
+
+  /**
+   * Sets how values are turned into bytes, see {@link SerializedCache#setSerializer(String)}.
+   *
+   * @param serializer {@code java} (the default), {@code binary} or the name of a {@link CacheSerializer} class
+   */
+  public void setSerializer(String serializer) {
+    this.serializer = SerializedCache.newSerializer(serializer);
+  }
+
+  /**
+   * @return the number of bytes held by the blocks of the cached entries
+   */
+  public long getUsedBytes() {
+    lock.lock();
+    try {
+      return (long) (nextUnusedBlock - freeBlockCount) * blockSize;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  private int availableBlocks() {
+    return totalBlocks - nextUnusedBlock + freeBlockCount;
+  }
+
+  private void evictEldest() {
+    Iterator<Map.Entry<Object, Entry>> iterator = index.entrySet().iterator();
+    Entry eldest = iterator.next().getValue();
+    iterator.remove();
+    release(eldest);
+  }
+
+  private int allocate() {
+    if (freeBlockCount > 0) {
+      return freeBlocks[--freeBlockCount];
+    }
+    return nextUnusedBlock++;
+  }
+
+  private void release(Entry entry) {
+    if (entry == null) {
+      return;
+    }
+    if (freeBlocks.length < freeBlockCount + entry.blocks.length) {
+      int[] grown = new int[Math.max(freeBlocks.length * 2, freeBlockCount + entry.blocks.length)];
+      System.arraycopy(freeBlocks, 0, grown, 0, freeBlockCount);
+      freeBlocks = grown;
+    }
+    for (int block : entry.blocks) {
+      freeBlocks[freeBlockCount++] = block;
+    }
+  }
+
+  private void write(int block, byte[] bytes, int offset, int length) {
+    ByteBuffer slab = slab(block / blocksPerSlab);
+    slab.position((block % blocksPerSlab) * blockSize);
+    slab.put(bytes, offset, length);
+  }
+
+  private void read(int block, byte[] bytes, int offset, int length) {
+    ByteBuffer slab = slabs.get(block / blocksPerSlab);
+    slab.position((block % blocksPerSlab) * blockSize);
+    slab.get(bytes, offset, length);
+  }
+
+  private ByteBuffer slab(int slabIndex) {
+    while (slabs.size() <= slabIndex) {
+      slabs.add(ByteBuffer.allocateDirect(slabSize(slabs.size())));
+    }
+    return slabs.get(slabIndex);
+  }
+
+  /**
+   * 一次映射整个文件后即关闭，映射在文件关闭后仍然有效
+   */
+  private void mapFile(File mappedFile) throws IOException {
+    mappedFile.deleteOnExit();
+    try (RandomAccessFile randomAccessFile = new RandomAccessFile(mappedFile, "rw")) {
+      randomAccessFile.setLength(0);
+      FileChannel channel = randomAccessFile.getChannel();
+      while ((long) slabs.size() * blocksPerSlab < totalBlocks) {
+        long position = (long) slabs.size() * blocksPerSlab * blockSize;
+        slabs.add(channel.map(FileChannel.MapMode.READ_WRITE, position, slabSize(slabs.size())));
+      }
+    }
+  }
+
+  private int slabSize(int slabIndex) {
+    return Math.min(blocksPerSlab, totalBlocks - slabIndex * blocksPerSlab) * blockSize;
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    if (getId() == null) {
+      throw new CacheException("Cache instances require an ID.");
+    }
+    if (this == o) {
+      return true;
+    }
+    if (!(o instanceof Cache)) {
+      return false;
+    }
+
+    Cache otherCache = (Cache) o;
+    return getId().equals(otherCache.getId());
+  }
+
+  @Override
+  public int hashCode() {
+    if (getId() == null) {
+      throw new CacheException("Cache instances require an ID.");
+    }
+    return getId().hashCode();
+  }
+
+  /**
+   * Location of a serialized value.
+   */
+  private static final class Entry {
+
+    final int[] blocks;
+    final int length;
+
+    Entry(int[] blocks, int length) {
+      this.blocks = blocks;
+      this.length = length;
+    }
+  }
+
+}
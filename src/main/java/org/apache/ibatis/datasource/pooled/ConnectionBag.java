@@ -0,0 +1,359 @@
+/**
+ *    Copyright 2009-2019 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.datasource.pooled;
+
+import java.lang.ref.WeakReference;
+import java.sql.Connection;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Lock-free container of physical connections used by the concurrent pool engine.
+ * 无锁连接容器：线程本地亲和列表 + 共享列表 + 交接队列
+ * <p>
+ * A borrow first looks at the connections recently returned by the calling thread, then scans the shared list,
+ * and finally waits on a hand-off queue fed by returning threads. Ownership of an entry is decided by a CAS on
+ * its state, so neither borrow nor return takes a global monitor.
+ */
+class ConnectionBag {
+
+  static final int STATE_NOT_IN_USE = 0;
+  static final int STATE_IN_USE = 1;
+  static final int STATE_REMOVED = -1;
+  static final int STATE_RESERVED = -2;
+
+  /**
+   * 线程本地列表的最大长度
+   */
+  private static final int MAX_THREAD_LOCAL_ENTRIES = 16;
+
+  /**
+   * 所有物理连接
+   */
+  private final CopyOnWriteArrayList<Entry> sharedList = new CopyOnWriteArrayList<>();
+
+  /**
+   * 当前线程最近归还的连接，弱引用避免持有已移除的连接
+   */
+  private final ThreadLocal<List<WeakReference<Entry>>> threadList = ThreadLocal.withInitial(ArrayList::new);
+
+  /**
+   * 归还线程直接交接给等待线程的队列
+   */
+  private final SynchronousQueue<Entry> handoffQueue = new SynchronousQueue<>(true);
+
+  /**
+   * 等待连接的线程数
+   */
+  private final AtomicInteger waiters = new AtomicInteger();
+
+  /**
+   * 已创建及正在创建的连接数
+   */
+  private final AtomicInteger totalCount = new AtomicInteger();
+
+  /**
+   * Tries to borrow an idle entry without waiting.
+   *
+   * @return the borrowed entry, or null if none is idle
+   */
+  Entry poll() {
+    List<WeakReference<Entry>> list = threadList.get();
+    for (int i = list.size() - 1; i >= 0; i--) {
+      Entry entry = list.remove(i).get();
+      if (entry != null && entry.compareAndSetState(STATE_NOT_IN_USE, STATE_IN_USE)) {
+        return entry;
+      }
+    }
+    return scanSharedList();
+  }
+
+  /**
+   * Waits for an entry to be handed off by a returning thread.
+   *
+   * @param timeout how long to wait
+   * @param unit the unit of the timeout
+   * @return the borrowed entry, or null if the timeout elapsed
+   * @throws InterruptedException if interrupted while waiting
+   */
+  Entry await(long timeout, TimeUnit unit) throws InterruptedException {
+    waiters.incrementAndGet();
+    try {
+      // an entry may have been returned before this thread registered as a waiter
+      Entry entry = scanSharedList();
+      if (entry != null) {
+        return entry;
+      }
+      long remaining = unit.toNanos(timeout);
+      while (remaining > 0) {
+        long start = System.nanoTime();
+        entry = handoffQueue.poll(remaining, TimeUnit.NANOSECONDS);
+        if (entry == null || entry.compareAndSetState(STATE_NOT_IN_USE, STATE_IN_USE)) {
+          return entry;
+        }
+        remaining -= System.nanoTime() - start;
+      }
+      return null;
+    } finally {
+      waiters.decrementAndGet();
+    }
+  }
+
+  /**
+   * Reserves a slot for a new connection if the bag holds less than {@code maximum} connections.
+   *
+   * @param maximum the maximum number of connections
+   * @return true if a slot was reserved; it must then be either {@link #add(Entry) filled} or
+   *     {@link #cancelReservation() cancelled}
+   */
+  boolean reserve(int maximum) {
+    for (;;) {
+      int count = totalCount.get();
+      if (count >= maximum) {
+        return false;
+      }
+      if (totalCount.compareAndSet(count, count + 1)) {
+        return true;
+      }
+    }
+  }
+
+  void cancelReservation() {
+    totalCount.decrementAndGet();
+  }
+
+  /**
+   * Adds a new entry into a previously reserved slot. The entry is owned by the caller.
+   *
+   * @param entry the new entry
+   */
+  void add(Entry entry) {
+    sharedList.add(entry);
+  }
+
+  /**
+   * Adds a new idle entry into a previously reserved slot.
+   *
+   * @param entry the new entry
+   */
+  void addIdle(Entry entry) {
+    sharedList.add(entry);
+    unreserve(entry);
+  }
+
+  /**
+   * Returns an entry to the bag, handing it off directly if a thread is waiting.
+   *
+   * @param entry the entry owned by the caller
+   */
+  void requite(Entry entry) {
+    entry.state = STATE_NOT_IN_USE;
+    if (!handOff(entry)) {
+      List<WeakReference<Entry>> list = threadList.get();
+      if (list.size() < MAX_THREAD_LOCAL_ENTRIES) {
+        list.add(new WeakReference<>(entry));
+      }
+    }
+  }
+
+  /**
+   * Tries to take an idle entry out of circulation, e.g. to validate or evict it.
+   *
+   * @param entry the entry to reserve
+   * @return true if the entry was idle and is now reserved by the caller
+   */
+  boolean reserve(Entry entry) {
+    return entry.compareAndSetState(STATE_NOT_IN_USE, STATE_RESERVED);
+  }
+
+  /**
+   * Puts a reserved entry back into circulation without affecting the thread-local list of the caller.
+   *
+   * @param entry the entry reserved by the caller
+   */
+  void unreserve(Entry entry) {
+    entry.state = STATE_NOT_IN_USE;
+    handOff(entry);
+  }
+
+  /**
+   * Removes an entry from the bag.
+   *
+   * @param entry the entry to remove
+   * @return true if this call removed the entry, false if it was already removed
+   */
+  boolean remove(Entry entry) {
+    if (entry.getAndSetState(STATE_REMOVED) == STATE_REMOVED) {
+      return false;
+    }
+    sharedList.remove(entry);
+    totalCount.decrementAndGet();
+    return true;
+  }
+
+  /**
+   * Returns a snapshot of all entries, whatever their state.
+   *
+   * @return the entries
+   */
+  List<Entry> values() {
+    return new ArrayList<>(sharedList);
+  }
+
+  int getCount(int state) {
+    int count = 0;
+    for (Entry entry : sharedList) {
+      if (entry.state == state) {
+        count++;
+      }
+    }
+    return count;
+  }
+
+  int getWaitingThreadCount() {
+    return waiters.get();
+  }
+
+  private boolean handOff(Entry entry) {
+    for (int i = 0; waiters.get() > 0; i++) {
+      if (entry.state != STATE_NOT_IN_USE || handoffQueue.offer(entry)) {
+        return true;
+      } else if ((i & 0xff) == 0xff) {
+        LockSupport.parkNanos(TimeUnit.MICROSECONDS.toNanos(10));
+      } else {
+        Thread.yield();
+      }
+    }
+    return false;
+  }
+
+  private Entry scanSharedList() {
+    for (Entry entry : sharedList) {
+      if (entry.compareAndSetState(STATE_NOT_IN_USE, STATE_IN_USE)) {
+        return entry;
+      }
+    }
+    return null;
+  }
+
+  /**
+   * A physical connection held by the bag.
+   * 容器中的物理连接
+   */
+  static final class Entry {
+
+    private static final AtomicIntegerFieldUpdater<Entry> STATE_UPDATER =
+        AtomicIntegerFieldUpdater.newUpdater(Entry.class, "state");
+    private static final AtomicReferenceFieldUpdater<Entry, PooledConnection> HANDLE_UPDATER =
+        AtomicReferenceFieldUpdater.newUpdater(Entry.class, PooledConnection.class, "handle");
+
+    private final Connection realConnection;
+
+    /**
+     * 连接创建时间
+     */
+    private final long createdTimestamp;
+
+    /**
+     * 连接上次使用时间
+     */
+    private volatile long lastUsedTimestamp;
+
+    private volatile int state = STATE_IN_USE;
+
+    /**
+     * 当前借出的池化连接
+     */
+    private volatile PooledConnection handle;
+
+    /**
+     * 物理连接上空闲的预编译语句
+     */
+    private volatile StatementCache statementCache;
+
+    Entry(Connection realConnection) {
+      this.realConnection = realConnection;
+      this.createdTimestamp = System.currentTimeMillis();
+      this.lastUsedTimestamp = createdTimestamp;
+    }
+
+    Connection getRealConnection() {
+      return realConnection;
+    }
+
+    /**
+     * Called by the thread the entry is lent to.
+     */
+    StatementCache getStatementCache(int size) {
+      if (statementCache == null) {
+        statementCache = new StatementCache(size);
+      }
+      return statementCache;
+    }
+
+    long getCreatedTimestamp() {
+      return createdTimestamp;
+    }
+
+    long getLastUsedTimestamp() {
+      return lastUsedTimestamp;
+    }
+
+    void setLastUsedTimestamp(long lastUsedTimestamp) {
+      this.lastUsedTimestamp = lastUsedTimestamp;
+    }
+
+    int getState() {
+      return state;
+    }
+
+    boolean compareAndSetState(int expect, int update) {
+      return STATE_UPDATER.compareAndSet(this, expect, update);
+    }
+
+    int getAndSetState(int update) {
+      return STATE_UPDATER.getAndSet(this, update);
+    }
+
+    PooledConnection getHandle() {
+      return handle;
+    }
+
+    void setHandle(PooledConnection handle) {
+      this.handle = handle;
+    }
+
+    /**
+     * Detaches the given handle from this entry. Only one of a returning thread and a claiming thread can win.
+     *
+     * @param expect the handle the caller believes is current
+     * @param update the new handle, or null when the connection is returned
+     * @return true if the caller now owns the entry
+     */
+    boolean compareAndSetHandle(PooledConnection expect, PooledConnection update) {
+      return HANDLE_UPDATER.compareAndSet(this, expect, update);
+    }
+
+  }
+
+}
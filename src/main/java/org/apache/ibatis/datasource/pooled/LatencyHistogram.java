@@ -0,0 +1,185 @@
+/**
+ *    Copyright 2009-2019 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.datasource.pooled;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A lock-free histogram of durations in milliseconds.
+ * 无锁耗时直方图，用于统计百分位
+ * <p>
+ * Values below 16 are counted exactly. Larger values fall into one of 8 buckets per power of two, so a reported
+ * percentile is never more than 12.5% above the recorded value. Buckets are striped counters that are created on
+ * first use.
+ */
+public class LatencyHistogram {
+
+  private static final int EXACT_VALUES = 16;
+  private static final int SUB_BUCKET_BITS = 3;
+  private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+  private static final int FIRST_EXPONENT = 4;
+  private static final int BUCKET_COUNT = EXACT_VALUES + (63 - FIRST_EXPONENT) * SUB_BUCKETS;
+
+  private final AtomicReferenceArray<LongAdder> buckets = new AtomicReferenceArray<>(BUCKET_COUNT);
+  private final LongAdder count = new LongAdder();
+  private final LongAdder sum = new LongAdder();
+  private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+  /**
+   * Records a duration. Negative values are recorded as 0.
+   *
+   * @param millis the duration in milliseconds
+   */
+  public void record(long millis) {
+    long value = Math.max(0, millis);
+    int index = bucketIndex(value);
+    LongAdder bucket = buckets.get(index);
+    if (bucket == null) {
+      buckets.compareAndSet(index, null, new LongAdder());
+      bucket = buckets.get(index);
+    }
+    bucket.increment();
+    count.increment();
+    sum.add(value);
+    max.accumulate(value);
+  }
+
+  public long getCount() {
+    return count.sum();
+  }
+
+  public long getMax() {
+    return max.get();
+  }
+
+  public long getMean() {
+    long n = count.sum();
+    return n == 0 ? 0 : sum.sum() / n;
+  }
+
+  /**
+   * Returns the value below which the given percentage of recorded durations fall.
+   *
+   * @param percentile the percentile, between 0 and 100
+   * @return the upper bound of the bucket holding the percentile, or 0 if nothing was recorded
+   */
+  public long getPercentile(double percentile) {
+    long[] counts = new long[BUCKET_COUNT];
+    long total = 0;
+    for (int i = 0; i < BUCKET_COUNT; i++) {
+      LongAdder bucket = buckets.get(i);
+      if (bucket != null) {
+        counts[i] = bucket.sum();
+        total += counts[i];
+      }
+    }
+    if (total == 0) {
+      return 0;
+    }
+    long rank = (long) Math.ceil(Math.min(100d, Math.max(0d, percentile)) / 100d * total);
+    long seen = 0;
+    for (int i = 0; i < BUCKET_COUNT; i++) {
+      seen += counts[i];
+      if (seen >= Math.max(1, rank)) {
+        return Math.min(bucketUpperBound(i), getMax());
+      }
+    }
+    return getMax();
+  }
+
+  /**
+   * Returns an immutable view of the usual percentiles.
+   *
+   * @return the snapshot
+   */
+  public Snapshot snapshot() {
+    return new Snapshot(getCount(), getMean(), getPercentile(50), getPercentile(95), getPercentile(99), getMax());
+  }
+
+  static int bucketIndex(long value) {
+    if (value < EXACT_VALUES) {
+      return (int) value;
+    }
+    int exponent = 63 - Long.numberOfLeadingZeros(value);
+    int subBucket = (int) (value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+    return EXACT_VALUES + (exponent - FIRST_EXPONENT) * SUB_BUCKETS + subBucket;
+  }
+
+  static long bucketUpperBound(int index) {
+    if (index < EXACT_VALUES) {
+      return index;
+    }
+    int exponent = (index - EXACT_VALUES) / SUB_BUCKETS + FIRST_EXPONENT;
+    long subBucket = (index - EXACT_VALUES) % SUB_BUCKETS;
+    long lowerBound = (1L << exponent) + (subBucket << (exponent - SUB_BUCKET_BITS));
+    return lowerBound + (1L << (exponent - SUB_BUCKET_BITS)) - 1;
+  }
+
+  /**
+   * Percentiles of a {@link LatencyHistogram} at a point in time.
+   */
+  public static class Snapshot {
+
+    private final long count;
+    private final long mean;
+    private final long median;
+    private final long percentile95;
+    private final long percentile99;
+    private final long max;
+
+    Snapshot(long count, long mean, long median, long percentile95, long percentile99, long max) {
+      this.count = count;
+      this.mean = mean;
+      this.median = median;
+      this.percentile95 = percentile95;
+      this.percentile99 = percentile99;
+      this.max = max;
+    }
+
+    public long getCount() {
+      return count;
+    }
+
+    public long getMean() {
+      return mean;
+    }
+
+    public long getMedian() {
+      return median;
+    }
+
+    public long getPercentile95() {
+      return percentile95;
+    }
+
+    public long getPercentile99() {
+      return percentile99;
+    }
+
+    public long getMax() {
+      return max;
+    }
+
+    @Override
+    public String toString() {
+      return "count=" + count + ", mean=" + mean + ", p50=" + median + ", p95=" + percentile95
+          + ", p99=" + percentile99 + ", max=" + max;
+    }
+  }
+
+}
@@ -0,0 +1,114 @@
+/**
+ *    Copyright 2009-2019 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.datasource.pooled;
+
+import java.lang.ref.WeakReference;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.apache.ibatis.logging.Log;
+import org.apache.ibatis.logging.LogFactory;
+
+/**
+ * Periodically runs the housekeeping of a {@link PooledDataSource} on a shared daemon thread.
+ * 连接池后台维护任务：异步校验空闲连接、淘汰过期连接、补足最小空闲连接
+ * <p>
+ * Only a weak reference to the data source is held, so an unreachable data source is never kept alive by its
+ * housekeeper; the task cancels itself once the data source has been collected.
+ */
+class PoolHousekeeper implements Runnable {
+
+  private static final Log log = LogFactory.getLog(PoolHousekeeper.class);
+
+  private static final ScheduledThreadPoolExecutor SCHEDULER = new ScheduledThreadPoolExecutor(1, runnable -> {
+    Thread thread = new Thread(runnable, "mybatis-pool-housekeeper");
+    thread.setDaemon(true);
+    return thread;
+  });
+
+  static {
+    // 连接归还时取消的泄漏检测任务立即移出队列
+    SCHEDULER.setRemoveOnCancelPolicy(true);
+  }
+
+  private final WeakReference<PooledDataSource> dataSource;
+
+  /**
+   * 是否已提交补足空闲连接的任务
+   */
+  private final AtomicBoolean fillRequested = new AtomicBoolean();
+
+  private volatile ScheduledFuture<?> future;
+
+  PoolHousekeeper(PooledDataSource dataSource) {
+    this.dataSource = new WeakReference<>(dataSource);
+  }
+
+  /**
+   * Runs a one-shot task on the housekeeping thread.
+   *
+   * @param task the task
+   * @param delay the delay in milliseconds
+   * @return the scheduled task
+   */
+  static ScheduledFuture<?> schedule(Runnable task, long delay) {
+    return SCHEDULER.schedule(task, delay, TimeUnit.MILLISECONDS);
+  }
+
+  void start(long interval) {
+    future = SCHEDULER.scheduleWithFixedDelay(this, interval, interval, TimeUnit.MILLISECONDS);
+  }
+
+  void stop() {
+    ScheduledFuture<?> scheduled = future;
+    if (scheduled != null) {
+      scheduled.cancel(false);
+    }
+  }
+
+  /**
+   * Asks for the pool to be topped up to its minimum idle count as soon as possible, outside the calling thread.
+   */
+  void requestFill() {
+    if (fillRequested.compareAndSet(false, true)) {
+      SCHEDULER.execute(() -> {
+        fillRequested.set(false);
+        PooledDataSource ds = dataSource.get();
+        if (ds != null) {
+          ds.fillIdleConnections();
+        }
+      });
+    }
+  }
+
+  @Override
+  public void run() {
+    PooledDataSource ds = dataSource.get();
+    if (ds == null) {
+      stop();
+      return;
+    }
+    try {
+      ds.housekeep();
+    } catch (Exception e) {
+      // 维护任务异常不能终止后续调度
+      log.warn("Pool housekeeping failed. Cause: " + e);
+    }
+  }
+
+}
@@ -0,0 +1,139 @@
+/**
+ *    Copyright 2009-2019 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.datasource.pooled;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Point-in-time metrics of a {@link PooledDataSource}, obtained from {@link PoolState#getMetrics()}.
+ * 连接池指标快照
+ */
+public class PoolMetrics {
+
+  private final int activeConnections;
+  private final int idleConnections;
+  private final int waitingThreads;
+  private final long requestCount;
+  private final long hadToWaitCount;
+  private final long badConnectionCount;
+  private final long claimedOverdueConnectionCount;
+  private final long leakedConnectionCount;
+  private final LatencyHistogram.Snapshot requestTime;
+  private final LatencyHistogram.Snapshot waitTime;
+  private final LatencyHistogram.Snapshot checkoutTime;
+  private final List<Throwable> leakSuspects;
+
+  PoolMetrics(PoolState state) {
+    this.activeConnections = state.getActiveConnectionCount();
+    this.idleConnections = state.getIdleConnectionCount();
+    this.waitingThreads = state.getWaitingThreadCount();
+    this.requestCount = state.getRequestCount();
+    this.hadToWaitCount = state.getHadToWaitCount();
+    this.badConnectionCount = state.getBadConnectionCount();
+    this.claimedOverdueConnectionCount = state.getClaimedOverdueConnectionCount();
+    this.leakedConnectionCount = state.getLeakedConnectionCount();
+    this.requestTime = state.requestTimeHistogram.snapshot();
+    this.waitTime = state.waitTimeHistogram.snapshot();
+    this.checkoutTime = state.checkoutTimeHistogram.snapshot();
+    this.leakSuspects = Collections.unmodifiableList(state.getLeakSuspects());
+  }
+
+  /**
+   * @return the number of connections currently checked out
+   */
+  public int getActiveConnections() {
+    return activeConnections;
+  }
+
+  /**
+   * @return the number of connections currently idle in the pool
+   */
+  public int getIdleConnections() {
+    return idleConnections;
+  }
+
+  /**
+   * @return the number of threads currently waiting for a connection
+   */
+  public int getWaitingThreads() {
+    return waitingThreads;
+  }
+
+  public long getRequestCount() {
+    return requestCount;
+  }
+
+  public long getHadToWaitCount() {
+    return hadToWaitCount;
+  }
+
+  public long getBadConnectionCount() {
+    return badConnectionCount;
+  }
+
+  public long getClaimedOverdueConnectionCount() {
+    return claimedOverdueConnectionCount;
+  }
+
+  /**
+   * @return the number of connections reported as leaked since the pool was created
+   */
+  public long getLeakedConnectionCount() {
+    return leakedConnectionCount;
+  }
+
+  /**
+   * @return the time, in milliseconds, taken by each successful borrow
+   */
+  public LatencyHistogram.Snapshot getRequestTime() {
+    return requestTime;
+  }
+
+  /**
+   * @return the time, in milliseconds, spent waiting by each borrow that had to wait
+   */
+  public LatencyHistogram.Snapshot getWaitTime() {
+    return waitTime;
+  }
+
+  /**
+   * @return the time, in milliseconds, connections were checked out before being returned or claimed
+   */
+  public LatencyHistogram.Snapshot getCheckoutTime() {
+    return checkoutTime;
+  }
+
+  /**
+   * Returns the connections currently checked out for longer than the leak detection threshold. The stack trace of
+   * each throwable is the one of the thread that borrowed the connection.
+   *
+   * @return the suspected leaks
+   */
+  public List<Throwable> getLeakSuspects() {
+    return leakSuspects;
+  }
+
+  @Override
+  public String toString() {
+    return "PoolMetrics{activeConnections=" + activeConnections + ", idleConnections=" + idleConnections
+        + ", waitingThreads=" + waitingThreads + ", requestCount=" + requestCount + ", hadToWaitCount=" + hadToWaitCount
+        + ", badConnectionCount=" + badConnectionCount + ", claimedOverdueConnectionCount=" + claimedOverdueConnectionCount
+        + ", leakedConnectionCount=" + leakedConnectionCount + ", requestTime={" + requestTime + "}, waitTime={"
+        + waitTime + "}, checkoutTime={" + checkoutTime + "}, leakSuspects=" + leakSuspects.size() + "}";
+  }
+
+}
@@ -16,7 +16,11 @@
 package org.apache.ibatis.datasource.pooled;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
 
 /**
  * 连接池状态
@@ -40,52 +44,157 @@ public class PoolState {
    */
   protected final List<PooledConnection> activeConnections = new ArrayList<>();
 
+  /**
+   * 并发连接池引擎的连接容器
+   */
+  protected final ConnectionBag connectionBag = new ConnectionBag();
+
   /**
    * 连接请求次数
    */
-  protected long requestCount = 0;
+  protected final LongAdder requestCount = new LongAdder();
 
   /**
    * 请求连接花费的总时长
    */
-  protected long accumulatedRequestTime = 0;
+  protected final LongAdder accumulatedRequestTime = new LongAdder();
 
   /**
    * 连接使用总时长
    */
-  protected long accumulatedCheckoutTime = 0;
+  protected final LongAdder accumulatedCheckoutTime = new LongAdder();
 
   /**
    * 检测到的超时活跃连接数
    */
-  protected long claimedOverdueConnectionCount = 0;
+  protected final LongAdder claimedOverdueConnectionCount = new LongAdder();
 
   /**
    * 超时连接累计使用时长
    */
-  protected long accumulatedCheckoutTimeOfOverdueConnections = 0;
+  protected final LongAdder accumulatedCheckoutTimeOfOverdueConnections = new LongAdder();
 
   /**
    * 等待连接总时长
    */
-  protected long accumulatedWaitTime = 0;
+  protected final LongAdder accumulatedWaitTime = new LongAdder();
 
   /**
    * 连接池等待连接次数
    */
-  protected long hadToWaitCount = 0;
+  protected final LongAdder hadToWaitCount = new LongAdder();
 
   /**
    * 获取连接失败或连接无效总次数
    */
-  protected long badConnectionCount = 0;
+  protected final LongAdder badConnectionCount = new LongAdder();
+
+  /**
+   * 检测到的泄漏连接数
+   */
+  protected final LongAdder leakedConnectionCount = new LongAdder();
+
+  /**
+   * 从语句缓存获取到预编译语句的次数
+   */
+  protected final LongAdder statementCacheHitCount = new LongAdder();
+
+  /**
+   * 语句缓存未命中的次数
+   */
+  protected final LongAdder statementCacheMissCount = new LongAdder();
+
+  /**
+   * 经典引擎中等待连接的线程数，受连接池同步锁保护
+   */
+  protected int waitingThreadCount = 0;
+
+  /**
+   * 获取连接耗时分布
+   */
+  protected final LatencyHistogram requestTimeHistogram = new LatencyHistogram();
+
+  /**
+   * 等待连接耗时分布
+   */
+  protected final LatencyHistogram waitTimeHistogram = new LatencyHistogram();
+
+  /**
+   * 连接使用时长分布
+   */
+  protected final LatencyHistogram checkoutTimeHistogram = new LatencyHistogram();
+
+  /**
+   * 疑似泄漏连接的借出堆栈
+   */
+  protected final Set<Throwable> leakSuspects = Collections.newSetFromMap(new ConcurrentHashMap<>());
 
   public PoolState(PooledDataSource dataSource) {
     this.dataSource = dataSource;
   }
 
-  public synchronized long getRequestCount() {
-    return requestCount;
+  void recordRequest(long requestTime) {
+    requestCount.increment();
+    accumulatedRequestTime.add(requestTime);
+    requestTimeHistogram.record(requestTime);
+  }
+
+  void recordCheckout(long checkoutTime) {
+    accumulatedCheckoutTime.add(checkoutTime);
+    checkoutTimeHistogram.record(checkoutTime);
+  }
+
+  /**
+   * Returns the metrics of the pool, including percentiles of borrow, wait and checkout times.
+   *
+   * @return a snapshot of the pool metrics
+   * @since 3.5.1
+   */
+  public PoolMetrics getMetrics() {
+    return new PoolMetrics(this);
+  }
+
+  public long getLeakedConnectionCount() {
+    return leakedConnectionCount.sum();
+  }
+
+  /**
+   * Returns the borrowing stack traces of the connections currently checked out for longer than
+   * {@link PooledDataSource#setPoolLeakDetectionThreshold(int) the leak detection threshold}.
+   *
+   * @return the suspected leaks
+   */
+  public List<Throwable> getLeakSuspects() {
+    return new ArrayList<>(leakSuspects);
+  }
+
+  /**
+   * @return the number of prepared statements reused from the statement caches of the connections
+   * @since 3.5.1
+   */
+  public long getStatementCacheHitCount() {
+    return statementCacheHitCount.sum();
+  }
+
+  /**
+   * @return the number of statements prepared while the statement cache was enabled
+   * @since 3.5.1
+   */
+  public long getStatementCacheMissCount() {
+    return statementCacheMissCount.sum();
+  }
+
+  public int getWaitingThreadCount() {
+    if (dataSource.isConcurrentPoolEngine()) {
+      return connectionBag.getWaitingThreadCount();
+    }
+    synchronized (this) {
+      return waitingThreadCount;
+    }
+  }
+
+  public long getRequestCount() {
+    return requestCount.sum();
   }
 
   /**
@@ -93,8 +202,9 @@ public class PoolState {
    *
    * @return
    */
-  public synchronized long getAverageRequestTime() {
-    return requestCount == 0 ? 0 : accumulatedRequestTime / requestCount;
+  public long getAverageRequestTime() {
+    long requests = requestCount.sum();
+    return requests == 0 ? 0 : accumulatedRequestTime.sum() / requests;
   }
 
   /**
@@ -102,20 +212,21 @@ public class PoolState {
    *
    * @return
    */
-  public synchronized long getAverageWaitTime() {
-    return hadToWaitCount == 0 ? 0 : accumulatedWaitTime / hadToWaitCount;
+  public long getAverageWaitTime() {
+    long waits = hadToWaitCount.sum();
+    return waits == 0 ? 0 : accumulatedWaitTime.sum() / waits;
   }
 
-  public synchronized long getHadToWaitCount() {
-    return hadToWaitCount;
+  public long getHadToWaitCount() {
+    return hadToWaitCount.sum();
   }
 
-  public synchronized long getBadConnectionCount() {
-    return badConnectionCount;
+  public long getBadConnectionCount() {
+    return badConnectionCount.sum();
   }
 
-  public synchronized long getClaimedOverdueConnectionCount() {
-    return claimedOverdueConnectionCount;
+  public long getClaimedOverdueConnectionCount() {
+    return claimedOverdueConnectionCount.sum();
   }
 
   /**
@@ -123,31 +234,44 @@ public class PoolState {
    *
    * @return
    */
-  public synchronized long getAverageOverdueCheckoutTime() {
-    return claimedOverdueConnectionCount == 0 ? 0 : accumulatedCheckoutTimeOfOverdueConnections / claimedOverdueConnectionCount;
+  public long getAverageOverdueCheckoutTime() {
+    long overdue = claimedOverdueConnectionCount.sum();
+    return overdue == 0 ? 0 : accumulatedCheckoutTimeOfOverdueConnections.sum() / overdue;
   }
 
-  public synchronized long getAverageCheckoutTime() {
-    return requestCount == 0 ? 0 : accumulatedCheckoutTime / requestCount;
+  public long getAverageCheckoutTime() {
+    long requests = requestCount.sum();
+    return requests == 0 ? 0 : accumulatedCheckoutTime.sum() / requests;
   }
 
 
-  public synchronized int getIdleConnectionCount() {
-    return idleConnections.size();
+  public int getIdleConnectionCount() {
+    if (dataSource.isConcurrentPoolEngine()) {
+      return connectionBag.getCount(ConnectionBag.STATE_NOT_IN_USE);
+    }
+    synchronized (this) {
+      return idleConnections.size();
+    }
   }
 
-  public synchronized int getActiveConnectionCount() {
-    return activeConnections.size();
+  public int getActiveConnectionCount() {
+    if (dataSource.isConcurrentPoolEngine()) {
+      return connectionBag.getCount(ConnectionBag.STATE_IN_USE);
+    }
+    synchronized (this) {
+      return activeConnections.size();
+    }
   }
 
   @Override
-  public synchronized String toString() {
+  public String toString() {
     StringBuilder builder = new StringBuilder();
     builder.append("\n===CONFINGURATION==============================================");
     builder.append("\n jdbcDriver                     ").append(dataSource.getDriver());
     builder.append("\n jdbcUrl                        ").append(dataSource.getUrl());
     builder.append("\n jdbcUsername                   ").append(dataSource.getUsername());
     builder.append("\n jdbcPassword                   ").append(dataSource.getPassword() == null ? "NULL" : "************");
+    builder.append("\n poolEngine                     ").append(dataSource.poolEngine);
     builder.append("\n poolMaxActiveConnections       ").append(dataSource.poolMaximumActiveConnections);
     builder.append("\n poolMaxIdleConnections         ").append(dataSource.poolMaximumIdleConnections);
     builder.append("\n poolMaxCheckoutTime            ").append(dataSource.poolMaximumCheckoutTime);
@@ -155,6 +279,12 @@ public class PoolState {
     builder.append("\n poolPingEnabled                ").append(dataSource.poolPingEnabled);
     builder.append("\n poolPingQuery                  ").append(dataSource.poolPingQuery);
     builder.append("\n poolPingConnectionsNotUsedFor  ").append(dataSource.poolPingConnectionsNotUsedFor);
+    builder.append("\n poolMinIdleConnections         ").append(dataSource.poolMinimumIdleConnections);
+    builder.append("\n poolMaxLifetime                ").append(dataSource.poolMaximumLifetime);
+    builder.append("\n poolIdleTimeout                ").append(dataSource.poolIdleTimeout);
+    builder.append("\n poolHousekeepingInterval       ").append(dataSource.poolHousekeepingInterval);
+    builder.append("\n poolLeakDetectionThreshold     ").append(dataSource.poolLeakDetectionThreshold);
+    builder.append("\n poolPreparedStatementCacheSize ").append(dataSource.poolPreparedStatementCacheSize);
     builder.append("\n ---STATUS-----------------------------------------------------");
     builder.append("\n activeConnections              ").append(getActiveConnectionCount());
     builder.append("\n idleConnections                ").append(getIdleConnectionCount());
@@ -166,6 +296,12 @@ public class PoolState {
     builder.append("\n hadToWait                      ").append(getHadToWaitCount());
     builder.append("\n averageWaitTime                ").append(getAverageWaitTime());
     builder.append("\n badConnectionCount             ").append(getBadConnectionCount());
+    builder.append("\n leakedConnectionCount          ").append(getLeakedConnectionCount());
+    builder.append("\n statementCacheHitCount         ").append(getStatementCacheHitCount());
+    builder.append("\n statementCacheMissCount        ").append(getStatementCacheMissCount());
+    builder.append("\n requestTime                    ").append(requestTimeHistogram.snapshot());
+    builder.append("\n waitTime                       ").append(waitTimeHistogram.snapshot());
+    builder.append("\n checkoutTime                   ").append(checkoutTimeHistogram.snapshot());
     builder.append("\n===============================================================");
     return builder.toString();
   }
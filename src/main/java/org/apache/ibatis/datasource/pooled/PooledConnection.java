@@ -21,7 +21,9 @@ import java.lang.reflect.InvocationHandler;
 import java.lang.reflect.Method;
 import java.lang.reflect.Proxy;
 import java.sql.Connection;
+import java.sql.PreparedStatement;
 import java.sql.SQLException;
+import java.util.concurrent.ScheduledFuture;
 
 /**
  * 池化连接
@@ -31,6 +33,8 @@ import java.sql.SQLException;
 class PooledConnection implements InvocationHandler {
 
   private static final String CLOSE = "close";
+  private static final String PREPARE_STATEMENT = "prepareStatement";
+  private static final String PREPARE_CALL = "prepareCall";
   private static final Class<?>[] IFACES = new Class<?>[] { Connection.class };
 
   private final int hashCode;
@@ -67,6 +71,26 @@ class PooledConnection implements InvocationHandler {
 
   private int connectionTypeCode;
 
+  /**
+   * 并发连接池引擎中对应的物理连接，经典引擎下为 null
+   */
+  private ConnectionBag.Entry bagEntry;
+
+  /**
+   * 借出时的堆栈，未开启泄漏检测时为 null
+   */
+  private volatile Throwable leakTrace;
+
+  /**
+   * 泄漏检测任务
+   */
+  private volatile ScheduledFuture<?> leakTask;
+
+  /**
+   * 物理连接上空闲的预编译语句，未开启语句缓存时为 null
+   */
+  private StatementCache statementCache;
+
   /**
    * 连接有效标志
    */
@@ -158,6 +182,70 @@ class PooledConnection implements InvocationHandler {
     this.connectionTypeCode = connectionTypeCode;
   }
 
+  /**
+   * Getter for the bag entry this connection was borrowed from.
+   *
+   * @return The bag entry, or null if the connection belongs to the classic pool engine
+   */
+  ConnectionBag.Entry getBagEntry() {
+    return bagEntry;
+  }
+
+  /**
+   * Setter for the bag entry this connection was borrowed from.
+   *
+   * @param bagEntry - the bag entry
+   */
+  void setBagEntry(ConnectionBag.Entry bagEntry) {
+    this.bagEntry = bagEntry;
+  }
+
+  /**
+   * Getter for the stack trace captured when this connection was checked out.
+   *
+   * @return The stack trace, or null if leak detection is disabled or the connection was returned
+   */
+  Throwable getLeakTrace() {
+    return leakTrace;
+  }
+
+  void setLeakTrace(Throwable leakTrace) {
+    this.leakTrace = leakTrace;
+  }
+
+  ScheduledFuture<?> getLeakTask() {
+    return leakTask;
+  }
+
+  void setLeakTask(ScheduledFuture<?> leakTask) {
+    this.leakTask = leakTask;
+  }
+
+  /**
+   * Getter for the prepared statement cache of the physical connection, created on first use.
+   *
+   * @return The statement cache, or null if statement caching is disabled
+   */
+  StatementCache getStatementCache() {
+    if (statementCache == null) {
+      int size = dataSource.getPoolPreparedStatementCacheSize();
+      if (size > 0) {
+        // 并发引擎的缓存保存在物理连接条目上，经典引擎由归还时的新代理连接接管
+        statementCache = bagEntry != null ? bagEntry.getStatementCache(size) : new StatementCache(size);
+      }
+    }
+    return statementCache;
+  }
+
+  /**
+   * Setter for the prepared statement cache, when the physical connection is wrapped again.
+   *
+   * @param statementCache - the statement cache of the physical connection
+   */
+  void setStatementCache(StatementCache statementCache) {
+    this.statementCache = statementCache;
+  }
+
   /**
    * Getter for the time that the connection was created.
    *
@@ -287,6 +375,9 @@ class PooledConnection implements InvocationHandler {
         // 执行其它方法，验证连接是否有效，如果是无效连接，抛出异常
         checkConnection();
       }
+      if ((PREPARE_STATEMENT.equals(methodName) || PREPARE_CALL.equals(methodName)) && getStatementCache() != null) {
+        return prepareCached(method, args);
+      }
       return method.invoke(realConnection, args);
     } catch (Throwable t) {
       throw ExceptionUtil.unwrapThrowable(t);
@@ -294,6 +385,21 @@ class PooledConnection implements InvocationHandler {
 
   }
 
+  /**
+   * 从语句缓存获取预编译语句，未命中时创建
+   */
+  private PreparedStatement prepareCached(Method method, Object[] args) throws Exception {
+    StatementCache.Key key = new StatementCache.Key(method.getName(), args);
+    PreparedStatement statement = statementCache.take(key);
+    if (statement == null) {
+      dataSource.getPoolState().statementCacheMissCount.increment();
+      statement = (PreparedStatement) method.invoke(realConnection, args);
+    } else {
+      dataSource.getPoolState().statementCacheHitCount.increment();
+    }
+    return new PooledStatement(statement, key, statementCache, proxyConnection).getProxyStatement();
+  }
+
   /**
    * 无效连接抛出异常
    *
@@ -15,19 +15,26 @@
  */
 package org.apache.ibatis.datasource.pooled;
 
+import org.apache.ibatis.datasource.DataSourceException;
 import org.apache.ibatis.datasource.unpooled.UnpooledDataSource;
 import org.apache.ibatis.logging.Log;
 import org.apache.ibatis.logging.LogFactory;
 
 import javax.sql.DataSource;
 import java.io.PrintWriter;
+import java.io.StringWriter;
 import java.lang.reflect.InvocationHandler;
 import java.lang.reflect.Proxy;
 import java.sql.Connection;
 import java.sql.DriverManager;
 import java.sql.SQLException;
 import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
 import java.util.Properties;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
 import java.util.logging.Logger;
 
 /**
@@ -40,6 +47,16 @@ public class PooledDataSource implements DataSource {
 
   private static final Log log = LogFactory.getLog(PooledDataSource.class);
 
+  /**
+   * The default pool engine, guarded by a single monitor on the {@link PoolState}.
+   */
+  public static final String POOL_ENGINE_CLASSIC = "CLASSIC";
+
+  /**
+   * A lock-free pool engine with thread-local affinity and direct hand-off to waiting threads.
+   */
+  public static final String POOL_ENGINE_CONCURRENT = "CONCURRENT";
+
   /**
    * 数据库连接池
    */
@@ -92,6 +109,43 @@ public class PooledDataSource implements DataSource {
    */
   protected int poolPingConnectionsNotUsedFor;
 
+  /**
+   * 连接池引擎
+   */
+  protected String poolEngine = POOL_ENGINE_CLASSIC;
+
+  /**
+   * 后台维护保持的最小空闲连接数
+   */
+  protected int poolMinimumIdleConnections;
+
+  /**
+   * 连接最大存活时长，0 表示不限制
+   */
+  protected int poolMaximumLifetime;
+
+  /**
+   * 空闲连接超时时长，0 表示不淘汰
+   */
+  protected int poolIdleTimeout;
+
+  /**
+   * 后台维护任务执行间隔，0 表示不开启后台维护
+   */
+  protected int poolHousekeepingInterval;
+
+  /**
+   * 连接泄漏检测阈值，0 表示不检测
+   */
+  protected int poolLeakDetectionThreshold;
+
+  /**
+   * 每个物理连接缓存的预编译语句数，0 表示不缓存
+   */
+  protected int poolPreparedStatementCacheSize;
+
+  private volatile PoolHousekeeper housekeeper;
+
   private int expectedConnectionTypeCode;
 
   public PooledDataSource() {
@@ -206,6 +260,11 @@ public class PooledDataSource implements DataSource {
    */
   public void setPoolMaximumIdleConnections(int poolMaximumIdleConnections) {
     this.poolMaximumIdleConnections = poolMaximumIdleConnections;
+    if (poolMinimumIdleConnections > poolMaximumIdleConnections) {
+      log.warn("Lowering poolMinimumIdleConnections from " + poolMinimumIdleConnections + " to poolMaximumIdleConnections ("
+          + poolMaximumIdleConnections + ").");
+      poolMinimumIdleConnections = poolMaximumIdleConnections;
+    }
     forceCloseAll();
   }
 
@@ -275,6 +334,113 @@ public class PooledDataSource implements DataSource {
     forceCloseAll();
   }
 
+  /**
+   * The engine used to borrow and return connections. Either {@link #POOL_ENGINE_CLASSIC} (the default) or
+   * {@link #POOL_ENGINE_CONCURRENT}.
+   *
+   * @param poolEngine The pool engine name (case insensitive)
+   * @since 3.5.1
+   */
+  public void setPoolEngine(String poolEngine) {
+    if (POOL_ENGINE_CLASSIC.equalsIgnoreCase(poolEngine)) {
+      this.poolEngine = POOL_ENGINE_CLASSIC;
+    } else if (POOL_ENGINE_CONCURRENT.equalsIgnoreCase(poolEngine)) {
+      this.poolEngine = POOL_ENGINE_CONCURRENT;
+    } else {
+      throw new DataSourceException("Unknown pool engine '" + poolEngine + "'. Expected "
+          + POOL_ENGINE_CLASSIC + " or " + POOL_ENGINE_CONCURRENT + ".");
+    }
+    forceCloseAll();
+  }
+
+  /**
+   * The number of idle connections the housekeeper keeps ready, so requests do not pay for connection creation.
+   * Only honored when {@link #setPoolHousekeepingInterval(int) housekeeping} is enabled. Values above
+   * {@link #setPoolMaximumIdleConnections(int) the maximum number of idle connections} are lowered to it.
+   *
+   * @param poolMinimumIdleConnections The minimum number of idle connections
+   * @since 3.5.1
+   */
+  public void setPoolMinimumIdleConnections(int poolMinimumIdleConnections) {
+    if (poolMinimumIdleConnections > poolMaximumIdleConnections) {
+      // 超出最大空闲连接数的连接归还时即被关闭，补充后又被关闭
+      log.warn("Lowering poolMinimumIdleConnections from " + poolMinimumIdleConnections + " to poolMaximumIdleConnections ("
+          + poolMaximumIdleConnections + ").");
+      poolMinimumIdleConnections = poolMaximumIdleConnections;
+    }
+    this.poolMinimumIdleConnections = poolMinimumIdleConnections;
+    forceCloseAll();
+  }
+
+  /**
+   * The maximum time a connection may live. Older connections are closed when returned, and evicted by the
+   * housekeeper when idle.
+   *
+   * @param poolMaximumLifetime The maximum lifetime in milliseconds, or 0 for no limit
+   * @since 3.5.1
+   */
+  public void setPoolMaximumLifetime(int poolMaximumLifetime) {
+    this.poolMaximumLifetime = poolMaximumLifetime;
+    forceCloseAll();
+  }
+
+  /**
+   * The time a connection may sit idle before the housekeeper evicts it, as long as more than
+   * {@link #setPoolMinimumIdleConnections(int) the minimum} are idle.
+   *
+   * @param poolIdleTimeout The idle timeout in milliseconds, or 0 to never evict idle connections
+   * @since 3.5.1
+   */
+  public void setPoolIdleTimeout(int poolIdleTimeout) {
+    this.poolIdleTimeout = poolIdleTimeout;
+    forceCloseAll();
+  }
+
+  /**
+   * How often the housekeeper runs. When enabled, the ping query is no longer run by the thread borrowing or
+   * returning a connection; idle connections are validated in the background instead.
+   *
+   * @param milliseconds The housekeeping interval in milliseconds, or 0 to disable housekeeping
+   * @since 3.5.1
+   */
+  public synchronized void setPoolHousekeepingInterval(int milliseconds) {
+    this.poolHousekeepingInterval = milliseconds;
+    if (housekeeper != null) {
+      housekeeper.stop();
+      housekeeper = null;
+    }
+    if (milliseconds > 0) {
+      housekeeper = new PoolHousekeeper(this);
+      housekeeper.start(milliseconds);
+    }
+    forceCloseAll();
+  }
+
+  /**
+   * The time a connection may stay checked out before it is reported as a possible leak. The stack trace of the
+   * borrowing thread is logged and exposed through {@link PoolState#getLeakSuspects()}. Capturing it costs a
+   * stack walk per borrow, so this is disabled by default.
+   *
+   * @param poolLeakDetectionThreshold The threshold in milliseconds, or 0 to disable leak detection
+   * @since 3.5.1
+   */
+  public void setPoolLeakDetectionThreshold(int poolLeakDetectionThreshold) {
+    this.poolLeakDetectionThreshold = poolLeakDetectionThreshold;
+  }
+
+  /**
+   * The number of idle prepared statements kept per physical connection, for the sessions that borrow it in turn.
+   * Closing a statement prepared by a pooled connection returns it to the cache of the connection, least recently
+   * used statements are closed beyond this size. Useful with drivers that do not cache statements themselves.
+   *
+   * @param poolPreparedStatementCacheSize The number of statements per connection, or 0 to disable statement caching
+   * @since 3.5.1
+   */
+  public void setPoolPreparedStatementCacheSize(int poolPreparedStatementCacheSize) {
+    this.poolPreparedStatementCacheSize = poolPreparedStatementCacheSize;
+    forceCloseAll();
+  }
+
   public String getDriver() {
     return dataSource.getDriver();
   }
@@ -335,6 +501,38 @@ public class PooledDataSource implements DataSource {
     return poolPingConnectionsNotUsedFor;
   }
 
+  public String getPoolEngine() {
+    return poolEngine;
+  }
+
+  public int getPoolMinimumIdleConnections() {
+    return poolMinimumIdleConnections;
+  }
+
+  public int getPoolMaximumLifetime() {
+    return poolMaximumLifetime;
+  }
+
+  public int getPoolIdleTimeout() {
+    return poolIdleTimeout;
+  }
+
+  public int getPoolHousekeepingInterval() {
+    return poolHousekeepingInterval;
+  }
+
+  public int getPoolLeakDetectionThreshold() {
+    return poolLeakDetectionThreshold;
+  }
+
+  public int getPoolPreparedStatementCacheSize() {
+    return poolPreparedStatementCacheSize;
+  }
+
+  boolean isConcurrentPoolEngine() {
+    return POOL_ENGINE_CONCURRENT.equals(poolEngine);
+  }
+
   /**
    * Closes all active and idle connections in the pool.
    * 配置变更，需要关闭所有创建的仍存活的连接
@@ -380,6 +578,16 @@ public class PooledDataSource implements DataSource {
         }
       }
     }
+    // 关闭并发引擎中的所有连接
+    for (ConnectionBag.Entry entry : state.connectionBag.values()) {
+      PooledConnection handle = entry.getHandle();
+      if (handle != null && entry.compareAndSetHandle(handle, null)) {
+        handle.invalidate();
+      }
+      if (state.connectionBag.remove(entry)) {
+        closeQuietly(entry.getRealConnection());
+      }
+    }
     if (log.isDebugEnabled()) {
       log.debug("PooledDataSource forcefully closed/removed all connections.");
     }
@@ -400,21 +608,29 @@ public class PooledDataSource implements DataSource {
    * @throws SQLException
    */
   protected void pushConnection(PooledConnection conn) throws SQLException {
+    stopLeakDetection(conn);
+    if (conn.getBagEntry() != null) {
+      // 连接来自并发连接池引擎
+      pushBagConnection(conn);
+      return;
+    }
 
     synchronized (state) {
       // 获取连接池状态同步锁，活跃连接队列移除当前连接
       state.activeConnections.remove(conn);
       if (conn.isValid()) {
         // 连接有效
-        if (state.idleConnections.size() < poolMaximumIdleConnections && conn.getConnectionTypeCode() == expectedConnectionTypeCode) {
+        if (state.idleConnections.size() < poolMaximumIdleConnections && conn.getConnectionTypeCode() == expectedConnectionTypeCode
+            && !isPastMaximumLifetime(conn.getCreatedTimestamp())) {
           // 空闲连接数小于最大空闲连接数，累计连接使用时长
-          state.accumulatedCheckoutTime += conn.getCheckoutTime();
+          state.recordCheckout(conn.getCheckoutTime());
           if (!conn.getRealConnection().getAutoCommit()) {
             // 未自动提交连接回滚上次事务
             conn.getRealConnection().rollback();
           }
           // 包装成新的代理连接
           PooledConnection newConn = new PooledConnection(conn.getRealConnection(), this);
+          newConn.setStatementCache(conn.getStatementCache());
           // 将新连接放入空闲队列
           state.idleConnections.add(newConn);
           // 设置相关统计时间戳
@@ -429,7 +645,7 @@ public class PooledDataSource implements DataSource {
           state.notifyAll();
         } else {
           // 空闲连接数达到最大空闲连接数
-          state.accumulatedCheckoutTime += conn.getCheckoutTime();
+          state.recordCheckout(conn.getCheckoutTime());
           if (!conn.getRealConnection().getAutoCommit()) {
             // 未自动提交连接回滚上次事务
             conn.getRealConnection().rollback();
@@ -447,7 +663,7 @@ public class PooledDataSource implements DataSource {
           log.debug("A bad connection (" + conn.getRealHashCode() + ") attempted to return to the pool, discarding connection.");
         }
         // 连接无效次数+1
-        state.badConnectionCount++;
+        state.badConnectionCount.increment();
       }
     }
   }
@@ -462,8 +678,12 @@ public class PooledDataSource implements DataSource {
    * @throws SQLException
    */
   private PooledConnection popConnection(String username, String password) throws SQLException {
+    if (isConcurrentPoolEngine()) {
+      return popBagConnection(username, password);
+    }
     // 等待连接标志
     boolean countedWait = false;
+    long waitTime = 0;
     // 待获取的池化连接
     PooledConnection conn = null;
     long t = System.currentTimeMillis();
@@ -487,6 +707,7 @@ public class PooledDataSource implements DataSource {
             if (log.isDebugEnabled()) {
               log.debug("Created connection " + conn.getRealHashCode() + ".");
             }
+            requestIdleFill();
           } else {
             // Cannot create new connection 活跃连接数到达最大连接数
             PooledConnection oldestActiveConnection = state.activeConnections.get(0);
@@ -494,10 +715,10 @@ public class PooledDataSource implements DataSource {
             long longestCheckoutTime = oldestActiveConnection.getCheckoutTime();
             if (longestCheckoutTime > poolMaximumCheckoutTime) {
               // Can claim overdue connection 超出活跃连接最大使用时间
-              state.claimedOverdueConnectionCount++;
+              state.claimedOverdueConnectionCount.increment();
               // 超时连接累计使用时长
-              state.accumulatedCheckoutTimeOfOverdueConnections += longestCheckoutTime;
-              state.accumulatedCheckoutTime += longestCheckoutTime;
+              state.accumulatedCheckoutTimeOfOverdueConnections.add(longestCheckoutTime);
+              state.recordCheckout(longestCheckoutTime);
               // 活跃连接队列移除当前连接
               state.activeConnections.remove(oldestActiveConnection);
               if (!oldestActiveConnection.getRealConnection().getAutoCommit()) {
@@ -518,10 +739,12 @@ public class PooledDataSource implements DataSource {
               }
               // 包装新的池化连接
               conn = new PooledConnection(oldestActiveConnection.getRealConnection(), this);
+              conn.setStatementCache(oldestActiveConnection.getStatementCache());
               conn.setCreatedTimestamp(oldestActiveConnection.getCreatedTimestamp());
               conn.setLastUsedTimestamp(oldestActiveConnection.getLastUsedTimestamp());
               // 设置原连接无效
               oldestActiveConnection.invalidate();
+              stopLeakDetection(oldestActiveConnection);
               if (log.isDebugEnabled()) {
                 log.debug("Claimed overdue connection " + conn.getRealHashCode() + ".");
               }
@@ -530,7 +753,7 @@ public class PooledDataSource implements DataSource {
               try {
                 // 存活连接有效
                 if (!countedWait) {
-                  state.hadToWaitCount++;
+                  state.hadToWaitCount.increment();
                   countedWait = true;
                 }
                 if (log.isDebugEnabled()) {
@@ -538,9 +761,16 @@ public class PooledDataSource implements DataSource {
                 }
                 long wt = System.currentTimeMillis();
                 // 释放锁等待连接，{@link PooledDataSource#pushConnection} 如果有连接空闲，会唤醒等待
-                state.wait(poolTimeToWait);
+                state.waitingThreadCount++;
+                try {
+                  state.wait(poolTimeToWait);
+                } finally {
+                  state.waitingThreadCount--;
+                }
                 // 记录等待时长
-                state.accumulatedWaitTime += System.currentTimeMillis() - wt;
+                long elapsed = System.currentTimeMillis() - wt;
+                state.accumulatedWaitTime.add(elapsed);
+                waitTime += elapsed;
               } catch (InterruptedException e) {
                 break;
               }
@@ -561,17 +791,19 @@ public class PooledDataSource implements DataSource {
             conn.setLastUsedTimestamp(System.currentTimeMillis());
             // 添加到活跃连接集合队尾
             state.activeConnections.add(conn);
-            // 连接请求次数+1
-            state.requestCount++;
-            // 请求连接花费的时间
-            state.accumulatedRequestTime += System.currentTimeMillis() - t;
+            // 记录连接请求次数及花费的时间
+            state.recordRequest(System.currentTimeMillis() - t);
+            if (countedWait) {
+              state.waitTimeHistogram.record(waitTime);
+            }
+            startLeakDetection(conn);
           } else {
             // 未获取到连接
             if (log.isDebugEnabled()) {
               log.debug("A bad connection (" + conn.getRealHashCode() + ") was returned from the pool, getting another connection.");
             }
             // 因为没有空闲连接导致获取连接失败次数+1
-            state.badConnectionCount++;
+            state.badConnectionCount.increment();
             // 本次请求获取连接失败数+1
             localBadConnectionCount++;
             conn = null;
@@ -598,6 +830,419 @@ public class PooledDataSource implements DataSource {
     return conn;
   }
 
+  /**
+   * Returns a connection borrowed from the concurrent pool engine.
+   * 并发引擎归还连接，不获取连接池同步锁
+   *
+   * @param conn the connection to return
+   * @throws SQLException if the connection could not be rolled back
+   */
+  private void pushBagConnection(PooledConnection conn) throws SQLException {
+    ConnectionBag.Entry entry = conn.getBagEntry();
+    // 与回收超时连接的线程竞争物理连接的所有权
+    boolean owned = entry.compareAndSetHandle(conn, null);
+    if (!owned || !conn.isValid()) {
+      // 连接已被回收、重复关闭或无效
+      if (log.isDebugEnabled()) {
+        log.debug("A bad connection (" + conn.getRealHashCode() + ") attempted to return to the pool, discarding connection.");
+      }
+      state.badConnectionCount.increment();
+      if (owned) {
+        discardBagEntry(entry);
+      }
+      conn.invalidate();
+      return;
+    }
+    state.recordCheckout(conn.getCheckoutTime());
+    conn.invalidate();
+    entry.setLastUsedTimestamp(conn.getLastUsedTimestamp());
+    Connection realConn = entry.getRealConnection();
+    try {
+      if (!realConn.getAutoCommit()) {
+        // 未自动提交连接回滚上次事务
+        realConn.rollback();
+      }
+    } catch (SQLException e) {
+      discardBagEntry(entry);
+      throw e;
+    }
+    if (conn.getConnectionTypeCode() == expectedConnectionTypeCode && !hasTooManyIdleBagConnections()
+        && !isPastMaximumLifetime(entry.getCreatedTimestamp())) {
+      state.connectionBag.requite(entry);
+      if (log.isDebugEnabled()) {
+        log.debug("Returned connection " + conn.getRealHashCode() + " to pool.");
+      }
+    } else {
+      // 空闲连接数达到最大空闲连接数，关闭多余的连接
+      discardBagEntry(entry);
+      if (log.isDebugEnabled()) {
+        log.debug("Closed connection " + conn.getRealHashCode() + ".");
+      }
+    }
+  }
+
+  private boolean hasTooManyIdleBagConnections() {
+    ConnectionBag bag = state.connectionBag;
+    return bag.getWaitingThreadCount() == 0
+        && bag.getCount(ConnectionBag.STATE_NOT_IN_USE) >= poolMaximumIdleConnections;
+  }
+
+  /**
+   * Borrows a connection from the concurrent pool engine.
+   * 并发引擎获取连接：线程本地/共享列表 -> 创建新连接 -> 回收超时连接 -> 等待交接
+   *
+   * @param username the user name
+   * @param password the password
+   * @return the pooled connection
+   * @throws SQLException if no good connection could be obtained
+   */
+  private PooledConnection popBagConnection(String username, String password) throws SQLException {
+    ConnectionBag bag = state.connectionBag;
+    boolean countedWait = false;
+    long waitTime = 0;
+    long t = System.currentTimeMillis();
+    int localBadConnectionCount = 0;
+
+    while (true) {
+      PooledConnection conn = null;
+      ConnectionBag.Entry entry = bag.poll();
+      if (entry == null && bag.reserve(poolMaximumActiveConnections)) {
+        // 活跃连接数小于设定的最大连接数，创建新的连接
+        try {
+          entry = new ConnectionBag.Entry(dataSource.getConnection());
+        } catch (SQLException | RuntimeException e) {
+          bag.cancelReservation();
+          throw e;
+        }
+        bag.add(entry);
+        if (log.isDebugEnabled()) {
+          log.debug("Created connection " + entry.getRealConnection().hashCode() + ".");
+        }
+        requestIdleFill();
+      }
+      if (entry == null) {
+        conn = claimOverdueBagConnection();
+      }
+      if (entry == null && conn == null) {
+        if (!countedWait) {
+          state.hadToWaitCount.increment();
+          countedWait = true;
+        }
+        if (log.isDebugEnabled()) {
+          log.debug("Waiting as long as " + poolTimeToWait + " milliseconds for connection.");
+        }
+        long wt = System.currentTimeMillis();
+        try {
+          entry = bag.await(poolTimeToWait, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+          throw new SQLException("PooledDataSource: Interrupted while waiting for a connection.", e);
+        } finally {
+          long elapsed = System.currentTimeMillis() - wt;
+          state.accumulatedWaitTime.add(elapsed);
+          waitTime += elapsed;
+        }
+        if (entry == null) {
+          continue;
+        }
+      }
+      if (conn == null) {
+        conn = new PooledConnection(entry.getRealConnection(), this);
+        conn.setBagEntry(entry);
+        conn.setCreatedTimestamp(entry.getCreatedTimestamp());
+        conn.setLastUsedTimestamp(entry.getLastUsedTimestamp());
+      }
+      // ping to server and check the connection is valid or not
+      if (conn.isValid()) {
+        try {
+          if (!conn.getRealConnection().getAutoCommit()) {
+            conn.getRealConnection().rollback();
+          }
+        } catch (SQLException e) {
+          discardBagEntry(conn.getBagEntry());
+          throw e;
+        }
+        conn.setConnectionTypeCode(assembleConnectionTypeCode(dataSource.getUrl(), username, password));
+        conn.setCheckoutTimestamp(System.currentTimeMillis());
+        conn.setLastUsedTimestamp(System.currentTimeMillis());
+        conn.getBagEntry().setHandle(conn);
+        state.recordRequest(System.currentTimeMillis() - t);
+        if (countedWait) {
+          state.waitTimeHistogram.record(waitTime);
+        }
+        startLeakDetection(conn);
+        return conn;
+      }
+      if (log.isDebugEnabled()) {
+        log.debug("A bad connection (" + conn.getRealHashCode() + ") was returned from the pool, getting another connection.");
+      }
+      state.badConnectionCount.increment();
+      localBadConnectionCount++;
+      discardBagEntry(conn.getBagEntry());
+      if (localBadConnectionCount > (poolMaximumIdleConnections + poolMaximumLocalBadConnectionTolerance)) {
+        if (log.isDebugEnabled()) {
+          log.debug("PooledDataSource: Could not get a good connection to the database.");
+        }
+        throw new SQLException("PooledDataSource: Could not get a good connection to the database.");
+      }
+    }
+  }
+
+  /**
+   * Claims the longest checked out connection of the concurrent pool engine if it is overdue.
+   *
+   * @return a new handle on the claimed connection, or null if no connection is overdue
+   */
+  private PooledConnection claimOverdueBagConnection() {
+    PooledConnection oldest = null;
+    for (ConnectionBag.Entry entry : state.connectionBag.values()) {
+      PooledConnection handle = entry.getHandle();
+      if (handle != null && (oldest == null || handle.getCheckoutTimestamp() < oldest.getCheckoutTimestamp())) {
+        oldest = handle;
+      }
+    }
+    if (oldest == null) {
+      return null;
+    }
+    long longestCheckoutTime = oldest.getCheckoutTime();
+    ConnectionBag.Entry entry = oldest.getBagEntry();
+    if (longestCheckoutTime <= poolMaximumCheckoutTime || !entry.compareAndSetHandle(oldest, null)) {
+      return null;
+    }
+    state.claimedOverdueConnectionCount.increment();
+    state.accumulatedCheckoutTimeOfOverdueConnections.add(longestCheckoutTime);
+    state.recordCheckout(longestCheckoutTime);
+    if (!isAutoCommitQuietly(entry.getRealConnection())) {
+      try {
+        entry.getRealConnection().rollback();
+      } catch (SQLException e) {
+        log.debug("Bad connection. Could not roll back");
+      }
+    }
+    PooledConnection conn = new PooledConnection(entry.getRealConnection(), this);
+    conn.setBagEntry(entry);
+    conn.setCreatedTimestamp(oldest.getCreatedTimestamp());
+    conn.setLastUsedTimestamp(oldest.getLastUsedTimestamp());
+    oldest.invalidate();
+    stopLeakDetection(oldest);
+    if (log.isDebugEnabled()) {
+      log.debug("Claimed overdue connection " + conn.getRealHashCode() + ".");
+    }
+    return conn;
+  }
+
+  private void startLeakDetection(PooledConnection conn) {
+    int threshold = poolLeakDetectionThreshold;
+    if (threshold > 0) {
+      Throwable trace = new Exception("Connection " + conn.getRealHashCode() + " was checked out by thread '"
+          + Thread.currentThread().getName() + "' and not returned within " + threshold + " milliseconds.");
+      // 先设置调用栈，任务即使立即执行也能识别该连接
+      conn.setLeakTrace(trace);
+      conn.setLeakTask(PoolHousekeeper.schedule(() -> reportLeak(conn, trace), threshold));
+    }
+  }
+
+  private void reportLeak(PooledConnection conn, Throwable trace) {
+    state.leakSuspects.add(trace);
+    if (conn.getLeakTrace() != trace) {
+      // 连接已在上报期间归还
+      state.leakSuspects.remove(trace);
+      return;
+    }
+    state.leakedConnectionCount.increment();
+    StringWriter stackTrace = new StringWriter();
+    trace.printStackTrace(new PrintWriter(stackTrace));
+    log.warn("Apparent connection leak detected. " + stackTrace);
+  }
+
+  private void stopLeakDetection(PooledConnection conn) {
+    Throwable trace = conn.getLeakTrace();
+    if (trace != null) {
+      conn.setLeakTrace(null);
+      ScheduledFuture<?> leakTask = conn.getLeakTask();
+      if (leakTask != null) {
+        leakTask.cancel(false);
+      }
+      if (state.leakSuspects.remove(trace) && log.isDebugEnabled()) {
+        log.debug("Previously reported leaked connection " + conn.getRealHashCode() + " was returned to the pool.");
+      }
+    }
+  }
+
+  private boolean isPastMaximumLifetime(long createdTimestamp) {
+    return poolMaximumLifetime > 0 && System.currentTimeMillis() - createdTimestamp > poolMaximumLifetime;
+  }
+
+  private boolean isIdleExpired(long createdTimestamp, long lastUsedTimestamp, int idleCount) {
+    return isPastMaximumLifetime(createdTimestamp)
+        || (poolIdleTimeout > 0 && idleCount > poolMinimumIdleConnections
+            && System.currentTimeMillis() - lastUsedTimestamp > poolIdleTimeout);
+  }
+
+  private boolean needsPing(long timeElapsedSinceLastUse) {
+    return poolPingEnabled && poolPingConnectionsNotUsedFor >= 0 && timeElapsedSinceLastUse > poolPingConnectionsNotUsedFor;
+  }
+
+  private void requestIdleFill() {
+    PoolHousekeeper current = housekeeper;
+    if (current != null && poolMinimumIdleConnections > 0) {
+      current.requestFill();
+    }
+  }
+
+  /**
+   * Evicts expired idle connections, validates idle connections and tops the pool up to the minimum idle count.
+   * 后台维护：淘汰过期空闲连接 -> 校验空闲连接 -> 补足最小空闲连接
+   */
+  void housekeep() {
+    if (isConcurrentPoolEngine()) {
+      housekeepBagConnections();
+    } else {
+      housekeepIdleConnections();
+    }
+    fillIdleConnections();
+  }
+
+  private void housekeepIdleConnections() {
+    List<PooledConnection> expired = new ArrayList<>();
+    List<PooledConnection> toValidate = new ArrayList<>();
+    synchronized (state) {
+      int idleCount = state.idleConnections.size();
+      for (Iterator<PooledConnection> it = state.idleConnections.iterator(); it.hasNext();) {
+        PooledConnection conn = it.next();
+        if (isIdleExpired(conn.getCreatedTimestamp(), conn.getLastUsedTimestamp(), idleCount)) {
+          it.remove();
+          idleCount--;
+          expired.add(conn);
+        } else if (needsPing(conn.getTimeElapsedSinceLastUse())) {
+          // 移出空闲队列，在锁外执行检测语句
+          it.remove();
+          toValidate.add(conn);
+        }
+      }
+    }
+    for (PooledConnection conn : expired) {
+      conn.invalidate();
+      closeQuietly(conn.getRealConnection());
+      if (log.isDebugEnabled()) {
+        log.debug("Evicted idle connection " + conn.getRealHashCode() + ".");
+      }
+    }
+    for (PooledConnection conn : toValidate) {
+      boolean valid = pingConnection(conn.getRealConnection(), conn.getTimeElapsedSinceLastUse(), true);
+      synchronized (state) {
+        if (valid && conn.isValid() && state.idleConnections.size() < poolMaximumIdleConnections) {
+          state.idleConnections.add(conn);
+          state.notifyAll();
+          continue;
+        }
+        if (!valid) {
+          state.badConnectionCount.increment();
+        }
+      }
+      conn.invalidate();
+      closeQuietly(conn.getRealConnection());
+    }
+  }
+
+  private void housekeepBagConnections() {
+    ConnectionBag bag = state.connectionBag;
+    int idleCount = bag.getCount(ConnectionBag.STATE_NOT_IN_USE);
+    for (ConnectionBag.Entry entry : bag.values()) {
+      if (!bag.reserve(entry)) {
+        continue;
+      }
+      long timeElapsedSinceLastUse = System.currentTimeMillis() - entry.getLastUsedTimestamp();
+      if (isIdleExpired(entry.getCreatedTimestamp(), entry.getLastUsedTimestamp(), idleCount)) {
+        idleCount--;
+        discardBagEntry(entry);
+        if (log.isDebugEnabled()) {
+          log.debug("Evicted idle connection " + entry.getRealConnection().hashCode() + ".");
+        }
+      } else if (needsPing(timeElapsedSinceLastUse)
+          && !pingConnection(entry.getRealConnection(), timeElapsedSinceLastUse, true)) {
+        idleCount--;
+        state.badConnectionCount.increment();
+        discardBagEntry(entry);
+      } else {
+        bag.unreserve(entry);
+      }
+    }
+  }
+
+  /**
+   * Creates connections until the pool holds {@link #poolMinimumIdleConnections} idle connections, without
+   * exceeding {@link #poolMaximumActiveConnections} connections in total.
+   */
+  void fillIdleConnections() {
+    try {
+      if (isConcurrentPoolEngine()) {
+        ConnectionBag bag = state.connectionBag;
+        while (bag.getCount(ConnectionBag.STATE_NOT_IN_USE) < poolMinimumIdleConnections
+            && bag.reserve(poolMaximumActiveConnections)) {
+          ConnectionBag.Entry entry;
+          try {
+            entry = new ConnectionBag.Entry(dataSource.getConnection());
+          } catch (SQLException | RuntimeException e) {
+            bag.cancelReservation();
+            throw e;
+          }
+          bag.addIdle(entry);
+        }
+      } else {
+        while (true) {
+          synchronized (state) {
+            int idleCount = state.idleConnections.size();
+            if (idleCount >= poolMinimumIdleConnections
+                || idleCount + state.activeConnections.size() >= poolMaximumActiveConnections) {
+              return;
+            }
+          }
+          PooledConnection conn = new PooledConnection(dataSource.getConnection(), this);
+          synchronized (state) {
+            // 创建期间可能已有连接被借出或归还，重新按活动连接上限检查
+            int idleCount = state.idleConnections.size();
+            if (idleCount >= poolMinimumIdleConnections
+                || idleCount + state.activeConnections.size() >= poolMaximumActiveConnections) {
+              conn.invalidate();
+              closeQuietly(conn.getRealConnection());
+              return;
+            }
+            state.idleConnections.add(conn);
+            state.notifyAll();
+          }
+        }
+      }
+    } catch (SQLException | RuntimeException e) {
+      log.warn("Could not fill the pool up to " + poolMinimumIdleConnections + " idle connections. Cause: " + e);
+    }
+  }
+
+  private void discardBagEntry(ConnectionBag.Entry entry) {
+    if (state.connectionBag.remove(entry)) {
+      closeQuietly(entry.getRealConnection());
+    }
+  }
+
+  private boolean isAutoCommitQuietly(Connection realConn) {
+    try {
+      return realConn.getAutoCommit();
+    } catch (SQLException e) {
+      return false;
+    }
+  }
+
+  private void closeQuietly(Connection realConn) {
+    try {
+      if (!realConn.getAutoCommit()) {
+        realConn.rollback();
+      }
+      realConn.close();
+    } catch (Exception e) {
+      // ignore
+    }
+  }
+
   /**
    * Method to check to see if a connection is still usable
    * 判断连接是否有效
@@ -606,29 +1251,33 @@ public class PooledDataSource implements DataSource {
    * @return True if the connection is still usable
    */
   protected boolean pingConnection(PooledConnection conn) {
+    // 开启后台维护时，检测语句由后台线程执行
+    return pingConnection(conn.getRealConnection(), conn.getTimeElapsedSinceLastUse(), poolHousekeepingInterval <= 0);
+  }
+
+  private boolean pingConnection(Connection realConn, long timeElapsedSinceLastUse, boolean runPingQuery) {
     boolean result = true;
 
     try {
       // 连接是否关闭
-      result = !conn.getRealConnection().isClosed();
+      result = !realConn.isClosed();
     } catch (SQLException e) {
       if (log.isDebugEnabled()) {
-        log.debug("Connection " + conn.getRealHashCode() + " is BAD: " + e.getMessage());
+        log.debug("Connection " + realConn.hashCode() + " is BAD: " + e.getMessage());
       }
       result = false;
     }
 
     if (result) {
-      if (poolPingEnabled) {
+      if (runPingQuery) {
         // 使用语句检测连接是否可用开关开启
-        if (poolPingConnectionsNotUsedFor >= 0 && conn.getTimeElapsedSinceLastUse() > poolPingConnectionsNotUsedFor) {
+        if (needsPing(timeElapsedSinceLastUse)) {
           // 距上次连接使用经历时长超过设置的阈值
           try {
             if (log.isDebugEnabled()) {
-              log.debug("Testing connection " + conn.getRealHashCode() + " ...");
+              log.debug("Testing connection " + realConn.hashCode() + " ...");
             }
             // 验证连接是否可用
-            Connection realConn = conn.getRealConnection();
             try (Statement statement = realConn.createStatement()) {
               statement.executeQuery(poolPingQuery).close();
             }
@@ -638,19 +1287,19 @@ public class PooledDataSource implements DataSource {
             }
             result = true;
             if (log.isDebugEnabled()) {
-              log.debug("Connection " + conn.getRealHashCode() + " is GOOD!");
+              log.debug("Connection " + realConn.hashCode() + " is GOOD!");
             }
           } catch (Exception e) {
             log.warn("Execution of ping query '" + poolPingQuery + "' failed: " + e.getMessage());
             try {
               // 抛出异常，连接不可用，关闭连接
-              conn.getRealConnection().close();
+              realConn.close();
             } catch (Exception e2) {
               //ignore
             }
             result = false;
             if (log.isDebugEnabled()) {
-              log.debug("Connection " + conn.getRealHashCode() + " is BAD: " + e.getMessage());
+              log.debug("Connection " + realConn.hashCode() + " is BAD: " + e.getMessage());
             }
           }
         }
@@ -678,6 +1327,10 @@ public class PooledDataSource implements DataSource {
   }
 
   protected void finalize() throws Throwable {
+    PoolHousekeeper current = housekeeper;
+    if (current != null) {
+      current.stop();
+    }
     forceCloseAll();
     super.finalize();
   }
@@ -15,6 +15,8 @@
  */
 package org.apache.ibatis.datasource.pooled;
 
+import java.util.Properties;
+
 import org.apache.ibatis.datasource.unpooled.UnpooledDataSourceFactory;
 
 /**
@@ -28,4 +30,14 @@ public class PooledDataSourceFactory extends UnpooledDataSourceFactory {
     this.dataSource = new PooledDataSource();
   }
 
+  @Override
+  public void setProperties(Properties properties) {
+    super.setProperties(properties);
+    String minimumIdleConnections = properties.getProperty("poolMinimumIdleConnections");
+    if (minimumIdleConnections != null) {
+      // 属性按任意顺序设置，最大空闲连接数设置后再设置最小空闲连接数
+      ((PooledDataSource) dataSource).setPoolMinimumIdleConnections(Integer.parseInt(minimumIdleConnections));
+    }
+  }
+
 }
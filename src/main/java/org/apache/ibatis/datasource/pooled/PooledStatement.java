@@ -0,0 +1,182 @@
+/**
+ *    Copyright 2009-2019 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.datasource.pooled;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.CallableStatement;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+import org.apache.ibatis.reflection.ExceptionUtil;
+
+/**
+ * Prepared statement borrowed from the {@link StatementCache} of a physical connection. Closing it closes its open
+ * result set and returns it to the cache instead of closing it. The result sets it returns are those of the real
+ * statement, so their {@link java.sql.ResultSet#getStatement()} returns the real statement, not this proxy.
+ * 缓存的预编译语句代理，关闭时归还语句缓存
+ */
+class PooledStatement implements InvocationHandler {
+
+  private static final Class<?>[] PREPARED_IFACES = new Class<?>[] { PreparedStatement.class };
+  private static final Class<?>[] CALLABLE_IFACES = new Class<?>[] { CallableStatement.class };
+
+  private final PreparedStatement realStatement;
+
+  private final StatementCache.Key key;
+
+  private final StatementCache cache;
+
+  private final Connection proxyConnection;
+
+  private final PreparedStatement proxyStatement;
+
+  private boolean closed;
+
+  /**
+   * 是否执行过批处理
+   */
+  private boolean batched;
+
+  /**
+   * 调用方修改前的语句设置，未修改时为 null
+   */
+  private int[] defaults;
+
+  /**
+   * 最近返回给调用方的结果集
+   */
+  private ResultSet resultSet;
+
+  PooledStatement(PreparedStatement realStatement, StatementCache.Key key, StatementCache cache, Connection proxyConnection) {
+    this.realStatement = realStatement;
+    this.key = key;
+    this.cache = cache;
+    this.proxyConnection = proxyConnection;
+    this.proxyStatement = (PreparedStatement) Proxy.newProxyInstance(PreparedStatement.class.getClassLoader(),
+        realStatement instanceof CallableStatement ? CALLABLE_IFACES : PREPARED_IFACES, this);
+  }
+
+  PreparedStatement getProxyStatement() {
+    return proxyStatement;
+  }
+
+  @Override
+  public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+    String methodName = method.getName();
+    switch (methodName) {
+      case "close":
+        close();
+        return null;
+      case "isClosed":
+        return closed || realStatement.isClosed();
+      case "getConnection":
+        return proxyConnection;
+      case "hashCode":
+        return System.identityHashCode(proxy);
+      case "equals":
+        return proxy == args[0];
+      case "toString":
+        return "Pooled " + realStatement;
+      default:
+        break;
+    }
+    if (closed) {
+      throw new SQLException("Statement is closed.");
+    }
+    if ("addBatch".equals(methodName)) {
+      batched = true;
+    } else if (defaults == null && isSetting(methodName)) {
+      defaults = new int[] { realStatement.getQueryTimeout(), realStatement.getFetchSize(), realStatement.getMaxRows(),
+          realStatement.getMaxFieldSize(), realStatement.getFetchDirection() };
+    }
+    try {
+      Object result = method.invoke(realStatement, args);
+      if (result instanceof ResultSet) {
+        resultSet = (ResultSet) result;
+      }
+      return result;
+    } catch (Throwable t) {
+      throw ExceptionUtil.unwrapThrowable(t);
+    }
+  }
+
+  private static boolean isSetting(String methodName) {
+    return "setQueryTimeout".equals(methodName) || "setFetchSize".equals(methodName)
+        || "setMaxRows".equals(methodName) || "setLargeMaxRows".equals(methodName)
+        || "setMaxFieldSize".equals(methodName) || "setFetchDirection".equals(methodName);
+  }
+
+  /**
+   * 重置语句状态后归还缓存，失败则真正关闭
+   */
+  private void close() {
+    if (closed) {
+      return;
+    }
+    closed = true;
+    try {
+      if (realStatement.isClosed()) {
+        return;
+      }
+      closeResultSet();
+      realStatement.clearParameters();
+      if (batched) {
+        realStatement.clearBatch();
+      }
+      if (defaults != null) {
+        realStatement.setQueryTimeout(defaults[0]);
+        realStatement.setFetchSize(defaults[1]);
+        realStatement.setMaxRows(defaults[2]);
+        realStatement.setMaxFieldSize(defaults[3]);
+        realStatement.setFetchDirection(defaults[4]);
+      }
+      realStatement.clearWarnings();
+    } catch (SQLException e) {
+      StatementCache.closeQuietly(realStatement);
+      return;
+    }
+    cache.put(key, realStatement);
+  }
+
+  /**
+   * 关闭未关闭的结果集，如同关闭语句
+   */
+  private void closeResultSet() {
+    closeQuietly(resultSet);
+    resultSet = null;
+    try {
+      closeQuietly(realStatement.getResultSet());
+    } catch (SQLException e) {
+      // ignore
+    }
+  }
+
+  private static void closeQuietly(ResultSet resultSet) {
+    if (resultSet == null) {
+      return;
+    }
+    try {
+      resultSet.close();
+    } catch (SQLException e) {
+      // ignore
+    }
+  }
+
+}
@@ -0,0 +1,131 @@
+/**
+ *    Copyright 2009-2019 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.datasource.pooled;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Idle prepared statements of a physical connection, reused by the sessions that borrow it in turn.
+ * 物理连接上空闲的预编译语句，按 LRU 淘汰
+ * <p>
+ * A statement is taken out of the cache while in use, so a statement is never shared by two callers; a second
+ * statement for the same SQL is prepared if needed and the extra one is closed when returned.
+ */
+class StatementCache {
+
+  private final int maxSize;
+
+  private final LinkedHashMap<Key, PreparedStatement> statements = new LinkedHashMap<>(16, .75F, true);
+
+  StatementCache(int maxSize) {
+    this.maxSize = maxSize;
+  }
+
+  /**
+   * @return the idle statement prepared with the same arguments, or null
+   */
+  synchronized PreparedStatement take(Key key) {
+    return statements.remove(key);
+  }
+
+  /**
+   * Returns an idle statement, closing it or the least recently used one if the cache is full.
+   */
+  void put(Key key, PreparedStatement statement) {
+    PreparedStatement evicted;
+    synchronized (this) {
+      if (statements.containsKey(key)) {
+        evicted = statement;
+      } else {
+        statements.put(key, statement);
+        evicted = null;
+        if (statements.size() > maxSize) {
+          Iterator<Map.Entry<Key, PreparedStatement>> iterator = statements.entrySet().iterator();
+          evicted = iterator.next().getValue();
+          iterator.remove();
+        }
+      }
+    }
+    if (evicted != null) {
+      // 在锁外关闭语句
+      closeQuietly(evicted);
+    }
+  }
+
+  synchronized int size() {
+    return statements.size();
+  }
+
+  static void closeQuietly(PreparedStatement statement) {
+    try {
+      statement.close();
+    } catch (SQLException e) {
+      // ignore
+    }
+  }
+
+  /**
+   * The method and arguments a statement was prepared with.
+   */
+  static final class Key {
+
+    private final String method;
+    private final Object[] args;
+    private final int hashCode;
+
+    Key(String method, Object[] args) {
+      this.method = method;
+      // 数组参数（如生成键的列名）可能被调用方修改
+      this.args = args.clone();
+      for (int i = 0; i < this.args.length; i++) {
+        if (this.args[i] instanceof int[]) {
+          this.args[i] = ((int[]) this.args[i]).clone();
+        } else if (this.args[i] instanceof String[]) {
+          this.args[i] = ((String[]) this.args[i]).clone();
+        }
+      }
+      this.hashCode = 31 * method.hashCode() + Arrays.deepHashCode(this.args);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (!(o instanceof Key)) {
+        return false;
+      }
+      Key other = (Key) o;
+      return hashCode == other.hashCode && method.equals(other.method) && Arrays.deepEquals(args, other.args);
+    }
+
+    @Override
+    public int hashCode() {
+      return hashCode;
+    }
+
+    @Override
+    public String toString() {
+      return method + Arrays.deepToString(args);
+    }
+  }
+
+}
@@ -20,10 +20,12 @@ import static org.apache.ibatis.executor.ExecutionPlaceholder.EXECUTION_PLACEHOL
 import java.sql.Connection;
 import java.sql.SQLException;
 import java.sql.Statement;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.ConcurrentLinkedQueue;
 
 import org.apache.ibatis.cache.CacheKey;
+import org.apache.ibatis.cache.StatementCacheKey;
 import org.apache.ibatis.cache.impl.PerpetualCache;
 import org.apache.ibatis.cursor.Cursor;
 import org.apache.ibatis.executor.statement.StatementUtil;
@@ -62,10 +64,15 @@ public abstract class BaseExecutor implements Executor {
   protected int queryStack;
   private boolean closed;
 
+  /**
+   * 不保留在一级缓存中的查询结果，最外层查询结束后移除
+   */
+  private final List<CacheKey> localCacheExclusions = new ArrayList<>();
+
   protected BaseExecutor(Configuration configuration, Transaction transaction) {
     this.transaction = transaction;
     this.deferredLoads = new ConcurrentLinkedQueue<>();
-    this.localCache = new PerpetualCache("LocalCache");
+    this.localCache = newLocalCache(configuration);
     this.localOutputParameterCache = new PerpetualCache("LocalOutputParameterCache");
     this.closed = false;
     this.configuration = configuration;
@@ -167,6 +174,8 @@ public abstract class BaseExecutor implements Executor {
       if (configuration.getLocalCacheScope() == LocalCacheScope.STATEMENT) {
         // issue #482
         clearLocalCache();
+      } else {
+        evictLocalCache();
       }
     }
     return list;
@@ -196,12 +205,10 @@ public abstract class BaseExecutor implements Executor {
     if (closed) {
       throw new ExecutorException("Executor was closed.");
     }
-    CacheKey cacheKey = new CacheKey();
-    cacheKey.update(ms.getId());
-    cacheKey.update(rowBounds.getOffset());
-    cacheKey.update(rowBounds.getLimit());
-    cacheKey.update(boundSql.getSql());
     List<ParameterMapping> parameterMappings = boundSql.getParameterMappings();
+    // statement id 与 SQL 由共享前缀表示，不再逐次哈希与比较 SQL
+    CacheKey cacheKey = new StatementCacheKey(ms.getCacheKeyPrefix(boundSql.getSql()),
+        rowBounds.getOffset(), rowBounds.getLimit(), parameterMappings.size() + 1);
     TypeHandlerRegistry typeHandlerRegistry = ms.getConfiguration().getTypeHandlerRegistry();
     // mimic DefaultParameterHandler logic
     for (ParameterMapping parameterMapping : parameterMappings) {
@@ -264,6 +271,35 @@ public abstract class BaseExecutor implements Executor {
     if (!closed) {
       localCache.clear();
       localOutputParameterCache.clear();
+      localCacheExclusions.clear();
+    }
+  }
+
+  private static PerpetualCache newLocalCache(Configuration configuration) {
+    // 反序列化后的延迟加载使用无配置的执行器
+    Integer size = configuration == null ? null : configuration.getLocalCacheSize();
+    Long rows = configuration == null ? null : configuration.getLocalCacheRows();
+    if (size == null && rows == null) {
+      return new PerpetualCache("LocalCache");
+    }
+    return new BoundedLocalCache("LocalCache", size == null ? Integer.MAX_VALUE : size, rows == null ? Long.MAX_VALUE : rows);
+  }
+
+  /**
+   * 最外层查询结束后，移除不保留的结果并按上限淘汰，嵌套查询与延迟加载已不再依赖它们
+   */
+  private void evictLocalCache() {
+    if (!localCacheExclusions.isEmpty()) {
+      for (CacheKey key : localCacheExclusions) {
+        localCache.removeObject(key);
+        localOutputParameterCache.removeObject(key);
+      }
+      localCacheExclusions.clear();
+    }
+    if (localCache instanceof BoundedLocalCache) {
+      for (Object key : ((BoundedLocalCache) localCache).trim()) {
+        localOutputParameterCache.removeObject(key);
+      }
     }
   }
 
@@ -326,6 +362,9 @@ public abstract class BaseExecutor implements Executor {
       localCache.removeObject(key);
     }
     localCache.putObject(key, list);
+    if (!ms.isUseLocalCache()) {
+      localCacheExclusions.add(key);
+    }
     if (ms.getStatementType() == StatementType.CALLABLE) {
       localOutputParameterCache.putObject(key, parameter);
     }
@@ -22,6 +22,8 @@ import java.sql.Statement;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 import org.apache.ibatis.cursor.Cursor;
 import org.apache.ibatis.executor.keygen.Jdbc3KeyGenerator;
@@ -30,6 +32,8 @@ import org.apache.ibatis.executor.keygen.NoKeyGenerator;
 import org.apache.ibatis.executor.statement.StatementHandler;
 import org.apache.ibatis.mapping.BoundSql;
 import org.apache.ibatis.mapping.MappedStatement;
+import org.apache.ibatis.mapping.SqlCommandType;
+import org.apache.ibatis.session.BatchGrouping;
 import org.apache.ibatis.session.Configuration;
 import org.apache.ibatis.session.ResultHandler;
 import org.apache.ibatis.session.RowBounds;
@@ -44,6 +48,10 @@ public class BatchExecutor extends BaseExecutor {
 
   private final List<Statement> statementList = new ArrayList<>();
   private final List<BatchResult> batchResultList = new ArrayList<>();
+  /**
+   * 各批次读写的表，按表分组时使用
+   */
+  private final List<Set<String>> batchTablesList = new ArrayList<>();
   private String currentSql;
   private MappedStatement currentStatement;
 
@@ -58,12 +66,14 @@ public class BatchExecutor extends BaseExecutor {
     final BoundSql boundSql = handler.getBoundSql();
     final String sql = boundSql.getSql();
     final Statement stmt;
-    if (sql.equals(currentSql) && ms.equals(currentStatement)) {
-      int last = statementList.size() - 1;
-      stmt = statementList.get(last);
+    final boolean groupByTable = configuration.getBatchGrouping() == BatchGrouping.TABLE;
+    final Set<String> tables = groupByTable ? ms.getTables(sql) : Collections.emptySet();
+    int index = groupByTable ? findTableBatch(ms, sql, tables) : findStatementBatch(ms, sql);
+    if (index >= 0) {
+      stmt = statementList.get(index);
       applyTransactionTimeout(stmt);
       handler.parameterize(stmt);//fix Issues 322
-      BatchResult batchResult = batchResultList.get(last);
+      BatchResult batchResult = batchResultList.get(index);
       batchResult.addParameterObject(parameterObject);
     } else {
       Connection connection = getConnection(ms.getStatementLog());
@@ -73,11 +83,79 @@ public class BatchExecutor extends BaseExecutor {
       currentStatement = ms;
       statementList.add(stmt);
       batchResultList.add(new BatchResult(ms, sql, parameterObject));
+      batchTablesList.add(tables);
     }
     handler.batch(stmt);
     return BATCH_UPDATE_RETURN_VALUE;
   }
 
+  /**
+   * @return the index of the last batch if the update can be added to it, -1 otherwise
+   */
+  private int findStatementBatch(MappedStatement ms, String sql) {
+    int last = statementList.size() - 1;
+    if (sql.equals(currentSql) && ms.equals(currentStatement) && !isFull(batchResultList.get(last))) {
+      return last;
+    }
+    return -1;
+  }
+
+  /**
+   * Finds a pending batch of the same SQL the update can be moved to, without passing any later batch it must
+   * follow.
+   *
+   * @return the index of the batch, or -1 if the update must start a new batch
+   */
+  private int findTableBatch(MappedStatement ms, String sql, Set<String> tables) {
+    for (int i = statementList.size() - 1; i >= 0; i--) {
+      BatchResult batchResult = batchResultList.get(i);
+      if (sql.equals(batchResult.getSql()) && ms.equals(batchResult.getMappedStatement()) && !isFull(batchResult)) {
+        return i;
+      }
+      if (!canRunBefore(ms.getSqlCommandType(), tables, batchTablesList.get(i))) {
+        return -1;
+      }
+    }
+    return -1;
+  }
+
+  /**
+   * 更新能否提前到某个批次之前执行：不同表，且不越过可能依赖的更新
+   */
+  private boolean canRunBefore(SqlCommandType command, Set<String> tables, Set<String> batchTables) {
+    if (tables.isEmpty() || batchTables.isEmpty()) {
+      // 表未知时不重排序
+      return false;
+    }
+    Map<String, Set<String>> dependencies = configuration.getBatchTableDependencies();
+    for (String table : tables) {
+      for (String batchTable : batchTables) {
+        if (table.equals(batchTable)) {
+          return false;
+        }
+        if (command != SqlCommandType.DELETE && dependsOn(dependencies, table, batchTable)) {
+          // 子表的插入或更新可能引用该批次写入的父表行
+          return false;
+        }
+        if (command != SqlCommandType.INSERT && dependsOn(dependencies, batchTable, table)) {
+          // 父表的更新或删除可能影响该批次中引用它的子表行，新插入的父表行则不会被之前的更新引用
+          return false;
+        }
+      }
+    }
+    return true;
+  }
+
+  private static boolean dependsOn(Map<String, Set<String>> dependencies, String table, String dependency) {
+    Set<String> tableDependencies = dependencies.get(table);
+    return tableDependencies != null && tableDependencies.contains(dependency);
+  }
+
+  private boolean isFull(BatchResult batchResult) {
+    Integer maxBatchSize = configuration.getMaxBatchSize();
+    return maxBatchSize != null && batchResult.getParameterObjects().size() >= maxBatchSize;
+  }
+
   @Override
   public <E> List<E> doQuery(MappedStatement ms, Object parameterObject, RowBounds rowBounds, ResultHandler resultHandler, BoundSql boundSql)
       throws SQLException {
@@ -157,6 +235,7 @@ public class BatchExecutor extends BaseExecutor {
       currentSql = null;
       statementList.clear();
       batchResultList.clear();
+      batchTablesList.clear();
     }
   }
 
@@ -0,0 +1,124 @@
+/**
+ *    Copyright 2009-2019 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.executor;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.ibatis.cache.impl.PerpetualCache;
+
+/**
+ * Local cache bounded by a number of entries and a number of rows, evicting the least recently used entries.
+ * <p>
+ * Eviction only happens when {@link #trim()} is called, once the outermost query of the session is done, so that
+ * the entries a query and its nested queries depend on, execution placeholders included, stay available until then.
+ *
+ * 有界一级缓存，最外层查询结束后按 LRU 淘汰
+ *
+ * @since 3.5.1
+ */
+class BoundedLocalCache extends PerpetualCache {
+
+  private final LinkedHashMap<Object, Object> entries = new LinkedHashMap<>(16, .75F, true);
+
+  private final int maxSize;
+
+  private final long maxRows;
+
+  /**
+   * 当前缓存的总行数
+   */
+  private long rows;
+
+  /**
+   * @param maxSize the maximum number of entries
+   * @param maxRows the maximum number of rows of all the entries
+   */
+  BoundedLocalCache(String id, int maxSize, long maxRows) {
+    super(id);
+    this.maxSize = maxSize;
+    this.maxRows = maxRows;
+  }
+
+  @Override
+  public int getSize() {
+    return entries.size();
+  }
+
+  @Override
+  public void putObject(Object key, Object value) {
+    Object previous = entries.put(key, value);
+    rows += rowsOf(value) - rowsOf(previous);
+  }
+
+  @Override
+  public Object getObject(Object key) {
+    return entries.get(key);
+  }
+
+  @Override
+  public Object removeObject(Object key) {
+    Object previous = entries.remove(key);
+    rows -= rowsOf(previous);
+    return previous;
+  }
+
+  @Override
+  public void clear() {
+    entries.clear();
+    rows = 0;
+  }
+
+  /**
+   * @return the number of rows of all the entries
+   */
+  long getRows() {
+    return rows;
+  }
+
+  /**
+   * Evicts the least recently used entries until the cache is within its bounds.
+   *
+   * @return the evicted keys
+   */
+  List<Object> trim() {
+    if (entries.size() <= maxSize && rows <= maxRows) {
+      return Collections.emptyList();
+    }
+    List<Object> evicted = new ArrayList<>();
+    Iterator<Map.Entry<Object, Object>> iterator = entries.entrySet().iterator();
+    while (iterator.hasNext() && (entries.size() > maxSize || rows > maxRows)) {
+      Map.Entry<Object, Object> eldest = iterator.next();
+      rows -= rowsOf(eldest.getValue());
+      evicted.add(eldest.getKey());
+      iterator.remove();
+    }
+    return evicted;
+  }
+
+  private static int rowsOf(Object value) {
+    if (value instanceof Collection) {
+      return ((Collection<?>) value).size();
+    }
+    return value == null || value == ExecutionPlaceholder.EXECUTION_PLACEHOLDER ? 0 : 1;
+  }
+
+}
@@ -17,17 +17,25 @@ package org.apache.ibatis.executor;
 
 import java.sql.SQLException;
 import java.util.List;
+import java.util.Set;
 
 import org.apache.ibatis.cache.Cache;
 import org.apache.ibatis.cache.CacheKey;
+import org.apache.ibatis.cache.CacheStatisticsRegistry;
+import org.apache.ibatis.cache.TableDependencyRegistry;
 import org.apache.ibatis.cache.TransactionalCacheManager;
+import org.apache.ibatis.cache.decorators.RefreshAheadCache;
 import org.apache.ibatis.cursor.Cursor;
 import org.apache.ibatis.mapping.BoundSql;
+import org.apache.ibatis.mapping.Environment;
 import org.apache.ibatis.mapping.MappedStatement;
 import org.apache.ibatis.mapping.ParameterMapping;
 import org.apache.ibatis.mapping.ParameterMode;
+import org.apache.ibatis.mapping.SqlCommandType;
 import org.apache.ibatis.mapping.StatementType;
 import org.apache.ibatis.reflection.MetaObject;
+import org.apache.ibatis.session.CacheInvalidation;
+import org.apache.ibatis.session.Configuration;
 import org.apache.ibatis.session.ResultHandler;
 import org.apache.ibatis.session.RowBounds;
 import org.apache.ibatis.transaction.Transaction;
@@ -72,7 +80,7 @@ public class CachingExecutor implements Executor {
 
   @Override
   public int update(MappedStatement ms, Object parameterObject) throws SQLException {
-    flushCacheIfRequired(ms);
+    flushCacheIfRequired(ms, parameterObject, null);
     return delegate.update(ms, parameterObject);
   }
 
@@ -85,7 +93,7 @@ public class CachingExecutor implements Executor {
 
   @Override
   public <E> Cursor<E> queryCursor(MappedStatement ms, Object parameter, RowBounds rowBounds) throws SQLException {
-    flushCacheIfRequired(ms);
+    flushCacheIfRequired(ms, parameter, null);
     return delegate.queryCursor(ms, parameter, rowBounds);
   }
 
@@ -94,14 +102,23 @@ public class CachingExecutor implements Executor {
       throws SQLException {
     Cache cache = ms.getCache();
     if (cache != null) {
-      flushCacheIfRequired(ms);
-      if (ms.isUseCache() && resultHandler == null) {
+      flushCacheIfRequired(ms, parameterObject, boundSql);
+      if (ms.isUseCache() && resultHandler == null && !isInvalidatedByWrites(ms, boundSql)) {
         ensureNoOutParams(ms, boundSql);
         @SuppressWarnings("unchecked")
         List<E> list = (List<E>) tcm.getObject(cache, key);
+        CacheStatisticsRegistry statistics = ms.getConfiguration().isCacheStatisticsEnabled()
+            ? ms.getConfiguration().getCacheStatistics() : null;
         if (list == null) {
+          long start = statistics == null ? 0 : System.nanoTime();
           list = delegate.query(ms, parameterObject, rowBounds, resultHandler, key, boundSql);
+          if (statistics != null) {
+            statistics.recordMiss(cache.getId(), ms.getId(), System.nanoTime() - start, list.size());
+          }
           tcm.putObject(cache, key, list); // issue #578 and #116
+          registerLoader(cache, ms, parameterObject, rowBounds, key);
+        } else if (statistics != null) {
+          statistics.recordHit(cache.getId(), ms.getId());
         }
         return list;
       }
@@ -141,6 +158,37 @@ public class CachingExecutor implements Executor {
     }
   }
 
+  /**
+   * 为提前刷新的缓存登记重新加载该缓存项的方式，事务提交时才生效
+   */
+  private void registerLoader(Cache cache, MappedStatement ms, Object parameterObject, RowBounds rowBounds, CacheKey key) {
+    if (cache instanceof RefreshAheadCache && ms.getConfiguration().getEnvironment() != null) {
+      tcm.putLoader(cache, key, () -> reload(ms, parameterObject, rowBounds, key));
+    }
+  }
+
+  /**
+   * Runs a query again in its own transaction, bypassing the second level cache.
+   *
+   * @return the result, or null if the parameter object no longer produces the same cache key
+   */
+  private static List<Object> reload(MappedStatement ms, Object parameterObject, RowBounds rowBounds, CacheKey key) throws SQLException {
+    Configuration configuration = ms.getConfiguration();
+    Environment environment = configuration.getEnvironment();
+    Transaction tx = environment.getTransactionFactory().newTransaction(environment.getDataSource(), null, false);
+    Executor executor = new SimpleExecutor(configuration, tx);
+    try {
+      BoundSql boundSql = ms.getBoundSql(parameterObject);
+      if (!key.equals(executor.createCacheKey(ms, parameterObject, rowBounds, boundSql))) {
+        // 参数对象已被调用方修改
+        return null;
+      }
+      return executor.query(ms, parameterObject, rowBounds, Executor.NO_RESULT_HANDLER, key, boundSql);
+    } finally {
+      executor.close(false);
+    }
+  }
+
   @Override
   public CacheKey createCacheKey(MappedStatement ms, Object parameterObject, RowBounds rowBounds, BoundSql boundSql) {
     return delegate.createCacheKey(ms, parameterObject, rowBounds, boundSql);
@@ -161,9 +209,30 @@ public class CachingExecutor implements Executor {
     delegate.clearLocalCache();
   }
 
-  private void flushCacheIfRequired(MappedStatement ms) {
+  /**
+   * 本事务已写入查询依赖的表时，查询不能读写二级缓存
+   */
+  private boolean isInvalidatedByWrites(MappedStatement ms, BoundSql boundSql) {
+    return tcm.hasWrittenTables() && tcm.isInvalidated(ms.getTables(boundSql.getSql()));
+  }
+
+  private void flushCacheIfRequired(MappedStatement ms, Object parameterObject, BoundSql boundSql) {
+    if (!ms.isFlushCacheRequired()) {
+      return;
+    }
     Cache cache = ms.getCache();
-    if (cache != null && ms.isFlushCacheRequired()) {
+    Configuration configuration = ms.getConfiguration();
+    tcm.setInvalidationBus(configuration.getInvalidationBus());
+    if (configuration.getCacheInvalidation() == CacheInvalidation.TABLE && ms.getSqlCommandType() != SqlCommandType.SELECT) {
+      // 按表失效：提交时使所有命名空间中依赖所写表的缓存项失效
+      TableDependencyRegistry registry = configuration.getTableDependencyRegistry();
+      // 优先使用已生成的 SQL，避免再次执行动态 SQL
+      Set<String> tables = boundSql != null ? ms.getTables(boundSql.getSql()) : ms.getWrittenTables(parameterObject);
+      tcm.invalidateTables(registry, tables);
+      if (cache != null && !registry.isRegistered(cache)) {
+        tcm.clear(cache);
+      }
+    } else if (cache != null) {
       tcm.clear(cache);
     }
   }
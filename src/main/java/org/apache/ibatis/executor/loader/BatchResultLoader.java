@@ -0,0 +1,68 @@
+/**
+ *    Copyright 2009-2019 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.executor.loader;
+
+import java.sql.SQLException;
+import java.util.List;
+
+import org.apache.ibatis.cache.CacheKey;
+import org.apache.ibatis.executor.Executor;
+import org.apache.ibatis.mapping.BoundSql;
+import org.apache.ibatis.mapping.MappedStatement;
+import org.apache.ibatis.session.Configuration;
+import org.apache.ibatis.session.RowBounds;
+
+/**
+ * Loads the result of a nested select from a {@link NestedSelectBatch} shared with the other rows of the result
+ * set, instead of running the nested select for its own key.
+ *
+ * 从批量加载中获取嵌套查询结果
+ *
+ * @since 3.5.1
+ */
+public class BatchResultLoader extends ResultLoader {
+
+  private final NestedSelectBatch batch;
+
+  public BatchResultLoader(Configuration config, Executor executor, MappedStatement mappedStatement, Object parameterObject,
+      Class<?> targetType, CacheKey cacheKey, BoundSql boundSql, NestedSelectBatch batch) {
+    super(config, executor, mappedStatement, parameterObject, targetType, cacheKey, boundSql);
+    this.batch = batch;
+    batch.addKey(parameterObject);
+  }
+
+  @Override
+  public Object loadResult() throws SQLException {
+    List<Object> list = batch.getResults(parameterObject, this);
+    resultObject = resultExtractor.extractObjectFromList(list, targetType);
+    return resultObject;
+  }
+
+  List<Object> selectBatch(MappedStatement batchStatement, Object parameter) throws SQLException {
+    Executor localExecutor = executor;
+    if (Thread.currentThread().getId() != this.creatorThreadId || localExecutor.isClosed()) {
+      localExecutor = newExecutor();
+    }
+    try {
+      return localExecutor.query(batchStatement, parameter, RowBounds.DEFAULT, Executor.NO_RESULT_HANDLER);
+    } finally {
+      if (localExecutor != executor) {
+        localExecutor.close(false);
+      }
+    }
+  }
+
+}
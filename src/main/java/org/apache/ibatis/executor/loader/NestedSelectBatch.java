@@ -0,0 +1,134 @@
+/**
+ *    Copyright 2009-2019 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.executor.loader;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.ibatis.binding.MapperMethod.ParamMap;
+import org.apache.ibatis.mapping.MappedStatement;
+import org.apache.ibatis.session.Configuration;
+
+/**
+ * Keys of a nested select collected across the rows of a result set, loaded together by a batch statement.
+ * <p>
+ * The batch statement receives the distinct pending keys as a list named {@code list} (or {@code collection}), at
+ * most {@link Configuration#getNestedSelectBatchSize()} at a time, and its results are distributed to the keys by
+ * the value of their batch key property. The first key that needs its results loads those of all pending keys.
+ *
+ * 嵌套查询的批量加载：收集外键，一次查询多个外键的结果并按外键分发
+ *
+ * @since 3.5.1
+ */
+public class NestedSelectBatch {
+
+  private final Configuration configuration;
+  private final MappedStatement batchStatement;
+  private final String keyProperty;
+
+  /**
+   * 待加载的外键，归一化的外键 -> 原始外键
+   */
+  private final Map<Object, Object> pendingKeys = new LinkedHashMap<>();
+
+  /**
+   * 已加载的结果，按归一化的外键分组
+   */
+  private final Map<Object, List<Object>> results = new HashMap<>();
+
+  public NestedSelectBatch(Configuration configuration, MappedStatement batchStatement, String keyProperty) {
+    this.configuration = configuration;
+    this.batchStatement = batchStatement;
+    this.keyProperty = keyProperty;
+  }
+
+  /**
+   * Adds a key to load with the next batch, unless its results are already loaded.
+   *
+   * @param key the key
+   */
+  public synchronized void addKey(Object key) {
+    Object normalizedKey = normalize(key);
+    if (!results.containsKey(normalizedKey)) {
+      pendingKeys.putIfAbsent(normalizedKey, key);
+    }
+  }
+
+  /**
+   * Gets the results of a key, loading those of all pending keys first if needed.
+   *
+   * @param key the key
+   * @param loader the loader running the batch statement
+   * @return a new list of the results of the key
+   * @throws SQLException if the batch statement fails
+   */
+  synchronized List<Object> getResults(Object key, BatchResultLoader loader) throws SQLException {
+    Object normalizedKey = normalize(key);
+    if (!results.containsKey(normalizedKey)) {
+      pendingKeys.putIfAbsent(normalizedKey, key);
+      load(loader);
+    }
+    List<Object> list = results.get(normalizedKey);
+    return list == null ? new ArrayList<>() : new ArrayList<>(list);
+  }
+
+  private void load(BatchResultLoader loader) throws SQLException {
+    List<Map.Entry<Object, Object>> keys = new ArrayList<>(pendingKeys.entrySet());
+    int batchSize = Math.max(1, configuration.getNestedSelectBatchSize());
+    for (int from = 0; from < keys.size(); from += batchSize) {
+      List<Map.Entry<Object, Object>> chunk = keys.subList(from, Math.min(keys.size(), from + batchSize));
+      List<Object> chunkKeys = new ArrayList<>(chunk.size());
+      for (Map.Entry<Object, Object> key : chunk) {
+        chunkKeys.add(key.getValue());
+      }
+      ParamMap<Object> parameter = new ParamMap<>();
+      parameter.put("list", chunkKeys);
+      parameter.put("collection", chunkKeys);
+      List<Object> rows = loader.selectBatch(batchStatement, parameter);
+      for (Map.Entry<Object, Object> key : chunk) {
+        pendingKeys.remove(key.getKey());
+        results.put(key.getKey(), null);
+      }
+      for (Object row : rows) {
+        Object rowKey = normalize(configuration.newMetaObject(row).getValue(keyProperty));
+        List<Object> list = results.get(rowKey);
+        if (list == null) {
+          list = new ArrayList<>();
+          results.put(rowKey, list);
+        }
+        list.add(row);
+      }
+    }
+  }
+
+  /**
+   * 外键列与结果属性的整数类型可能不同
+   */
+  private static Object normalize(Object key) {
+    if (key instanceof Number && !(key instanceof BigDecimal) && !(key instanceof BigInteger)
+        && !(key instanceof Double) && !(key instanceof Float)) {
+      return ((Number) key).longValue();
+    }
+    return key;
+  }
+
+}
@@ -21,8 +21,10 @@ import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
@@ -36,6 +38,8 @@ import org.apache.ibatis.cursor.defaults.DefaultCursor;
 import org.apache.ibatis.executor.ErrorContext;
 import org.apache.ibatis.executor.Executor;
 import org.apache.ibatis.executor.ExecutorException;
+import org.apache.ibatis.executor.loader.BatchResultLoader;
+import org.apache.ibatis.executor.loader.NestedSelectBatch;
 import org.apache.ibatis.executor.loader.ResultLoader;
 import org.apache.ibatis.executor.loader.ResultLoaderMap;
 import org.apache.ibatis.executor.parameter.ParameterHandler;
@@ -51,8 +55,10 @@ import org.apache.ibatis.mapping.ResultMap;
 import org.apache.ibatis.mapping.ResultMapping;
 import org.apache.ibatis.reflection.MetaClass;
 import org.apache.ibatis.reflection.MetaObject;
+import org.apache.ibatis.reflection.Reflector;
 import org.apache.ibatis.reflection.ReflectorFactory;
 import org.apache.ibatis.reflection.factory.ObjectFactory;
+import org.apache.ibatis.reflection.wrapper.DefaultObjectWrapperFactory;
 import org.apache.ibatis.session.AutoMappingBehavior;
 import org.apache.ibatis.session.Configuration;
 import org.apache.ibatis.session.ResultContext;
@@ -98,11 +104,36 @@ public class DefaultResultSetHandler implements ResultSetHandler {
   // temporary marking flag that indicate using constructor mapping (use field to reduce memory usage)
   private boolean useConstructorMappings;
 
+  /**
+   * 当前结果集使用的行映射计划
+   */
+  private final Map<ResultMap, RowMappingPlan> rowMappingPlans = new IdentityHashMap<>();
+  private ResultSetWrapper rowMappingPlansResultSet;
+
+  /**
+   * 批量嵌套查询，按结果映射收集外键
+   */
+  private final Map<ResultMapping, NestedSelectBatch> nestedSelectBatches = new IdentityHashMap<>();
+  private final List<PendingBatchLoad> pendingBatchLoads = new ArrayList<>();
+  private boolean batchNestedSelects;
+
   private static class PendingRelation {
     public MetaObject metaObject;
     public ResultMapping propertyMapping;
   }
 
+  private static class PendingBatchLoad {
+    private final MetaObject metaObject;
+    private final String property;
+    private final ResultLoader resultLoader;
+
+    PendingBatchLoad(MetaObject metaObject, String property, ResultLoader resultLoader) {
+      this.metaObject = metaObject;
+      this.property = property;
+      this.resultLoader = resultLoader;
+    }
+  }
+
   private static class UnMappedColumnAutoMapping {
     private final String column;
     private final String property;
@@ -294,20 +325,39 @@ public class DefaultResultSetHandler implements ResultSetHandler {
   private void handleResultSet(ResultSetWrapper rsw, ResultMap resultMap, List<Object> multipleResults, ResultMapping parentMapping) throws SQLException {
     try {
       if (parentMapping != null) {
+        batchNestedSelects = true;
         handleRowValues(rsw, resultMap, null, RowBounds.DEFAULT, parentMapping);
       } else {
         if (resultHandler == null) {
+          // 结果在结果集处理完后才返回，可以延后批量执行嵌套查询
+          batchNestedSelects = true;
           DefaultResultHandler defaultResultHandler = new DefaultResultHandler(objectFactory);
-          handleRowValues(rsw, resultMap, defaultResultHandler, rowBounds, null);
+          handleRootRowValues(rsw, resultMap, defaultResultHandler);
           multipleResults.add(defaultResultHandler.getResultList());
         } else {
-          handleRowValues(rsw, resultMap, resultHandler, rowBounds, null);
+          handleRootRowValues(rsw, resultMap, resultHandler);
         }
       }
     } finally {
+      batchNestedSelects = false;
       // issue #228 (close resultsets)
       closeResultSet(rsw.getResultSet());
     }
+    loadPendingBatches();
+  }
+
+  private void loadPendingBatches() throws SQLException {
+    if (pendingBatchLoads.isEmpty()) {
+      return;
+    }
+    List<PendingBatchLoad> loads = new ArrayList<>(pendingBatchLoads);
+    pendingBatchLoads.clear();
+    for (PendingBatchLoad load : loads) {
+      final Object value = load.resultLoader.loadResult();
+      if (value != null || (configuration.isCallSettersOnNulls() && !load.metaObject.getSetterType(load.property).isPrimitive())) {
+        load.metaObject.setValue(load.property, value);
+      }
+    }
   }
 
   @SuppressWarnings("unchecked")
@@ -329,6 +379,15 @@ public class DefaultResultSetHandler implements ResultSetHandler {
     }
   }
 
+  private void handleRootRowValues(ResultSetWrapper rsw, ResultMap resultMap, ResultHandler<?> resultHandler) throws SQLException {
+    if (resultMap.hasNestedResultMaps() && !mappedStatement.isResultOrdered() && configuration.getNestedResultSpillThreshold() != null) {
+      ensureNoRowBounds();
+      handleRowValuesForSpilledNestedResultMap(rsw, resultMap, resultHandler, rowBounds);
+    } else {
+      handleRowValues(rsw, resultMap, resultHandler, rowBounds, null);
+    }
+  }
+
   private void ensureNoRowBounds() {
     if (configuration.isSafeRowBoundsEnabled() && rowBounds != null && (rowBounds.getLimit() < RowBounds.NO_ROW_LIMIT || rowBounds.getOffset() > RowBounds.NO_ROW_OFFSET)) {
       throw new ExecutorException("Mapped Statements with nested result mappings cannot be safely constrained by RowBounds. "
@@ -350,15 +409,15 @@ public class DefaultResultSetHandler implements ResultSetHandler {
     ResultSet resultSet = rsw.getResultSet();
     skipRows(resultSet, rowBounds);
     while (shouldProcessMoreRows(resultContext, rowBounds) && !resultSet.isClosed() && resultSet.next()) {
-      ResultMap discriminatedResultMap = resolveDiscriminatedResultMap(resultSet, resultMap, null);
+      ResultMap discriminatedResultMap = resolveDiscriminatedResultMap(rsw, resultMap, null);
       Object rowValue = getRowValue(rsw, discriminatedResultMap, null);
-      storeObject(resultHandler, resultContext, rowValue, parentMapping, resultSet);
+      storeObject(resultHandler, resultContext, rowValue, parentMapping, rsw);
     }
   }
 
-  private void storeObject(ResultHandler<?> resultHandler, DefaultResultContext<Object> resultContext, Object rowValue, ResultMapping parentMapping, ResultSet rs) throws SQLException {
+  private void storeObject(ResultHandler<?> resultHandler, DefaultResultContext<Object> resultContext, Object rowValue, ResultMapping parentMapping, ResultSetWrapper rsw) throws SQLException {
     if (parentMapping != null) {
-      linkToParents(rs, parentMapping, rowValue);
+      linkToParents(rsw, parentMapping, rowValue);
     } else {
       callResultHandler(resultHandler, resultContext, rowValue);
     }
@@ -396,18 +455,100 @@ public class DefaultResultSetHandler implements ResultSetHandler {
     final ResultLoaderMap lazyLoader = new ResultLoaderMap();
     Object rowValue = createResultObject(rsw, resultMap, lazyLoader, columnPrefix);
     if (rowValue != null && !hasTypeHandlerForResultObject(rsw, resultMap.getType())) {
-      final MetaObject metaObject = configuration.newMetaObject(rowValue);
       boolean foundValues = this.useConstructorMappings;
-      if (shouldApplyAutomaticMappings(resultMap, false)) {
-        foundValues = applyAutomaticMappings(rsw, resultMap, metaObject, columnPrefix) || foundValues;
+      final RowMappingPlan plan = getRowMappingPlan(rsw, resultMap, rowValue, columnPrefix);
+      if (plan != null) {
+        foundValues = plan.apply(rsw.getResultSet(), rowValue, configuration.isCallSettersOnNulls()) || foundValues;
+      } else {
+        final MetaObject metaObject = configuration.newMetaObject(rowValue);
+        if (shouldApplyAutomaticMappings(resultMap, false)) {
+          foundValues = applyAutomaticMappings(rsw, resultMap, metaObject, columnPrefix) || foundValues;
+        }
+        foundValues = applyPropertyMappings(rsw, resultMap, metaObject, lazyLoader, columnPrefix) || foundValues;
       }
-      foundValues = applyPropertyMappings(rsw, resultMap, metaObject, lazyLoader, columnPrefix) || foundValues;
       foundValues = lazyLoader.size() > 0 || foundValues;
       rowValue = foundValues || configuration.isReturnInstanceForEmptyRow() ? rowValue : null;
     }
     return rowValue;
   }
 
+  //
+  // ROW MAPPING PLANS
+  //
+
+  /**
+   * @return the plan to map the row to the result object with, or null to map it through its meta object
+   */
+  private RowMappingPlan getRowMappingPlan(ResultSetWrapper rsw, ResultMap resultMap, Object rowValue, String columnPrefix) throws SQLException {
+    if (!configuration.isRowMappingPlansEnabled() || columnPrefix != null) {
+      // 只为顶层结果映射预编译，构造方法中嵌套的结果映射按原方式处理
+      return null;
+    }
+    if (rsw != rowMappingPlansResultSet) {
+      rowMappingPlans.clear();
+      rowMappingPlansResultSet = rsw;
+    }
+    RowMappingPlan plan = rowMappingPlans.get(resultMap);
+    if (plan == null) {
+      final boolean autoMapping = shouldApplyAutomaticMappings(resultMap, false);
+      final String key = resultMap.getId() + ":" + autoMapping + ":" + configuration.isMapUnderscoreToCamelCase() + ":"
+          + rsw.getColumnLayout();
+      plan = configuration.getRowMappingPlan(key);
+      if (plan == null) {
+        plan = compileRowMappingPlan(rsw, resultMap, rowValue, autoMapping);
+        configuration.addRowMappingPlan(key, plan);
+      }
+      rowMappingPlans.put(resultMap, plan);
+    }
+    return plan.isApplicableTo(rowValue) ? plan : null;
+  }
+
+  private RowMappingPlan compileRowMappingPlan(ResultSetWrapper rsw, ResultMap resultMap, Object rowValue, boolean autoMapping) throws SQLException {
+    if (!(configuration.getObjectWrapperFactory() instanceof DefaultObjectWrapperFactory)
+        || rowValue instanceof Map || rowValue instanceof Collection || rowValue.getClass().isArray()) {
+      return RowMappingPlan.UNSUPPORTED;
+    }
+    final Reflector reflector = reflectorFactory.findForClass(rowValue.getClass());
+    final List<String> columns = new ArrayList<>();
+    final List<TypeHandler<?>> typeHandlers = new ArrayList<>();
+    final List<String> properties = new ArrayList<>();
+    if (autoMapping) {
+      final MetaObject metaObject = configuration.newMetaObject(rowValue);
+      for (UnMappedColumnAutoMapping mapping : createAutomaticMappings(rsw, resultMap, metaObject, null)) {
+        if (!isPlainProperty(reflector, mapping.property)) {
+          return RowMappingPlan.UNSUPPORTED;
+        }
+        columns.add(mapping.column);
+        typeHandlers.add(mapping.typeHandler);
+        properties.add(mapping.property);
+      }
+    }
+    final List<String> mappedColumnNames = rsw.getMappedColumnNames(resultMap, null);
+    for (ResultMapping propertyMapping : resultMap.getPropertyResultMappings()) {
+      if (propertyMapping.getNestedQueryId() != null || propertyMapping.getResultSet() != null
+          || propertyMapping.isCompositeResult()) {
+        return RowMappingPlan.UNSUPPORTED;
+      }
+      final String column = propertyMapping.getColumn();
+      final String property = propertyMapping.getProperty();
+      if (propertyMapping.getNestedResultMapId() != null || property == null || column == null
+          || !mappedColumnNames.contains(column.toUpperCase(Locale.ENGLISH))) {
+        continue;
+      }
+      if (!isPlainProperty(reflector, property)) {
+        return RowMappingPlan.UNSUPPORTED;
+      }
+      columns.add(column);
+      typeHandlers.add(propertyMapping.getTypeHandler());
+      properties.add(property);
+    }
+    return new RowMappingPlan(reflector, rsw, columns, typeHandlers, properties);
+  }
+
+  private boolean isPlainProperty(Reflector reflector, String property) {
+    return property.indexOf('.') < 0 && property.indexOf('[') < 0 && reflector.hasSetter(property);
+  }
+
   private boolean shouldApplyAutomaticMappings(ResultMap resultMap, boolean isNested) {
     if (resultMap.getAutoMapping() != null) {
       return resultMap.getAutoMapping();
@@ -438,7 +579,7 @@ public class DefaultResultSetHandler implements ResultSetHandler {
       if (propertyMapping.isCompositeResult()
           || (column != null && mappedColumnNames.contains(column.toUpperCase(Locale.ENGLISH)))
           || propertyMapping.getResultSet() != null) {
-        Object value = getPropertyMappingValue(rsw.getResultSet(), metaObject, propertyMapping, lazyLoader, columnPrefix);
+        Object value = getPropertyMappingValue(rsw, metaObject, propertyMapping, lazyLoader, columnPrefix);
         // issue #541 make property optional
         final String property = propertyMapping.getProperty();
         if (property == null) {
@@ -459,17 +600,17 @@ public class DefaultResultSetHandler implements ResultSetHandler {
     return foundValues;
   }
 
-  private Object getPropertyMappingValue(ResultSet rs, MetaObject metaResultObject, ResultMapping propertyMapping, ResultLoaderMap lazyLoader, String columnPrefix)
+  private Object getPropertyMappingValue(ResultSetWrapper rsw, MetaObject metaResultObject, ResultMapping propertyMapping, ResultLoaderMap lazyLoader, String columnPrefix)
       throws SQLException {
     if (propertyMapping.getNestedQueryId() != null) {
-      return getNestedQueryMappingValue(rs, metaResultObject, propertyMapping, lazyLoader, columnPrefix);
+      return getNestedQueryMappingValue(rsw, metaResultObject, propertyMapping, lazyLoader, columnPrefix);
     } else if (propertyMapping.getResultSet() != null) {
-      addPendingChildRelation(rs, metaResultObject, propertyMapping);   // TODO is that OK?
+      addPendingChildRelation(rsw, metaResultObject, propertyMapping);   // TODO is that OK?
       return DEFERRED;
     } else {
       final TypeHandler<?> typeHandler = propertyMapping.getTypeHandler();
       final String column = prependPrefix(propertyMapping.getColumn(), columnPrefix);
-      return typeHandler.getResult(rs, column);
+      return getResult(rsw, typeHandler, column);
     }
   }
 
@@ -518,7 +659,7 @@ public class DefaultResultSetHandler implements ResultSetHandler {
     boolean foundValues = false;
     if (!autoMapping.isEmpty()) {
       for (UnMappedColumnAutoMapping mapping : autoMapping) {
-        final Object value = mapping.typeHandler.getResult(rsw.getResultSet(), mapping.column);
+        final Object value = getResult(rsw, mapping.typeHandler, mapping.column);
         if (value != null) {
           foundValues = true;
         }
@@ -533,8 +674,8 @@ public class DefaultResultSetHandler implements ResultSetHandler {
 
   // MULTIPLE RESULT SETS
 
-  private void linkToParents(ResultSet rs, ResultMapping parentMapping, Object rowValue) throws SQLException {
-    CacheKey parentKey = createKeyForMultipleResults(rs, parentMapping, parentMapping.getColumn(), parentMapping.getForeignColumn());
+  private void linkToParents(ResultSetWrapper rsw, ResultMapping parentMapping, Object rowValue) throws SQLException {
+    CacheKey parentKey = createKeyForMultipleResults(rsw, parentMapping, parentMapping.getColumn(), parentMapping.getForeignColumn());
     List<PendingRelation> parents = pendingRelations.get(parentKey);
     if (parents != null) {
       for (PendingRelation parent : parents) {
@@ -545,8 +686,8 @@ public class DefaultResultSetHandler implements ResultSetHandler {
     }
   }
 
-  private void addPendingChildRelation(ResultSet rs, MetaObject metaResultObject, ResultMapping parentMapping) throws SQLException {
-    CacheKey cacheKey = createKeyForMultipleResults(rs, parentMapping, parentMapping.getColumn(), parentMapping.getColumn());
+  private void addPendingChildRelation(ResultSetWrapper rsw, MetaObject metaResultObject, ResultMapping parentMapping) throws SQLException {
+    CacheKey cacheKey = createKeyForMultipleResults(rsw, parentMapping, parentMapping.getColumn(), parentMapping.getColumn());
     PendingRelation deferLoad = new PendingRelation();
     deferLoad.metaObject = metaResultObject;
     deferLoad.propertyMapping = parentMapping;
@@ -563,14 +704,14 @@ public class DefaultResultSetHandler implements ResultSetHandler {
     }
   }
 
-  private CacheKey createKeyForMultipleResults(ResultSet rs, ResultMapping resultMapping, String names, String columns) throws SQLException {
+  private CacheKey createKeyForMultipleResults(ResultSetWrapper rsw, ResultMapping resultMapping, String names, String columns) throws SQLException {
     CacheKey cacheKey = new CacheKey();
     cacheKey.update(resultMapping);
     if (columns != null && names != null) {
       String[] columnsArray = columns.split(",");
       String[] namesArray = names.split(",");
       for (int i = 0; i < columnsArray.length; i++) {
-        Object value = rs.getString(columnsArray[i]);
+        Object value = getString(rsw, columnsArray[i]);
         if (value != null) {
           cacheKey.update(namesArray[i]);
           cacheKey.update(value);
@@ -629,13 +770,13 @@ public class DefaultResultSetHandler implements ResultSetHandler {
       final Object value;
       try {
         if (constructorMapping.getNestedQueryId() != null) {
-          value = getNestedQueryConstructorValue(rsw.getResultSet(), constructorMapping, columnPrefix);
+          value = getNestedQueryConstructorValue(rsw, constructorMapping, columnPrefix);
         } else if (constructorMapping.getNestedResultMapId() != null) {
           final ResultMap resultMap = configuration.getResultMap(constructorMapping.getNestedResultMapId());
           value = getRowValue(rsw, resultMap, getColumnPrefix(columnPrefix, constructorMapping));
         } else {
           final TypeHandler<?> typeHandler = constructorMapping.getTypeHandler();
-          value = typeHandler.getResult(rsw.getResultSet(), prependPrefix(column, columnPrefix));
+          value = getResult(rsw, typeHandler, prependPrefix(column, columnPrefix));
         }
       } catch (ResultMapException | SQLException e) {
         throw new ExecutorException("Could not process result for mapping: " + constructorMapping, e);
@@ -668,7 +809,7 @@ public class DefaultResultSetHandler implements ResultSetHandler {
       Class<?> parameterType = constructor.getParameterTypes()[i];
       String columnName = rsw.getColumnNames().get(i);
       TypeHandler<?> typeHandler = rsw.getTypeHandler(parameterType, columnName);
-      Object value = typeHandler.getResult(rsw.getResultSet(), columnName);
+      Object value = getResult(rsw, typeHandler, columnName);
       constructorArgTypes.add(parameterType);
       constructorArgs.add(value);
       foundValues = value != null || foundValues;
@@ -713,18 +854,18 @@ public class DefaultResultSetHandler implements ResultSetHandler {
       columnName = rsw.getColumnNames().get(0);
     }
     final TypeHandler<?> typeHandler = rsw.getTypeHandler(resultType, columnName);
-    return typeHandler.getResult(rsw.getResultSet(), columnName);
+    return getResult(rsw, typeHandler, columnName);
   }
 
   //
   // NESTED QUERY
   //
 
-  private Object getNestedQueryConstructorValue(ResultSet rs, ResultMapping constructorMapping, String columnPrefix) throws SQLException {
+  private Object getNestedQueryConstructorValue(ResultSetWrapper rsw, ResultMapping constructorMapping, String columnPrefix) throws SQLException {
     final String nestedQueryId = constructorMapping.getNestedQueryId();
     final MappedStatement nestedQuery = configuration.getMappedStatement(nestedQueryId);
     final Class<?> nestedQueryParameterType = nestedQuery.getParameterMap().getType();
-    final Object nestedQueryParameterObject = prepareParameterForNestedQuery(rs, constructorMapping, nestedQueryParameterType, columnPrefix);
+    final Object nestedQueryParameterObject = prepareParameterForNestedQuery(rsw, constructorMapping, nestedQueryParameterType, columnPrefix);
     Object value = null;
     if (nestedQueryParameterObject != null) {
       final BoundSql nestedBoundSql = nestedQuery.getBoundSql(nestedQueryParameterObject);
@@ -736,13 +877,13 @@ public class DefaultResultSetHandler implements ResultSetHandler {
     return value;
   }
 
-  private Object getNestedQueryMappingValue(ResultSet rs, MetaObject metaResultObject, ResultMapping propertyMapping, ResultLoaderMap lazyLoader, String columnPrefix)
+  private Object getNestedQueryMappingValue(ResultSetWrapper rsw, MetaObject metaResultObject, ResultMapping propertyMapping, ResultLoaderMap lazyLoader, String columnPrefix)
       throws SQLException {
     final String nestedQueryId = propertyMapping.getNestedQueryId();
     final String property = propertyMapping.getProperty();
     final MappedStatement nestedQuery = configuration.getMappedStatement(nestedQueryId);
     final Class<?> nestedQueryParameterType = nestedQuery.getParameterMap().getType();
-    final Object nestedQueryParameterObject = prepareParameterForNestedQuery(rs, propertyMapping, nestedQueryParameterType, columnPrefix);
+    final Object nestedQueryParameterObject = prepareParameterForNestedQuery(rsw, propertyMapping, nestedQueryParameterType, columnPrefix);
     Object value = null;
     if (nestedQueryParameterObject != null) {
       final BoundSql nestedBoundSql = nestedQuery.getBoundSql(nestedQueryParameterObject);
@@ -751,6 +892,16 @@ public class DefaultResultSetHandler implements ResultSetHandler {
       if (executor.isCached(nestedQuery, key)) {
         executor.deferLoad(nestedQuery, metaResultObject, property, key, targetType);
         value = DEFERRED;
+      } else if (propertyMapping.getBatchQueryId() != null && !propertyMapping.isCompositeResult()
+          && (propertyMapping.isLazy() || batchNestedSelects)) {
+        final ResultLoader resultLoader = new BatchResultLoader(configuration, executor, nestedQuery, nestedQueryParameterObject, targetType, key, nestedBoundSql,
+            getNestedSelectBatch(propertyMapping));
+        if (propertyMapping.isLazy()) {
+          lazyLoader.addLoader(property, metaResultObject, resultLoader);
+        } else {
+          pendingBatchLoads.add(new PendingBatchLoad(metaResultObject, property, resultLoader));
+        }
+        value = DEFERRED;
       } else {
         final ResultLoader resultLoader = new ResultLoader(configuration, executor, nestedQuery, nestedQueryParameterObject, targetType, key, nestedBoundSql);
         if (propertyMapping.isLazy()) {
@@ -764,32 +915,42 @@ public class DefaultResultSetHandler implements ResultSetHandler {
     return value;
   }
 
-  private Object prepareParameterForNestedQuery(ResultSet rs, ResultMapping resultMapping, Class<?> parameterType, String columnPrefix) throws SQLException {
+  private NestedSelectBatch getNestedSelectBatch(ResultMapping propertyMapping) {
+    NestedSelectBatch batch = nestedSelectBatches.get(propertyMapping);
+    if (batch == null) {
+      batch = new NestedSelectBatch(configuration, configuration.getMappedStatement(propertyMapping.getBatchQueryId()),
+          propertyMapping.getBatchKeyProperty());
+      nestedSelectBatches.put(propertyMapping, batch);
+    }
+    return batch;
+  }
+
+  private Object prepareParameterForNestedQuery(ResultSetWrapper rsw, ResultMapping resultMapping, Class<?> parameterType, String columnPrefix) throws SQLException {
     if (resultMapping.isCompositeResult()) {
-      return prepareCompositeKeyParameter(rs, resultMapping, parameterType, columnPrefix);
+      return prepareCompositeKeyParameter(rsw, resultMapping, parameterType, columnPrefix);
     } else {
-      return prepareSimpleKeyParameter(rs, resultMapping, parameterType, columnPrefix);
+      return prepareSimpleKeyParameter(rsw, resultMapping, parameterType, columnPrefix);
     }
   }
 
-  private Object prepareSimpleKeyParameter(ResultSet rs, ResultMapping resultMapping, Class<?> parameterType, String columnPrefix) throws SQLException {
+  private Object prepareSimpleKeyParameter(ResultSetWrapper rsw, ResultMapping resultMapping, Class<?> parameterType, String columnPrefix) throws SQLException {
     final TypeHandler<?> typeHandler;
     if (typeHandlerRegistry.hasTypeHandler(parameterType)) {
       typeHandler = typeHandlerRegistry.getTypeHandler(parameterType);
     } else {
       typeHandler = typeHandlerRegistry.getUnknownTypeHandler();
     }
-    return typeHandler.getResult(rs, prependPrefix(resultMapping.getColumn(), columnPrefix));
+    return getResult(rsw, typeHandler, prependPrefix(resultMapping.getColumn(), columnPrefix));
   }
 
-  private Object prepareCompositeKeyParameter(ResultSet rs, ResultMapping resultMapping, Class<?> parameterType, String columnPrefix) throws SQLException {
+  private Object prepareCompositeKeyParameter(ResultSetWrapper rsw, ResultMapping resultMapping, Class<?> parameterType, String columnPrefix) throws SQLException {
     final Object parameterObject = instantiateParameterObject(parameterType);
     final MetaObject metaObject = configuration.newMetaObject(parameterObject);
     boolean foundValues = false;
     for (ResultMapping innerResultMapping : resultMapping.getComposites()) {
       final Class<?> propType = metaObject.getSetterType(innerResultMapping.getProperty());
       final TypeHandler<?> typeHandler = typeHandlerRegistry.getTypeHandler(propType);
-      final Object propValue = typeHandler.getResult(rs, prependPrefix(innerResultMapping.getColumn(), columnPrefix));
+      final Object propValue = getResult(rsw, typeHandler, prependPrefix(innerResultMapping.getColumn(), columnPrefix));
       // issue #353 & #560 do not execute nested query if key is null
       if (propValue != null) {
         metaObject.setValue(innerResultMapping.getProperty(), propValue);
@@ -814,10 +975,14 @@ public class DefaultResultSetHandler implements ResultSetHandler {
   //
 
   public ResultMap resolveDiscriminatedResultMap(ResultSet rs, ResultMap resultMap, String columnPrefix) throws SQLException {
+    return resolveDiscriminatedResultMap(new ResultSetWrapper(rs, configuration), resultMap, columnPrefix);
+  }
+
+  private ResultMap resolveDiscriminatedResultMap(ResultSetWrapper rsw, ResultMap resultMap, String columnPrefix) throws SQLException {
     Set<String> pastDiscriminators = new HashSet<>();
     Discriminator discriminator = resultMap.getDiscriminator();
     while (discriminator != null) {
-      final Object value = getDiscriminatorValue(rs, discriminator, columnPrefix);
+      final Object value = getDiscriminatorValue(rsw, discriminator, columnPrefix);
       final String discriminatedMapId = discriminator.getMapIdFor(String.valueOf(value));
       if (configuration.hasResultMap(discriminatedMapId)) {
         resultMap = configuration.getResultMap(discriminatedMapId);
@@ -833,10 +998,28 @@ public class DefaultResultSetHandler implements ResultSetHandler {
     return resultMap;
   }
 
-  private Object getDiscriminatorValue(ResultSet rs, Discriminator discriminator, String columnPrefix) throws SQLException {
+  private Object getDiscriminatorValue(ResultSetWrapper rsw, Discriminator discriminator, String columnPrefix) throws SQLException {
     final ResultMapping resultMapping = discriminator.getResultMapping();
     final TypeHandler<?> typeHandler = resultMapping.getTypeHandler();
-    return typeHandler.getResult(rs, prependPrefix(resultMapping.getColumn(), columnPrefix));
+    return getResult(rsw, typeHandler, prependPrefix(resultMapping.getColumn(), columnPrefix));
+  }
+
+  /**
+   * 按列索引读取，类型处理器或结果集不支持时按列标签读取
+   */
+  private Object getResult(ResultSetWrapper rsw, TypeHandler<?> typeHandler, String columnName) throws SQLException {
+    final int index = rsw.getColumnIndex(typeHandler, columnName);
+    return index > 0 ? typeHandler.getResult(rsw.getResultSet(), index) : typeHandler.getResult(rsw.getResultSet(), columnName);
+  }
+
+  private String getString(ResultSetWrapper rsw, String columnName) throws SQLException {
+    final int index = rsw.getColumnIndex(columnName);
+    return index > 0 ? rsw.getResultSet().getString(index) : rsw.getResultSet().getString(columnName);
+  }
+
+  private Object getObject(ResultSetWrapper rsw, String columnName) throws SQLException {
+    final int index = rsw.getColumnIndex(columnName);
+    return index > 0 ? rsw.getResultSet().getObject(index) : rsw.getResultSet().getObject(columnName);
   }
 
   private String prependPrefix(String columnName, String prefix) {
@@ -856,31 +1039,80 @@ public class DefaultResultSetHandler implements ResultSetHandler {
     skipRows(resultSet, rowBounds);
     Object rowValue = previousRowValue;
     while (shouldProcessMoreRows(resultContext, rowBounds) && !resultSet.isClosed() && resultSet.next()) {
-      final ResultMap discriminatedResultMap = resolveDiscriminatedResultMap(resultSet, resultMap, null);
+      final ResultMap discriminatedResultMap = resolveDiscriminatedResultMap(rsw, resultMap, null);
       final CacheKey rowKey = createRowKey(discriminatedResultMap, rsw, null);
       Object partialObject = nestedResultObjects.get(rowKey);
       // issue #577 && #542
       if (mappedStatement.isResultOrdered()) {
         if (partialObject == null && rowValue != null) {
           nestedResultObjects.clear();
-          storeObject(resultHandler, resultContext, rowValue, parentMapping, resultSet);
+          storeObject(resultHandler, resultContext, rowValue, parentMapping, rsw);
         }
         rowValue = getRowValue(rsw, discriminatedResultMap, rowKey, null, partialObject);
       } else {
         rowValue = getRowValue(rsw, discriminatedResultMap, rowKey, null, partialObject);
         if (partialObject == null) {
-          storeObject(resultHandler, resultContext, rowValue, parentMapping, resultSet);
+          storeObject(resultHandler, resultContext, rowValue, parentMapping, rsw);
         }
       }
     }
     if (rowValue != null && mappedStatement.isResultOrdered() && shouldProcessMoreRows(resultContext, rowBounds)) {
-      storeObject(resultHandler, resultContext, rowValue, parentMapping, resultSet);
+      storeObject(resultHandler, resultContext, rowValue, parentMapping, rsw);
       previousRowValue = null;
     } else if (rowValue != null) {
       previousRowValue = rowValue;
     }
   }
 
+  /**
+   * 无序的嵌套结果映射：先缓存结果集的行，未超出阈值时按原顺序映射后交给结果处理器；
+   * 超出阈值时按行键哈希值排序（超出阈值的行写入临时文件），再按哈希值分组映射，
+   * 每组映射完成后交给结果处理器并清空 nestedResultObjects
+   */
+  private void handleRowValuesForSpilledNestedResultMap(ResultSetWrapper rsw, ResultMap resultMap, ResultHandler<?> resultHandler, RowBounds rowBounds)
+      throws SQLException {
+    final DefaultResultContext<Object> resultContext = new DefaultResultContext<>();
+    final ResultSet resultSet = rsw.getResultSet();
+    final int columnCount = rsw.getColumnNames().size();
+    skipRows(resultSet, rowBounds);
+    try (RowSpill rows = new RowSpill(configuration.getNestedResultSpillThreshold())) {
+      while (!resultSet.isClosed() && resultSet.next()) {
+        final ResultMap discriminatedResultMap = resolveDiscriminatedResultMap(rsw, resultMap, null);
+        final CacheKey rowKey = createRowKey(discriminatedResultMap, rsw, null);
+        rows.add(rowKey.hashCode(), RowSpill.readRow(resultSet, columnCount));
+      }
+      final ResultSetWrapper spilledRsw = new ResultSetWrapper(RowSpillResultSet.newInstance(rows, rsw), rsw);
+      final ResultSet spilledResultSet = spilledRsw.getResultSet();
+      final List<Object> group = new ArrayList<>();
+      int groupHash = 0;
+      while (shouldProcessMoreRows(resultContext, rowBounds) && spilledResultSet.next()) {
+        if (!group.isEmpty() && rows.isSpilled() && rows.getHash() != groupHash) {
+          storeGroup(resultHandler, resultContext, group, rowBounds);
+        }
+        groupHash = rows.getHash();
+        final ResultMap discriminatedResultMap = resolveDiscriminatedResultMap(spilledRsw, resultMap, null);
+        final CacheKey rowKey = createRowKey(discriminatedResultMap, spilledRsw, null);
+        final Object partialObject = nestedResultObjects.get(rowKey);
+        final Object rowValue = getRowValue(spilledRsw, discriminatedResultMap, rowKey, null, partialObject);
+        if (partialObject == null) {
+          group.add(rowValue);
+        }
+      }
+      storeGroup(resultHandler, resultContext, group, rowBounds);
+    }
+  }
+
+  private void storeGroup(ResultHandler<?> resultHandler, DefaultResultContext<Object> resultContext, List<Object> group, RowBounds rowBounds) {
+    for (Object rowValue : group) {
+      if (!shouldProcessMoreRows(resultContext, rowBounds)) {
+        break;
+      }
+      callResultHandler(resultHandler, resultContext, rowValue);
+    }
+    group.clear();
+    nestedResultObjects.clear();
+  }
+
   //
   // GET VALUE FROM ROW FOR NESTED RESULT MAP
   //
@@ -931,7 +1163,7 @@ public class DefaultResultSetHandler implements ResultSetHandler {
       if (nestedResultMapId != null && resultMapping.getResultSet() == null) {
         try {
           final String columnPrefix = getColumnPrefix(parentPrefix, resultMapping);
-          final ResultMap nestedResultMap = getNestedResultMap(rsw.getResultSet(), nestedResultMapId, columnPrefix);
+          final ResultMap nestedResultMap = getNestedResultMap(rsw, nestedResultMapId, columnPrefix);
           if (resultMapping.getColumnPrefix() == null) {
             // try to fill circular reference only when columnPrefix
             // is not specified for the nested result map (issue #215)
@@ -979,7 +1211,7 @@ public class DefaultResultSetHandler implements ResultSetHandler {
     if (notNullColumns != null && !notNullColumns.isEmpty()) {
       ResultSet rs = rsw.getResultSet();
       for (String column : notNullColumns) {
-        rs.getObject(prependPrefix(column, columnPrefix));
+        getObject(rsw, prependPrefix(column, columnPrefix));
         if (!rs.wasNull()) {
           return true;
         }
@@ -996,9 +1228,9 @@ public class DefaultResultSetHandler implements ResultSetHandler {
     return true;
   }
 
-  private ResultMap getNestedResultMap(ResultSet rs, String nestedResultMapId, String columnPrefix) throws SQLException {
+  private ResultMap getNestedResultMap(ResultSetWrapper rsw, String nestedResultMapId, String columnPrefix) throws SQLException {
     ResultMap nestedResultMap = configuration.getResultMap(nestedResultMapId);
-    return resolveDiscriminatedResultMap(rs, nestedResultMap, columnPrefix);
+    return resolveDiscriminatedResultMap(rsw, nestedResultMap, columnPrefix);
   }
 
   //
@@ -1059,7 +1291,7 @@ public class DefaultResultSetHandler implements ResultSetHandler {
         List<String> mappedColumnNames = rsw.getMappedColumnNames(resultMap, columnPrefix);
         // Issue #114
         if (column != null && mappedColumnNames.contains(column.toUpperCase(Locale.ENGLISH))) {
-          final Object value = th.getResult(rsw.getResultSet(), column);
+          final Object value = getResult(rsw, th, column);
           if (value != null || configuration.isReturnInstanceForEmptyRow()) {
             cacheKey.update(column);
             cacheKey.update(value);
@@ -1083,7 +1315,7 @@ public class DefaultResultSetHandler implements ResultSetHandler {
         }
       }
       if (metaType.findProperty(property, configuration.isMapUnderscoreToCamelCase()) != null) {
-        String value = rsw.getResultSet().getString(column);
+        String value = getString(rsw, column);
         if (value != null) {
           cacheKey.update(column);
           cacheKey.update(value);
@@ -1095,7 +1327,7 @@ public class DefaultResultSetHandler implements ResultSetHandler {
   private void createRowKeyForMap(ResultSetWrapper rsw, CacheKey cacheKey) throws SQLException {
     List<String> columnNames = rsw.getColumnNames();
     for (String columnName : columnNames) {
-      final String value = rsw.getResultSet().getString(columnName);
+      final String value = getString(rsw, columnName);
       if (value != null) {
         cacheKey.update(columnName);
         cacheKey.update(value);
@@ -40,6 +40,8 @@ import org.apache.ibatis.type.UnknownTypeHandler;
  */
 public class ResultSetWrapper {
 
+  private static final String TYPE_PACKAGE = TypeHandler.class.getPackage().getName() + ".";
+
   private final ResultSet resultSet;
   private final TypeHandlerRegistry typeHandlerRegistry;
   private final List<String> columnNames = new ArrayList<>();
@@ -48,11 +50,21 @@ public class ResultSetWrapper {
   private final Map<String, Map<Class<?>, TypeHandler<?>>> typeHandlerMap = new HashMap<>();
   private final Map<String, List<String>> mappedColumnNamesMap = new HashMap<>();
   private final Map<String, List<String>> unMappedColumnNamesMap = new HashMap<>();
+  private String columnLayout;
+  /**
+   * 是否按列索引读取，列名不是列标签时仍按名称读取
+   */
+  private final boolean columnIndexReads;
+  /**
+   * 列名到列索引（从 1 开始，0 表示不存在）的映射，按调用方传入的列名缓存
+   */
+  private final Map<String, Integer> columnIndexes = new HashMap<>();
 
   public ResultSetWrapper(ResultSet rs, Configuration configuration) throws SQLException {
     super();
     this.typeHandlerRegistry = configuration.getTypeHandlerRegistry();
     this.resultSet = rs;
+    this.columnIndexReads = configuration.isUseColumnIndex() && configuration.isUseColumnLabel();
     final ResultSetMetaData metaData = rs.getMetaData();
     final int columnCount = metaData.getColumnCount();
     for (int i = 1; i <= columnCount; i++) {
@@ -62,6 +74,18 @@ public class ResultSetWrapper {
     }
   }
 
+  /**
+   * 使用另一个结果集的列信息包装结果集
+   */
+  ResultSetWrapper(ResultSet rs, ResultSetWrapper columns) {
+    this.typeHandlerRegistry = columns.typeHandlerRegistry;
+    this.resultSet = rs;
+    this.columnIndexReads = columns.columnIndexReads;
+    this.columnNames.addAll(columns.columnNames);
+    this.classNames.addAll(columns.classNames);
+    this.jdbcTypes.addAll(columns.jdbcTypes);
+  }
+
   public ResultSet getResultSet() {
     return resultSet;
   }
@@ -78,6 +102,69 @@ public class ResultSetWrapper {
     return jdbcTypes;
   }
 
+  /**
+   * Returns a description of the columns of the result set, which identifies the result sets the same row mapping
+   * plan applies to.
+   *
+   * @return the names, JDBC types and classes of the columns
+   * @since 3.5.1
+   */
+  public String getColumnLayout() {
+    if (columnLayout == null) {
+      StringBuilder builder = new StringBuilder();
+      for (int i = 0; i < columnNames.size(); i++) {
+        builder.append(columnNames.get(i)).append(' ').append(jdbcTypes.get(i)).append(' ').append(classNames.get(i)).append(',');
+      }
+      columnLayout = columnIndexReads + ":" + builder;
+    }
+    return columnLayout;
+  }
+
+  /**
+   * Resolves the index of a column, ignoring the case of its label as JDBC drivers do. The index is resolved once per
+   * column name.
+   *
+   * @param columnName the label of the column
+   * @return the index of the first column with this label, or 0 if the column must be read by label
+   * @since 3.5.1
+   */
+  public int getColumnIndex(String columnName) {
+    if (!columnIndexReads || columnName == null) {
+      return 0;
+    }
+    Integer index = columnIndexes.get(columnName);
+    if (index == null) {
+      index = 0;
+      for (int i = 0; i < columnNames.size(); i++) {
+        if (columnNames.get(i).equalsIgnoreCase(columnName)) {
+          index = i + 1;
+          break;
+        }
+      }
+      columnIndexes.put(columnName, index);
+    }
+    return index;
+  }
+
+  /**
+   * Gets the index to read a column with a type handler.
+   *
+   * @param typeHandler the type handler
+   * @param columnName the label of the column
+   * @return the index of the column, or 0 if the type handler must read the column by label
+   * @since 3.5.1
+   */
+  public int getColumnIndex(TypeHandler<?> typeHandler, String columnName) {
+    return isColumnIndexSupported(typeHandler) ? getColumnIndex(columnName) : 0;
+  }
+
+  /**
+   * 自定义类型处理器常未实现按索引读取，只有内置类型处理器按索引读取
+   */
+  private static boolean isColumnIndexSupported(TypeHandler<?> typeHandler) {
+    return typeHandler.getClass().getName().startsWith(TYPE_PACKAGE);
+  }
+
   public JdbcType getJdbcType(String columnName) {
     for (int i = 0 ; i < columnNames.size(); i++) {
       if (columnNames.get(i).equalsIgnoreCase(columnName)) {
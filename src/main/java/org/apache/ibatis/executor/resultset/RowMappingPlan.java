@@ -0,0 +1,142 @@
+/**
+ *    Copyright 2009-2019 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.executor.resultset;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.List;
+
+import org.apache.ibatis.reflection.ExceptionUtil;
+import org.apache.ibatis.reflection.ReflectionException;
+import org.apache.ibatis.reflection.Reflector;
+import org.apache.ibatis.reflection.invoker.Invoker;
+import org.apache.ibatis.type.TypeHandler;
+
+/**
+ * Mapping of the columns of a result set to the properties of a result object, compiled once per result map and
+ * column layout.
+ * <p>
+ * Rows are mapped by walking flat arrays of column indexes, type handlers and setter invokers, without resolving
+ * property paths, type handlers, object wrappers or column labels again for every row. Plans are only compiled for result maps whose
+ * mappings are all plain column to property mappings on beans; the other result maps are mapped as usual.
+ *
+ * 预编译的行映射计划：列 -> 类型处理器 -> setter
+ *
+ * @since 3.5.1
+ */
+public final class RowMappingPlan {
+
+  /**
+   * 无法预编译的结果映射
+   */
+  static final RowMappingPlan UNSUPPORTED = new RowMappingPlan();
+
+  private final Class<?> type;
+  private final String[] columns;
+  /**
+   * 列索引，0 表示按列标签读取
+   */
+  private final int[] columnIndexes;
+  private final TypeHandler<?>[] typeHandlers;
+  private final String[] properties;
+  private final Invoker[] setters;
+  private final boolean[] primitives;
+
+  private RowMappingPlan() {
+    this.type = null;
+    this.columns = new String[0];
+    this.columnIndexes = new int[0];
+    this.typeHandlers = new TypeHandler<?>[0];
+    this.properties = new String[0];
+    this.setters = new Invoker[0];
+    this.primitives = new boolean[0];
+  }
+
+  RowMappingPlan(Reflector reflector, ResultSetWrapper rsw, List<String> columns, List<TypeHandler<?>> typeHandlers,
+      List<String> properties) {
+    this.type = reflector.getType();
+    this.columns = columns.toArray(new String[0]);
+    this.typeHandlers = typeHandlers.toArray(new TypeHandler<?>[0]);
+    this.columnIndexes = new int[this.columns.length];
+    for (int i = 0; i < this.columns.length; i++) {
+      columnIndexes[i] = rsw.getColumnIndex(this.typeHandlers[i], this.columns[i]);
+    }
+    this.properties = properties.toArray(new String[0]);
+    this.setters = new Invoker[this.properties.length];
+    this.primitives = new boolean[this.properties.length];
+    for (int i = 0; i < this.properties.length; i++) {
+      setters[i] = reflector.getSetInvoker(this.properties[i]);
+      primitives[i] = reflector.getSetterType(this.properties[i]).isPrimitive();
+    }
+  }
+
+  /**
+   * @return the class of the result objects the plan was compiled for, or null if the result map cannot be compiled
+   */
+  public Class<?> getType() {
+    return type;
+  }
+
+  /**
+   * @return the number of columns mapped by the plan
+   */
+  public int getColumnCount() {
+    return columns.length;
+  }
+
+  /**
+   * 计划是否适用于该结果对象，结果对象工厂可能返回不同的类
+   */
+  boolean isApplicableTo(Object rowValue) {
+    return rowValue.getClass() == type;
+  }
+
+  /**
+   * Maps the current row of the result set to the result object.
+   *
+   * @return whether any column was not null
+   */
+  boolean apply(ResultSet rs, Object rowValue, boolean callSettersOnNulls) throws SQLException {
+    boolean foundValues = false;
+    for (int i = 0; i < columns.length; i++) {
+      final Object value = columnIndexes[i] > 0 ? typeHandlers[i].getResult(rs, columnIndexes[i])
+          : typeHandlers[i].getResult(rs, columns[i]);
+      if (value != null) {
+        foundValues = true;
+      }
+      if (value != null || (callSettersOnNulls && !primitives[i])) {
+        // gcode issue #377, call setter on nulls (value is not 'found')
+        setValue(i, rowValue, value);
+      }
+    }
+    return foundValues;
+  }
+
+  private void setValue(int index, Object rowValue, Object value) {
+    try {
+      try {
+        setters[index].invoke(rowValue, new Object[] { value });
+      } catch (Throwable t) {
+        throw ExceptionUtil.unwrapThrowable(t);
+      }
+    } catch (Throwable t) {
+      // 与 BeanWrapper 的异常信息保持一致
+      throw new ReflectionException("Could not set property '" + properties[index] + "' of '" + rowValue.getClass()
+          + "' with value '" + value + "' Cause: " + t.toString(), t);
+    }
+  }
+
+}
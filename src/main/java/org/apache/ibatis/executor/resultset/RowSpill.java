@@ -0,0 +1,257 @@
+/**
+ *    Copyright 2009-2019 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.executor.resultset;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.NotSerializableException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.sql.Blob;
+import java.sql.Clob;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+import org.apache.ibatis.executor.ExecutorException;
+
+/**
+ * The rows of a result set. Up to {@code threshold} rows are kept in memory and read in their original order. Past
+ * the threshold, the rows are sorted by the hash of their row key, so that the rows of the same result object are
+ * read together, and written to temporary files in sorted runs which are merged back when the rows are read. Rows
+ * with the same hash keep their original order.
+ *
+ * 结果集行，超出阈值后按行键哈希值分段排序并写入临时文件
+ */
+final class RowSpill implements Closeable {
+
+  private static final Comparator<Row> ROW_ORDER = Comparator.comparingInt(row -> row.hash);
+
+  private final int threshold;
+  private final List<Row> buffer = new ArrayList<>();
+  private final List<File> files = new ArrayList<>();
+  private final List<Run> openRuns = new ArrayList<>();
+  private PriorityQueue<Run> runs;
+  private Row current;
+
+  RowSpill(int threshold) {
+    this.threshold = Math.max(1, threshold);
+  }
+
+  /**
+   * Reads the values of the current row of a result set, with the content of LOBs.
+   */
+  static Object[] readRow(ResultSet rs, int columnCount) throws SQLException {
+    final Object[] values = new Object[columnCount];
+    for (int i = 0; i < columnCount; i++) {
+      Object value = rs.getObject(i + 1);
+      if (value instanceof Blob) {
+        Blob blob = (Blob) value;
+        value = blob.getBytes(1, (int) blob.length());
+      } else if (value instanceof Clob) {
+        Clob clob = (Clob) value;
+        value = clob.getSubString(1, (int) clob.length());
+      }
+      values[i] = value;
+    }
+    return values;
+  }
+
+  void add(int hash, Object[] values) {
+    if (runs != null) {
+      throw new IllegalStateException("Rows cannot be added once they are read");
+    }
+    if (buffer.size() >= threshold) {
+      writeRun();
+    }
+    buffer.add(new Row(hash, values));
+  }
+
+  /**
+   * @return true when the rows exceeded the threshold and are read in the order of their hashes
+   */
+  boolean isSpilled() {
+    return !files.isEmpty();
+  }
+
+  private void writeRun() {
+    buffer.sort(ROW_ORDER);
+    try {
+      File file = File.createTempFile("mybatis-rows-", ".tmp");
+      files.add(file);
+      try (ObjectOutputStream out = new ObjectOutputStream(new BufferedOutputStream(new FileOutputStream(file)))) {
+        out.writeInt(buffer.size());
+        for (Row row : buffer) {
+          out.writeInt(row.hash);
+          out.writeObject(row.values);
+          // 不保留已写入对象的引用
+          out.reset();
+        }
+      }
+    } catch (NotSerializableException e) {
+      throw new ExecutorException("Could not spill a row of the result set, the values of its columns must be serializable. Cause: " + e, e);
+    } catch (IOException e) {
+      throw new ExecutorException("Could not spill the rows of the result set to a temporary file. Cause: " + e, e);
+    }
+    buffer.clear();
+  }
+
+  /**
+   * Moves to the next row, in the order of the hashes once spilled.
+   *
+   * @return false when there are no more rows
+   */
+  boolean next() {
+    if (runs == null) {
+      if (isSpilled()) {
+        buffer.sort(ROW_ORDER);
+      }
+      runs = new PriorityQueue<>(Math.max(1, files.size() + 1), Comparator.<Run>comparingInt(run -> run.row.hash).thenComparingInt(run -> run.index));
+      for (int i = 0; i < files.size(); i++) {
+        offer(new FileRun(i, files.get(i)));
+      }
+      offer(new MemoryRun(files.size(), buffer.iterator()));
+    } else if (!runs.isEmpty()) {
+      Run run = runs.poll();
+      run.advance();
+      offer(run);
+    }
+    current = runs.isEmpty() ? null : runs.peek().row;
+    return current != null;
+  }
+
+  private void offer(Run run) {
+    if (run.row != null) {
+      runs.add(run);
+    }
+  }
+
+  int getHash() {
+    return current.hash;
+  }
+
+  /**
+   * @param column the index of the column, starting from 1
+   */
+  Object getValue(int column) {
+    return current.values[column - 1];
+  }
+
+  @Override
+  public void close() {
+    for (Run run : openRuns) {
+      run.close();
+    }
+    openRuns.clear();
+    for (File file : files) {
+      file.delete();
+    }
+    files.clear();
+    buffer.clear();
+    current = null;
+  }
+
+  private static final class Row {
+    private final int hash;
+    private final Object[] values;
+
+    Row(int hash, Object[] values) {
+      this.hash = hash;
+      this.values = values;
+    }
+  }
+
+  private abstract static class Run {
+    private final int index;
+    protected Row row;
+
+    Run(int index) {
+      this.index = index;
+    }
+
+    abstract void advance();
+
+    void close() {
+    }
+  }
+
+  private static final class MemoryRun extends Run {
+    private final Iterator<Row> rows;
+
+    MemoryRun(int index, Iterator<Row> rows) {
+      super(index);
+      this.rows = rows;
+      advance();
+    }
+
+    @Override
+    void advance() {
+      row = rows.hasNext() ? rows.next() : null;
+    }
+  }
+
+  private final class FileRun extends Run {
+    private final ObjectInputStream in;
+    private int remaining;
+
+    FileRun(int index, File file) {
+      super(index);
+      try {
+        in = new ObjectInputStream(new BufferedInputStream(new FileInputStream(file)));
+        openRuns.add(this);
+        remaining = in.readInt();
+      } catch (IOException e) {
+        throw new ExecutorException("Could not read the rows spilled to " + file + ". Cause: " + e, e);
+      }
+      advance();
+    }
+
+    @Override
+    void advance() {
+      if (remaining == 0) {
+        row = null;
+        close();
+        return;
+      }
+      try {
+        final int hash = in.readInt();
+        row = new Row(hash, (Object[]) in.readObject());
+        remaining--;
+      } catch (IOException | ClassNotFoundException e) {
+        throw new ExecutorException("Could not read the spilled rows of the result set. Cause: " + e, e);
+      }
+    }
+
+    @Override
+    void close() {
+      try {
+        in.close();
+      } catch (IOException e) {
+        // ignore
+      }
+    }
+  }
+
+}
@@ -0,0 +1,293 @@
+/**
+ *    Copyright 2009-2019 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.executor.resultset;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.io.Reader;
+import java.io.StringReader;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.sql.Blob;
+import java.sql.Clob;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.sql.Types;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.Calendar;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import javax.sql.rowset.serial.SerialBlob;
+import javax.sql.rowset.serial.SerialClob;
+
+import org.apache.ibatis.reflection.ExceptionUtil;
+import org.apache.ibatis.type.JdbcType;
+
+/**
+ * A forward only result set reading the rows of a {@link RowSpill}. The getters convert the values read by
+ * {@link ResultSet#getObject(int)} to the type they return, as the JDBC driver would.
+ *
+ * 读取溢出行的结果集
+ */
+final class RowSpillResultSet implements InvocationHandler {
+
+  private final RowSpill rows;
+  private final ResultSetMetaData metaData;
+  private final Map<String, Integer> columnIndexes = new HashMap<>();
+  private boolean wasNull;
+  private boolean closed;
+
+  private RowSpillResultSet(RowSpill rows, ResultSetWrapper columns) {
+    this.rows = rows;
+    this.metaData = SpilledMetaData.newInstance(columns);
+    List<String> columnNames = columns.getColumnNames();
+    for (int i = columnNames.size() - 1; i >= 0; i--) {
+      columnIndexes.put(columnNames.get(i).toUpperCase(Locale.ENGLISH), i + 1);
+    }
+  }
+
+  /**
+   * @param columns the result set the rows were read from, describing their columns
+   */
+  static ResultSet newInstance(RowSpill rows, ResultSetWrapper columns) {
+    InvocationHandler handler = new RowSpillResultSet(rows, columns);
+    ClassLoader cl = ResultSet.class.getClassLoader();
+    return (ResultSet) Proxy.newProxyInstance(cl, new Class[]{ResultSet.class}, handler);
+  }
+
+  @Override
+  public Object invoke(Object proxy, Method method, Object[] params) throws Throwable {
+    try {
+      if (Object.class.equals(method.getDeclaringClass())) {
+        return method.invoke(this, params);
+      }
+    } catch (Throwable t) {
+      throw ExceptionUtil.unwrapThrowable(t);
+    }
+    final String name = method.getName();
+    switch (name) {
+      case "next":
+        return !closed && rows.next();
+      case "close":
+        closed = true;
+        return null;
+      case "isClosed":
+        return closed;
+      case "wasNull":
+        return wasNull;
+      case "findColumn":
+        return findColumn((String) params[0]);
+      case "getType":
+        return ResultSet.TYPE_FORWARD_ONLY;
+      case "getMetaData":
+        return metaData;
+      default:
+        break;
+    }
+    if (name.startsWith("get") && params != null && params.length > 0
+        && (params[0] instanceof Integer || params[0] instanceof String)) {
+      final Class<?> type;
+      if ("getObject".equals(name) && params.length == 2 && params[1] instanceof Class) {
+        type = (Class<?>) params[1];
+      } else if (params.length == 1 || name.equals("getBigDecimal") || params[1] instanceof Calendar) {
+        type = method.getReturnType();
+      } else {
+        throw new SQLFeatureNotSupportedException(name + " is not supported on spilled rows");
+      }
+      final int column = params[0] instanceof Integer ? (Integer) params[0] : findColumn((String) params[0]);
+      final Object value = rows.getValue(column);
+      wasNull = value == null;
+      return convert(value, type);
+    }
+    throw new SQLFeatureNotSupportedException(name + " is not supported on spilled rows");
+  }
+
+  private int findColumn(String columnLabel) throws SQLException {
+    Integer index = columnIndexes.get(columnLabel.toUpperCase(Locale.ENGLISH));
+    if (index == null) {
+      throw new SQLException("Column '" + columnLabel + "' not found");
+    }
+    return index;
+  }
+
+  private static Object convert(Object value, Class<?> type) throws SQLException {
+    if (value == null) {
+      return type.isPrimitive() ? primitiveDefault(type) : null;
+    }
+    if (type.isInstance(value)) {
+      return value;
+    }
+    if (value instanceof Number) {
+      Number number = (Number) value;
+      if (type == int.class || type == Integer.class) {
+        return number.intValue();
+      } else if (type == long.class || type == Long.class) {
+        return number.longValue();
+      } else if (type == short.class || type == Short.class) {
+        return number.shortValue();
+      } else if (type == byte.class || type == Byte.class) {
+        return number.byteValue();
+      } else if (type == double.class || type == Double.class) {
+        return number.doubleValue();
+      } else if (type == float.class || type == Float.class) {
+        return number.floatValue();
+      } else if (type == boolean.class || type == Boolean.class) {
+        return number.intValue() != 0;
+      } else if (type == BigDecimal.class) {
+        return new BigDecimal(number.toString());
+      } else if (type == BigInteger.class) {
+        return new BigDecimal(number.toString()).toBigInteger();
+      }
+    }
+    if (value instanceof Boolean && type == boolean.class) {
+      return value;
+    }
+    if (type == String.class) {
+      return value instanceof byte[] ? new String((byte[]) value, StandardCharsets.UTF_8) : value.toString();
+    }
+    if (value instanceof String) {
+      String string = (String) value;
+      if (type == Reader.class) {
+        return new StringReader(string);
+      } else if (type == InputStream.class) {
+        return new ByteArrayInputStream(string.getBytes(StandardCharsets.UTF_8));
+      } else if (type == Clob.class) {
+        return new SerialClob(string.toCharArray());
+      } else if (type == BigDecimal.class) {
+        return new BigDecimal(string.trim());
+      } else if (type == boolean.class || type == Boolean.class) {
+        return "true".equalsIgnoreCase(string.trim()) || "1".equals(string.trim());
+      }
+    }
+    if (value instanceof byte[]) {
+      byte[] bytes = (byte[]) value;
+      if (type == InputStream.class) {
+        return new ByteArrayInputStream(bytes);
+      } else if (type == Blob.class) {
+        return new SerialBlob(bytes);
+      }
+    }
+    if (value instanceof java.util.Date) {
+      long time = ((java.util.Date) value).getTime();
+      if (type == java.sql.Timestamp.class) {
+        return new java.sql.Timestamp(time);
+      } else if (type == java.sql.Date.class) {
+        return new java.sql.Date(time);
+      } else if (type == java.sql.Time.class) {
+        return new java.sql.Time(time);
+      }
+    }
+    if (value instanceof java.sql.Timestamp && type == LocalDateTime.class) {
+      return ((java.sql.Timestamp) value).toLocalDateTime();
+    } else if (value instanceof java.sql.Date && type == LocalDate.class) {
+      return ((java.sql.Date) value).toLocalDate();
+    } else if (value instanceof java.sql.Time && type == LocalTime.class) {
+      return ((java.sql.Time) value).toLocalTime();
+    }
+    throw new SQLException("Cannot convert a spilled value of type " + value.getClass().getName() + " to " + type.getName());
+  }
+
+  /**
+   * The metadata of the spilled columns, as read by {@link ResultSetWrapper} from the original result set.
+   *
+   * 溢出行的列信息
+   */
+  private static final class SpilledMetaData implements InvocationHandler {
+
+    private final List<String> columnNames;
+    private final List<String> classNames;
+    private final List<JdbcType> jdbcTypes;
+
+    private SpilledMetaData(ResultSetWrapper columns) {
+      this.columnNames = columns.getColumnNames();
+      this.classNames = columns.getClassNames();
+      this.jdbcTypes = columns.getJdbcTypes();
+    }
+
+    static ResultSetMetaData newInstance(ResultSetWrapper columns) {
+      InvocationHandler handler = new SpilledMetaData(columns);
+      ClassLoader cl = ResultSetMetaData.class.getClassLoader();
+      return (ResultSetMetaData) Proxy.newProxyInstance(cl, new Class[]{ResultSetMetaData.class}, handler);
+    }
+
+    @Override
+    public Object invoke(Object proxy, Method method, Object[] params) throws Throwable {
+      try {
+        if (Object.class.equals(method.getDeclaringClass())) {
+          return method.invoke(this, params);
+        }
+      } catch (Throwable t) {
+        throw ExceptionUtil.unwrapThrowable(t);
+      }
+      final String name = method.getName();
+      if ("getColumnCount".equals(name)) {
+        return columnNames.size();
+      }
+      if (params == null || params.length != 1 || !(params[0] instanceof Integer)) {
+        throw new SQLFeatureNotSupportedException(name + " is not supported on spilled rows");
+      }
+      final int column = (Integer) params[0];
+      if (column < 1 || column > columnNames.size()) {
+        throw new SQLException("Invalid column index " + column);
+      }
+      final JdbcType jdbcType = jdbcTypes.get(column - 1);
+      switch (name) {
+        case "getColumnName":
+        case "getColumnLabel":
+          return columnNames.get(column - 1);
+        case "getColumnClassName":
+          return classNames.get(column - 1);
+        case "getColumnType":
+          return jdbcType == null ? Types.OTHER : jdbcType.TYPE_CODE;
+        case "getColumnTypeName":
+          return jdbcType == null ? JdbcType.OTHER.name() : jdbcType.name();
+        default:
+          throw new SQLFeatureNotSupportedException(name + " is not supported on spilled rows");
+      }
+    }
+  }
+
+  private static Object primitiveDefault(Class<?> type) {
+    if (type == boolean.class) {
+      return false;
+    } else if (type == int.class) {
+      return 0;
+    } else if (type == long.class) {
+      return 0L;
+    } else if (type == short.class) {
+      return (short) 0;
+    } else if (type == byte.class) {
+      return (byte) 0;
+    } else if (type == double.class) {
+      return 0d;
+    } else if (type == float.class) {
+      return 0f;
+    }
+    return (char) 0;
+  }
+
+}
@@ -18,7 +18,11 @@ package org.apache.ibatis.mapping;
 import org.apache.ibatis.builder.InitializingObject;
 import org.apache.ibatis.cache.Cache;
 import org.apache.ibatis.cache.CacheException;
+import org.apache.ibatis.cache.CacheMemoryBudget;
+import org.apache.ibatis.cache.CacheStatisticsRegistry;
+import org.apache.ibatis.cache.TableDependencyRegistry;
 import org.apache.ibatis.cache.decorators.*;
+import org.apache.ibatis.cache.impl.ConcurrentPerpetualCache;
 import org.apache.ibatis.cache.impl.PerpetualCache;
 import org.apache.ibatis.reflection.MetaObject;
 import org.apache.ibatis.reflection.SystemMetaObject;
@@ -73,6 +77,21 @@ public class CacheBuilder {
    */
   private boolean blocking;
 
+  /**
+   * 所有缓存共享的内存预算
+   */
+  private CacheMemoryBudget memoryBudget;
+
+  /**
+   * 按表失效时注册缓存的注册表
+   */
+  private TableDependencyRegistry tableDependencies;
+
+  /**
+   * 缓存统计注册表，未开启统计时为 null
+   */
+  private CacheStatisticsRegistry statistics;
+
   public CacheBuilder(String id) {
     this.id = id;
     this.decorators = new ArrayList<>();
@@ -110,6 +129,32 @@ public class CacheBuilder {
     return this;
   }
 
+  public CacheBuilder memoryBudget(CacheMemoryBudget memoryBudget) {
+    this.memoryBudget = memoryBudget;
+    return this;
+  }
+
+  /**
+   * @param tableDependencies the registry to register the cache with, for its entries to be invalidated by table;
+   *        null to invalidate the whole cache on writes
+   * @return this builder
+   * @since 3.5.1
+   */
+  public CacheBuilder tableDependencies(TableDependencyRegistry tableDependencies) {
+    this.tableDependencies = tableDependencies;
+    return this;
+  }
+
+  /**
+   * @param statistics the registry to record the puts and the evictions of the cache into, or null
+   * @return this builder
+   * @since 3.5.1
+   */
+  public CacheBuilder statistics(CacheStatisticsRegistry statistics) {
+    this.statistics = statistics;
+    return this;
+  }
+
   public CacheBuilder properties(Properties properties) {
     this.properties = properties;
     return this;
@@ -127,18 +172,71 @@ public class CacheBuilder {
     Cache cache = newBaseCacheInstance(implementation, id);
     setCacheProperties(cache);
     // issue #352, do not apply decorators to custom caches
-    if (PerpetualCache.class.equals(cache.getClass())) {
+    if (isBuiltInBaseCache(cache)) {
+      if (statistics != null) {
+        // 位于淘汰策略装饰器之下，统计其淘汰的缓存项
+        cache = new EvictionCountingCache(cache, statistics.getCacheStatistics(id));
+      }
       for (Class<? extends Cache> decorator : decorators) {
         cache = newCacheDecoratorInstance(decorator, cache);
         setCacheProperties(cache);
       }
       cache = setStandardDecorators(cache);
-    } else if (!LoggingCache.class.isAssignableFrom(cache.getClass())) {
-      cache = new LoggingCache(cache);
+    } else {
+      if (!LoggingCache.class.isAssignableFrom(cache.getClass())) {
+        cache = new LoggingCache(cache);
+      }
+      recordStatistics((LoggingCache) cache);
+      cache = writeBehind(cache);
+      cache = negativeResults(cache);
+      cache = trackTableDependencies(cache);
     }
     return cache;
   }
 
+  /**
+   * 配置了 negativeResultTtl 时单独缓存空结果
+   */
+  private Cache negativeResults(Cache cache) {
+    if (properties == null || properties.getProperty("negativeResultTtl") == null) {
+      return cache;
+    }
+    NegativeResultCache negativeResultCache = new NegativeResultCache(cache);
+    setCacheProperties(negativeResultCache);
+    return negativeResultCache;
+  }
+
+  /**
+   * 配置了 writeBehind 时由后台线程批量写入提交的缓存项
+   */
+  private Cache writeBehind(Cache cache) {
+    if (properties == null || !Boolean.parseBoolean(properties.getProperty("writeBehind"))) {
+      return cache;
+    }
+    WriteBehindCache writeBehindCache = new WriteBehindCache(cache);
+    setCacheProperties(writeBehindCache);
+    return writeBehindCache;
+  }
+
+  private void recordStatistics(LoggingCache cache) {
+    if (statistics != null) {
+      cache.setStatistics(statistics.getCacheStatistics(id));
+    }
+  }
+
+  private Cache trackTableDependencies(Cache cache) {
+    if (tableDependencies == null) {
+      return cache;
+    }
+    TableDependencyCache tableDependencyCache = new TableDependencyCache(cache, tableDependencies);
+    tableDependencies.register(tableDependencyCache);
+    return tableDependencyCache;
+  }
+
+  private boolean isBuiltInBaseCache(Cache cache) {
+    return PerpetualCache.class.equals(cache.getClass()) || ConcurrentPerpetualCache.class.equals(cache.getClass());
+  }
+
   /**
    * 缓存配置配置
    */
@@ -163,17 +261,56 @@ public class CacheBuilder {
       if (size != null && metaCache.hasSetter("size")) {
         metaCache.setValue("size", size);
       }
-      if (clearInterval != null) {
+      if (memoryBudget != null && metaCache.hasSetter("memoryBudget")) {
+        metaCache.setValue("memoryBudget", memoryBudget);
+      }
+      // 配置了 refreshAhead 时按缓存项过期并提前刷新，否则定时清空整个缓存
+      boolean refreshAhead = clearInterval != null && properties != null
+          && properties.getProperty("refreshAhead") != null;
+      if (clearInterval != null && !refreshAhead) {
         cache = new ScheduledCache(cache);
         ((ScheduledCache) cache).setClearInterval(clearInterval);
       }
       if (readWrite) {
         cache = new SerializedCache(cache);
+        // 支持按缓存配置 serializer 与 copyOnRead
+        setCacheProperties(cache);
+      }
+      LoggingCache loggingCache = new LoggingCache(cache);
+      recordStatistics(loggingCache);
+      cache = loggingCache;
+      if (!cache.isThreadSafe()) {
+        // 基础缓存或任一装饰器非线程安全时才需要同步装饰器
+        cache = new SynchronizedCache(cache);
       }
-      cache = new LoggingCache(cache);
-      cache = new SynchronizedCache(cache);
+      // 在按表失效装饰器之内，使失效操作能丢弃尚未写入的缓存项
+      cache = writeBehind(cache);
+      WriteBehindCache writeBehindCache = cache instanceof WriteBehindCache ? (WriteBehindCache) cache : null;
+      // 空结果在写入队列之外，立即可见
+      cache = negativeResults(cache);
+      // 在阻塞与刷新装饰器之内，使其写入的缓存项也被索引
+      cache = trackTableDependencies(cache);
+      TableDependencyCache tableDependencyCache = cache instanceof TableDependencyCache ? (TableDependencyCache) cache : null;
       if (blocking) {
-        cache = new BlockingCache(cache);
+        SingleFlightCache singleFlightCache = new SingleFlightCache(cache);
+        setCacheProperties(singleFlightCache);
+        // 只读缓存的等待者可直接共享加载结果
+        singleFlightCache.setShareLoadedValue(!readWrite);
+        if (writeBehindCache != null) {
+          // 其余等待者在缓存项写入后才重新读取
+          singleFlightCache.setWriteBehindCache(writeBehindCache);
+        }
+        cache = singleFlightCache;
+      }
+      if (refreshAhead) {
+        RefreshAheadCache refreshAheadCache = new RefreshAheadCache(cache);
+        refreshAheadCache.setTimeToLive(clearInterval);
+        setCacheProperties(refreshAheadCache);
+        if (tableDependencyCache != null) {
+          // 按表失效的缓存项不再写回失效前开始的刷新结果
+          refreshAheadCache.setTableDependencyCache(tableDependencyCache);
+        }
+        cache = refreshAheadCache;
       }
       return cache;
     } catch (Exception e) {
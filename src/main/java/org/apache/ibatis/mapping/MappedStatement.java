@@ -15,18 +15,26 @@
  */
 package org.apache.ibatis.mapping;
 
+import org.apache.ibatis.builder.StaticSqlSource;
 import org.apache.ibatis.cache.Cache;
+import org.apache.ibatis.cache.StatementCacheKey;
 import org.apache.ibatis.executor.keygen.Jdbc3KeyGenerator;
 import org.apache.ibatis.executor.keygen.KeyGenerator;
 import org.apache.ibatis.executor.keygen.NoKeyGenerator;
 import org.apache.ibatis.logging.Log;
 import org.apache.ibatis.logging.LogFactory;
 import org.apache.ibatis.scripting.LanguageDriver;
+import org.apache.ibatis.scripting.defaults.RawSqlSource;
 import org.apache.ibatis.session.Configuration;
 
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 /**
  * statement 解析对象
@@ -34,6 +42,11 @@ import java.util.List;
  */
 public final class MappedStatement {
 
+  /**
+   * 单个 statement 最多缓存的缓存键前缀数，超出后不再复用
+   */
+  private static final int MAX_CACHE_KEY_PREFIXES = 256;
+
   private String resource;
   private Configuration configuration;
   private String id;
@@ -47,6 +60,7 @@ public final class MappedStatement {
   private List<ResultMap> resultMaps;
   private boolean flushCacheRequired;
   private boolean useCache;
+  private boolean useLocalCache;
   private boolean resultOrdered;
   private SqlCommandType sqlCommandType;
   private KeyGenerator keyGenerator;
@@ -57,6 +71,22 @@ public final class MappedStatement {
   private Log statementLog;
   private LanguageDriver lang;
   private String[] resultSets;
+  private Set<String> tables;
+
+  /**
+   * 静态 SQL 写入的表，首次使用时解析
+   */
+  private volatile Set<String> staticTables;
+
+  /**
+   * 按 SQL 复用的缓存键前缀
+   */
+  private final ConcurrentMap<String, StatementCacheKey.Prefix> cacheKeyPrefixes = new ConcurrentHashMap<>();
+
+  /**
+   * 最近使用的缓存键前缀，静态 SQL 每次都是同一个字符串实例
+   */
+  private volatile StatementCacheKey.Prefix lastCacheKeyPrefix;
 
   MappedStatement() {
     // constructor disabled
@@ -81,6 +111,7 @@ public final class MappedStatement {
       }
       mappedStatement.statementLog = LogFactory.getLog(logId);
       mappedStatement.lang = configuration.getDefaultScriptingLanguageInstance();
+      mappedStatement.useLocalCache = true;
     }
 
     public Builder resource(String resource) {
@@ -140,6 +171,16 @@ public final class MappedStatement {
       return this;
     }
 
+    /**
+     * @param useLocalCache false to drop the results from the local cache once the outermost query completes
+     * @return this builder
+     * @since 3.5.1
+     */
+    public Builder useLocalCache(boolean useLocalCache) {
+      mappedStatement.useLocalCache = useLocalCache;
+      return this;
+    }
+
     public Builder resultOrdered(boolean resultOrdered) {
       mappedStatement.resultOrdered = resultOrdered;
       return this;
@@ -175,6 +216,25 @@ public final class MappedStatement {
       return this;
     }
 
+    /**
+     * @param tables comma-separated tables read or written by the statement, or null to parse them from its SQL
+     * @return this builder
+     * @since 3.5.1
+     */
+    public Builder tables(String tables) {
+      String[] names = delimitedStringToArray(tables);
+      if (names == null) {
+        mappedStatement.tables = null;
+      } else {
+        Set<String> set = new LinkedHashSet<>();
+        for (String name : names) {
+          set.add(name.trim().toLowerCase(Locale.ENGLISH));
+        }
+        mappedStatement.tables = Collections.unmodifiableSet(set);
+      }
+      return this;
+    }
+
     /**
      * @deprecated Use {@link #resultSets}
      */
@@ -258,6 +318,13 @@ public final class MappedStatement {
     return useCache;
   }
 
+  /**
+   * @since 3.5.1
+   */
+  public boolean isUseLocalCache() {
+    return useLocalCache;
+  }
+
   public boolean isResultOrdered() {
     return resultOrdered;
   }
@@ -286,6 +353,48 @@ public final class MappedStatement {
     return resultSets;
   }
 
+  /**
+   * @return the declared tables of the statement, or null if not declared
+   * @since 3.5.1
+   */
+  public Set<String> getTables() {
+    return tables;
+  }
+
+  /**
+   * Returns the tables the statement reads or writes, as declared or else as parsed from the SQL by
+   * {@link org.apache.ibatis.cache.SqlTableParser}.
+   *
+   * @param sql the SQL of a {@link BoundSql} of this statement
+   * @return the tables, or an empty set if unknown
+   * @since 3.5.1
+   */
+  public Set<String> getTables(String sql) {
+    return tables != null ? tables : getCacheKeyPrefix(sql).getTables();
+  }
+
+  /**
+   * Returns the tables the statement writes when no {@link BoundSql} of it is at hand. The tables of static SQL are
+   * parsed once; dynamic SQL is built for the parameter object, unless the tables are declared.
+   *
+   * @param parameterObject the parameter object of the statement
+   * @return the tables, or an empty set if unknown
+   * @since 3.5.1
+   */
+  public Set<String> getWrittenTables(Object parameterObject) {
+    if (tables != null) {
+      return tables;
+    }
+    Set<String> parsed = staticTables;
+    if (parsed == null) {
+      parsed = getTables(getBoundSql(parameterObject).getSql());
+      if (sqlSource instanceof RawSqlSource || sqlSource instanceof StaticSqlSource) {
+        staticTables = parsed;
+      }
+    }
+    return parsed;
+  }
+
   /**
    * @deprecated Use {@link #getResultSets()}
    */
@@ -318,6 +427,33 @@ public final class MappedStatement {
     return boundSql;
   }
 
+  /**
+   * Returns the prefix shared by the cache keys of this statement for a given SQL.
+   *
+   * @param sql the SQL of a {@link BoundSql} of this statement
+   * @return the cache key prefix
+   * @since 3.5.1
+   */
+  public StatementCacheKey.Prefix getCacheKeyPrefix(String sql) {
+    StatementCacheKey.Prefix prefix = lastCacheKeyPrefix;
+    if (prefix != null && prefix.getSql() == sql) {
+      return prefix;
+    }
+    prefix = cacheKeyPrefixes.get(sql);
+    if (prefix == null) {
+      prefix = new StatementCacheKey.Prefix(id, sql);
+      // 动态 SQL 形态过多时不再缓存
+      if (cacheKeyPrefixes.size() < MAX_CACHE_KEY_PREFIXES) {
+        StatementCacheKey.Prefix existing = cacheKeyPrefixes.putIfAbsent(sql, prefix);
+        if (existing != null) {
+          prefix = existing;
+        }
+      }
+    }
+    lastCacheKeyPrefix = prefix;
+    return prefix;
+  }
+
   private static String[] delimitedStringToArray(String in) {
     if (in == null || in.trim().length() == 0) {
       return null;
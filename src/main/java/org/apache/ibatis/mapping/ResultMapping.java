@@ -95,6 +95,16 @@ public class ResultMapping {
    */
   private boolean lazy;
 
+  /**
+   * 一次加载多个外键对应结果的嵌套查询 id
+   */
+  private String batchQueryId;
+
+  /**
+   * 批量查询结果中与外键对应的属性
+   */
+  private String batchKeyProperty;
+
   ResultMapping() {
   }
 
@@ -181,6 +191,22 @@ public class ResultMapping {
       return this;
     }
 
+    /**
+     * @since 3.5.1
+     */
+    public Builder batchQueryId(String batchQueryId) {
+      resultMapping.batchQueryId = batchQueryId;
+      return this;
+    }
+
+    /**
+     * @since 3.5.1
+     */
+    public Builder batchKeyProperty(String batchKeyProperty) {
+      resultMapping.batchKeyProperty = batchKeyProperty;
+      return this;
+    }
+
     public ResultMapping build() {
       // lock down collections
       resultMapping.flags = Collections.unmodifiableList(resultMapping.flags);
@@ -196,6 +222,9 @@ public class ResultMapping {
         throw new IllegalStateException("Cannot define both nestedQueryId and nestedResultMapId in property " + resultMapping.property);
       }
       // Issue #5: there should be no mappings without typehandler
+      if (resultMapping.batchQueryId != null && (resultMapping.nestedQueryId == null || resultMapping.batchKeyProperty == null)) {
+        throw new IllegalStateException("A batch select requires a nested select and a batch key in property " + resultMapping.property);
+      }
       if (resultMapping.nestedQueryId == null && resultMapping.nestedResultMapId == null && resultMapping.typeHandler == null) {
         throw new IllegalStateException("No typehandler found for property " + resultMapping.property);
       }
@@ -300,6 +329,22 @@ public class ResultMapping {
     this.lazy = lazy;
   }
 
+  /**
+   * @return the id of the statement loading the nested results of several keys at once, or null
+   * @since 3.5.1
+   */
+  public String getBatchQueryId() {
+    return batchQueryId;
+  }
+
+  /**
+   * @return the property of the results of the batch statement holding the key they belong to
+   * @since 3.5.1
+   */
+  public String getBatchKeyProperty() {
+    return batchKeyProperty;
+  }
+
   @Override
   public boolean equals(Object o) {
     if (this == o) {
@@ -347,6 +392,7 @@ public class ResultMapping {
     sb.append(", resultSet='").append(resultSet).append('\'');
     sb.append(", foreignColumn='").append(foreignColumn).append('\'');
     sb.append(", lazy=").append(lazy);
+    sb.append(", batchQueryId='").append(batchQueryId).append('\'');
     sb.append('}');
     return sb.toString();
   }
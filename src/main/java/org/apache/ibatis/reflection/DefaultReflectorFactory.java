@@ -57,10 +57,21 @@ public class DefaultReflectorFactory implements ReflectorFactory {
     if (classCacheEnabled) {
       // synchronized (type) removed see issue #461
       // 如果缓存Reflector信息，放入缓存容器
-      return reflectorMap.computeIfAbsent(type, Reflector::new);
+      return reflectorMap.computeIfAbsent(type, this::newReflector);
     } else {
-      return new Reflector(type);
+      return newReflector(type);
     }
   }
 
+  /**
+   * Creates the reflector of a class.
+   *
+   * @param type the class
+   * @return the reflector
+   * @since 3.5.1
+   */
+  protected Reflector newReflector(Class<?> type) {
+    return new Reflector(type);
+  }
+
 }
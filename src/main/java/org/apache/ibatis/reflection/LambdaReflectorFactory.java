@@ -0,0 +1,39 @@
+/**
+ *    Copyright 2009-2019 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.reflection;
+
+import org.apache.ibatis.reflection.invoker.LambdaMethodInvoker;
+
+/**
+ * Reflector factory whose reflectors call getters and setters through accessors generated once per class, see
+ * {@link LambdaMethodInvoker}. Properties that cannot be accessed that way fall back to reflection.
+ *
+ * <pre>
+ * &lt;reflectorFactory type="org.apache.ibatis.reflection.LambdaReflectorFactory"/&gt;
+ * </pre>
+ *
+ * 生成 getter/setter 访问器的 Reflector 创建工厂
+ *
+ * @since 3.5.1
+ */
+public class LambdaReflectorFactory extends DefaultReflectorFactory {
+
+  @Override
+  protected Reflector newReflector(Class<?> type) {
+    return new Reflector(type, true);
+  }
+
+}
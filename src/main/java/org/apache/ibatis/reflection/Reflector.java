@@ -17,6 +17,7 @@ package org.apache.ibatis.reflection;
 
 import org.apache.ibatis.reflection.invoker.GetFieldInvoker;
 import org.apache.ibatis.reflection.invoker.Invoker;
+import org.apache.ibatis.reflection.invoker.LambdaMethodInvoker;
 import org.apache.ibatis.reflection.invoker.MethodInvoker;
 import org.apache.ibatis.reflection.invoker.SetFieldInvoker;
 import org.apache.ibatis.reflection.property.PropertyNamer;
@@ -46,7 +47,23 @@ public class Reflector {
 
   private Map<String, String> caseInsensitivePropertyMap = new HashMap<>();
 
+  /**
+   * 是否为 getter/setter 方法生成访问器
+   */
+  private final boolean generateAccessors;
+
   public Reflector(Class<?> clazz) {
+    this(clazz, false);
+  }
+
+  /**
+   * @param clazz the class
+   * @param generateAccessors whether getters and setters are called through generated accessors, see
+   *          {@link LambdaMethodInvoker}, instead of reflection
+   * @since 3.5.1
+   */
+  public Reflector(Class<?> clazz, boolean generateAccessors) {
+    this.generateAccessors = generateAccessors;
     type = clazz;
     // 如果存在，记录无参构造方法
     addDefaultConstructor(clazz);
@@ -161,7 +178,7 @@ public class Reflector {
     // 过滤$开头、serialVersionUID的get方法和getClass()方法
     if (isValidPropertyName(name)) {
       // 字段名-对应get方法的MethodInvoker对象
-      getMethods.put(name, new MethodInvoker(method));
+      getMethods.put(name, newMethodInvoker(method));
       Type returnType = TypeParameterResolver.resolveReturnType(method, type);
       // 字段名-运行时方法的真正返回类型
       getTypes.put(name, typeToClass(returnType));
@@ -269,12 +286,16 @@ public class Reflector {
    */
   private void addSetMethod(String name, Method method) {
     if (isValidPropertyName(name)) {
-      setMethods.put(name, new MethodInvoker(method));
+      setMethods.put(name, newMethodInvoker(method));
       Type[] paramTypes = TypeParameterResolver.resolveParamTypes(method, type);
       setTypes.put(name, typeToClass(paramTypes[0]));
     }
   }
 
+  private MethodInvoker newMethodInvoker(Method method) {
+    return generateAccessors ? LambdaMethodInvoker.of(method) : new MethodInvoker(method);
+  }
+
   private Class<?> typeToClass(Type src) {
     Class<?> result = null;
     if (src instanceof Class) {
@@ -0,0 +1,133 @@
+/**
+ *    Copyright 2009-2019 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.reflection.invoker;
+
+import java.lang.invoke.CallSite;
+import java.lang.invoke.LambdaMetafactory;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+
+/**
+ * Invokes a getter or a setter through an accessor generated by {@link LambdaMetafactory} instead of
+ * {@link Method#invoke(Object, Object...)}, so the JIT can inline the call like a direct one.
+ * <p>
+ * Accessors can only be generated for public methods of public classes visible from the MyBatis class loader;
+ * {@link #of(Method)} returns a plain {@link MethodInvoker} for the others.
+ *
+ * 通过 LambdaMetafactory 生成的函数式接口调用 getter/setter 方法
+ *
+ * @since 3.5.1
+ */
+public class LambdaMethodInvoker extends MethodInvoker {
+
+  private static final MethodHandles.Lookup LOOKUP = MethodHandles.lookup();
+
+  private final Function<Object, Object> getter;
+
+  private final BiConsumer<Object, Object> setter;
+
+  private LambdaMethodInvoker(Method method, Function<Object, Object> getter, BiConsumer<Object, Object> setter) {
+    super(method);
+    this.getter = getter;
+    this.setter = setter;
+  }
+
+  /**
+   * Creates the invoker of a getter or a setter.
+   *
+   * @param method the getter or the setter
+   * @return a generated invoker, or a reflective one if no accessor can be generated for the method
+   */
+  public static MethodInvoker of(Method method) {
+    if (!canGenerate(method)) {
+      return new MethodInvoker(method);
+    }
+    try {
+      MethodHandle handle = LOOKUP.unreflect(method);
+      Class<?>[] parameterTypes = method.getParameterTypes();
+      if (parameterTypes.length == 0) {
+        CallSite site = LambdaMetafactory.metafactory(LOOKUP, "apply", MethodType.methodType(Function.class),
+            MethodType.methodType(Object.class, Object.class), handle,
+            MethodType.methodType(wrap(method.getReturnType()), method.getDeclaringClass()));
+        @SuppressWarnings("unchecked")
+        Function<Object, Object> getter = (Function<Object, Object>) site.getTarget().invokeWithArguments();
+        return new LambdaMethodInvoker(method, getter, null);
+      }
+      CallSite site = LambdaMetafactory.metafactory(LOOKUP, "accept", MethodType.methodType(BiConsumer.class),
+          MethodType.methodType(void.class, Object.class, Object.class), handle,
+          MethodType.methodType(void.class, method.getDeclaringClass(), wrap(parameterTypes[0])));
+      @SuppressWarnings("unchecked")
+      BiConsumer<Object, Object> setter = (BiConsumer<Object, Object>) site.getTarget().invokeWithArguments();
+      return new LambdaMethodInvoker(method, null, setter);
+    } catch (Throwable e) {
+      // 无法生成时退回反射调用
+      return new MethodInvoker(method);
+    }
+  }
+
+  @Override
+  public Object invoke(Object target, Object[] args) throws IllegalAccessException, InvocationTargetException {
+    try {
+      if (getter != null) {
+        return getter.apply(target);
+      }
+      setter.accept(target, args[0]);
+      return null;
+    } catch (Throwable e) {
+      // 与反射调用一致，包装方法抛出的异常
+      throw new InvocationTargetException(e);
+    }
+  }
+
+  private static boolean canGenerate(Method method) {
+    if (method.getParameterTypes().length > 1 || Modifier.isStatic(method.getModifiers())
+        || !Modifier.isPublic(method.getModifiers()) || !Modifier.isPublic(method.getDeclaringClass().getModifiers())) {
+      return false;
+    }
+    // 生成的类由 MyBatis 的类加载器加载，必须能看到方法涉及的类型
+    if (!isVisible(method.getDeclaringClass()) || !isVisible(method.getReturnType())) {
+      return false;
+    }
+    for (Class<?> parameterType : method.getParameterTypes()) {
+      if (!isVisible(parameterType)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private static boolean isVisible(Class<?> type) {
+    if (type.isPrimitive()) {
+      return true;
+    }
+    try {
+      return Class.forName(type.getName(), false, LambdaMethodInvoker.class.getClassLoader()) == type;
+    } catch (ClassNotFoundException e) {
+      return false;
+    }
+  }
+
+  private static Class<?> wrap(Class<?> type) {
+    return MethodType.methodType(type).wrap().returnType();
+  }
+
+}
@@ -0,0 +1,36 @@
+/**
+ *    Copyright 2009-2019 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.session;
+
+/**
+ * How the {@link ExecutorType#BATCH batch executor} groups the updates into JDBC batches.
+ *
+ * 批处理执行器的分组方式
+ *
+ * @since 3.5.1
+ */
+public enum BatchGrouping {
+
+  /**
+   * 与上一次更新的 SQL 与 statement 相同时才加入同一批次
+   */
+  STATEMENT,
+
+  /**
+   * 在整个刷新窗口内按 SQL 分组，保持每张表（及声明依赖的表）上的执行顺序
+   */
+  TABLE
+}
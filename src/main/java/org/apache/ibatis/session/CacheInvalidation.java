@@ -0,0 +1,36 @@
+/**
+ *    Copyright 2009-2019 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.session;
+
+/**
+ * How writes invalidate the second level caches.
+ *
+ * 二级缓存失效方式
+ *
+ * @since 3.5.1
+ */
+public enum CacheInvalidation {
+
+  /**
+   * 写操作清空所在命名空间的整个缓存
+   */
+  NAMESPACE,
+
+  /**
+   * 写操作只使依赖所写表的缓存项失效，跨命名空间生效
+   */
+  TABLE
+}
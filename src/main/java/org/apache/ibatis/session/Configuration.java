@@ -22,10 +22,21 @@ import org.apache.ibatis.builder.ResultMapResolver;
 import org.apache.ibatis.builder.annotation.MethodResolver;
 import org.apache.ibatis.builder.xml.XMLStatementBuilder;
 import org.apache.ibatis.cache.Cache;
+import org.apache.ibatis.cache.CacheMemoryBudget;
+import org.apache.ibatis.cache.CacheStatisticsRegistry;
+import org.apache.ibatis.cache.StatementCacheKey;
+import org.apache.ibatis.cache.TableDependencyRegistry;
+import org.apache.ibatis.cache.cluster.InvalidationBus;
+import org.apache.ibatis.cache.cluster.InvalidationTransport;
+import org.apache.ibatis.cache.cluster.LoopbackTransport;
 import org.apache.ibatis.cache.decorators.FifoCache;
 import org.apache.ibatis.cache.decorators.LruCache;
 import org.apache.ibatis.cache.decorators.SoftCache;
+import org.apache.ibatis.cache.decorators.TinyLfuCache;
 import org.apache.ibatis.cache.decorators.WeakCache;
+import org.apache.ibatis.cache.impl.ConcurrentPerpetualCache;
+import org.apache.ibatis.cache.impl.NearCache;
+import org.apache.ibatis.cache.impl.OffHeapCache;
 import org.apache.ibatis.cache.impl.PerpetualCache;
 import org.apache.ibatis.datasource.jndi.JndiDataSourceFactory;
 import org.apache.ibatis.datasource.pooled.PooledDataSourceFactory;
@@ -38,6 +49,7 @@ import org.apache.ibatis.executor.loader.javassist.JavassistProxyFactory;
 import org.apache.ibatis.executor.parameter.ParameterHandler;
 import org.apache.ibatis.executor.resultset.DefaultResultSetHandler;
 import org.apache.ibatis.executor.resultset.ResultSetHandler;
+import org.apache.ibatis.executor.resultset.RowMappingPlan;
 import org.apache.ibatis.executor.statement.RoutingStatementHandler;
 import org.apache.ibatis.executor.statement.StatementHandler;
 import org.apache.ibatis.io.VFS;
@@ -74,6 +86,7 @@ import org.apache.ibatis.type.TypeHandler;
 import org.apache.ibatis.type.TypeHandlerRegistry;
 
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.function.BiFunction;
 
 /**
@@ -83,6 +96,11 @@ import java.util.function.BiFunction;
  */
 public class Configuration {
 
+  /**
+   * 行映射计划缓存的上限
+   */
+  private static final int MAX_ROW_MAPPING_PLANS = 1024;
+
   /**
    * 环境配置
    */
@@ -124,11 +142,65 @@ public class Configuration {
    */
   protected boolean useColumnLabel = true;
 
+  /**
+   * 按列索引读取结果集，每个结果集的列标签只解析一次
+   */
+  protected boolean useColumnIndex;
+
   /**
    * 全局地开启或关闭配置文件中的所有映射器已经配置的任何缓存
    */
   protected boolean cacheEnabled = true;
 
+  /**
+   * 所有二级缓存共享的内存预算（字节），仅对 TINY_LFU 淘汰策略生效
+   */
+  protected CacheMemoryBudget cacheMemoryBudget;
+
+  /**
+   * 二级缓存失效方式，默认清空整个命名空间
+   */
+  protected CacheInvalidation cacheInvalidation = CacheInvalidation.NAMESPACE;
+
+  /**
+   * 按表失效的二级缓存
+   */
+  protected final TableDependencyRegistry tableDependencyRegistry = new TableDependencyRegistry(this::getCacheKeyTables);
+
+  /**
+   * 集群二级缓存失效总线，未配置传输层时为 null
+   */
+  protected InvalidationBus invalidationBus;
+
+  /**
+   * 集群失效消息的合并发送间隔（毫秒）
+   */
+  protected long cacheInvalidationBatchInterval;
+
+  /**
+   * 是否统计二级缓存的命中、加载、写入与淘汰
+   */
+  protected boolean cacheStatisticsEnabled;
+
+  protected final CacheStatisticsRegistry cacheStatistics = new CacheStatisticsRegistry();
+
+  /**
+   * 是否按结果映射与结果集列预编译行映射计划
+   */
+  protected boolean rowMappingPlansEnabled;
+
+  protected final Map<String, RowMappingPlan> rowMappingPlans = new ConcurrentHashMap<>();
+
+  /**
+   * 批量嵌套查询每次查询的最大外键数
+   */
+  protected int nestedSelectBatchSize = 500;
+
+  /**
+   * 无序的嵌套结果映射在内存中保留的最大行数，超出的行写入临时文件，为 null 时不溢出
+   */
+  protected Integer nestedResultSpillThreshold;
+
   /**
    * 结果集中的值为 null 时是否赋值
    */
@@ -166,6 +238,16 @@ public class Configuration {
    */
   protected LocalCacheScope localCacheScope = LocalCacheScope.SESSION;
 
+  /**
+   * 本地缓存最多保留的查询结果数，为 null 时不限
+   */
+  protected Integer localCacheSize;
+
+  /**
+   * 本地缓存最多保留的结果行数，为 null 时不限
+   */
+  protected Long localCacheRows;
+
   /**
    * 没用指定 JDBC 类型的 NULL 值指定默认类型
    */
@@ -191,6 +273,21 @@ public class Configuration {
    */
   protected ExecutorType defaultExecutorType = ExecutorType.SIMPLE;
 
+  /**
+   * 批处理执行器的分组方式
+   */
+  protected BatchGrouping batchGrouping = BatchGrouping.STATEMENT;
+
+  /**
+   * 每个批次的最大行数，为 null 时不限
+   */
+  protected Integer maxBatchSize;
+
+  /**
+   * 批处理重排序时需保持顺序的表依赖，key 为依赖其它表（如外键引用）的表
+   */
+  protected final Map<String, Set<String>> batchTableDependencies = new HashMap<>();
+
   /**
    * 指定 MyBatis 应如何自动映射列到字段或属性
    */
@@ -345,8 +442,13 @@ public class Configuration {
     typeAliasRegistry.registerAlias("UNPOOLED", UnpooledDataSourceFactory.class);
 
     typeAliasRegistry.registerAlias("PERPETUAL", PerpetualCache.class);
+    typeAliasRegistry.registerAlias("CONCURRENT_PERPETUAL", ConcurrentPerpetualCache.class);
+    typeAliasRegistry.registerAlias("OFF_HEAP", OffHeapCache.class);
+    typeAliasRegistry.registerAlias("NEAR", NearCache.class);
+    typeAliasRegistry.registerAlias("LOOPBACK", LoopbackTransport.class);
     typeAliasRegistry.registerAlias("FIFO", FifoCache.class);
     typeAliasRegistry.registerAlias("LRU", LruCache.class);
+    typeAliasRegistry.registerAlias("TINY_LFU", TinyLfuCache.class);
     typeAliasRegistry.registerAlias("SOFT", SoftCache.class);
     typeAliasRegistry.registerAlias("WEAK", WeakCache.class);
 
@@ -400,6 +502,91 @@ public class Configuration {
     }
   }
 
+  /**
+   * @since 3.5.1
+   */
+  public boolean isRowMappingPlansEnabled() {
+    return rowMappingPlansEnabled;
+  }
+
+  /**
+   * Maps the rows of simple result maps through plans compiled once per result map and column layout, see
+   * {@link RowMappingPlan}.
+   *
+   * @param rowMappingPlansEnabled true to compile row mapping plans
+   * @since 3.5.1
+   */
+  public void setRowMappingPlansEnabled(boolean rowMappingPlansEnabled) {
+    this.rowMappingPlansEnabled = rowMappingPlansEnabled;
+  }
+
+  /**
+   * @since 3.5.1
+   */
+  public int getNestedSelectBatchSize() {
+    return nestedSelectBatchSize;
+  }
+
+  /**
+   * Sets the maximum number of keys a batch nested select (see the {@code batchSelect} attribute of associations and
+   * collections) receives at a time.
+   *
+   * @param nestedSelectBatchSize the maximum number of keys per batch
+   * @since 3.5.1
+   */
+  public void setNestedSelectBatchSize(int nestedSelectBatchSize) {
+    this.nestedSelectBatchSize = nestedSelectBatchSize;
+  }
+
+  /**
+   * @since 3.5.1
+   */
+  public Integer getNestedResultSpillThreshold() {
+    return nestedResultSpillThreshold;
+  }
+
+  /**
+   * Sets the maximum number of rows of a statement with nested result maps that is not {@code resultOrdered} kept in
+   * memory. When set, the rows are read before being mapped, so that the result handler receives complete objects. Up
+   * to the threshold, the result objects keep the order of the rows. Past it, the rows are grouped by their result
+   * object, spilling the rows over the threshold to temporary files, so that only the result objects of one group are
+   * held at a time; the result objects are then in no particular order, whatever the {@code ORDER BY} of the
+   * statement.
+   *
+   * @param nestedResultSpillThreshold the maximum number of rows kept in memory, or null to map the rows as they are
+   *     read
+   * @since 3.5.1
+   */
+  public void setNestedResultSpillThreshold(Integer nestedResultSpillThreshold) {
+    this.nestedResultSpillThreshold = nestedResultSpillThreshold;
+  }
+
+  /**
+   * @param key the result map and column layout
+   * @return the plan compiled for the key, or null
+   * @since 3.5.1
+   */
+  public RowMappingPlan getRowMappingPlan(String key) {
+    return rowMappingPlans.get(key);
+  }
+
+  /**
+   * @since 3.5.1
+   */
+  public void addRowMappingPlan(String key, RowMappingPlan plan) {
+    if (rowMappingPlans.size() < MAX_ROW_MAPPING_PLANS) {
+      // 列不断变化的动态 SQL 不能使缓存无限增长
+      rowMappingPlans.put(key, plan);
+    }
+  }
+
+  /**
+   * @since 3.5.1
+   */
+  public Collection<RowMappingPlan> getRowMappingPlans() {
+    return Collections.unmodifiableCollection(rowMappingPlans.values());
+  }
+
   public boolean isCallSettersOnNulls() {
     return callSettersOnNulls;
   }
@@ -561,6 +748,63 @@ public class Configuration {
     this.defaultExecutorType = defaultExecutorType;
   }
 
+  /**
+   * @since 3.5.1
+   */
+  public BatchGrouping getBatchGrouping() {
+    return batchGrouping;
+  }
+
+  /**
+   * Sets how the batch executor groups updates into JDBC batches.
+   *
+   * @param batchGrouping {@link BatchGrouping#STATEMENT} (the default) or {@link BatchGrouping#TABLE}
+   * @since 3.5.1
+   */
+  public void setBatchGrouping(BatchGrouping batchGrouping) {
+    this.batchGrouping = batchGrouping;
+  }
+
+  /**
+   * @since 3.5.1
+   */
+  public Integer getMaxBatchSize() {
+    return maxBatchSize;
+  }
+
+  /**
+   * Caps the number of rows sent by each {@code executeBatch}; further updates of the same statement start a new
+   * batch.
+   *
+   * @param maxBatchSize the number of rows, or null for no cap
+   * @since 3.5.1
+   */
+  public void setMaxBatchSize(Integer maxBatchSize) {
+    this.maxBatchSize = maxBatchSize;
+  }
+
+  /**
+   * @since 3.5.1
+   */
+  public Map<String, Set<String>> getBatchTableDependencies() {
+    return batchTableDependencies;
+  }
+
+  /**
+   * Declares which tables depend on which others, e.g. through foreign keys, so that grouping updates by
+   * {@link BatchGrouping#TABLE table} never runs an update of a table before an earlier update it may depend on.
+   *
+   * @param batchTableDependencies the tables each table depends on, case insensitive
+   * @since 3.5.1
+   */
+  public void setBatchTableDependencies(Map<String, Set<String>> batchTableDependencies) {
+    this.batchTableDependencies.clear();
+    batchTableDependencies.forEach((table, dependencies) -> {
+      Set<String> lowerCased = this.batchTableDependencies.computeIfAbsent(table.toLowerCase(Locale.ENGLISH), k -> new HashSet<>());
+      dependencies.forEach(dependency -> lowerCased.add(dependency.toLowerCase(Locale.ENGLISH)));
+    });
+  }
+
   public boolean isCacheEnabled() {
     return cacheEnabled;
   }
@@ -569,6 +813,136 @@ public class Configuration {
     this.cacheEnabled = cacheEnabled;
   }
 
+  /**
+   * @since 3.5.1
+   */
+  public CacheMemoryBudget getCacheMemoryBudget() {
+    return cacheMemoryBudget;
+  }
+
+  /**
+   * Sets the heap budget shared by the second level caches created afterwards. Only caches using an eviction
+   * policy that supports it, such as {@link TinyLfuCache}, take part in it.
+   *
+   * @since 3.5.1
+   */
+  public void setCacheMemoryBudget(CacheMemoryBudget cacheMemoryBudget) {
+    this.cacheMemoryBudget = cacheMemoryBudget;
+  }
+
+  /**
+   * @since 3.5.1
+   */
+  public CacheInvalidation getCacheInvalidation() {
+    return cacheInvalidation;
+  }
+
+  /**
+   * Sets how writes invalidate the second level caches created afterwards.
+   *
+   * @since 3.5.1
+   */
+  public void setCacheInvalidation(CacheInvalidation cacheInvalidation) {
+    this.cacheInvalidation = cacheInvalidation;
+  }
+
+  /**
+   * @since 3.5.1
+   */
+  public TableDependencyRegistry getTableDependencyRegistry() {
+    return tableDependencyRegistry;
+  }
+
+  /**
+   * @since 3.5.1
+   */
+  public InvalidationTransport getCacheInvalidationTransport() {
+    return invalidationBus == null ? null : invalidationBus.getTransport();
+  }
+
+  /**
+   * Shares the invalidations of the second level caches with the other nodes of a cluster through a transport,
+   * replacing the bus of a previous transport if any.
+   *
+   * @param transport the transport, or null to stop sharing invalidations
+   * @since 3.5.1
+   */
+  public void setCacheInvalidationTransport(InvalidationTransport transport) {
+    if (invalidationBus != null) {
+      invalidationBus.close();
+      invalidationBus = null;
+    }
+    if (transport != null) {
+      invalidationBus = new InvalidationBus(this, transport);
+      invalidationBus.setBatchInterval(cacheInvalidationBatchInterval);
+    }
+  }
+
+  /**
+   * @since 3.5.1
+   */
+  public InvalidationBus getInvalidationBus() {
+    return invalidationBus;
+  }
+
+  /**
+   * @since 3.5.1
+   */
+  public long getCacheInvalidationBatchInterval() {
+    return cacheInvalidationBatchInterval;
+  }
+
+  /**
+   * Sets how long the invalidations broadcast to the cluster are merged with those of later commits.
+   *
+   * @param cacheInvalidationBatchInterval the interval in milliseconds, 0 to send them on each commit
+   * @since 3.5.1
+   */
+  public void setCacheInvalidationBatchInterval(long cacheInvalidationBatchInterval) {
+    this.cacheInvalidationBatchInterval = cacheInvalidationBatchInterval;
+    if (invalidationBus != null) {
+      invalidationBus.setBatchInterval(cacheInvalidationBatchInterval);
+    }
+  }
+
+  /**
+   * @since 3.5.1
+   */
+  public boolean isCacheStatisticsEnabled() {
+    return cacheStatisticsEnabled;
+  }
+
+  /**
+   * Records the hits, misses, load time and weight of the second level caches per cache and per statement, and the
+   * puts and evictions per cache. Must be set before the caches are built.
+   *
+   * @param cacheStatisticsEnabled true to record the statistics of the caches into {@link #getCacheStatistics()}
+   * @since 3.5.1
+   */
+  public void setCacheStatisticsEnabled(boolean cacheStatisticsEnabled) {
+    this.cacheStatisticsEnabled = cacheStatisticsEnabled;
+  }
+
+  /**
+   * @since 3.5.1
+   */
+  public CacheStatisticsRegistry getCacheStatistics() {
+    return cacheStatistics;
+  }
+
+  /**
+   * 缓存键所属 statement 读取的表
+   */
+  private Set<String> getCacheKeyTables(Object key) {
+    if (key instanceof StatementCacheKey) {
+      StatementCacheKey.Prefix prefix = ((StatementCacheKey) key).getPrefix();
+      if (hasStatement(prefix.getId(), false)) {
+        return getMappedStatement(prefix.getId(), false).getTables(prefix.getSql());
+      }
+    }
+    return Collections.emptySet();
+  }
+
   public Integer getDefaultStatementTimeout() {
     return defaultStatementTimeout;
   }
@@ -599,6 +973,25 @@ public class Configuration {
     this.useColumnLabel = useColumnLabel;
   }
 
+  /**
+   * @since 3.5.1
+   */
+  public boolean isUseColumnIndex() {
+    return useColumnIndex;
+  }
+
+  /**
+   * Reads the columns of result sets by index instead of by label, the index of each label being resolved once per
+   * result set. Only the built-in type handlers read by index; custom type handlers still read by label. Ignored
+   * when {@link #isUseColumnLabel()} is false.
+   *
+   * @param useColumnIndex true to read columns by index
+   * @since 3.5.1
+   */
+  public void setUseColumnIndex(boolean useColumnIndex) {
+    this.useColumnIndex = useColumnIndex;
+  }
+
   public LocalCacheScope getLocalCacheScope() {
     return localCacheScope;
   }
@@ -607,6 +1000,41 @@ public class Configuration {
     this.localCacheScope = localCacheScope;
   }
 
+  /**
+   * @since 3.5.1
+   */
+  public Integer getLocalCacheSize() {
+    return localCacheSize;
+  }
+
+  /**
+   * Bounds the number of query results kept by the local cache of each session, evicting the least recently used
+   * ones once the outermost query is done.
+   *
+   * @param localCacheSize the number of results, or null for no bound
+   * @since 3.5.1
+   */
+  public void setLocalCacheSize(Integer localCacheSize) {
+    this.localCacheSize = localCacheSize;
+  }
+
+  /**
+   * @since 3.5.1
+   */
+  public Long getLocalCacheRows() {
+    return localCacheRows;
+  }
+
+  /**
+   * Bounds the number of rows of all the query results kept by the local cache of each session.
+   *
+   * @param localCacheRows the number of rows, or null for no bound
+   * @since 3.5.1
+   */
+  public void setLocalCacheRows(Long localCacheRows) {
+    this.localCacheRows = localCacheRows;
+  }
+
   public JdbcType getJdbcTypeForNull() {
     return jdbcTypeForNull;
   }
@@ -0,0 +1,93 @@
+/**
+ *    Copyright 2009-2019 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.cache;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.ibatis.cache.impl.ByteSizeWeigher;
+import org.apache.ibatis.session.Configuration;
+import org.junit.jupiter.api.Test;
+
+class ByteSizeWeigherTest {
+
+  @Test
+  void shouldWeighSerializedValuesByLength() {
+    assertEquals(1016, new ByteSizeWeigher().weigh("key", new byte[1000]));
+  }
+
+  @Test
+  void shouldWeighNullAsZero() {
+    assertEquals(0, new ByteSizeWeigher().weigh("key", null));
+  }
+
+  @Test
+  void shouldGrowWithNumberOfRows() {
+    long ten = ByteSizeWeigher.estimate(rows(10));
+    long thousand = ByteSizeWeigher.estimate(rows(1000));
+    assertTrue(ten > 10 * 24);
+    assertTrue(thousand > 90 * ten);
+  }
+
+  @Test
+  void shouldCountSharedObjectsOnce() {
+    Row row = new Row(1, "name");
+    List<Row> list = new ArrayList<>();
+    list.add(row);
+    long once = ByteSizeWeigher.estimate(list);
+    list.add(row);
+    long twice = ByteSizeWeigher.estimate(list);
+    assertTrue(twice - once < ByteSizeWeigher.estimate(row));
+  }
+
+  @Test
+  void shouldHandleCycles() {
+    Row row = new Row(1, "name");
+    row.parent = row;
+    assertTrue(ByteSizeWeigher.estimate(row) > 0);
+  }
+
+  @Test
+  void shouldNotCountFrameworkObjects() {
+    Row row = new Row(1, "name");
+    long alone = ByteSizeWeigher.estimate(row);
+    row.configuration = new Configuration();
+    assertEquals(alone, ByteSizeWeigher.estimate(row));
+  }
+
+  private static List<Row> rows(int count) {
+    List<Row> rows = new ArrayList<>();
+    for (int i = 0; i < count; i++) {
+      rows.add(new Row(i, "name" + i));
+    }
+    return rows;
+  }
+
+  private static class Row {
+    private final long id;
+    private final String name;
+    private Row parent;
+    private Configuration configuration;
+
+    Row(long id, String name) {
+      this.id = id;
+      this.name = name;
+    }
+  }
+
+}
@@ -0,0 +1,256 @@
+/**
+ *    Copyright 2009-2019 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.cache;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.Serializable;
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+
+import org.apache.ibatis.cache.decorators.SerializedCache;
+import org.apache.ibatis.cache.impl.BinaryCacheSerializer;
+import org.apache.ibatis.cache.impl.JavaCacheSerializer;
+import org.apache.ibatis.cache.impl.ObjectCopier;
+import org.apache.ibatis.cache.impl.PerpetualCache;
+import org.apache.ibatis.mapping.CacheBuilder;
+import org.apache.ibatis.reflection.SystemMetaObject;
+import org.junit.jupiter.api.Test;
+
+class CacheSerializerTest {
+
+  private final CacheSerializer binary = new BinaryCacheSerializer();
+
+  @Test
+  void shouldRoundTripSimpleValues() {
+    Timestamp timestamp = new Timestamp(1234567890123L);
+    timestamp.setNanos(123456789);
+    List<Object> values = Arrays.asList(null, "text", 1, 2L, 3.0, 4.0F, (short) 5, (byte) 6, true, 'c',
+        new BigDecimal("-12.345"), timestamp, LocalDateTime.of(2019, 1, 2, 3, 4, 5, 6), Color.GREEN,
+        new byte[] {1, 2, 3}, new int[] {4, 5});
+    for (Object value : values) {
+      Object copy = binary.deserialize(binary.serialize(value));
+      if (value instanceof byte[]) {
+        assertArrayEquals((byte[]) value, (byte[]) copy);
+      } else if (value instanceof int[]) {
+        assertArrayEquals((int[]) value, (int[]) copy);
+      } else {
+        assertEquals(value, copy);
+      }
+    }
+  }
+
+  @Test
+  void shouldRoundTripBeansWithCollections() {
+    ArrayList<Author> authors = authors();
+    @SuppressWarnings("unchecked")
+    ArrayList<Author> copy = (ArrayList<Author>) binary.deserialize(binary.serialize(authors));
+    assertEquals(authors, copy);
+    assertNotSame(authors.get(0), copy.get(0));
+    assertEquals(Color.RED, copy.get(1).getFavorite());
+  }
+
+  @Test
+  void shouldPreserveSharedReferencesAndCycles() {
+    Author author = new Author();
+    author.setName("ann");
+    HashMap<String, Object> attributes = new HashMap<>();
+    attributes.put("self", author);
+    author.setAttributes(attributes);
+    ArrayList<Author> authors = new ArrayList<>();
+    authors.add(author);
+    authors.add(author);
+    for (Object copy : Arrays.asList(binary.deserialize(binary.serialize(authors)),
+        new ObjectCopier().copy(authors))) {
+      @SuppressWarnings("unchecked")
+      List<Author> list = (List<Author>) copy;
+      assertSame(list.get(0), list.get(1));
+      assertSame(list.get(0), list.get(0).getAttributes().get("self"));
+      assertNotSame(author, list.get(0));
+    }
+  }
+
+  @Test
+  void shouldFallBackToJavaSerializationForCustomSerialization() {
+    Replaced replaced = new Replaced();
+    replaced.setValue("a");
+    Object copy = binary.deserialize(binary.serialize(replaced));
+    assertEquals("a!", ((Replaced) copy).getValue());
+    assertEquals("a!", ((Replaced) new ObjectCopier().copy(replaced)).getValue());
+  }
+
+  @Test
+  void shouldBeSmallerThanJavaSerialization() {
+    ArrayList<Author> authors = authors();
+    assertTrue(binary.serialize(authors).length < new JavaCacheSerializer().serialize(authors).length / 2);
+  }
+
+  @Test
+  void shouldCopyWithoutSharingMutableState() {
+    ArrayList<Author> authors = authors();
+    @SuppressWarnings("unchecked")
+    ArrayList<Author> copy = (ArrayList<Author>) new ObjectCopier().copy(authors);
+    assertEquals(authors, copy);
+    assertNotSame(authors.get(0).getAttributes(), copy.get(0).getAttributes());
+    assertSame(authors.get(0).getName(), copy.get(0).getName());
+  }
+
+  @Test
+  void shouldReturnNewCopyOnEveryHitInCopyOnReadMode() {
+    SerializedCache cache = new SerializedCache(new PerpetualCache("default"));
+    cache.setCopyOnRead(true);
+    ArrayList<Author> authors = authors();
+    cache.putObject("key", authors);
+    authors.get(0).setName("changed");
+    Object first = cache.getObject("key");
+    assertNotSame(first, cache.getObject("key"));
+    assertEquals("ann", ((List<?>) first).stream().map(a -> ((Author) a).getName()).findFirst().orElse(null));
+  }
+
+  @Test
+  void shouldConfigureSerializerFromCacheProperties() {
+    Properties properties = new Properties();
+    properties.setProperty("serializer", "binary");
+    Cache cache = new CacheBuilder("test").readWrite(true).properties(properties).build();
+    Object serializedCache = cache;
+    while (!(serializedCache instanceof SerializedCache)) {
+      serializedCache = SystemMetaObject.forObject(serializedCache).getValue("delegate");
+    }
+    assertTrue(((SerializedCache) serializedCache).getSerializer() instanceof BinaryCacheSerializer);
+    ArrayList<Author> authors = authors();
+    cache.putObject("key", authors);
+    assertEquals(authors, cache.getObject("key"));
+  }
+
+  @Test
+  void shouldRejectNonSerializableBeans() {
+    assertThrows(CacheException.class, () -> binary.serialize(new ArrayList<>(Arrays.asList(new Object()))));
+  }
+
+  private static ArrayList<Author> authors() {
+    ArrayList<Author> authors = new ArrayList<>();
+    for (int i = 0; i < 20; i++) {
+      Author author = new Author();
+      author.setId(i);
+      author.setName(i == 0 ? "ann" : "author" + i);
+      author.setFavorite(i % 2 == 0 ? Color.GREEN : Color.RED);
+      HashMap<String, Object> attributes = new HashMap<>();
+      attributes.put("posts", i * 10);
+      author.setAttributes(attributes);
+      authors.add(author);
+    }
+    return authors;
+  }
+
+  public enum Color {
+    RED, GREEN
+  }
+
+  public static class Author implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private int id;
+    private String name;
+    private Color favorite;
+    private Map<String, Object> attributes;
+    private transient String ignored;
+
+    public int getId() {
+      return id;
+    }
+
+    public void setId(int id) {
+      this.id = id;
+    }
+
+    public String getName() {
+      return name;
+    }
+
+    public void setName(String name) {
+      this.name = name;
+    }
+
+    public Color getFavorite() {
+      return favorite;
+    }
+
+    public void setFavorite(Color favorite) {
+      this.favorite = favorite;
+    }
+
+    public Map<String, Object> getAttributes() {
+      return attributes;
+    }
+
+    public void setAttributes(Map<String, Object> attributes) {
+      this.attributes = attributes;
+    }
+
+    public String getIgnored() {
+      return ignored;
+    }
+
+    public void setIgnored(String ignored) {
+      this.ignored = ignored;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (!(o instanceof Author)) {
+        return false;
+      }
+      Author other = (Author) o;
+      // attributes 可能包含自身，不参与比较
+      return id == other.id && name.equals(other.name) && favorite == other.favorite;
+    }
+
+    @Override
+    public int hashCode() {
+      return id;
+    }
+  }
+
+  public static class Replaced implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private String value;
+
+    public String getValue() {
+      return value;
+    }
+
+    public void setValue(String value) {
+      this.value = value;
+    }
+
+    private Object writeReplace() {
+      Replaced replaced = new Replaced();
+      replaced.setValue(value + "!");
+      return replaced;
+    }
+  }
+
+}
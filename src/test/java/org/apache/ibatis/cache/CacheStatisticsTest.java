@@ -0,0 +1,126 @@
+/**
+ *    Copyright 2009-2019 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.cache;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.ibatis.mapping.CacheBuilder;
+import org.junit.jupiter.api.Test;
+
+class CacheStatisticsTest {
+
+  @Test
+  void shouldCountPutsAndEvictions() {
+    CacheStatisticsRegistry registry = new CacheStatisticsRegistry();
+    Cache cache = new CacheBuilder("default").size(2).statistics(registry).build();
+    cache.putObject(1, 1);
+    cache.putObject(2, 2);
+    cache.putObject(3, 3);
+    Map<Object, Object> entries = new HashMap<>();
+    entries.put(4, 4);
+    entries.put(5, 5);
+    cache.putAll(entries);
+    CacheStatistics statistics = registry.getCacheStatistics("default");
+    assertEquals(5, statistics.getPuts());
+    assertEquals(3, statistics.getEvictions());
+    assertEquals(2, cache.getSize());
+  }
+
+  @Test
+  void shouldNotCountExplicitRemovalsAsEvictions() {
+    CacheStatisticsRegistry registry = new CacheStatisticsRegistry();
+    Cache cache = new CacheBuilder("default").statistics(registry).build();
+    cache.putObject(1, 1);
+    cache.putObject(2, 2);
+    cache.removeObject(1);
+    cache.clear();
+    assertEquals(2, registry.getCacheStatistics("default").getPuts());
+    assertEquals(0, registry.getCacheStatistics("default").getEvictions());
+  }
+
+  @Test
+  void shouldRecordPerCacheAndPerStatement() {
+    CacheStatisticsRegistry registry = new CacheStatisticsRegistry();
+    registry.recordMiss("ns", "ns.find", 100, 3);
+    registry.recordHit("ns", "ns.find");
+    registry.recordHit("ns", "ns.find");
+    registry.recordMiss("ns", "ns.list", 50, 10);
+
+    CacheStatistics cache = registry.getCacheStatistics("ns");
+    assertEquals(2, cache.getHits());
+    assertEquals(2, cache.getMisses());
+    assertEquals(150, cache.getLoadTime());
+    assertEquals(13, cache.getWeight());
+    assertEquals(0.5, cache.getHitRatio());
+
+    CacheStatistics find = registry.getStatementStatistics("ns.find");
+    assertEquals(2, find.getHits());
+    assertEquals(1, find.getMisses());
+    assertEquals(3, find.getWeight());
+    assertEquals(0, registry.getStatementStatistics("ns.list").getHitRatio());
+    assertTrue(registry.getStatementIds().contains("ns.list"));
+
+    registry.reset();
+    assertEquals(0, cache.getHits());
+    assertEquals(0, find.getMisses());
+  }
+
+  @Test
+  void shouldNotifyListeners() {
+    CacheStatisticsRegistry registry = new CacheStatisticsRegistry();
+    List<String> events = new ArrayList<>();
+    CacheStatisticsListener listener = new CacheStatisticsListener() {
+      @Override
+      public void onHit(String cacheId, String statementId) {
+        events.add("hit " + statementId);
+      }
+
+      @Override
+      public void onMiss(String cacheId, String statementId, long loadTime, int weight) {
+        events.add("miss " + statementId + " " + weight);
+      }
+
+      @Override
+      public void onPut(String cacheId, int count) {
+        events.add("put " + cacheId + " " + count);
+      }
+
+      @Override
+      public void onEviction(String cacheId, Object key) {
+        events.add("evict " + cacheId + " " + key);
+      }
+    };
+    registry.addListener(listener);
+    Cache cache = new CacheBuilder("default").size(1).statistics(registry).build();
+    registry.recordMiss("default", "find", 1, 2);
+    cache.putObject("a", 1);
+    registry.recordHit("default", "find");
+    cache.putObject("b", 2);
+    registry.removeListener(listener);
+    registry.recordHit("default", "find");
+    assertEquals(5, events.size());
+    assertEquals("miss find 2", events.get(0));
+    assertEquals("put default 1", events.get(1));
+    assertEquals("hit find", events.get(2));
+    assertTrue(events.contains("evict default a"));
+  }
+
+}
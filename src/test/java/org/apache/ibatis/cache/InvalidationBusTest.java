@@ -0,0 +1,182 @@
+/**
+ *    Copyright 2009-2019 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.cache;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.UUID;
+import java.util.function.Consumer;
+
+import org.apache.ibatis.cache.cluster.InvalidationBus;
+import org.apache.ibatis.cache.cluster.InvalidationMessage;
+import org.apache.ibatis.cache.cluster.InvalidationTransport;
+import org.apache.ibatis.cache.cluster.LoopbackTransport;
+import org.apache.ibatis.cache.decorators.TableDependencyCache;
+import org.apache.ibatis.cache.impl.PerpetualCache;
+import org.apache.ibatis.session.Configuration;
+import org.junit.jupiter.api.Test;
+
+class InvalidationBusTest {
+
+  @Test
+  void shouldRoundTripMessages() {
+    InvalidationMessage message = new InvalidationMessage(UUID.randomUUID(),
+        new HashSet<>(Arrays.asList("org.example.AuthorMapper", "org.example.BlogMapper")),
+        Collections.singleton("author"), false);
+    InvalidationMessage decoded = InvalidationMessage.fromBytes(message.toBytes());
+    assertEquals(message.getOrigin(), decoded.getOrigin());
+    assertEquals(message.getNamespaces(), decoded.getNamespaces());
+    assertEquals(message.getTables(), decoded.getTables());
+    assertFalse(decoded.isAllTables());
+
+    InvalidationMessage all = new InvalidationMessage(UUID.randomUUID(), Collections.emptySet(),
+        Collections.singleton("author"), true);
+    decoded = InvalidationMessage.fromBytes(all.toBytes());
+    assertTrue(decoded.isAllTables());
+    assertTrue(decoded.getTables().isEmpty());
+  }
+
+  @Test
+  void shouldRejectUnknownVersions() {
+    assertThrows(CacheException.class, () -> InvalidationMessage.fromBytes(new byte[] { 9 }));
+  }
+
+  @Test
+  void shouldClearCachesOfOtherNodes() {
+    Configuration local = new Configuration();
+    Configuration remote = new Configuration();
+    Cache localCache = new PerpetualCache("ns");
+    Cache remoteCache = new PerpetualCache("ns");
+    local.addCache(localCache);
+    remote.addCache(remoteCache);
+    localCache.putObject("k", "v");
+    remoteCache.putObject("k", "v");
+    local.setCacheInvalidationTransport(new LoopbackTransport("clear"));
+    remote.setCacheInvalidationTransport(new LoopbackTransport("clear"));
+    try {
+      local.getInvalidationBus().publish(Arrays.asList("ns", "unknown"), Collections.emptySet(), false);
+      assertNull(remoteCache.getObject("k"));
+      // 发送方自身的缓存由本地事务处理
+      assertEquals("v", localCache.getObject("k"));
+    } finally {
+      local.setCacheInvalidationTransport(null);
+      remote.setCacheInvalidationTransport(null);
+    }
+  }
+
+  @Test
+  void shouldInvalidateTablesOfOtherNodes() {
+    Configuration remote = new Configuration();
+    TableDependencyRegistry registry = new TableDependencyRegistry(key -> Collections.singleton((String) key));
+    TableDependencyCache cache = new TableDependencyCache(new PerpetualCache("ns"), registry);
+    cache.putObject("author", "a");
+    cache.putObject("blog", "b");
+    RecordingTransport transport = new RecordingTransport();
+    InvalidationBus bus = new InvalidationBus(remote, transport);
+    remote.getTableDependencyRegistry().register(cache);
+    transport.deliver(new InvalidationMessage(UUID.randomUUID(), Collections.emptySet(),
+        Collections.singleton("author"), false));
+    assertNull(cache.getObject("author"));
+    assertEquals("b", cache.getObject("blog"));
+    // 自身发出的消息被忽略
+    transport.deliver(new InvalidationMessage(bus.getNodeId(), Collections.emptySet(), Collections.emptySet(), true));
+    assertEquals("b", cache.getObject("blog"));
+    transport.deliver(new InvalidationMessage(UUID.randomUUID(), Collections.emptySet(), Collections.emptySet(), true));
+    assertNull(cache.getObject("blog"));
+  }
+
+  @Test
+  void shouldCoalesceCommitsWithinBatchInterval() throws Exception {
+    RecordingTransport transport = new RecordingTransport();
+    InvalidationBus bus = new InvalidationBus(new Configuration(), transport);
+    bus.setBatchInterval(60000);
+    bus.publish(Collections.singleton("a"), Collections.singleton("author"), false);
+    bus.publish(Arrays.asList("a", "b"), Collections.singleton("blog"), false);
+    assertTrue(transport.sent.isEmpty());
+    bus.flush();
+    assertEquals(1, transport.sent.size());
+    InvalidationMessage message = InvalidationMessage.fromBytes(transport.sent.get(0));
+    assertEquals(new HashSet<>(Arrays.asList("a", "b")), message.getNamespaces());
+    assertEquals(new HashSet<>(Arrays.asList("author", "blog")), message.getTables());
+
+    bus.publish(Collections.emptySet(), Collections.singleton("author"), false);
+    bus.publish(Collections.emptySet(), Collections.emptySet(), true);
+    bus.publish(Collections.emptySet(), Collections.singleton("blog"), false);
+    bus.close();
+    assertEquals(2, transport.sent.size());
+    message = InvalidationMessage.fromBytes(transport.sent.get(1));
+    assertTrue(message.isAllTables());
+    assertTrue(message.getTables().isEmpty());
+    assertTrue(transport.closed);
+  }
+
+  @Test
+  void shouldSendBatchAfterInterval() throws Exception {
+    RecordingTransport transport = new RecordingTransport();
+    InvalidationBus bus = new InvalidationBus(new Configuration(), transport);
+    bus.setBatchInterval(10);
+    bus.publish(Collections.singleton("a"), Collections.emptySet(), false);
+    for (int i = 0; i < 500 && transport.sent.isEmpty(); i++) {
+      Thread.sleep(10);
+    }
+    assertEquals(1, transport.sent.size());
+  }
+
+  @Test
+  void shouldNotFailWhenSendingFails() {
+    InvalidationBus bus = new InvalidationBus(new Configuration(), new RecordingTransport() {
+      @Override
+      public void send(byte[] message) {
+        throw new IllegalStateException("unreachable");
+      }
+    });
+    bus.publish(Collections.singleton("a"), Collections.emptySet(), false);
+  }
+
+  private static class RecordingTransport implements InvalidationTransport {
+
+    final List<byte[]> sent = Collections.synchronizedList(new ArrayList<>());
+
+    Consumer<byte[]> receiver;
+
+    boolean closed;
+
+    @Override
+    public void start(Consumer<byte[]> receiver) {
+      this.receiver = receiver;
+    }
+
+    @Override
+    public void send(byte[] message) {
+      sent.add(message);
+    }
+
+    @Override
+    public void close() {
+      closed = true;
+    }
+
+    void deliver(InvalidationMessage message) {
+      receiver.accept(message.toBytes());
+    }
+  }
+
+}
@@ -0,0 +1,203 @@
+/**
+ *    Copyright 2009-2019 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.cache;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.ibatis.cache.decorators.LoggingCache;
+import org.apache.ibatis.cache.decorators.TransactionalCache;
+import org.apache.ibatis.cache.impl.NearCache;
+import org.apache.ibatis.mapping.CacheBuilder;
+import org.junit.jupiter.api.Test;
+
+class NearCacheTest {
+
+  @Test
+  void shouldPromoteRemoteValuesToLocalTier() {
+    NearCache cache = newCache(16, 1000);
+    CountingStore store = (CountingStore) cache.getRemoteStore();
+    store.entries.put("key", "value");
+    assertEquals("value", cache.getObject("key"));
+    assertEquals("value", cache.getObject("key"));
+    assertEquals(1, store.gets.get());
+  }
+
+  @Test
+  void shouldWriteThroughToBothTiers() {
+    NearCache cache = newCache(16, 1000);
+    CountingStore store = (CountingStore) cache.getRemoteStore();
+    cache.putObject("key", "value");
+    assertEquals("value", store.entries.get("key"));
+    assertEquals("value", cache.getObject("key"));
+    assertEquals(0, store.gets.get());
+    assertEquals(1, cache.getSize());
+  }
+
+  @Test
+  void shouldRememberMissingKeys() throws Exception {
+    NearCache cache = newCache(16, 50);
+    CountingStore store = (CountingStore) cache.getRemoteStore();
+    assertNull(cache.getObject("key"));
+    assertNull(cache.getObject("key"));
+    assertEquals(1, store.gets.get());
+    store.entries.put("key", "value");
+    Thread.sleep(100);
+    assertEquals("value", cache.getObject("key"));
+    assertEquals(2, store.gets.get());
+  }
+
+  @Test
+  void shouldEvictLocalTierBySize() {
+    NearCache cache = newCache(2, 1000);
+    CountingStore store = (CountingStore) cache.getRemoteStore();
+    cache.putObject("a", "1");
+    cache.putObject("b", "2");
+    cache.putObject("c", "3");
+    assertEquals("1", cache.getObject("a"));
+    assertEquals(1, store.gets.get());
+    assertEquals("3", cache.getObject("c"));
+    assertEquals(1, store.gets.get());
+  }
+
+  @Test
+  void shouldRemoveFromBothTiers() {
+    NearCache cache = newCache(16, 1000);
+    CountingStore store = (CountingStore) cache.getRemoteStore();
+    cache.putObject("key", "value");
+    cache.putObject("other", "value");
+    cache.removeAll(Arrays.asList("key", "other"));
+    assertTrue(store.entries.isEmpty());
+    assertNull(cache.getObject("key"));
+  }
+
+  @Test
+  void shouldNotTouchRemoteStoreOnRollback() {
+    Properties props = new Properties();
+    props.setProperty("store", CountingStore.class.getName());
+    Cache cache = new CacheBuilder("near").implementation(NearCache.class).properties(props).build();
+    TransactionalCache txCache = new TransactionalCache(cache);
+    assertNull(txCache.getObject("key"));
+    // 其他节点在回滚前写入了同一 key
+    CountingStore store = CountingStore.last;
+    store.entries.put("key", "value");
+    txCache.rollback();
+
+    assertEquals(0, store.removes.get());
+    assertEquals("value", store.entries.get("key"));
+  }
+
+  @Test
+  void shouldClearBothTiers() {
+    NearCache cache = newCache(16, 1000);
+    CountingStore store = (CountingStore) cache.getRemoteStore();
+    cache.putObject("key", "value");
+    cache.clear();
+    assertTrue(store.entries.isEmpty());
+    assertNull(cache.getObject("key"));
+  }
+
+  @Test
+  void shouldWriteCommitInSingleRemoteCall() {
+    Properties props = new Properties();
+    props.setProperty("store", CountingStore.class.getName());
+    Cache cache = new CacheBuilder("near").implementation(NearCache.class).properties(props).build();
+    assertTrue(cache instanceof LoggingCache);
+    TransactionalCache txCache = new TransactionalCache(cache);
+    for (int i = 0; i < 10; i++) {
+      txCache.getObject("key" + i);
+      txCache.putObject("key" + i, "value" + i);
+    }
+    assertNull(txCache.getObject("missed"));
+    txCache.commit();
+
+    CountingStore store = CountingStore.last;
+    assertEquals(1, store.putAlls.get());
+    assertEquals(10, store.entries.size());
+    int gets = store.gets.get();
+    // 提交的未命中 key 只在本地记为不存在
+    assertNull(cache.getObject("missed"));
+    assertEquals("value3", cache.getObject("key3"));
+    assertEquals(gets, store.gets.get());
+  }
+
+  @Test
+  void shouldRequireStore() {
+    NearCache cache = new NearCache("near");
+    assertThrows(CacheException.class, cache::initialize);
+  }
+
+  private static NearCache newCache(int localSize, long negativeTtl) {
+    NearCache cache = new NearCache("near");
+    cache.setStore(CountingStore.class.getName());
+    cache.setLocalSize(localSize);
+    cache.setNegativeTtl(negativeTtl);
+    cache.initialize();
+    return cache;
+  }
+
+  public static class CountingStore implements RemoteCacheStore {
+
+    static volatile CountingStore last;
+
+    final Map<Object, Object> entries = new ConcurrentHashMap<>();
+
+    final AtomicInteger gets = new AtomicInteger();
+
+    final AtomicInteger putAlls = new AtomicInteger();
+
+    final AtomicInteger removes = new AtomicInteger();
+
+    public CountingStore(String id) {
+      last = this;
+    }
+
+    @Override
+    public Object get(Object key) {
+      gets.incrementAndGet();
+      return entries.get(key);
+    }
+
+    @Override
+    public void putAll(Map<Object, Object> entries) {
+      putAlls.incrementAndGet();
+      this.entries.putAll(new HashMap<>(entries));
+    }
+
+    @Override
+    public void remove(Object key) {
+      removes.incrementAndGet();
+      entries.remove(key);
+    }
+
+    @Override
+    public void clear() {
+      entries.clear();
+    }
+
+    @Override
+    public int size() {
+      return entries.size();
+    }
+  }
+
+}
@@ -0,0 +1,134 @@
+/**
+ *    Copyright 2009-2019 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.cache;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Properties;
+
+import org.apache.ibatis.cache.decorators.NegativeResultCache;
+import org.apache.ibatis.cache.decorators.TableDependencyCache;
+import org.apache.ibatis.cache.decorators.TransactionalCache;
+import org.apache.ibatis.cache.impl.PerpetualCache;
+import org.apache.ibatis.mapping.CacheBuilder;
+import org.apache.ibatis.reflection.SystemMetaObject;
+import org.junit.jupiter.api.Test;
+
+class NegativeResultCacheTest {
+
+  @Test
+  void shouldKeepEmptyResultsApartFromDelegate() {
+    PerpetualCache base = new PerpetualCache("default");
+    NegativeResultCache cache = newCache(base, 60000, 16);
+    cache.putObject("absent", new ArrayList<>());
+    cache.putObject("present", Collections.singletonList("row"));
+    assertEquals(1, base.getSize());
+    assertEquals(1, cache.getNegativeSize());
+    assertEquals(Collections.emptyList(), cache.getObject("absent"));
+    assertEquals(Collections.singletonList("row"), cache.getObject("present"));
+  }
+
+  @Test
+  void shouldReturnNewEmptyListOnEachHit() {
+    NegativeResultCache cache = newCache(new PerpetualCache("default"), 60000, 16);
+    cache.putObject("absent", new ArrayList<>());
+    @SuppressWarnings("unchecked")
+    List<Object> first = (List<Object>) cache.getObject("absent");
+    first.add("modified by caller");
+    assertEquals(Collections.emptyList(), cache.getObject("absent"));
+  }
+
+  @Test
+  void shouldExpireEmptyResults() throws Exception {
+    NegativeResultCache cache = newCache(new PerpetualCache("default"), 20, 16);
+    cache.putObject("absent", new ArrayList<>());
+    Thread.sleep(50);
+    assertNull(cache.getObject("absent"));
+    assertEquals(0, cache.getNegativeSize());
+  }
+
+  @Test
+  void shouldBoundEmptyResults() {
+    NegativeResultCache cache = newCache(new PerpetualCache("default"), 60000, 2);
+    cache.putObject("a", new ArrayList<>());
+    cache.putObject("b", new ArrayList<>());
+    cache.putObject("c", new ArrayList<>());
+    assertEquals(2, cache.getNegativeSize());
+    assertNull(cache.getObject("a"));
+    assertNotNull(cache.getObject("c"));
+  }
+
+  @Test
+  void shouldReplaceEmptyResultWithRows() {
+    NegativeResultCache cache = newCache(new PerpetualCache("default"), 60000, 16);
+    cache.putObject("key", new ArrayList<>());
+    cache.putObject("key", Collections.singletonList("row"));
+    assertEquals(Collections.singletonList("row"), cache.getObject("key"));
+    cache.removeObject("key");
+    assertNull(cache.getObject("key"));
+  }
+
+  @Test
+  void shouldNotReturnReplacedRowsOnceEmptyResultExpires() throws Exception {
+    NegativeResultCache cache = newCache(new PerpetualCache("default"), 20, 16);
+    cache.putObject("key", Collections.singletonList("row"));
+    cache.putObject("key", new ArrayList<>());
+    assertEquals(Collections.emptyList(), cache.getObject("key"));
+    Thread.sleep(50);
+    assertNull(cache.getObject("key"));
+  }
+
+  @Test
+  void shouldDropEmptyResultsOnClearAndCommitThemTransactionally() {
+    NegativeResultCache cache = newCache(new PerpetualCache("default"), 60000, 16);
+    TransactionalCache txCache = new TransactionalCache(cache);
+    assertNull(txCache.getObject("absent"));
+    txCache.putObject("absent", new ArrayList<>());
+    assertNull(cache.getObject("absent"));
+    txCache.commit();
+    assertEquals(Collections.emptyList(), cache.getObject("absent"));
+    cache.clear();
+    assertNull(cache.getObject("absent"));
+  }
+
+  @Test
+  void shouldBeAddedByCacheBuilderBelowTableDependencies() {
+    Properties props = new Properties();
+    props.setProperty("negativeResultTtl", "5000");
+    props.setProperty("negativeResultSize", "10");
+    Cache cache = new CacheBuilder("test").properties(props)
+        .tableDependencies(new TableDependencyRegistry(key -> Collections.emptySet())).build();
+    assertTrue(cache instanceof TableDependencyCache);
+    NegativeResultCache negativeResultCache = (NegativeResultCache) SystemMetaObject.forObject(cache).getValue("delegate");
+    assertEquals(5000, negativeResultCache.getNegativeResultTtl());
+    assertEquals(10, negativeResultCache.getNegativeResultSize());
+    cache.putObject("absent", new ArrayList<>());
+    assertEquals(Collections.emptyList(), cache.getObject("absent"));
+    ((TableDependencyCache) cache).invalidate(Collections.singleton("author"));
+    assertNull(cache.getObject("absent"));
+  }
+
+  private static NegativeResultCache newCache(Cache delegate, long ttl, int size) {
+    NegativeResultCache cache = new NegativeResultCache(delegate);
+    cache.setNegativeResultTtl(ttl);
+    cache.setNegativeResultSize(size);
+    return cache;
+  }
+
+}
@@ -0,0 +1,207 @@
+/**
+ *    Copyright 2009-2019 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.cache;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+
+import org.apache.ibatis.cache.decorators.LoggingCache;
+import org.apache.ibatis.cache.impl.OffHeapCache;
+import org.apache.ibatis.mapping.CacheBuilder;
+import org.junit.jupiter.api.Assumptions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class OffHeapCacheTest {
+
+  @Test
+  void shouldReturnCopiesOfCachedValues() {
+    OffHeapCache cache = new OffHeapCache("default");
+    ArrayList<String> rows = rows(10);
+    cache.putObject("key", rows);
+    Object copy = cache.getObject("key");
+    assertEquals(rows, copy);
+    assertNotSame(rows, copy);
+    assertNotSame(copy, cache.getObject("key"));
+  }
+
+  @Test
+  void shouldStoreEntriesSpanningManyBlocks() {
+    OffHeapCache cache = new OffHeapCache("default");
+    cache.setBlockSize(64);
+    ArrayList<String> rows = rows(1000);
+    cache.putObject("key", rows);
+    assertEquals(rows, cache.getObject("key"));
+  }
+
+  @Test
+  void shouldEvictLeastRecentlyUsedWhenFull() {
+    OffHeapCache cache = new OffHeapCache("default");
+    cache.setCapacity(8 * 1024);
+    cache.setBlockSize(1024);
+    for (int i = 0; i < 8; i++) {
+      cache.putObject(i, new byte[900]);
+    }
+    assertEquals(8, cache.getSize());
+    assertNotNull(cache.getObject(0));
+    cache.putObject(8, new byte[900]);
+    assertEquals(8, cache.getSize());
+    assertNotNull(cache.getObject(0));
+    assertNull(cache.getObject(1));
+    assertEquals(8 * 1024, cache.getUsedBytes());
+  }
+
+  @Test
+  void shouldReuseBlocksOfReplacedEntries() {
+    OffHeapCache cache = new OffHeapCache("default");
+    cache.setCapacity(4 * 1024);
+    for (int i = 0; i < 100; i++) {
+      cache.putObject("key", new byte[3000]);
+    }
+    assertEquals(1, cache.getSize());
+    assertEquals(3 * 1024, cache.getUsedBytes());
+  }
+
+  @Test
+  void shouldNotCacheEntriesLargerThanCapacity() {
+    OffHeapCache cache = new OffHeapCache("default");
+    cache.setCapacity(1024);
+    cache.putObject("key", new byte[2000]);
+    assertNull(cache.getObject("key"));
+  }
+
+  @Test
+  void shouldRemoveAndClear() {
+    OffHeapCache cache = new OffHeapCache("default");
+    cache.putObject(0, "zero");
+    cache.putObject(1, "one");
+    cache.removeObject(0);
+    assertNull(cache.getObject(0));
+    assertEquals("one", cache.getObject(1));
+    cache.clear();
+    assertNull(cache.getObject(1));
+    assertEquals(0, cache.getUsedBytes());
+  }
+
+  @Test
+  void shouldTreatNullAsMiss() {
+    OffHeapCache cache = new OffHeapCache("default");
+    cache.putObject("key", "value");
+    cache.putObject("key", null);
+    assertNull(cache.getObject("key"));
+    assertEquals(0, cache.getSize());
+  }
+
+  @Test
+  void shouldRejectNonSerializableValues() {
+    OffHeapCache cache = new OffHeapCache("default");
+    assertThrows(CacheException.class, () -> cache.putObject("key", new Object()));
+  }
+
+  @Test
+  void shouldStoreEntriesInMappedFile(@TempDir Path tempDir) {
+    File file = tempDir.resolve("cache.bin").toFile();
+    OffHeapCache cache = new OffHeapCache("default");
+    cache.setFile(file.getAbsolutePath());
+    cache.setCapacity(1024 * 1024);
+    cache.initialize();
+    ArrayList<String> rows = rows(100);
+    cache.putObject("key", rows);
+    assertEquals(rows, cache.getObject("key"));
+    assertTrue(file.length() > 0);
+  }
+
+  @Test
+  void shouldNotKeepMappedFileOpen(@TempDir Path tempDir) throws Exception {
+    File descriptors = new File("/proc/self/fd");
+    Assumptions.assumeTrue(descriptors.isDirectory(), "Open files can only be listed on Linux");
+    File file = tempDir.resolve("cache.bin").toFile();
+    OffHeapCache cache = new OffHeapCache("default");
+    cache.setFile(file.getAbsolutePath());
+    cache.setCapacity(64 * 1024 * 1024);
+    cache.initialize();
+    ArrayList<String> rows = rows(100);
+    cache.putObject("key", rows);
+    for (File descriptor : descriptors.listFiles()) {
+      try {
+        assertNotEquals(file.toPath().toRealPath(), descriptor.toPath().toRealPath());
+      } catch (IOException e) {
+        // 描述符已关闭
+      }
+    }
+    assertEquals(rows, cache.getObject("key"));
+  }
+
+  @Test
+  void shouldPlugIntoCacheBuilderAsCustomType() {
+    Properties props = new Properties();
+    props.setProperty("capacity", "4096");
+    props.setProperty("blockSize", "512");
+    Cache cache = new CacheBuilder("test").implementation(OffHeapCache.class).properties(props).build();
+    assertTrue(cache instanceof LoggingCache);
+    assertTrue(cache.isThreadSafe());
+    cache.putObject("key", "value");
+    assertEquals("value", cache.getObject("key"));
+  }
+
+  @Test
+  void shouldSupportConcurrentAccess() throws Exception {
+    OffHeapCache cache = new OffHeapCache("default");
+    cache.setCapacity(64 * 1024);
+    ExecutorService executor = Executors.newFixedThreadPool(8);
+    try {
+      List<Future<?>> futures = new ArrayList<>();
+      for (int t = 0; t < 8; t++) {
+        futures.add(executor.submit(() -> {
+          ThreadLocalRandom random = ThreadLocalRandom.current();
+          for (int i = 0; i < 2000; i++) {
+            int key = random.nextInt(100);
+            Object value = cache.getObject(key);
+            if (value == null) {
+              cache.putObject(key, rows(key));
+            } else {
+              assertEquals(rows(key), value);
+            }
+          }
+        }));
+      }
+      for (Future<?> future : futures) {
+        future.get();
+      }
+    } finally {
+      executor.shutdown();
+    }
+  }
+
+  private static ArrayList<String> rows(int count) {
+    ArrayList<String> rows = new ArrayList<>();
+    for (int i = 0; i < count; i++) {
+      rows.add("row" + i);
+    }
+    return rows;
+  }
+
+}
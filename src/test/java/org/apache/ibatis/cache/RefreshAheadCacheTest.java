@@ -0,0 +1,250 @@
+/**
+ *    Copyright 2009-2019 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.cache;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.Collections;
+import java.util.Properties;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.ibatis.cache.decorators.RefreshAheadCache;
+import org.apache.ibatis.cache.decorators.TableDependencyCache;
+import org.apache.ibatis.cache.decorators.TransactionalCache;
+import org.apache.ibatis.cache.impl.ConcurrentPerpetualCache;
+import org.apache.ibatis.mapping.CacheBuilder;
+import org.junit.jupiter.api.Test;
+
+class RefreshAheadCacheTest {
+
+  @Test
+  void shouldExpireEntriesIndependently() throws Exception {
+    RefreshAheadCache cache = new RefreshAheadCache(new ConcurrentPerpetualCache("default"));
+    cache.setTimeToLive(100);
+    cache.putObject("old", "value");
+    Thread.sleep(60);
+    cache.putObject("new", "value");
+    Thread.sleep(60);
+    assertNull(cache.getObject("old"));
+    assertEquals("value", cache.getObject("new"));
+  }
+
+  @Test
+  void shouldReturnStaleValueWhileRefreshing() throws Exception {
+    RefreshAheadCache cache = new RefreshAheadCache(new ConcurrentPerpetualCache("default"));
+    cache.setTimeToLive(100);
+    cache.setRefreshAhead(80);
+    CountDownLatch loading = new CountDownLatch(1);
+    CountDownLatch release = new CountDownLatch(1);
+    AtomicInteger loads = new AtomicInteger();
+    cache.setLoader("key", () -> {
+      loads.incrementAndGet();
+      loading.countDown();
+      release.await();
+      return "fresh";
+    });
+    cache.putObject("key", "stale");
+    assertEquals("stale", cache.getObject("key"));
+    assertEquals(0, loads.get());
+    Thread.sleep(40);
+    assertEquals("stale", cache.getObject("key"));
+    assertTrue(loading.await(1, TimeUnit.SECONDS));
+    Thread.sleep(80);
+    // expired, but still served while the reload is in progress
+    assertEquals("stale", cache.getObject("key"));
+    release.countDown();
+    assertEquals("fresh", awaitValue(cache, "key", "fresh"));
+    assertEquals(1, loads.get());
+  }
+
+  @Test
+  void shouldStopRefreshingAfterFailure() throws Exception {
+    RefreshAheadCache cache = new RefreshAheadCache(new ConcurrentPerpetualCache("default"));
+    cache.setTimeToLive(50);
+    AtomicInteger loads = new AtomicInteger();
+    cache.setLoader("key", () -> {
+      loads.incrementAndGet();
+      throw new IllegalStateException("database down");
+    });
+    cache.putObject("key", "value");
+    Thread.sleep(60);
+    assertEquals("value", cache.getObject("key"));
+    long deadline = System.currentTimeMillis() + 1000;
+    while (cache.getObject("key") != null && System.currentTimeMillis() < deadline) {
+      Thread.sleep(5);
+    }
+    assertNull(cache.getObject("key"));
+    assertEquals(1, loads.get());
+  }
+
+  @Test
+  void shouldDiscardRefreshStartedBeforeClear() throws Exception {
+    RefreshAheadCache cache = new RefreshAheadCache(new ConcurrentPerpetualCache("default"));
+    cache.setTimeToLive(50);
+    CountDownLatch loading = new CountDownLatch(1);
+    CountDownLatch release = new CountDownLatch(1);
+    CountDownLatch loaded = new CountDownLatch(1);
+    cache.setLoader("key", () -> {
+      loading.countDown();
+      release.await();
+      loaded.countDown();
+      return "fresh";
+    });
+    cache.putObject("key", "stale");
+    Thread.sleep(60);
+    assertEquals("stale", cache.getObject("key"));
+    assertTrue(loading.await(1, TimeUnit.SECONDS));
+    cache.clear();
+    release.countDown();
+    assertTrue(loaded.await(1, TimeUnit.SECONDS));
+    Thread.sleep(20);
+    assertNull(cache.getObject("key"));
+    assertEquals(0, cache.getSize());
+  }
+
+  @Test
+  void shouldNotWriteBackRefreshAfterConcurrentClear() throws Exception {
+    CountDownLatch writing = new CountDownLatch(1);
+    CountDownLatch release = new CountDownLatch(1);
+    RefreshAheadCache cache = new RefreshAheadCache(new ConcurrentPerpetualCache("default") {
+      @Override
+      public void putObject(Object key, Object value) {
+        if ("fresh".equals(value)) {
+          writing.countDown();
+          try {
+            release.await();
+          } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+          }
+        }
+        super.putObject(key, value);
+      }
+    });
+    cache.setTimeToLive(50);
+    cache.setLoader("key", () -> "fresh");
+    cache.putObject("key", "stale");
+    Thread.sleep(60);
+    assertEquals("stale", cache.getObject("key"));
+    assertTrue(writing.await(1, TimeUnit.SECONDS));
+    // 刷新已通过检查正在写入，清空须等待写入完成
+    CompletableFuture<Void> clear = CompletableFuture.runAsync(cache::clear);
+    Thread.sleep(50);
+    assertFalse(clear.isDone());
+    release.countDown();
+    clear.get(1, TimeUnit.SECONDS);
+    assertNull(cache.getObject("key"));
+    assertEquals(0, cache.getSize());
+  }
+
+  @Test
+  void shouldDiscardRefreshStartedBeforeTableInvalidation() throws Exception {
+    TableDependencyRegistry registry = new TableDependencyRegistry(key -> Collections.singleton("person"));
+    TableDependencyCache tableDependencyCache = new TableDependencyCache(new ConcurrentPerpetualCache("default"), registry);
+    registry.register(tableDependencyCache);
+    RefreshAheadCache cache = new RefreshAheadCache(tableDependencyCache);
+    cache.setTableDependencyCache(tableDependencyCache);
+    cache.setTimeToLive(50);
+    CountDownLatch loading = new CountDownLatch(1);
+    CountDownLatch release = new CountDownLatch(1);
+    CountDownLatch loaded = new CountDownLatch(1);
+    cache.setLoader("key", () -> {
+      loading.countDown();
+      release.await();
+      loaded.countDown();
+      // 失效前读到的值
+      return "stale";
+    });
+    cache.putObject("key", "old");
+    Thread.sleep(60);
+    assertEquals("old", cache.getObject("key"));
+    assertTrue(loading.await(1, TimeUnit.SECONDS));
+    registry.invalidate(Collections.singleton("person"));
+    release.countDown();
+    assertTrue(loaded.await(1, TimeUnit.SECONDS));
+    Thread.sleep(20);
+    assertNull(cache.getObject("key"));
+    assertEquals(0, cache.getSize());
+  }
+
+  @Test
+  void shouldWireTableDependenciesInCacheBuilder() {
+    Properties props = new Properties();
+    props.setProperty("refreshAhead", "100");
+    TableDependencyRegistry registry = new TableDependencyRegistry(key -> Collections.emptySet());
+    Cache cache = new CacheBuilder("test").clearInterval(1000L).properties(props).tableDependencies(registry).build();
+    assertTrue(cache instanceof RefreshAheadCache);
+    assertNotNull(((RefreshAheadCache) cache).getTableDependencyCache());
+  }
+
+  @Test
+  void shouldRegisterLoadersOnlyWhenTransactionCommits() throws Exception {
+    RefreshAheadCache cache = new RefreshAheadCache(new ConcurrentPerpetualCache("default"));
+    cache.setTimeToLive(50);
+    AtomicInteger loads = new AtomicInteger();
+    TransactionalCache rolledBack = new TransactionalCache(cache);
+    rolledBack.putObject("key", "value");
+    rolledBack.putLoader("key", () -> {
+      loads.incrementAndGet();
+      return "reloaded";
+    });
+    rolledBack.rollback();
+    TransactionalCache committed = new TransactionalCache(cache);
+    committed.putObject("key", "value");
+    committed.commit();
+    Thread.sleep(60);
+    // 回滚事务的加载器未被登记，过期后视为未命中
+    assertNull(cache.getObject("key"));
+    assertEquals(0, loads.get());
+
+    TransactionalCache reloadable = new TransactionalCache(cache);
+    reloadable.putObject("key", "value");
+    reloadable.putLoader("key", () -> {
+      loads.incrementAndGet();
+      return "reloaded";
+    });
+    reloadable.commit();
+    Thread.sleep(60);
+    assertEquals("value", cache.getObject("key"));
+    assertEquals("reloaded", awaitValue(cache, "key", "reloaded"));
+    assertEquals(1, loads.get());
+  }
+
+  @Test
+  void shouldTreatEntriesWithoutLoaderAsMissesOnceExpired() throws Exception {
+    RefreshAheadCache cache = new RefreshAheadCache(new ConcurrentPerpetualCache("default"));
+    cache.setTimeToLive(50);
+    cache.setRefreshAhead(40);
+    cache.putObject("key", "value");
+    Thread.sleep(20);
+    assertEquals("value", cache.getObject("key"));
+    Thread.sleep(40);
+    assertNull(cache.getObject("key"));
+  }
+
+  private static Object awaitValue(Cache cache, Object key, Object expected) throws InterruptedException {
+    long deadline = System.currentTimeMillis() + 1000;
+    Object value = cache.getObject(key);
+    while (!expected.equals(value) && System.currentTimeMillis() < deadline) {
+      Thread.sleep(5);
+      value = cache.getObject(key);
+    }
+    return value;
+  }
+
+}
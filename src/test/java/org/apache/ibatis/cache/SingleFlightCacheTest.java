@@ -0,0 +1,143 @@
+/**
+ *    Copyright 2009-2019 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.cache;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.ibatis.cache.decorators.SerializedCache;
+import org.apache.ibatis.cache.decorators.SingleFlightCache;
+import org.apache.ibatis.cache.impl.ConcurrentPerpetualCache;
+import org.junit.jupiter.api.Test;
+
+class SingleFlightCacheTest {
+
+  @Test
+  void shouldShareLoadedValueWithWaiters() throws Exception {
+    SingleFlightCache cache = new SingleFlightCache(new ConcurrentPerpetualCache("default"));
+    cache.setShareLoadedValue(true);
+    assertNull(cache.getObject("key"));
+    Future<Object> waiter = submit(() -> cache.getObject("key"));
+    assertWaiting(waiter);
+    List<String> value = new ArrayList<>();
+    cache.putObject("key", value);
+    assertSame(value, waiter.get(1, TimeUnit.SECONDS));
+  }
+
+  @Test
+  void shouldReadOwnCopyWhenNotShared() throws Exception {
+    SingleFlightCache cache = new SingleFlightCache(new SerializedCache(new ConcurrentPerpetualCache("default")));
+    assertNull(cache.getObject("key"));
+    Future<Object> waiter = submit(() -> cache.getObject("key"));
+    assertWaiting(waiter);
+    ArrayList<String> value = new ArrayList<>();
+    value.add("row");
+    cache.putObject("key", value);
+    Object copy = waiter.get(1, TimeUnit.SECONDS);
+    assertEquals(value, copy);
+    assertNotSame(value, copy);
+  }
+
+  @Test
+  void shouldHandOverLoadWhenReleased() throws Exception {
+    SingleFlightCache cache = new SingleFlightCache(new ConcurrentPerpetualCache("default"));
+    assertNull(cache.getObject("key"));
+    Future<Object> waiter = submit(() -> cache.getObject("key"));
+    assertWaiting(waiter);
+    cache.removeObject("key");
+    assertNull(waiter.get(1, TimeUnit.SECONDS));
+    // the waiter is now the loader
+    Future<Object> next = submit(() -> cache.getObject("key"));
+    assertWaiting(next);
+    cache.putObject("key", "value");
+    assertEquals("value", next.get(1, TimeUnit.SECONDS));
+  }
+
+  @Test
+  void shouldReleaseLoadFromAnotherThread() throws Exception {
+    SingleFlightCache cache = new SingleFlightCache(new ConcurrentPerpetualCache("default"));
+    assertNull(submit(() -> cache.getObject("key")).get(1, TimeUnit.SECONDS));
+    Future<Object> waiter = submit(() -> cache.getObject("key"));
+    assertWaiting(waiter);
+    cache.putObject("key", "value");
+    assertEquals("value", waiter.get(1, TimeUnit.SECONDS));
+  }
+
+  @Test
+  void shouldTakeOverAbandonedLoadAfterTimeout() throws Exception {
+    SingleFlightCache cache = new SingleFlightCache(new ConcurrentPerpetualCache("default"));
+    cache.setTimeout(50);
+    assertNull(cache.getObject("key"));
+    assertNull(submit(() -> cache.getObject("key")).get(1, TimeUnit.SECONDS));
+  }
+
+  @Test
+  void shouldNotWaitForItself() {
+    SingleFlightCache cache = new SingleFlightCache(new ConcurrentPerpetualCache("default"));
+    assertNull(cache.getObject("key"));
+    assertNull(cache.getObject("key"));
+  }
+
+  @Test
+  void shouldLoadOnceForConcurrentMisses() throws Exception {
+    SingleFlightCache cache = new SingleFlightCache(new ConcurrentPerpetualCache("default"));
+    cache.setShareLoadedValue(true);
+    AtomicInteger loads = new AtomicInteger();
+    CountDownLatch start = new CountDownLatch(1);
+    List<Future<Object>> futures = new ArrayList<>();
+    for (int i = 0; i < 8; i++) {
+      futures.add(submit(() -> {
+        start.await();
+        Object value = cache.getObject("key");
+        if (value == null) {
+          loads.incrementAndGet();
+          Thread.sleep(50);
+          value = "value";
+          cache.putObject("key", value);
+        }
+        return value;
+      }));
+    }
+    start.countDown();
+    for (Future<Object> future : futures) {
+      assertEquals("value", future.get(5, TimeUnit.SECONDS));
+    }
+    assertEquals(1, loads.get());
+  }
+
+  // a new thread per call, a loading thread never waits for itself
+  private <T> Future<T> submit(Callable<T> task) {
+    FutureTask<T> future = new FutureTask<>(task);
+    Thread thread = new Thread(future);
+    thread.setDaemon(true);
+    thread.start();
+    return future;
+  }
+
+  private void assertWaiting(Future<?> future) throws Exception {
+    assertThrows(TimeoutException.class, () -> future.get(100, TimeUnit.MILLISECONDS));
+  }
+
+}
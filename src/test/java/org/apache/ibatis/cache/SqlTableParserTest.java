@@ -0,0 +1,79 @@
+/**
+ *    Copyright 2009-2019 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.cache;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.junit.jupiter.api.Test;
+
+class SqlTableParserTest {
+
+  @Test
+  void shouldFindTablesOfQueries() {
+    assertTables("select * from author", "author");
+    assertTables("SELECT a.id FROM Author a, blog AS b, \"Post\" p WHERE a.id = b.author_id", "author", "blog", "post");
+    assertTables("select * from blog b left outer join author a on b.author_id = a.id join post using (blog_id)",
+        "blog", "author", "post");
+    assertTables("select * from author where id in (select author_id from sch.blog where title = 'from comment')",
+        "author", "blog");
+  }
+
+  @Test
+  void shouldFindTablesOfWrites() {
+    assertTables("insert into author (id, username) values (?, ?)", "author");
+    assertTables("update author set bio = ? where id = ?", "author");
+    assertTables("delete from author where id = ?", "author");
+    assertTables("merge into author a using blog b on (a.id = b.author_id) when matched then update set bio = null",
+        "author", "blog");
+    assertTables("truncate table [post]", "post");
+    assertTables("DELETE users WHERE id IN (SELECT id FROM banned)", "users", "banned");
+    assertTables("INSERT users SELECT id, name FROM staging", "users", "staging");
+    assertTables("insert ignore into users select * from staging", "users", "staging");
+  }
+
+  @Test
+  void shouldFindTablesAfterDerivedTables() {
+    assertTables("SELECT x.id, b.name FROM (SELECT id FROM a) x, b WHERE x.id = b.id", "a", "b");
+    assertTables("select * from (select id from a) as x (id), b, lateral (select * from c) y", "a", "b", "c");
+    assertTables("select * from generate_series(1, 3) g, b", "generate_series", "b");
+  }
+
+  @Test
+  void shouldIgnoreCommentsAndLiterals() {
+    assertTables("select 'from x' -- from y\n from author /* join z */", "author");
+  }
+
+  @Test
+  void shouldReturnNoTablesWhenUnknown() {
+    assertEquals(Collections.emptySet(), SqlTableParser.parse("{call refresh_authors(?)}"));
+    assertEquals(Collections.emptySet(), SqlTableParser.parse("call refresh_authors(?)"));
+    assertEquals(Collections.emptySet(), SqlTableParser.parse("select current_timestamp"));
+    assertEquals(Collections.emptySet(), SqlTableParser.parse("lock table author in exclusive mode"));
+    assertEquals(Collections.emptySet(), SqlTableParser.parse("delete where id = ?"));
+    assertEquals(Collections.emptySet(), SqlTableParser.parse("insert (id) values (?)"));
+  }
+
+  private static void assertTables(String sql, String... tables) {
+    Set<String> parsed = SqlTableParser.parse(sql);
+    assertEquals(new HashSet<>(Arrays.asList(tables)), parsed, sql);
+  }
+
+}
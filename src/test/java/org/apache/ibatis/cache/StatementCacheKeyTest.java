@@ -0,0 +1,103 @@
+/**
+ *    Copyright 2009-2019 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.cache;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+
+import org.apache.ibatis.builder.StaticSqlSource;
+import org.apache.ibatis.mapping.MappedStatement;
+import org.apache.ibatis.mapping.SqlCommandType;
+import org.apache.ibatis.session.Configuration;
+import org.junit.jupiter.api.Test;
+
+class StatementCacheKeyTest {
+
+  private final MappedStatement ms = new MappedStatement.Builder(new Configuration(), "selectAuthor",
+      new StaticSqlSource(new Configuration(), "select * from author where id = ?"), SqlCommandType.SELECT).build();
+
+  @Test
+  void shouldReuseCacheKeyPrefixOfSameSql() {
+    String sql = ms.getBoundSql(null).getSql();
+    StatementCacheKey.Prefix prefix = ms.getCacheKeyPrefix(sql);
+    assertSame(prefix, ms.getCacheKeyPrefix(sql));
+    assertSame(prefix, ms.getCacheKeyPrefix(new String(sql)));
+    assertNotSame(prefix, ms.getCacheKeyPrefix("select 1"));
+    assertSame(prefix, ms.getCacheKeyPrefix(sql));
+  }
+
+  @Test
+  void shouldCompareRowBoundsAndValues() {
+    StatementCacheKey.Prefix prefix = ms.getCacheKeyPrefix("select 1");
+    StatementCacheKey key = key(prefix, 0, 10, 1, "a");
+    assertEquals(key, key(prefix, 0, 10, 1, "a"));
+    assertEquals(key.hashCode(), key(prefix, 0, 10, 1, "a").hashCode());
+    assertEquals(key, key(new StatementCacheKey.Prefix("selectAuthor", "select 1"), 0, 10, 1, "a"));
+    assertNotEquals(key, key(prefix, 1, 10, 1, "a"));
+    assertNotEquals(key, key(prefix, 0, 11, 1, "a"));
+    assertNotEquals(key, key(prefix, 0, 10, "a", 1));
+    assertNotEquals(key, key(prefix, 0, 10, 1));
+    assertNotEquals(key, key(ms.getCacheKeyPrefix("select 2"), 0, 10, 1, "a"));
+    assertNotEquals(key, key(new StatementCacheKey.Prefix("selectBlog", "select 1"), 0, 10, 1, "a"));
+  }
+
+  @Test
+  void shouldGrowValuesBeyondExpectedCount() throws Exception {
+    StatementCacheKey key = new StatementCacheKey(ms.getCacheKeyPrefix("select 1"), 0, 10, 0);
+    StatementCacheKey other = new StatementCacheKey(ms.getCacheKeyPrefix("select 1"), 0, 10, 10);
+    for (int i = 0; i < 10; i++) {
+      key.update(new byte[] {(byte) i});
+      other.update(new byte[] {(byte) i});
+    }
+    assertEquals(key, other);
+    assertEquals(14, key.getUpdateCount());
+    StatementCacheKey clone = key.clone();
+    clone.update(null);
+    assertEquals(key, other);
+    assertNotEquals(key, clone);
+  }
+
+  @Test
+  void shouldNeverEqualPlainCacheKey() {
+    StatementCacheKey key = new StatementCacheKey(ms.getCacheKeyPrefix("select 1"), 0, 10, 0);
+    CacheKey plain = new CacheKey();
+    assertNotEquals(key, plain);
+    assertNotEquals(plain, key);
+  }
+
+  @Test
+  void shouldBeEqualAfterSerialization() throws Exception {
+    StatementCacheKey key = key(ms.getCacheKeyPrefix("select 1"), 0, 10, 1, "a");
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+      out.writeObject(key);
+    }
+    try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+      assertEquals(key, in.readObject());
+    }
+  }
+
+  private static StatementCacheKey key(StatementCacheKey.Prefix prefix, int offset, int limit, Object... values) {
+    StatementCacheKey key = new StatementCacheKey(prefix, offset, limit, values.length);
+    key.updateAll(values);
+    return key;
+  }
+
+}
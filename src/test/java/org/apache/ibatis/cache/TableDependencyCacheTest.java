@@ -0,0 +1,77 @@
+/**
+ *    Copyright 2009-2019 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.cache;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+
+import org.apache.ibatis.cache.decorators.LruCache;
+import org.apache.ibatis.cache.decorators.TableDependencyCache;
+import org.apache.ibatis.cache.impl.PerpetualCache;
+import org.junit.jupiter.api.Test;
+
+class TableDependencyCacheTest {
+
+  private static final TableDependencyRegistry FIVE_TABLES = new TableDependencyRegistry(
+      key -> new HashSet<>(Arrays.asList("a", "b", "c", "d", "e")));
+
+  @Test
+  void shouldCountDistinctKeys() {
+    LruCache lru = new LruCache(new PerpetualCache("default"));
+    lru.setSize(1000);
+    TableDependencyCache cache = new TableDependencyCache(lru, FIVE_TABLES);
+    for (int i = 0; i < 2000; i++) {
+      cache.putObject(i, i);
+    }
+    // 每个 key 依赖 5 张表，但只计一次，缓存不会被清空
+    assertEquals(2000, cache.getTrackedKeyCount());
+    assertEquals(1000, cache.getSize());
+    assertEquals(1999, cache.getObject(1999));
+  }
+
+  @Test
+  void shouldSweepOldestKeysInsteadOfClearing() {
+    LruCache lru = new LruCache(new PerpetualCache("default"));
+    lru.setSize(1000);
+    TableDependencyCache cache = new TableDependencyCache(lru, FIVE_TABLES);
+    for (int i = 0; i < 20000; i++) {
+      cache.putObject(i, i);
+    }
+    assertTrue(cache.getTrackedKeyCount() <= 8192);
+    assertEquals(1000, cache.getSize());
+    for (int i = 19000; i < 20000; i++) {
+      assertEquals(i, cache.getObject(i));
+    }
+  }
+
+  @Test
+  void shouldDropKeyFromAllTablesOnInvalidation() {
+    TableDependencyCache cache = new TableDependencyCache(new PerpetualCache("default"), FIVE_TABLES);
+    cache.putObject("key", "value");
+    assertEquals(1, cache.getTrackedKeyCount());
+    cache.invalidate(Collections.singleton("c"));
+    assertNull(cache.getObject("key"));
+    assertEquals(0, cache.getTrackedKeyCount());
+    // 其他表的失效不再涉及该 key
+    cache.putObject("key", "value");
+    cache.invalidate(Collections.singleton("x"));
+    assertEquals("value", cache.getObject("key"));
+  }
+
+}
@@ -0,0 +1,267 @@
+/**
+ *    Copyright 2009-2019 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.cache;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+
+import org.apache.ibatis.cache.decorators.SerializedCache;
+import org.apache.ibatis.cache.decorators.SynchronizedCache;
+import org.apache.ibatis.cache.decorators.TinyLfuCache;
+import org.apache.ibatis.cache.impl.ConcurrentPerpetualCache;
+import org.apache.ibatis.cache.impl.PerpetualCache;
+import org.junit.jupiter.api.Test;
+
+class TinyLfuCacheTest {
+
+  @Test
+  void shouldNotExceedSize() {
+    TinyLfuCache cache = new TinyLfuCache(new PerpetualCache("default"));
+    cache.setSize(5);
+    for (int i = 0; i < 100; i++) {
+      cache.putObject(i, i);
+    }
+    assertEquals(5, cache.getSize());
+  }
+
+  @Test
+  void shouldKeepFrequentlyUsedItemsWhenScanned() {
+    TinyLfuCache cache = new TinyLfuCache(new PerpetualCache("default"));
+    cache.setSize(100);
+    for (int i = 0; i < 10; i++) {
+      cache.putObject(i, i);
+    }
+    for (int n = 0; n < 10; n++) {
+      for (int i = 0; i < 10; i++) {
+        assertEquals(i, cache.getObject(i));
+      }
+    }
+    for (int i = 1000; i < 5000; i++) {
+      cache.putObject(i, i);
+      assertEquals(i % 10, cache.getObject(i % 10));
+    }
+    for (int i = 0; i < 10; i++) {
+      assertEquals(i, cache.getObject(i));
+    }
+    assertEquals(100, cache.getSize());
+  }
+
+  @Test
+  void shouldBoundByRowsWhenMaximumWeightIsSet() {
+    TinyLfuCache cache = new TinyLfuCache(new PerpetualCache("default"));
+    cache.setMaximumWeight(10);
+    for (int i = 0; i < 10; i++) {
+      cache.putObject(i, Arrays.asList(i, i, i));
+    }
+    assertEquals(3, cache.getSize());
+  }
+
+  @Test
+  void shouldUseConfiguredWeigher() {
+    TinyLfuCache cache = new TinyLfuCache(new PerpetualCache("default"));
+    cache.setMaximumWeight(10);
+    cache.setWeigher(FiveWeigher.class.getName());
+    for (int i = 0; i < 10; i++) {
+      cache.putObject(i, i);
+    }
+    assertEquals(2, cache.getSize());
+  }
+
+  @Test
+  void shouldBoundBySerializedBytes() {
+    TinyLfuCache lfu = new TinyLfuCache(new PerpetualCache("default"));
+    lfu.setMaximumBytes(10000);
+    Cache cache = new SerializedCache(lfu);
+    for (int i = 0; i < 100; i++) {
+      cache.putObject(i, new byte[1000]);
+    }
+    assertTrue(cache.getSize() >= 5);
+    assertTrue(cache.getSize() < 10);
+  }
+
+  @Test
+  void shouldShareMemoryBudgetAcrossCaches() {
+    CacheMemoryBudget budget = new CacheMemoryBudget(50000);
+    TinyLfuCache first = new TinyLfuCache(new ConcurrentPerpetualCache("first"));
+    TinyLfuCache second = new TinyLfuCache(new ConcurrentPerpetualCache("second"));
+    first.setMemoryBudget(budget);
+    second.setMemoryBudget(budget);
+    for (int i = 0; i < 40; i++) {
+      first.putObject(i, new byte[1000]);
+    }
+    assertEquals(40, first.getSize());
+    for (int i = 0; i < 40; i++) {
+      second.putObject(i, new byte[1000]);
+    }
+    // 占用最多的缓存先淘汰，两个缓存最终平分预算
+    assertFalse(budget.isExceeded());
+    assertTrue(first.getSize() < 40);
+    assertTrue(second.getSize() >= 20);
+    assertTrue(first.getSize() + second.getSize() < 50);
+    first.clear();
+    second.clear();
+    assertEquals(0, budget.getUsedBytes());
+  }
+
+  @Test
+  void shouldDeferReclaimUntilNextWriteWhenDelegateIsNotThreadSafe() {
+    CacheMemoryBudget budget = new CacheMemoryBudget(50000);
+    TinyLfuCache first = new TinyLfuCache(new PerpetualCache("first"));
+    TinyLfuCache second = new TinyLfuCache(new PerpetualCache("second"));
+    first.setMemoryBudget(budget);
+    second.setMemoryBudget(budget);
+    for (int i = 0; i < 40; i++) {
+      first.putObject(i, new byte[1000]);
+    }
+    for (int i = 0; i < 20; i++) {
+      second.putObject(i, new byte[1000]);
+    }
+    // 第二个缓存的线程不会修改第一个缓存，只能淘汰自己的条目
+    assertEquals(40, first.getSize());
+    assertTrue(second.getSize() < 20);
+    assertFalse(budget.isExceeded());
+    // 第一个缓存的下一次写操作回收其他缓存请求的字节数
+    first.putObject(40, new byte[1000]);
+    assertEquals(40, first.getSize());
+    assertFalse(budget.isExceeded());
+  }
+
+  @Test
+  void shouldNotModifyNonThreadSafeDelegateFromOtherCaches() throws Exception {
+    CacheMemoryBudget budget = new CacheMemoryBudget(20000);
+    List<Cache> caches = new ArrayList<>();
+    for (int c = 0; c < 2; c++) {
+      TinyLfuCache cache = new TinyLfuCache(new PerpetualCache("cache" + c));
+      cache.setMemoryBudget(budget);
+      caches.add(new SynchronizedCache(cache));
+    }
+    ExecutorService executor = Executors.newFixedThreadPool(4);
+    try {
+      List<Future<?>> futures = new ArrayList<>();
+      for (int t = 0; t < 4; t++) {
+        Cache cache = caches.get(t % 2);
+        futures.add(executor.submit(() -> {
+          ThreadLocalRandom random = ThreadLocalRandom.current();
+          for (int i = 0; i < 20000; i++) {
+            int key = random.nextInt(100);
+            if (cache.getObject(key) == null) {
+              cache.putObject(key, new byte[500]);
+            }
+          }
+        }));
+      }
+      for (Future<?> future : futures) {
+        future.get();
+      }
+    } finally {
+      executor.shutdown();
+    }
+    for (Cache cache : caches) {
+      cache.clear();
+      assertEquals(0, cache.getSize());
+    }
+    assertEquals(0, budget.getUsedBytes());
+  }
+
+  @Test
+  void shouldReleaseBudgetOnRemove() {
+    CacheMemoryBudget budget = new CacheMemoryBudget(50000);
+    TinyLfuCache cache = new TinyLfuCache(new PerpetualCache("default"));
+    cache.setMemoryBudget(budget);
+    cache.putObject(0, new byte[1000]);
+    assertEquals(1016, budget.getUsedBytes());
+    cache.putObject(0, new byte[2000]);
+    assertEquals(2016, budget.getUsedBytes());
+    cache.removeObject(0);
+    assertEquals(0, budget.getUsedBytes());
+  }
+
+  @Test
+  void shouldFailOnUnknownWeigher() {
+    TinyLfuCache cache = new TinyLfuCache(new PerpetualCache("default"));
+    assertThrows(CacheException.class, () -> cache.setWeigher("org.apache.ibatis.cache.NoSuchWeigher"));
+  }
+
+  @Test
+  void shouldRemoveItemOnDemand() {
+    Cache cache = new TinyLfuCache(new PerpetualCache("default"));
+    cache.putObject(0, 0);
+    assertNotNull(cache.getObject(0));
+    cache.removeObject(0);
+    assertNull(cache.getObject(0));
+  }
+
+  @Test
+  void shouldFlushAllItemsOnDemand() {
+    Cache cache = new TinyLfuCache(new PerpetualCache("default"));
+    for (int i = 0; i < 5; i++) {
+      cache.putObject(i, i);
+    }
+    assertNotNull(cache.getObject(0));
+    assertNotNull(cache.getObject(4));
+    cache.clear();
+    assertNull(cache.getObject(0));
+    assertNull(cache.getObject(4));
+  }
+
+  @Test
+  void shouldBeThreadSafeOnlyIfDelegateIs() {
+    assertFalse(new TinyLfuCache(new PerpetualCache("default")).isThreadSafe());
+    assertTrue(new TinyLfuCache(new ConcurrentPerpetualCache("default")).isThreadSafe());
+  }
+
+  @Test
+  void shouldStayBoundedUnderConcurrentAccess() throws Exception {
+    TinyLfuCache cache = new TinyLfuCache(new ConcurrentPerpetualCache("default"));
+    cache.setSize(50);
+    ExecutorService executor = Executors.newFixedThreadPool(8);
+    try {
+      List<Future<?>> futures = new ArrayList<>();
+      for (int t = 0; t < 8; t++) {
+        futures.add(executor.submit(() -> {
+          ThreadLocalRandom random = ThreadLocalRandom.current();
+          for (int i = 0; i < 20000; i++) {
+            int key = random.nextInt(200);
+            if (cache.getObject(key) == null) {
+              cache.putObject(key, key);
+            }
+          }
+        }));
+      }
+      for (Future<?> future : futures) {
+        future.get();
+      }
+    } finally {
+      executor.shutdown();
+    }
+    assertEquals(50, cache.getSize());
+  }
+
+  public static class FiveWeigher implements Weigher {
+    @Override
+    public int weigh(Object key, Object value) {
+      return 5;
+    }
+  }
+
+}
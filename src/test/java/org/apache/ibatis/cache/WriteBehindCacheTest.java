@@ -0,0 +1,212 @@
+/**
+ *    Copyright 2009-2019 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.cache;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.ibatis.cache.decorators.SingleFlightCache;
+import org.apache.ibatis.cache.decorators.TransactionalCache;
+import org.apache.ibatis.cache.decorators.WriteBehindCache;
+import org.apache.ibatis.cache.impl.ConcurrentPerpetualCache;
+import org.apache.ibatis.mapping.CacheBuilder;
+import org.junit.jupiter.api.Test;
+
+class WriteBehindCacheTest {
+
+  @Test
+  void shouldWriteCommittedEntriesInBackgroundInOneBatch() throws Exception {
+    BatchCountingCache base = new BatchCountingCache();
+    WriteBehindCache cache = new WriteBehindCache(base);
+    base.block = new CountDownLatch(1);
+    TransactionalCache txCache = new TransactionalCache(cache);
+    for (int i = 0; i < 100; i++) {
+      txCache.putObject(i, "value" + i);
+    }
+    txCache.commit();
+    // commit returned while the writer is still waiting
+    assertTrue(base.writing.await(5, TimeUnit.SECONDS));
+    assertNull(base.getObject(42));
+    base.block.countDown();
+    awaitWritten(cache);
+    assertEquals(1, base.batches.get());
+    assertEquals("value42", cache.getObject(42));
+  }
+
+  @Test
+  void shouldNotWriteEntriesCommittedBeforeClear() throws Exception {
+    BatchCountingCache base = new BatchCountingCache();
+    base.block = new CountDownLatch(1);
+    WriteBehindCache cache = new WriteBehindCache(base);
+    cache.putObject("first", "value");
+    // the writer waits inside the first batch; the second one stays queued
+    assertTrue(base.writing.await(5, TimeUnit.SECONDS));
+    cache.putObject("second", "value");
+    Thread clearing = new Thread(cache::clear);
+    clearing.start();
+    base.block.countDown();
+    clearing.join();
+    awaitWritten(cache);
+    assertNull(cache.getObject("first"));
+    assertNull(cache.getObject("second"));
+  }
+
+  @Test
+  void shouldDiscardQueuedEntryOnRemove() throws Exception {
+    BatchCountingCache base = new BatchCountingCache();
+    base.block = new CountDownLatch(1);
+    WriteBehindCache cache = new WriteBehindCache(base);
+    cache.putObject("first", "value");
+    assertTrue(base.writing.await(5, TimeUnit.SECONDS));
+    cache.putObject("a", "1");
+    cache.putObject("b", "2");
+    Thread removing = new Thread(() -> cache.removeObject("a"));
+    removing.start();
+    base.block.countDown();
+    removing.join();
+    awaitWritten(cache);
+    assertNull(cache.getObject("a"));
+    assertEquals("2", cache.getObject("b"));
+  }
+
+  @Test
+  void shouldWriteInPuttingThreadWhenTooManyEntriesArePending() throws Exception {
+    BatchCountingCache base = new BatchCountingCache();
+    base.block = new CountDownLatch(1);
+    WriteBehindCache cache = new WriteBehindCache(base);
+    cache.setMaxPending(2);
+    cache.putObject("first", "value");
+    assertTrue(base.writing.await(5, TimeUnit.SECONDS));
+    cache.putObject("a", "1");
+    cache.putObject("b", "2");
+    Thread putting = new Thread(() -> cache.putObject("c", "3"));
+    putting.start();
+    // the putting thread waits for the writer instead of queueing more entries
+    putting.join(100);
+    assertTrue(putting.isAlive());
+    base.block.countDown();
+    putting.join();
+    assertEquals(0, cache.getPendingSize());
+    assertEquals("3", cache.getObject("c"));
+  }
+
+  @Test
+  void shouldBeAddedByCacheBuilder() {
+    Properties props = new Properties();
+    props.setProperty("writeBehind", "true");
+    props.setProperty("maxPending", "16");
+    Cache cache = new CacheBuilder("test").properties(props).build();
+    cache.putObject("key", "value");
+    WriteBehindCache writeBehindCache = findWriteBehindCache(cache);
+    assertEquals(16, writeBehindCache.getMaxPending());
+    writeBehindCache.flush();
+    assertEquals("value", cache.getObject("key"));
+  }
+
+  @Test
+  void shouldWakeBlockedReadersOnceEntryIsWritten() throws Exception {
+    BatchCountingCache base = new BatchCountingCache();
+    base.block = new CountDownLatch(1);
+    WriteBehindCache writeBehindCache = new WriteBehindCache(base);
+    SingleFlightCache cache = new SingleFlightCache(writeBehindCache);
+    cache.setWriteBehindCache(writeBehindCache);
+    assertNull(cache.getObject("key"));
+    CompletableFuture<Object> waiter = CompletableFuture.supplyAsync(() -> cache.getObject("key"));
+    Thread.sleep(100);
+    cache.putObject("key", "value");
+    assertTrue(base.writing.await(5, TimeUnit.SECONDS));
+    // 缓存项尚未写入，等待者仍在等待而不是成为加载者
+    Thread.sleep(100);
+    assertFalse(waiter.isDone());
+    base.block.countDown();
+    assertEquals("value", waiter.get(5, TimeUnit.SECONDS));
+  }
+
+  @Test
+  void shouldReleaseBlockedReadersWhenQueuedEntryIsDiscarded() throws Exception {
+    WriteBehindCache writeBehindCache = new WriteBehindCache(new ConcurrentPerpetualCache("test") {
+      @Override
+      public void putAll(Map<Object, Object> entries) {
+        throw new CacheException("write failed");
+      }
+    });
+    SingleFlightCache cache = new SingleFlightCache(writeBehindCache);
+    cache.setWriteBehindCache(writeBehindCache);
+    assertNull(cache.getObject("key"));
+    CompletableFuture<Object> waiter = CompletableFuture.supplyAsync(() -> cache.getObject("key"));
+    Thread.sleep(100);
+    cache.putObject("key", "value");
+    // 写入失败丢弃缓存项，等待者成为加载者
+    assertNull(waiter.get(5, TimeUnit.SECONDS));
+  }
+
+  @Test
+  void shouldWireBlockingToWriteBehindInCacheBuilder() {
+    Properties props = new Properties();
+    props.setProperty("writeBehind", "true");
+    Cache cache = new CacheBuilder("test").properties(props).blocking(true).readWrite(true).build();
+    assertTrue(cache instanceof SingleFlightCache);
+    assertSame(findWriteBehindCache(cache), ((SingleFlightCache) cache).getWriteBehindCache());
+  }
+
+  private static WriteBehindCache findWriteBehindCache(Cache cache) {
+    Object current = cache;
+    while (!(current instanceof WriteBehindCache)) {
+      current = org.apache.ibatis.reflection.SystemMetaObject.forObject(current).getValue("delegate");
+    }
+    return (WriteBehindCache) current;
+  }
+
+  private static void awaitWritten(WriteBehindCache cache) throws InterruptedException {
+    for (int i = 0; i < 500 && cache.getPendingSize() > 0; i++) {
+      Thread.sleep(10);
+    }
+    // the last batch may still be in progress
+    cache.flush();
+  }
+
+  private static class BatchCountingCache extends ConcurrentPerpetualCache {
+
+    final AtomicInteger batches = new AtomicInteger();
+
+    final CountDownLatch writing = new CountDownLatch(1);
+
+    volatile CountDownLatch block;
+
+    BatchCountingCache() {
+      super("test");
+    }
+
+    @Override
+    public void putAll(Map<Object, Object> entries) {
+      batches.incrementAndGet();
+      writing.countDown();
+      try {
+        block.await();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+      super.putAll(entries);
+    }
+  }
+
+}
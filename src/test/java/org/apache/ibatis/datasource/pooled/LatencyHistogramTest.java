@@ -0,0 +1,73 @@
+/**
+ *    Copyright 2009-2019 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.datasource.pooled;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.Test;
+
+class LatencyHistogramTest {
+
+  @Test
+  void shouldCountSmallValuesExactly() {
+    LatencyHistogram histogram = new LatencyHistogram();
+    for (int i = 1; i <= 10; i++) {
+      histogram.record(i);
+    }
+    assertEquals(10, histogram.getCount());
+    assertEquals(5, histogram.getMean());
+    assertEquals(5, histogram.getPercentile(50));
+    assertEquals(10, histogram.getPercentile(100));
+    assertEquals(10, histogram.getMax());
+  }
+
+  @Test
+  void shouldBoundRelativeErrorOfLargeValues() {
+    for (long value : new long[] { 16, 17, 100, 1000, 12345, 987654321L, Long.MAX_VALUE }) {
+      int index = LatencyHistogram.bucketIndex(value);
+      long upperBound = LatencyHistogram.bucketUpperBound(index);
+      assertTrue(upperBound >= value, "upper bound of " + value);
+      assertTrue(upperBound - value <= value / 8, "precision of " + value);
+      assertEquals(index, LatencyHistogram.bucketIndex(upperBound));
+    }
+  }
+
+  @Test
+  void shouldReportPercentiles() {
+    LatencyHistogram histogram = new LatencyHistogram();
+    for (int i = 0; i < 99; i++) {
+      histogram.record(10);
+    }
+    histogram.record(5000);
+    LatencyHistogram.Snapshot snapshot = histogram.snapshot();
+    assertEquals(100, snapshot.getCount());
+    assertEquals(10, snapshot.getMedian());
+    assertEquals(10, snapshot.getPercentile95());
+    assertEquals(10, snapshot.getPercentile99());
+    assertEquals(5000, snapshot.getMax());
+    assertEquals(5000, histogram.getPercentile(100));
+  }
+
+  @Test
+  void shouldReportZeroWhenEmpty() {
+    LatencyHistogram histogram = new LatencyHistogram();
+    assertEquals(0, histogram.getPercentile(99));
+    assertEquals(0, histogram.getMean());
+    histogram.record(-1);
+    assertEquals(0, histogram.getMax());
+  }
+
+}
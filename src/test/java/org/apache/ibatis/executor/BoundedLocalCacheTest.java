@@ -0,0 +1,69 @@
+/**
+ *    Copyright 2009-2019 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.executor;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.junit.jupiter.api.Test;
+
+class BoundedLocalCacheTest {
+
+  @Test
+  void shouldEvictLeastRecentlyUsedEntriesBeyondTheSize() {
+    BoundedLocalCache cache = new BoundedLocalCache("LocalCache", 2, Long.MAX_VALUE);
+    cache.putObject("a", Collections.singletonList(1));
+    cache.putObject("b", Collections.singletonList(2));
+    cache.putObject("c", Collections.singletonList(3));
+    cache.getObject("a");
+    assertEquals(3, cache.getSize());
+    assertEquals(Collections.singletonList("b"), cache.trim());
+    assertEquals(2, cache.getSize());
+    assertNull(cache.getObject("b"));
+    assertNotNull(cache.getObject("a"));
+    assertNotNull(cache.getObject("c"));
+  }
+
+  @Test
+  void shouldEvictEntriesBeyondTheRows() {
+    BoundedLocalCache cache = new BoundedLocalCache("LocalCache", Integer.MAX_VALUE, 4);
+    cache.putObject("a", Arrays.asList(1, 2, 3));
+    cache.putObject("b", Arrays.asList(4, 5));
+    assertEquals(5, cache.getRows());
+    assertEquals(Collections.singletonList("a"), cache.trim());
+    assertEquals(2, cache.getRows());
+    cache.putObject("b", Arrays.asList(4, 5, 6, 7));
+    assertEquals(4, cache.getRows());
+    assertTrue(cache.trim().isEmpty());
+    cache.removeObject("b");
+    assertEquals(0, cache.getRows());
+  }
+
+  @Test
+  void shouldNotCountPlaceholders() {
+    BoundedLocalCache cache = new BoundedLocalCache("LocalCache", Integer.MAX_VALUE, 1);
+    cache.putObject("a", ExecutionPlaceholder.EXECUTION_PLACEHOLDER);
+    cache.putObject("b", "value");
+    assertEquals(1, cache.getRows());
+    assertTrue(cache.trim().isEmpty());
+    cache.clear();
+    assertEquals(0, cache.getRows());
+    assertEquals(0, cache.getSize());
+  }
+
+}
@@ -17,7 +17,11 @@ package org.apache.ibatis.executor.resultset;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 import java.sql.Connection;
@@ -33,11 +37,14 @@ import java.util.HashMap;
 import java.util.List;
 
 import org.apache.ibatis.builder.StaticSqlSource;
+import org.apache.ibatis.cache.CacheKey;
 import org.apache.ibatis.executor.Executor;
 import org.apache.ibatis.executor.ExecutorException;
 import org.apache.ibatis.executor.parameter.ParameterHandler;
 import org.apache.ibatis.mapping.BoundSql;
+import org.apache.ibatis.mapping.Discriminator;
 import org.apache.ibatis.mapping.MappedStatement;
+import org.apache.ibatis.mapping.ParameterMap;
 import org.apache.ibatis.mapping.ResultMap;
 import org.apache.ibatis.mapping.ResultMapping;
 import org.apache.ibatis.mapping.SqlCommandType;
@@ -101,6 +108,86 @@ class DefaultResultSetHandlerTest {
     assertEquals(100, ((HashMap) results.get(0)).get("cOlUmN1"));
   }
 
+  @Test
+  void shouldReadColumnsByIndex() throws Exception {
+    final MappedStatement ms = getMappedStatement();
+    ms.getConfiguration().setUseColumnIndex(true);
+    final DefaultResultSetHandler fastResultSetHandler = new DefaultResultSetHandler(null, ms, null, null, null, new RowBounds(0, 100));
+
+    when(stmt.getResultSet()).thenReturn(rs);
+    when(rs.getMetaData()).thenReturn(rsmd);
+    when(rs.getType()).thenReturn(ResultSet.TYPE_FORWARD_ONLY);
+    when(rs.next()).thenReturn(true).thenReturn(true).thenReturn(false);
+    when(rs.getInt(1)).thenReturn(1);
+    when(rs.getInt(2)).thenReturn(100).thenReturn(200);
+    when(rsmd.getColumnCount()).thenReturn(2);
+    when(rsmd.getColumnLabel(1)).thenReturn("OTHER");
+    when(rsmd.getColumnLabel(2)).thenReturn("COLUMN1");
+    when(rsmd.getColumnType(any(Integer.class))).thenReturn(Types.INTEGER);
+    when(rsmd.getColumnClassName(any(Integer.class))).thenReturn(Integer.class.getCanonicalName());
+    when(stmt.getConnection()).thenReturn(conn);
+    when(conn.getMetaData()).thenReturn(dbmd);
+    when(dbmd.supportsMultipleResultSets()).thenReturn(false); // for simplicity.
+
+    final List<Object> results = fastResultSetHandler.handleResultSets(stmt);
+    assertEquals(2, results.size());
+    assertEquals(100, ((HashMap) results.get(0)).get("cOlUmN1"));
+    assertEquals(200, ((HashMap) results.get(1)).get("cOlUmN1"));
+    verify(rsmd, times(1)).getColumnLabel(2);
+  }
+
+  @Test
+  void shouldReadDiscriminatorAndNestedSelectKeysByIndex() throws Exception {
+    final Configuration config = new Configuration();
+    config.setUseColumnIndex(true);
+    final TypeHandlerRegistry registry = config.getTypeHandlerRegistry();
+    final MappedStatement childSelect = new MappedStatement.Builder(config, "childSelect",
+        new StaticSqlSource(config, "some child select statement"), SqlCommandType.SELECT)
+        .parameterMap(new ParameterMap.Builder(config, "childSelect-Inline", Integer.class, new ArrayList<>()).build())
+        .resultMaps(new ArrayList<>()).build();
+    config.addMappedStatement(childSelect);
+    final List<ResultMapping> kindOneMappings = new ArrayList<>();
+    kindOneMappings.add(new ResultMapping.Builder(config, "column1", "COLUMN1", registry.getTypeHandler(Integer.class)).build());
+    kindOneMappings.add(new ResultMapping.Builder(config, "child", "PARENT_ID", registry.getTypeHandler(Integer.class))
+        .nestedQueryId("childSelect").build());
+    config.addResultMap(new ResultMap.Builder(config, "kindOneMap", HashMap.class, kindOneMappings, false).build());
+    final Discriminator discriminator = new Discriminator.Builder(config,
+        new ResultMapping.Builder(config, null, "KIND", registry.getTypeHandler(Integer.class)).build(),
+        Collections.singletonMap("1", "kindOneMap")).build();
+    final ResultMap typedMap = new ResultMap.Builder(config, "typedMap", HashMap.class, new ArrayList<>(), false)
+        .discriminator(discriminator).build();
+    final MappedStatement ms = new MappedStatement.Builder(config, "testSelect",
+        new StaticSqlSource(config, "some select statement"), SqlCommandType.SELECT)
+        .resultMaps(Collections.singletonList(typedMap)).build();
+    final Executor executor = mock(Executor.class);
+    when(executor.createCacheKey(eq(childSelect), eq(7), any(RowBounds.class), any(BoundSql.class))).thenReturn(new CacheKey());
+    when(executor.isCached(eq(childSelect), any(CacheKey.class))).thenReturn(true);
+    final DefaultResultSetHandler fastResultSetHandler = new DefaultResultSetHandler(executor, ms, null, null, null, new RowBounds(0, 100));
+
+    when(stmt.getResultSet()).thenReturn(rs);
+    when(rs.getMetaData()).thenReturn(rsmd);
+    when(rs.getType()).thenReturn(ResultSet.TYPE_FORWARD_ONLY);
+    when(rs.next()).thenReturn(true).thenReturn(false);
+    when(rs.getInt(1)).thenReturn(1);
+    when(rs.getInt(2)).thenReturn(100);
+    when(rs.getInt(3)).thenReturn(7);
+    when(rsmd.getColumnCount()).thenReturn(3);
+    when(rsmd.getColumnLabel(1)).thenReturn("KIND");
+    when(rsmd.getColumnLabel(2)).thenReturn("COLUMN1");
+    when(rsmd.getColumnLabel(3)).thenReturn("PARENT_ID");
+    when(rsmd.getColumnType(any(Integer.class))).thenReturn(Types.INTEGER);
+    when(rsmd.getColumnClassName(any(Integer.class))).thenReturn(Integer.class.getCanonicalName());
+    when(stmt.getConnection()).thenReturn(conn);
+    when(conn.getMetaData()).thenReturn(dbmd);
+    when(dbmd.supportsMultipleResultSets()).thenReturn(false); // for simplicity.
+
+    final List<Object> results = fastResultSetHandler.handleResultSets(stmt);
+    assertEquals(1, results.size());
+    assertEquals(100, ((HashMap) results.get(0)).get("column1"));
+    verify(executor).deferLoad(eq(childSelect), any(), eq("child"), any(CacheKey.class), any());
+    verify(rs, never()).getInt(any(String.class));
+  }
+
   @Test
   void shouldThrowExceptionWithColumnName() throws Exception {
     final MappedStatement ms = getMappedStatement();
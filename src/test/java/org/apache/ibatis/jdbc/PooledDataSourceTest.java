@@ -24,10 +24,17 @@ import java.sql.SQLException;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Properties;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
 
 import org.apache.ibatis.BaseDataTest;
+import org.apache.ibatis.datasource.DataSourceException;
 import org.apache.ibatis.datasource.pooled.PooledDataSource;
+import org.apache.ibatis.datasource.pooled.PoolMetrics;
+import org.apache.ibatis.datasource.pooled.PooledDataSourceFactory;
 import org.hsqldb.jdbc.JDBCConnection;
 import org.junit.jupiter.api.Disabled;
 import org.junit.jupiter.api.Test;
@@ -75,6 +82,396 @@ class PooledDataSourceTest extends BaseDataTest {
     }
   }
 
+  @Test
+  void shouldProperlyMaintainPoolOf3ActiveAnd2IdleConnectionsWithConcurrentEngine() throws Exception {
+    PooledDataSource ds = createPooledDataSource(JPETSTORE_PROPERTIES);
+    try {
+      ds.setPoolEngine("concurrent");
+      runScript(ds, JPETSTORE_DDL);
+      ds.setDefaultAutoCommit(false);
+      ds.setPoolMaximumActiveConnections(3);
+      ds.setPoolMaximumIdleConnections(2);
+      ds.setPoolMaximumCheckoutTime(10000);
+      ds.setPoolPingConnectionsNotUsedFor(1);
+      ds.setPoolPingEnabled(true);
+      ds.setPoolPingQuery("SELECT * FROM PRODUCT");
+      ds.setPoolTimeToWait(10000);
+      List<Connection> connections = new ArrayList<>();
+      for (int i = 0; i < 3; i++) {
+        connections.add(ds.getConnection());
+      }
+      assertEquals(3, ds.getPoolState().getActiveConnectionCount());
+      for (Connection c : connections) {
+        c.close();
+      }
+      assertEquals(0, ds.getPoolState().getActiveConnectionCount());
+      assertEquals(2, ds.getPoolState().getIdleConnectionCount());
+      assertEquals(4, ds.getPoolState().getRequestCount());
+      assertEquals(0, ds.getPoolState().getBadConnectionCount());
+      assertEquals(0, ds.getPoolState().getHadToWaitCount());
+      assertEquals(0, ds.getPoolState().getClaimedOverdueConnectionCount());
+      assertNotNull(ds.getPoolState().toString());
+    } finally {
+      ds.forceCloseAll();
+    }
+  }
+
+  @Test
+  void shouldHandOffConnectionsBetweenThreadsWithConcurrentEngine() throws Exception {
+    PooledDataSource ds = createPooledDataSource(JPETSTORE_PROPERTIES);
+    ExecutorService executor = Executors.newFixedThreadPool(8);
+    try {
+      ds.setPoolEngine(PooledDataSource.POOL_ENGINE_CONCURRENT);
+      ds.setPoolMaximumActiveConnections(2);
+      ds.setPoolMaximumIdleConnections(2);
+      List<Future<?>> futures = new ArrayList<>();
+      for (int i = 0; i < 8; i++) {
+        futures.add(executor.submit(() -> {
+          for (int j = 0; j < 50; j++) {
+            try (Connection c = ds.getConnection()) {
+              executeHsqldbQuery(c);
+            }
+          }
+          return null;
+        }));
+      }
+      for (Future<?> future : futures) {
+        future.get(30, TimeUnit.SECONDS);
+      }
+      assertEquals(400, ds.getPoolState().getRequestCount());
+      assertEquals(0, ds.getPoolState().getActiveConnectionCount());
+      assertTrue(ds.getPoolState().getIdleConnectionCount() <= 2);
+      assertEquals(0, ds.getPoolState().getBadConnectionCount());
+    } finally {
+      executor.shutdownNow();
+      ds.forceCloseAll();
+    }
+  }
+
+  @Test
+  void shouldClaimOverdueConnectionWithConcurrentEngine() throws Exception {
+    PooledDataSource ds = createPooledDataSource(JPETSTORE_PROPERTIES);
+    try {
+      ds.setPoolEngine(PooledDataSource.POOL_ENGINE_CONCURRENT);
+      ds.setPoolMaximumActiveConnections(1);
+      ds.setPoolMaximumCheckoutTime(10);
+      Connection leaked = ds.getConnection();
+      Thread.sleep(50);
+      Connection c = ds.getConnection();
+      assertEquals(1, ds.getPoolState().getClaimedOverdueConnectionCount());
+      assertThrows(SQLException.class, leaked::createStatement);
+      leaked.close();
+      assertEquals(1, ds.getPoolState().getBadConnectionCount());
+      executeHsqldbQuery(c);
+      c.close();
+      assertEquals(1, ds.getPoolState().getIdleConnectionCount());
+    } finally {
+      ds.forceCloseAll();
+    }
+  }
+
+  @Test
+  void shouldSelectPoolEngineThroughFactoryProperties() {
+    PooledDataSourceFactory factory = new PooledDataSourceFactory();
+    Properties props = new Properties();
+    props.setProperty("poolEngine", "concurrent");
+    factory.setProperties(props);
+    PooledDataSource ds = (PooledDataSource) factory.getDataSource();
+    assertEquals(PooledDataSource.POOL_ENGINE_CONCURRENT, ds.getPoolEngine());
+    assertThrows(DataSourceException.class, () -> ds.setPoolEngine("unknown"));
+  }
+
+  @Test
+  void shouldFillMinimumIdleConnectionsInBackground() throws Exception {
+    for (String engine : new String[] { PooledDataSource.POOL_ENGINE_CLASSIC, PooledDataSource.POOL_ENGINE_CONCURRENT }) {
+      PooledDataSource ds = createPooledDataSource(JPETSTORE_PROPERTIES);
+      try {
+        ds.setPoolEngine(engine);
+        ds.setPoolMinimumIdleConnections(2);
+        ds.setPoolHousekeepingInterval(20);
+        waitUntil(() -> ds.getPoolState().getIdleConnectionCount() == 2);
+        try (Connection c = ds.getConnection()) {
+          executeHsqldbQuery(c);
+        }
+        assertEquals(0, ds.getPoolState().getBadConnectionCount());
+      } finally {
+        ds.setPoolHousekeepingInterval(0);
+        ds.forceCloseAll();
+      }
+    }
+  }
+
+  @Test
+  void shouldNotFillIdleConnectionsBeyondActiveLimit() throws Exception {
+    PooledDataSource ds = createPooledDataSource(JPETSTORE_PROPERTIES);
+    try {
+      ds.setPoolMaximumActiveConnections(2);
+      ds.setPoolMinimumIdleConnections(2);
+      ds.setPoolHousekeepingInterval(20);
+      waitUntil(() -> ds.getPoolState().getIdleConnectionCount() == 2);
+      try (Connection c = ds.getConnection()) {
+        // 借出一个连接后，补充空闲连接不能超出活动连接上限
+        Thread.sleep(100);
+        assertEquals(1, ds.getPoolState().getIdleConnectionCount());
+        assertEquals(1, ds.getPoolState().getActiveConnectionCount());
+      }
+    } finally {
+      ds.setPoolHousekeepingInterval(0);
+      ds.forceCloseAll();
+    }
+  }
+
+  @Test
+  void shouldKeepMinimumIdleConnectionsWithinMaximumIdle() {
+    PooledDataSource ds = new PooledDataSource();
+    ds.setPoolMaximumIdleConnections(3);
+    ds.setPoolMinimumIdleConnections(5);
+    assertEquals(3, ds.getPoolMinimumIdleConnections());
+    ds.setPoolMaximumIdleConnections(2);
+    assertEquals(2, ds.getPoolMinimumIdleConnections());
+
+    PooledDataSourceFactory factory = new PooledDataSourceFactory();
+    Properties props = new Properties();
+    props.setProperty("poolMinimumIdleConnections", "10");
+    props.setProperty("poolMaximumIdleConnections", "20");
+    factory.setProperties(props);
+    assertEquals(10, ((PooledDataSource) factory.getDataSource()).getPoolMinimumIdleConnections());
+  }
+
+  @Test
+  void shouldEvictIdleConnectionsInBackground() throws Exception {
+    for (String engine : new String[] { PooledDataSource.POOL_ENGINE_CLASSIC, PooledDataSource.POOL_ENGINE_CONCURRENT }) {
+      PooledDataSource ds = createPooledDataSource(JPETSTORE_PROPERTIES);
+      try {
+        ds.setPoolEngine(engine);
+        ds.setPoolIdleTimeout(50);
+        ds.setPoolHousekeepingInterval(20);
+        List<Connection> connections = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+          connections.add(ds.getConnection());
+        }
+        for (Connection c : connections) {
+          c.close();
+        }
+        assertEquals(3, ds.getPoolState().getIdleConnectionCount());
+        waitUntil(() -> ds.getPoolState().getIdleConnectionCount() == 0);
+      } finally {
+        ds.setPoolHousekeepingInterval(0);
+        ds.forceCloseAll();
+      }
+    }
+  }
+
+  @Test
+  void shouldValidateIdleConnectionsInBackground() throws Exception {
+    for (String engine : new String[] { PooledDataSource.POOL_ENGINE_CLASSIC, PooledDataSource.POOL_ENGINE_CONCURRENT }) {
+      PooledDataSource ds = createPooledDataSource(JPETSTORE_PROPERTIES);
+      try {
+        ds.setPoolEngine(engine);
+        ds.setPoolPingEnabled(true);
+        ds.setPoolPingQuery("SELECT * FROM NOT_A_TABLE");
+        ds.setPoolHousekeepingInterval(20);
+        // the ping query is not run by the borrowing thread
+        ds.getConnection().close();
+        assertEquals(0, ds.getPoolState().getBadConnectionCount());
+        waitUntil(() -> ds.getPoolState().getBadConnectionCount() == 1);
+        assertEquals(0, ds.getPoolState().getIdleConnectionCount());
+      } finally {
+        ds.setPoolHousekeepingInterval(0);
+        ds.forceCloseAll();
+      }
+    }
+  }
+
+  @Test
+  void shouldCloseConnectionsPastMaximumLifetimeOnReturn() throws Exception {
+    PooledDataSource ds = createPooledDataSource(JPETSTORE_PROPERTIES);
+    try {
+      ds.setPoolMaximumLifetime(10);
+      Connection c = ds.getConnection();
+      Thread.sleep(50);
+      c.close();
+      assertEquals(0, ds.getPoolState().getIdleConnectionCount());
+    } finally {
+      ds.forceCloseAll();
+    }
+  }
+
+  @Test
+  void shouldReportPoolMetrics() throws Exception {
+    for (String engine : new String[] { PooledDataSource.POOL_ENGINE_CLASSIC, PooledDataSource.POOL_ENGINE_CONCURRENT }) {
+      PooledDataSource ds = createPooledDataSource(JPETSTORE_PROPERTIES);
+      try {
+        ds.setPoolEngine(engine);
+        ds.setPoolMaximumActiveConnections(1);
+        Connection c1 = ds.getConnection();
+        Thread.sleep(20);
+        c1.close();
+        Connection c2 = ds.getConnection();
+        PoolMetrics metrics = ds.getPoolState().getMetrics();
+        assertEquals(1, metrics.getActiveConnections());
+        assertEquals(0, metrics.getIdleConnections());
+        assertEquals(0, metrics.getWaitingThreads());
+        assertEquals(2, metrics.getRequestCount());
+        assertEquals(2, metrics.getRequestTime().getCount());
+        assertEquals(0, metrics.getWaitTime().getCount());
+        assertEquals(1, metrics.getCheckoutTime().getCount());
+        assertTrue(metrics.getCheckoutTime().getMax() >= 20);
+        assertTrue(metrics.getCheckoutTime().getPercentile99() >= 20);
+        assertTrue(metrics.getLeakSuspects().isEmpty());
+        c2.close();
+        assertEquals(2, ds.getPoolState().getMetrics().getCheckoutTime().getCount());
+      } finally {
+        ds.forceCloseAll();
+      }
+    }
+  }
+
+  @Test
+  void shouldReusePreparedStatementsAcrossBorrows() throws Exception {
+    for (String engine : new String[] { PooledDataSource.POOL_ENGINE_CLASSIC, PooledDataSource.POOL_ENGINE_CONCURRENT }) {
+      PooledDataSource ds = createPooledDataSource(JPETSTORE_PROPERTIES);
+      try {
+        ds.setPoolEngine(engine);
+        ds.setPoolMaximumActiveConnections(1);
+        ds.setPoolPreparedStatementCacheSize(4);
+        PreparedStatement first;
+        try (Connection c = ds.getConnection()) {
+          PreparedStatement st = c.prepareStatement("SELECT 1 FROM INFORMATION_SCHEMA.SYSTEM_USERS");
+          first = st.unwrap(PreparedStatement.class);
+          st.setMaxRows(1);
+          assertSame(c, st.getConnection());
+          st.close();
+          assertTrue(st.isClosed());
+          assertThrows(SQLException.class, st::executeQuery);
+        }
+        try (Connection c = ds.getConnection();
+             PreparedStatement st = c.prepareStatement("SELECT 1 FROM INFORMATION_SCHEMA.SYSTEM_USERS")) {
+          assertSame(first, st.unwrap(PreparedStatement.class));
+          assertEquals(0, st.getMaxRows());
+          try (ResultSet rs = st.executeQuery()) {
+            assertTrue(rs.next());
+          }
+        }
+        assertEquals(1, ds.getPoolState().getStatementCacheHitCount());
+        assertEquals(1, ds.getPoolState().getStatementCacheMissCount());
+      } finally {
+        ds.forceCloseAll();
+      }
+    }
+  }
+
+  @Test
+  void shouldCloseResultSetOfCachedPreparedStatement() throws Exception {
+    PooledDataSource ds = createPooledDataSource(JPETSTORE_PROPERTIES);
+    try {
+      ds.setPoolPreparedStatementCacheSize(4);
+      try (Connection c = ds.getConnection()) {
+        PreparedStatement st = c.prepareStatement("SELECT 1 FROM INFORMATION_SCHEMA.SYSTEM_USERS");
+        PreparedStatement real = st.unwrap(PreparedStatement.class);
+        ResultSet rs = st.executeQuery();
+        st.close();
+        assertTrue(rs.isClosed());
+        assertFalse(real.isClosed());
+      }
+    } finally {
+      ds.forceCloseAll();
+    }
+  }
+
+  @Test
+  void shouldCloseLeastRecentlyUsedPreparedStatements() throws Exception {
+    PooledDataSource ds = createPooledDataSource(JPETSTORE_PROPERTIES);
+    try {
+      ds.setPoolPreparedStatementCacheSize(1);
+      try (Connection c = ds.getConnection()) {
+        PreparedStatement first = c.prepareStatement("SELECT 1 FROM INFORMATION_SCHEMA.SYSTEM_USERS");
+        PreparedStatement second = c.prepareStatement("SELECT 1 FROM INFORMATION_SCHEMA.SYSTEM_USERS");
+        PreparedStatement realFirst = first.unwrap(PreparedStatement.class);
+        PreparedStatement realSecond = second.unwrap(PreparedStatement.class);
+        assertNotSame(realFirst, realSecond);
+        first.close();
+        second.close();
+        // 相同语句只保留一个
+        assertFalse(realFirst.isClosed());
+        assertTrue(realSecond.isClosed());
+        c.prepareStatement("SELECT 2 FROM INFORMATION_SCHEMA.SYSTEM_USERS").close();
+        assertTrue(realFirst.isClosed());
+      }
+    } finally {
+      ds.forceCloseAll();
+    }
+  }
+
+  @Test
+  void shouldRecordWaitTimeOfBlockedBorrowers() throws Exception {
+    PooledDataSource ds = createPooledDataSource(JPETSTORE_PROPERTIES);
+    ExecutorService executor = Executors.newSingleThreadExecutor();
+    try {
+      ds.setPoolEngine(PooledDataSource.POOL_ENGINE_CONCURRENT);
+      ds.setPoolMaximumActiveConnections(1);
+      Connection c = ds.getConnection();
+      Future<?> waiter = executor.submit(() -> {
+        ds.getConnection().close();
+        return null;
+      });
+      waitUntil(() -> ds.getPoolState().getWaitingThreadCount() == 1);
+      Thread.sleep(20);
+      c.close();
+      waiter.get(10, TimeUnit.SECONDS);
+      PoolMetrics metrics = ds.getPoolState().getMetrics();
+      assertEquals(1, metrics.getHadToWaitCount());
+      assertEquals(1, metrics.getWaitTime().getCount());
+      assertTrue(metrics.getWaitTime().getMax() >= 20);
+    } finally {
+      executor.shutdownNow();
+      ds.forceCloseAll();
+    }
+  }
+
+  @Test
+  void shouldCaptureBorrowingStackOfLeakedConnections() throws Exception {
+    for (String engine : new String[] { PooledDataSource.POOL_ENGINE_CLASSIC, PooledDataSource.POOL_ENGINE_CONCURRENT }) {
+      PooledDataSource ds = createPooledDataSource(JPETSTORE_PROPERTIES);
+      try {
+        ds.setPoolEngine(engine);
+        ds.setPoolLeakDetectionThreshold(20);
+        ds.getConnection().close();
+        Connection leaked = ds.getConnection();
+        waitUntil(() -> ds.getPoolState().getLeakSuspects().size() == 1);
+        Throwable trace = ds.getPoolState().getLeakSuspects().get(0);
+        assertEquals("shouldCaptureBorrowingStackOfLeakedConnections", findTestFrame(trace).getMethodName());
+        assertEquals(1, ds.getPoolState().getLeakedConnectionCount());
+        leaked.close();
+        assertTrue(ds.getPoolState().getLeakSuspects().isEmpty());
+        assertEquals(1, ds.getPoolState().getMetrics().getLeakedConnectionCount());
+      } finally {
+        ds.forceCloseAll();
+      }
+    }
+  }
+
+  @Test
+  void shouldReportLeaksDetectedRightAfterBorrowing() throws Exception {
+    PooledDataSource ds = createPooledDataSource(JPETSTORE_PROPERTIES);
+    try {
+      ds.setPoolMaximumActiveConnections(10);
+      ds.setPoolLeakDetectionThreshold(1);
+      List<Connection> leaked = new ArrayList<>();
+      for (int i = 0; i < 10; i++) {
+        leaked.add(ds.getConnection());
+      }
+      waitUntil(() -> ds.getPoolState().getLeakSuspects().size() == 10);
+      assertEquals(10, ds.getPoolState().getLeakedConnectionCount());
+      for (Connection c : leaked) {
+        c.close();
+      }
+      assertTrue(ds.getPoolState().getLeakSuspects().isEmpty());
+    } finally {
+      ds.forceCloseAll();
+    }
+  }
+
   @Test
   void shouldNotFailCallingToStringOverAnInvalidConnection() throws Exception {
     PooledDataSource ds = createPooledDataSource(JPETSTORE_PROPERTIES);
@@ -136,6 +533,30 @@ class PooledDataSourceTest extends BaseDataTest {
     con.close();
   }
 
+  private StackTraceElement findTestFrame(Throwable trace) {
+    for (StackTraceElement element : trace.getStackTrace()) {
+      if (element.getClassName().equals(getClass().getName())) {
+        return element;
+      }
+    }
+    return fail("No frame of " + getClass().getName() + " in " + trace);
+  }
+
+  private void waitUntil(BooleanSupplier condition) throws InterruptedException {
+    long deadline = System.currentTimeMillis() + 10000;
+    while (!condition.getAsBoolean()) {
+      assertTrue(System.currentTimeMillis() < deadline, "Timed out waiting for the pool housekeeper");
+      Thread.sleep(10);
+    }
+  }
+
+  private void executeHsqldbQuery(Connection con) throws SQLException {
+    try (PreparedStatement st = con.prepareStatement("SELECT 1 FROM INFORMATION_SCHEMA.SYSTEM_USERS");
+         ResultSet rs = st.executeQuery()) {
+      assertTrue(rs.next());
+    }
+  }
+
   private void exexuteQuery(Connection con) throws SQLException {
     try (PreparedStatement st = con.prepareStatement("select 1");
          ResultSet rs = st.executeQuery()) {
@@ -18,11 +18,23 @@ package org.apache.ibatis.mapping;
 import org.apache.ibatis.builder.InitializingObject;
 import org.apache.ibatis.cache.Cache;
 import org.apache.ibatis.cache.CacheException;
+import org.apache.ibatis.cache.CacheMemoryBudget;
+import org.apache.ibatis.cache.decorators.LoggingCache;
+import org.apache.ibatis.cache.decorators.LruCache;
+import org.apache.ibatis.cache.decorators.RefreshAheadCache;
+import org.apache.ibatis.cache.decorators.ScheduledCache;
+import org.apache.ibatis.cache.decorators.SerializedCache;
+import org.apache.ibatis.cache.decorators.SingleFlightCache;
+import org.apache.ibatis.cache.decorators.SynchronizedCache;
+import org.apache.ibatis.cache.decorators.TinyLfuCache;
+import org.apache.ibatis.cache.impl.ConcurrentPerpetualCache;
 import org.apache.ibatis.cache.impl.PerpetualCache;
 import org.assertj.core.api.Assertions;
 import org.junit.jupiter.api.Test;
 
 import java.lang.reflect.Field;
+import java.util.Arrays;
+import java.util.Properties;
 
 import static com.googlecode.catchexception.apis.BDDCatchException.*;
 import static org.assertj.core.api.BDDAssertions.then;
@@ -43,6 +55,72 @@ class CacheBuilderTest {
       .hasMessage("Failed cache initialization for 'test' on 'org.apache.ibatis.mapping.CacheBuilderTest$InitializingFailureCache'");
   }
 
+  @Test
+  void testSynchronizedWhenAnyDecoratorIsNotThreadSafe() {
+    Cache cache = new CacheBuilder("test").implementation(ConcurrentPerpetualCache.class).addDecorator(LruCache.class).build();
+    Assertions.assertThat(cache).isInstanceOf(SynchronizedCache.class);
+
+    cache = new CacheBuilder("test").build();
+    Assertions.assertThat(cache).isInstanceOf(SynchronizedCache.class);
+  }
+
+  @Test
+  void testNotSynchronizedWhenThreadSafe() {
+    Cache cache = new CacheBuilder("test").implementation(ConcurrentPerpetualCache.class).readWrite(true).build();
+    Assertions.assertThat(cache).isInstanceOf(LoggingCache.class);
+    Assertions.assertThat(cache.isThreadSafe()).isTrue();
+    Assertions.assertThat((Cache) unwrap(cache)).isInstanceOf(SerializedCache.class);
+  }
+
+  @Test
+  void testNotSynchronizedWithThreadSafeEviction() {
+    Properties props = new Properties();
+    props.setProperty("maximumWeight", "100");
+    Cache cache = new CacheBuilder("test").implementation(ConcurrentPerpetualCache.class)
+      .addDecorator(TinyLfuCache.class).size(10).properties(props).build();
+    Assertions.assertThat(cache).isInstanceOf(LoggingCache.class);
+    Assertions.assertThat((Cache) unwrap(cache)).isInstanceOf(TinyLfuCache.class);
+    for (int i = 0; i < 10; i++) {
+      cache.putObject(i, Arrays.asList(i, i, i, i, i, i, i, i, i, i, i, i, i, i, i, i, i, i, i, i));
+    }
+    Assertions.assertThat(cache.getSize()).isEqualTo(5);
+  }
+
+  @Test
+  void testMemoryBudgetIsChargedBySerializedSize() {
+    CacheMemoryBudget budget = new CacheMemoryBudget(1024 * 1024);
+    Cache cache = new CacheBuilder("test").implementation(ConcurrentPerpetualCache.class)
+      .addDecorator(TinyLfuCache.class).readWrite(true).memoryBudget(budget).build();
+    cache.putObject("key", "value");
+    Assertions.assertThat(budget.getUsedBytes()).isGreaterThan(0L);
+    cache.clear();
+    Assertions.assertThat(budget.getUsedBytes()).isEqualTo(0L);
+  }
+
+  @Test
+  void testBlockingUsesSingleFlight() {
+    Properties props = new Properties();
+    props.setProperty("timeout", "500");
+    Cache cache = new CacheBuilder("test").blocking(true).properties(props).build();
+    Assertions.assertThat(cache).isInstanceOf(SingleFlightCache.class);
+    Assertions.assertThat(((SingleFlightCache) cache).getTimeout()).isEqualTo(500L);
+    Assertions.assertThat(((SingleFlightCache) cache).isShareLoadedValue()).isTrue();
+  }
+
+  @Test
+  void testRefreshAheadReplacesScheduledCache() {
+    Properties props = new Properties();
+    props.setProperty("refreshAhead", "1000");
+    Cache cache = new CacheBuilder("test").clearInterval(60000L).blocking(true).properties(props).build();
+    Assertions.assertThat(cache).isInstanceOf(RefreshAheadCache.class);
+    Assertions.assertThat(((RefreshAheadCache) cache).getTimeToLive()).isEqualTo(60000L);
+    Assertions.assertThat(((RefreshAheadCache) cache).getRefreshAhead()).isEqualTo(1000L);
+    Assertions.assertThat((Cache) unwrap(cache)).isInstanceOf(SingleFlightCache.class);
+
+    cache = new CacheBuilder("test").clearInterval(60000L).build();
+    Assertions.assertThat((Cache) unwrap(unwrap(cache))).isInstanceOf(ScheduledCache.class);
+  }
+
   @SuppressWarnings("unchecked")
   private <T> T unwrap(Cache cache) {
     Field field;
@@ -0,0 +1,71 @@
+/**
+ *    Copyright 2009-2019 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.mapping;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.Collections;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.ibatis.builder.StaticSqlSource;
+import org.apache.ibatis.session.Configuration;
+import org.junit.jupiter.api.Test;
+
+class MappedStatementTest {
+
+  @Test
+  void shouldParseWrittenTablesOfStaticSqlOnce() {
+    Configuration configuration = new Configuration();
+    AtomicInteger builds = new AtomicInteger();
+    SqlSource sqlSource = new StaticSqlSource(configuration, "update person set name = ? where id = ?") {
+      @Override
+      public BoundSql getBoundSql(Object parameterObject) {
+        builds.incrementAndGet();
+        return super.getBoundSql(parameterObject);
+      }
+    };
+    MappedStatement ms = new MappedStatement.Builder(configuration, "update", sqlSource, SqlCommandType.UPDATE).build();
+    assertEquals(Collections.singleton("person"), ms.getWrittenTables(1));
+    assertEquals(Collections.singleton("person"), ms.getWrittenTables(2));
+    assertEquals(1, builds.get());
+  }
+
+  @Test
+  void shouldBuildDynamicSqlForWrittenTables() {
+    Configuration configuration = new Configuration();
+    AtomicInteger builds = new AtomicInteger();
+    SqlSource sqlSource = parameterObject -> {
+      builds.incrementAndGet();
+      return new BoundSql(configuration, "delete from " + parameterObject, Collections.emptyList(), parameterObject);
+    };
+    MappedStatement ms = new MappedStatement.Builder(configuration, "delete", sqlSource, SqlCommandType.DELETE).build();
+    assertEquals(Collections.singleton("person"), ms.getWrittenTables("person"));
+    assertEquals(Collections.singleton("pet"), ms.getWrittenTables("pet"));
+    assertEquals(2, builds.get());
+  }
+
+  @Test
+  void shouldNotBuildSqlForDeclaredTables() {
+    Configuration configuration = new Configuration();
+    SqlSource sqlSource = parameterObject -> {
+      throw new AssertionError("the SQL should not be built");
+    };
+    MappedStatement ms = new MappedStatement.Builder(configuration, "delete", sqlSource, SqlCommandType.DELETE)
+        .tables("person").build();
+    assertEquals(Collections.singleton("person"), ms.getWrittenTables(null));
+  }
+
+}
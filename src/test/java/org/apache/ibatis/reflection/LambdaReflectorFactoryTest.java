@@ -0,0 +1,101 @@
+/**
+ *    Copyright 2009-2019 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.reflection;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.lang.reflect.InvocationTargetException;
+
+import org.apache.ibatis.domain.blog.Author;
+import org.apache.ibatis.domain.blog.Section;
+import org.apache.ibatis.reflection.factory.DefaultObjectFactory;
+import org.apache.ibatis.reflection.invoker.Invoker;
+import org.apache.ibatis.reflection.invoker.LambdaMethodInvoker;
+import org.apache.ibatis.reflection.wrapper.DefaultObjectWrapperFactory;
+import org.junit.jupiter.api.Test;
+
+class LambdaReflectorFactoryTest {
+
+  @Test
+  void shouldGenerateAccessorsOfPublicBeans() throws Exception {
+    Reflector reflector = new LambdaReflectorFactory().findForClass(Author.class);
+    Invoker setter = reflector.getSetInvoker("id");
+    Invoker getter = reflector.getGetInvoker("id");
+    assertTrue(setter instanceof LambdaMethodInvoker);
+    assertTrue(getter instanceof LambdaMethodInvoker);
+    assertEquals(int.class, setter.getType());
+
+    Author author = new Author();
+    setter.invoke(author, new Object[] { 101 });
+    reflector.getSetInvoker("favouriteSection").invoke(author, new Object[] { Section.NEWS });
+    assertEquals(101, getter.invoke(author, null));
+    assertSame(Section.NEWS, reflector.getGetInvoker("favouriteSection").invoke(author, null));
+  }
+
+  @Test
+  void shouldCacheReflectorsPerClass() {
+    ReflectorFactory reflectorFactory = new LambdaReflectorFactory();
+    assertSame(reflectorFactory.findForClass(Author.class), reflectorFactory.findForClass(Author.class));
+  }
+
+  @Test
+  void shouldFallBackToReflectionForNonPublicClasses() throws Exception {
+    Reflector reflector = new LambdaReflectorFactory().findForClass(Bean.class);
+    Invoker setter = reflector.getSetInvoker("name");
+    assertFalse(setter instanceof LambdaMethodInvoker);
+    Bean bean = new Bean();
+    setter.invoke(bean, new Object[] { "foo" });
+    assertEquals("foo", reflector.getGetInvoker("name").invoke(bean, null));
+  }
+
+  @Test
+  void shouldWrapExceptionsLikeReflection() {
+    Reflector reflector = new LambdaReflectorFactory().findForClass(Author.class);
+    Invoker setter = reflector.getSetInvoker("id");
+    assertThrows(InvocationTargetException.class, () -> setter.invoke(new Author(), new Object[] { null }));
+  }
+
+  @Test
+  void shouldWorkWithMetaObject() {
+    Author author = new Author();
+    MetaObject metaObject = MetaObject.forObject(author, new DefaultObjectFactory(), new DefaultObjectWrapperFactory(),
+        new LambdaReflectorFactory());
+    metaObject.setValue("username", "jim");
+    metaObject.setValue("id", 7);
+    assertEquals("jim", author.getUsername());
+    assertEquals(7, metaObject.getValue("id"));
+    assertNull(metaObject.getValue("bio"));
+  }
+
+  static class Bean {
+
+    private String name;
+
+    public String getName() {
+      return name;
+    }
+
+    public void setName(String name) {
+      this.name = name;
+    }
+  }
+
+}
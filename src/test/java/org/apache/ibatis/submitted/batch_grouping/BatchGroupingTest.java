@@ -0,0 +1,127 @@
+/**
+ *    Copyright 2009-2019 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.submitted.batch_grouping;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.Reader;
+import java.util.List;
+
+import org.apache.ibatis.BaseDataTest;
+import org.apache.ibatis.executor.BatchResult;
+import org.apache.ibatis.io.Resources;
+import org.apache.ibatis.session.BatchGrouping;
+import org.apache.ibatis.session.Configuration;
+import org.apache.ibatis.session.ExecutorType;
+import org.apache.ibatis.session.SqlSession;
+import org.apache.ibatis.session.SqlSessionFactory;
+import org.apache.ibatis.session.SqlSessionFactoryBuilder;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class BatchGroupingTest {
+
+  private SqlSessionFactory sqlSessionFactory;
+
+  @BeforeEach
+  void setUp() throws Exception {
+    try (Reader reader = Resources.getResourceAsReader("org/apache/ibatis/submitted/batch_grouping/mybatis-config.xml")) {
+      sqlSessionFactory = new SqlSessionFactoryBuilder().build(reader);
+    }
+    BaseDataTest.runScript(sqlSessionFactory.getConfiguration().getEnvironment().getDataSource(),
+        "org/apache/ibatis/submitted/batch_grouping/CreateDB.sql");
+  }
+
+  @Test
+  void shouldGroupInterleavedInsertsByTable() {
+    try (SqlSession sqlSession = sqlSessionFactory.openSession(ExecutorType.BATCH)) {
+      Mapper mapper = sqlSession.getMapper(Mapper.class);
+      mapper.insertParent(1, "p1");
+      mapper.insertChild(1, 1, "c1");
+      mapper.insertParent(2, "p2");
+      mapper.insertChild(2, 2, "c2");
+      List<BatchResult> results = sqlSession.flushStatements();
+      assertEquals(2, results.size());
+      assertEquals("org.apache.ibatis.submitted.batch_grouping.Mapper.insertParent",
+          results.get(0).getMappedStatement().getId());
+      assertArrayEquals(new int[] { 1, 1 }, results.get(0).getUpdateCounts());
+      assertArrayEquals(new int[] { 1, 1 }, results.get(1).getUpdateCounts());
+      assertEquals(2, mapper.countChildren());
+    }
+  }
+
+  @Test
+  void shouldKeepUpdatesOfTheSameTableInOrder() {
+    try (SqlSession sqlSession = sqlSessionFactory.openSession(ExecutorType.BATCH)) {
+      Mapper mapper = sqlSession.getMapper(Mapper.class);
+      mapper.insertParent(1, "p1");
+      mapper.updateParent(1, "p1'");
+      mapper.insertParent(2, "p2");
+      List<BatchResult> results = sqlSession.flushStatements();
+      assertEquals(3, results.size());
+      assertEquals("p1'", mapper.getParentName(1));
+    }
+  }
+
+  @Test
+  void shouldNotMoveChildInsertsBeforeTheirParents() {
+    try (SqlSession sqlSession = sqlSessionFactory.openSession(ExecutorType.BATCH)) {
+      Mapper mapper = sqlSession.getMapper(Mapper.class);
+      mapper.insertParent(1, "p1");
+      mapper.insertChild(1, 1, "c1");
+      mapper.insertParent(2, "p2");
+      mapper.insertChild(2, 2, "c2");
+      mapper.updateParent(2, "p2'");
+      mapper.insertChild(3, 1, "c3");
+      List<BatchResult> results = sqlSession.flushStatements();
+      // 父表更新之后的子表插入不能并入之前的批次
+      assertEquals(4, results.size());
+      assertEquals(3, mapper.countChildren());
+    }
+  }
+
+  @Test
+  void shouldCapRowsPerBatch() {
+    Configuration configuration = sqlSessionFactory.getConfiguration();
+    configuration.setBatchGrouping(BatchGrouping.STATEMENT);
+    configuration.setMaxBatchSize(2);
+    try (SqlSession sqlSession = sqlSessionFactory.openSession(ExecutorType.BATCH)) {
+      Mapper mapper = sqlSession.getMapper(Mapper.class);
+      for (int i = 1; i <= 5; i++) {
+        mapper.insertParent(i, "p" + i);
+      }
+      List<BatchResult> results = sqlSession.flushStatements();
+      assertEquals(3, results.size());
+      assertEquals(2, results.get(0).getParameterObjects().size());
+      assertEquals(1, results.get(2).getParameterObjects().size());
+    }
+  }
+
+  @Test
+  void shouldOnlyGroupConsecutiveStatementsByDefault() {
+    sqlSessionFactory.getConfiguration().setBatchGrouping(BatchGrouping.STATEMENT);
+    try (SqlSession sqlSession = sqlSessionFactory.openSession(ExecutorType.BATCH)) {
+      Mapper mapper = sqlSession.getMapper(Mapper.class);
+      mapper.insertParent(1, "p1");
+      mapper.insertChild(1, 1, "c1");
+      mapper.insertParent(2, "p2");
+      mapper.insertChild(2, 2, "c2");
+      assertEquals(4, sqlSession.flushStatements().size());
+    }
+  }
+
+}
@@ -0,0 +1,41 @@
+/**
+ *    Copyright 2009-2019 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.submitted.batch_grouping;
+
+import org.apache.ibatis.annotations.Insert;
+import org.apache.ibatis.annotations.Param;
+import org.apache.ibatis.annotations.Select;
+import org.apache.ibatis.annotations.Update;
+
+public interface Mapper {
+
+  @Insert("insert into parent (id, name) values (#{id}, #{name})")
+  void insertParent(@Param("id") int id, @Param("name") String name);
+
+  @Update("update parent set name = #{name} where id = #{id}")
+  void updateParent(@Param("id") int id, @Param("name") String name);
+
+  @Insert("insert into child (id, parent_id, name) values (#{id}, #{parentId}, #{name})")
+  void insertChild(@Param("id") int id, @Param("parentId") int parentId,
+      @Param("name") String name);
+
+  @Select("select name from parent where id = #{id}")
+  String getParentName(int id);
+
+  @Select("select count(*) from child")
+  int countChildren();
+
+}
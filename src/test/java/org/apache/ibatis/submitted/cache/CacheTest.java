@@ -17,10 +17,13 @@ package org.apache.ibatis.submitted.cache;
 
 import java.io.Reader;
 import java.lang.reflect.Field;
+import java.sql.Connection;
+import java.sql.Statement;
 
 import org.apache.ibatis.BaseDataTest;
 import org.apache.ibatis.annotations.CacheNamespace;
 import org.apache.ibatis.annotations.Property;
+import org.apache.ibatis.annotations.Select;
 import org.apache.ibatis.cache.Cache;
 import org.apache.ibatis.cache.CacheException;
 import org.apache.ibatis.annotations.CacheNamespaceRef;
@@ -293,6 +296,28 @@ class CacheTest {
       .hasMessage("Should be specified either value() or name() attribute in the @CacheNamespaceRef");
   }
 
+  @Test
+  void shouldServeStaleValueWhileRefreshingAhead() throws Exception {
+    sqlSessionFactory.getConfiguration().addMapper(RefreshAheadPersonMapper.class);
+    try (SqlSession sqlSession = sqlSessionFactory.openSession()) {
+      Assertions.assertEquals("Jane", sqlSession.getMapper(RefreshAheadPersonMapper.class).find(1).getFirstname());
+    }
+    try (Connection connection = sqlSessionFactory.getConfiguration().getEnvironment().getDataSource().getConnection();
+         Statement statement = connection.createStatement()) {
+      statement.executeUpdate("update person set firstname = 'Jenny' where id = 1");
+    }
+    Thread.sleep(200);
+    String firstname;
+    long deadline = System.currentTimeMillis() + 5000;
+    do {
+      try (SqlSession sqlSession = sqlSessionFactory.openSession()) {
+        firstname = sqlSession.getMapper(RefreshAheadPersonMapper.class).find(1).getFirstname();
+      }
+      // the old value is returned until the background reload completes
+    } while ("Jane".equals(firstname) && System.currentTimeMillis() < deadline);
+    Assertions.assertEquals("Jenny", firstname);
+  }
+
   private CustomCache unwrap(Cache cache){
     Field field;
     try {
@@ -324,4 +349,12 @@ class CacheTest {
   private interface InvalidCacheNamespaceRefEmptyMapper {
   }
 
+  @CacheNamespace(flushInterval = 60000, properties = {
+      @Property(name = "refreshAhead", value = "59900")
+  })
+  private interface RefreshAheadPersonMapper {
+    @Select("select id, firstname, lastname from person where id = #{id}")
+    Person find(int id);
+  }
+
 }
@@ -0,0 +1,87 @@
+/**
+ *    Copyright 2009-2019 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.submitted.cache_cluster_invalidation;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.Reader;
+
+import org.apache.ibatis.BaseDataTest;
+import org.apache.ibatis.io.Resources;
+import org.apache.ibatis.session.SqlSession;
+import org.apache.ibatis.session.SqlSessionFactory;
+import org.apache.ibatis.session.SqlSessionFactoryBuilder;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class ClusterInvalidationTest {
+
+  private SqlSessionFactory node1;
+
+  private SqlSessionFactory node2;
+
+  @BeforeEach
+  void setUp() throws Exception {
+    node1 = build();
+    node2 = build();
+    BaseDataTest.runScript(node1.getConfiguration().getEnvironment().getDataSource(),
+        "org/apache/ibatis/submitted/cache_cluster_invalidation/CreateDB.sql");
+  }
+
+  @AfterEach
+  void tearDown() {
+    node1.getConfiguration().setCacheInvalidationTransport(null);
+    node2.getConfiguration().setCacheInvalidationTransport(null);
+  }
+
+  @Test
+  void shouldInvalidateOtherNodesOnCommit() {
+    assertEquals("Jane", getName(node1));
+    assertEquals("Jane", getName(node2));
+
+    try (SqlSession sqlSession = node2.openSession()) {
+      sqlSession.getMapper(PersonMapper.class).rename(1, "Janet");
+      sqlSession.commit();
+    }
+
+    assertEquals("Janet", getName(node1));
+    assertEquals("Janet", getName(node2));
+  }
+
+  @Test
+  void shouldNotInvalidateOtherNodesOnRollback() {
+    assertEquals("Jane", getName(node1));
+    try (SqlSession sqlSession = node2.openSession()) {
+      sqlSession.getMapper(PersonMapper.class).rename(1, "Janet");
+      sqlSession.rollback();
+    }
+    assertEquals(1, node1.getConfiguration().getCache(PersonMapper.class.getName()).getSize());
+  }
+
+  private static String getName(SqlSessionFactory node) {
+    try (SqlSession sqlSession = node.openSession()) {
+      return sqlSession.getMapper(PersonMapper.class).getName(1);
+    }
+  }
+
+  private static SqlSessionFactory build() throws Exception {
+    try (Reader reader = Resources.getResourceAsReader("org/apache/ibatis/submitted/cache_cluster_invalidation/mybatis-config.xml")) {
+      return new SqlSessionFactoryBuilder().build(reader);
+    }
+  }
+
+}
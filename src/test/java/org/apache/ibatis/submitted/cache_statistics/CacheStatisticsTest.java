@@ -0,0 +1,77 @@
+/**
+ *    Copyright 2009-2019 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.submitted.cache_statistics;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.Reader;
+
+import org.apache.ibatis.BaseDataTest;
+import org.apache.ibatis.cache.CacheStatistics;
+import org.apache.ibatis.cache.CacheStatisticsRegistry;
+import org.apache.ibatis.io.Resources;
+import org.apache.ibatis.session.SqlSession;
+import org.apache.ibatis.session.SqlSessionFactory;
+import org.apache.ibatis.session.SqlSessionFactoryBuilder;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class CacheStatisticsTest {
+
+  private SqlSessionFactory sqlSessionFactory;
+
+  @BeforeEach
+  void setUp() throws Exception {
+    try (Reader reader = Resources.getResourceAsReader("org/apache/ibatis/submitted/cache_statistics/mybatis-config.xml")) {
+      sqlSessionFactory = new SqlSessionFactoryBuilder().build(reader);
+    }
+    BaseDataTest.runScript(sqlSessionFactory.getConfiguration().getEnvironment().getDataSource(),
+        "org/apache/ibatis/submitted/cache_statistics/CreateDB.sql");
+  }
+
+  @Test
+  void shouldRecordStatisticsPerStatementAndPerCache() {
+    for (int i = 0; i < 3; i++) {
+      try (SqlSession sqlSession = sqlSessionFactory.openSession()) {
+        PersonMapper mapper = sqlSession.getMapper(PersonMapper.class);
+        assertEquals("Jane", mapper.getName(1));
+        if (i == 0) {
+          assertEquals(2, mapper.getNames().size());
+        }
+      }
+    }
+    CacheStatisticsRegistry registry = sqlSessionFactory.getConfiguration().getCacheStatistics();
+    String namespace = PersonMapper.class.getName();
+
+    CacheStatistics getName = registry.getStatementStatistics(namespace + ".getName");
+    assertEquals(2, getName.getHits());
+    assertEquals(1, getName.getMisses());
+    assertEquals(1, getName.getWeight());
+    assertTrue(getName.getLoadTime() > 0);
+
+    CacheStatistics getNames = registry.getStatementStatistics(namespace + ".getNames");
+    assertEquals(0, getNames.getHits());
+    assertEquals(1, getNames.getMisses());
+    assertEquals(2, getNames.getWeight());
+
+    CacheStatistics cache = registry.getCacheStatistics(namespace);
+    assertEquals(2, cache.getHits());
+    assertEquals(2, cache.getMisses());
+    assertEquals(2, cache.getPuts());
+    assertEquals(0, cache.getEvictions());
+  }
+
+}
@@ -0,0 +1,109 @@
+/**
+ *    Copyright 2009-2019 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.submitted.cache_table_invalidation;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.Reader;
+import java.sql.Connection;
+import java.sql.Statement;
+import java.util.Collections;
+
+import org.apache.ibatis.BaseDataTest;
+import org.apache.ibatis.io.Resources;
+import org.apache.ibatis.session.SqlSession;
+import org.apache.ibatis.session.SqlSessionFactory;
+import org.apache.ibatis.session.SqlSessionFactoryBuilder;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class TableInvalidationTest {
+
+  private SqlSessionFactory sqlSessionFactory;
+
+  @BeforeEach
+  void setUp() throws Exception {
+    try (Reader reader = Resources.getResourceAsReader("org/apache/ibatis/submitted/cache_table_invalidation/mybatis-config.xml")) {
+      sqlSessionFactory = new SqlSessionFactoryBuilder().build(reader);
+    }
+    BaseDataTest.runScript(sqlSessionFactory.getConfiguration().getEnvironment().getDataSource(),
+        "org/apache/ibatis/submitted/cache_table_invalidation/CreateDB.sql");
+  }
+
+  @Test
+  void shouldInvalidateOnlyQueriesOnWrittenTablesAcrossNamespaces() throws Exception {
+    try (SqlSession sqlSession = sqlSessionFactory.openSession()) {
+      assertEquals("Jane", sqlSession.getMapper(PersonMapper.class).getName(1));
+      assertEquals("Rex", sqlSession.getMapper(PetMapper.class).getName(1));
+      assertEquals(Collections.singletonList("Rex"), sqlSession.getMapper(PetMapper.class).getNamesByOwner("Jane"));
+      assertEquals(1, sqlSession.getMapper(PersonMapper.class).countPets(1));
+    }
+    // changes behind MyBatis' back reveal which entries are still cached
+    execute("update pet set name = 'Max' where id = 1");
+
+    try (SqlSession sqlSession = sqlSessionFactory.openSession()) {
+      sqlSession.getMapper(WriteMapper.class).renamePerson(1, "Janet");
+      sqlSession.commit();
+    }
+
+    try (SqlSession sqlSession = sqlSessionFactory.openSession()) {
+      assertEquals("Janet", sqlSession.getMapper(PersonMapper.class).getName(1));
+      assertEquals("Rex", sqlSession.getMapper(PetMapper.class).getName(1));
+      assertEquals(Collections.singletonList("Max"), sqlSession.getMapper(PetMapper.class).getNamesByOwner("Janet"));
+      assertEquals(1, sqlSession.getMapper(PersonMapper.class).countPets(1));
+    }
+  }
+
+  @Test
+  void shouldUseDeclaredTables() {
+    try (SqlSession sqlSession = sqlSessionFactory.openSession()) {
+      assertEquals(1, sqlSession.getMapper(PersonMapper.class).countPets(1));
+      assertEquals("Jane", sqlSession.getMapper(PersonMapper.class).getName(1));
+    }
+    try (SqlSession sqlSession = sqlSessionFactory.openSession()) {
+      sqlSession.getMapper(WriteMapper.class).changeOwner(2, 1);
+      sqlSession.commit();
+    }
+    try (SqlSession sqlSession = sqlSessionFactory.openSession()) {
+      assertEquals(2, sqlSession.getMapper(PersonMapper.class).countPets(1));
+    }
+  }
+
+  @Test
+  void shouldBypassCacheAfterWriteInSameTransaction() throws Exception {
+    try (SqlSession sqlSession = sqlSessionFactory.openSession()) {
+      assertEquals("Jane", sqlSession.getMapper(PersonMapper.class).getName(1));
+    }
+    try (SqlSession sqlSession = sqlSessionFactory.openSession()) {
+      sqlSession.getMapper(WriteMapper.class).renamePerson(1, "Janet");
+      assertEquals("Janet", sqlSession.getMapper(PersonMapper.class).getName(1));
+      sqlSession.rollback();
+    }
+    // the rolled back read was not cached, and the older entry is still valid
+    execute("update person set name = 'Joan' where id = 1");
+    try (SqlSession sqlSession = sqlSessionFactory.openSession()) {
+      assertEquals("Jane", sqlSession.getMapper(PersonMapper.class).getName(1));
+    }
+  }
+
+  private void execute(String sql) throws Exception {
+    try (Connection connection = sqlSessionFactory.getConfiguration().getEnvironment().getDataSource().getConnection();
+         Statement statement = connection.createStatement()) {
+      statement.executeUpdate(sql);
+    }
+  }
+
+}
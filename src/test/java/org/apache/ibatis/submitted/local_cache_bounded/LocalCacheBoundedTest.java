@@ -0,0 +1,87 @@
+/**
+ *    Copyright 2009-2019 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.submitted.local_cache_bounded;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.Reader;
+import java.sql.Connection;
+import java.sql.Statement;
+
+import org.apache.ibatis.BaseDataTest;
+import org.apache.ibatis.io.Resources;
+import org.apache.ibatis.session.SqlSession;
+import org.apache.ibatis.session.SqlSessionFactory;
+import org.apache.ibatis.session.SqlSessionFactoryBuilder;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class LocalCacheBoundedTest {
+
+  private SqlSessionFactory sqlSessionFactory;
+
+  @BeforeEach
+  void setUp() throws Exception {
+    try (Reader reader = Resources.getResourceAsReader("org/apache/ibatis/submitted/local_cache_bounded/mybatis-config.xml")) {
+      sqlSessionFactory = new SqlSessionFactoryBuilder().build(reader);
+    }
+    BaseDataTest.runScript(sqlSessionFactory.getConfiguration().getEnvironment().getDataSource(),
+        "org/apache/ibatis/submitted/local_cache_bounded/CreateDB.sql");
+  }
+
+  @Test
+  void shouldResolveCircularReferencesBeyondTheBound() {
+    try (SqlSession sqlSession = sqlSessionFactory.openSession()) {
+      Person jane = sqlSession.getMapper(PersonMapper.class).getPerson(1);
+      assertEquals(2, jane.getChildren().size());
+      for (Person child : jane.getChildren()) {
+        assertSame(jane, child.getParent());
+      }
+    }
+  }
+
+  @Test
+  void shouldEvictLeastRecentlyUsedResults() throws Exception {
+    try (SqlSession sqlSession = sqlSessionFactory.openSession()) {
+      PersonMapper mapper = sqlSession.getMapper(PersonMapper.class);
+      assertEquals("Jane", mapper.getName(1));
+      assertEquals("John", mapper.getName(2));
+      // changes behind MyBatis' back reveal which results are still cached
+      execute("update person set name = 'Janet' where id = 1");
+      execute("update person set name = 'Johnny' where id = 2");
+      assertEquals("John", mapper.getName(2));
+      assertEquals("Janet", mapper.getName(1));
+    }
+  }
+
+  @Test
+  void shouldNotKeepResultsOfOptedOutStatements() throws Exception {
+    try (SqlSession sqlSession = sqlSessionFactory.openSession()) {
+      PersonMapper mapper = sqlSession.getMapper(PersonMapper.class);
+      assertEquals("Jane", mapper.getNameUncached(1));
+      execute("update person set name = 'Janet' where id = 1");
+      assertEquals("Janet", mapper.getNameUncached(1));
+    }
+  }
+
+  private void execute(String sql) throws Exception {
+    try (Connection connection = sqlSessionFactory.getConfiguration().getEnvironment().getDataSource().getConnection();
+         Statement statement = connection.createStatement()) {
+      statement.execute(sql);
+    }
+  }
+
+}
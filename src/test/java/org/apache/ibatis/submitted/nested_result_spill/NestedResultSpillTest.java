@@ -0,0 +1,166 @@
+/**
+ *    Copyright 2009-2019 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.submitted.nested_result_spill;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.File;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.ibatis.BaseDataTest;
+import org.apache.ibatis.io.Resources;
+import org.apache.ibatis.session.SqlSession;
+import org.apache.ibatis.session.SqlSessionFactory;
+import org.apache.ibatis.session.SqlSessionFactoryBuilder;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class NestedResultSpillTest {
+
+  private SqlSessionFactory sqlSessionFactory;
+
+  @BeforeEach
+  void setUp() throws Exception {
+    try (Reader reader = Resources.getResourceAsReader("org/apache/ibatis/submitted/nested_result_spill/mybatis-config.xml")) {
+      sqlSessionFactory = new SqlSessionFactoryBuilder().build(reader);
+    }
+    BaseDataTest.runScript(sqlSessionFactory.getConfiguration().getEnvironment().getDataSource(),
+        "org/apache/ibatis/submitted/nested_result_spill/CreateDB.sql");
+  }
+
+  @Test
+  void shouldGroupSpilledRowsByParent() {
+    int spillFiles = countSpillFiles();
+    List<Parent> parents;
+    try (SqlSession sqlSession = sqlSessionFactory.openSession()) {
+      parents = sqlSession.getMapper(ParentMapper.class).getParents();
+    }
+    assertEquals(4, parents.size());
+    assertEquals(expectedChildren(), childIds(parents));
+    assertEquals(spillFiles, countSpillFiles());
+  }
+
+  @Test
+  void shouldMapLikeRowsInMemory() {
+    List<Parent> spilled;
+    try (SqlSession sqlSession = sqlSessionFactory.openSession()) {
+      spilled = sqlSession.getMapper(ParentMapper.class).getParents();
+    }
+    sqlSessionFactory.getConfiguration().setNestedResultSpillThreshold(null);
+    List<Parent> inMemory;
+    try (SqlSession sqlSession = sqlSessionFactory.openSession()) {
+      inMemory = sqlSession.getMapper(ParentMapper.class).getParents();
+    }
+    assertEquals(childIds(inMemory), childIds(spilled));
+  }
+
+  @Test
+  void shouldKeepOrderBelowThreshold() {
+    sqlSessionFactory.getConfiguration().setNestedResultSpillThreshold(100);
+    List<Parent> parents;
+    try (SqlSession sqlSession = sqlSessionFactory.openSession()) {
+      parents = sqlSession.getMapper(ParentMapper.class).getParentsByIdDesc();
+    }
+    List<Integer> ids = new ArrayList<>();
+    for (Parent parent : parents) {
+      ids.add(parent.getId());
+    }
+    assertEquals(Arrays.asList(4, 3, 2, 1), ids);
+    assertEquals(expectedChildren(), childIds(parents));
+  }
+
+  @Test
+  @SuppressWarnings("unchecked")
+  void shouldResolveUnknownTypeHandlersOfSpilledRows() {
+    List<Map<String, Object>> parents;
+    try (SqlSession sqlSession = sqlSessionFactory.openSession()) {
+      parents = sqlSession.getMapper(ParentMapper.class).getParentMaps();
+    }
+    Map<Integer, List<Integer>> ids = new HashMap<>();
+    for (Map<String, Object> parent : parents) {
+      List<Integer> childIds = new ArrayList<>();
+      for (Map<String, Object> child : (List<Map<String, Object>>) parent.get("children")) {
+        childIds.add((Integer) child.get("id"));
+      }
+      ids.put((Integer) parent.get("id"), childIds);
+    }
+    assertEquals(expectedChildren(), ids);
+  }
+
+  @Test
+  void shouldPassCompleteParentsToResultHandler() {
+    Map<Integer, List<Integer>> handled = new HashMap<>();
+    try (SqlSession sqlSession = sqlSessionFactory.openSession()) {
+      sqlSession.getMapper(ParentMapper.class).getParents(context -> {
+        // 交给处理器时子对象已全部映射
+        Parent parent = context.getResultObject();
+        handled.put(parent.getId(), childIds(parent));
+      });
+    }
+    assertEquals(expectedChildren(), handled);
+  }
+
+  @Test
+  void shouldStreamOrderedResultsDeclaredByAnnotation() {
+    sqlSessionFactory.getConfiguration().setNestedResultSpillThreshold(null);
+    assertEquals(true, sqlSessionFactory.getConfiguration()
+        .getMappedStatement("org.apache.ibatis.submitted.nested_result_spill.ParentMapper.getOrderedParents").isResultOrdered());
+    Map<Integer, List<Integer>> handled = new HashMap<>();
+    try (SqlSession sqlSession = sqlSessionFactory.openSession()) {
+      sqlSession.getMapper(ParentMapper.class).getOrderedParents(context -> {
+        Parent parent = context.getResultObject();
+        handled.put(parent.getId(), childIds(parent));
+      });
+    }
+    assertEquals(expectedChildren(), handled);
+  }
+
+  private static Map<Integer, List<Integer>> expectedChildren() {
+    Map<Integer, List<Integer>> expected = new HashMap<>();
+    expected.put(1, Arrays.asList(1, 4, 6, 8));
+    expected.put(2, Arrays.asList(2, 5));
+    expected.put(3, Arrays.asList(3, 7));
+    expected.put(4, new ArrayList<>());
+    return expected;
+  }
+
+  private static Map<Integer, List<Integer>> childIds(List<Parent> parents) {
+    Map<Integer, List<Integer>> ids = new HashMap<>();
+    for (Parent parent : parents) {
+      ids.put(parent.getId(), childIds(parent));
+    }
+    return ids;
+  }
+
+  private static List<Integer> childIds(Parent parent) {
+    List<Integer> ids = new ArrayList<>();
+    for (Child child : parent.getChildren()) {
+      ids.add(child.getId());
+    }
+    return ids;
+  }
+
+  private static int countSpillFiles() {
+    File[] files = new File(System.getProperty("java.io.tmpdir")).listFiles((dir, name) -> name.startsWith("mybatis-rows-"));
+    return files == null ? 0 : files.length;
+  }
+
+}
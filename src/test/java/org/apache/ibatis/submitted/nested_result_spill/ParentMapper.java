@@ -0,0 +1,45 @@
+/**
+ *    Copyright 2009-2019 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.submitted.nested_result_spill;
+
+import java.util.List;
+import java.util.Map;
+
+import org.apache.ibatis.annotations.Options;
+import org.apache.ibatis.annotations.ResultMap;
+import org.apache.ibatis.annotations.Select;
+import org.apache.ibatis.session.ResultHandler;
+
+public interface ParentMapper {
+
+  List<Parent> getParents();
+
+  void getParents(ResultHandler<Parent> handler);
+
+  List<Map<String, Object>> getParentMaps();
+
+  @Select("select p.id, p.name, c.id as child_id, c.name as child_name"
+      + " from parent p left join child c on c.parent_id = p.id order by p.id desc, c.id")
+  @ResultMap("parentMap")
+  List<Parent> getParentsByIdDesc();
+
+  @Select("select p.id, p.name, c.id as child_id, c.name as child_name"
+      + " from parent p left join child c on c.parent_id = p.id order by p.id, c.id")
+  @ResultMap("parentMap")
+  @Options(resultOrdered = true)
+  void getOrderedParents(ResultHandler<Parent> handler);
+
+}
@@ -0,0 +1,110 @@
+/**
+ *    Copyright 2009-2019 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.submitted.nested_select_batch;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.ibatis.BaseDataTest;
+import org.apache.ibatis.io.Resources;
+import org.apache.ibatis.session.SqlSession;
+import org.apache.ibatis.session.SqlSessionFactory;
+import org.apache.ibatis.session.SqlSessionFactoryBuilder;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class NestedSelectBatchTest {
+
+  private SqlSessionFactory sqlSessionFactory;
+
+  @BeforeEach
+  void setUp() throws Exception {
+    try (Reader reader = Resources.getResourceAsReader("org/apache/ibatis/submitted/nested_select_batch/mybatis-config.xml")) {
+      sqlSessionFactory = new SqlSessionFactoryBuilder().build(reader);
+    }
+    BaseDataTest.runScript(sqlSessionFactory.getConfiguration().getEnvironment().getDataSource(),
+        "org/apache/ibatis/submitted/nested_select_batch/CreateDB.sql");
+    StatementCounter.statements.clear();
+  }
+
+  @Test
+  void shouldBatchEagerNestedSelects() {
+    try (SqlSession sqlSession = sqlSessionFactory.openSession()) {
+      List<Blog> blogs = sqlSession.getMapper(BlogMapper.class).getBlogs();
+      assertBlogs(blogs);
+    }
+    // 博客、作者、文章各一次查询
+    assertEquals(3, StatementCounter.statements.size());
+  }
+
+  @Test
+  void shouldSplitBatchesBySize() {
+    sqlSessionFactory.getConfiguration().setNestedSelectBatchSize(2);
+    try (SqlSession sqlSession = sqlSessionFactory.openSession()) {
+      List<Blog> blogs = sqlSession.getMapper(BlogMapper.class).getBlogs();
+      assertBlogs(blogs);
+    }
+    // 3 个作者分 2 批，5 个博客的文章分 3 批
+    assertEquals(6, StatementCounter.statements.size());
+  }
+
+  @Test
+  void shouldLoadSiblingsWithFirstLazyLoad() {
+    try (SqlSession sqlSession = sqlSessionFactory.openSession()) {
+      List<Blog> blogs = sqlSession.getMapper(BlogMapper.class).getLazyBlogs();
+      assertEquals(1, StatementCounter.statements.size());
+      assertEquals(2, blogs.get(0).getPosts().size());
+      assertEquals(2, StatementCounter.statements.size());
+      assertEquals(3, blogs.get(3).getPosts().size());
+      assertEquals("Post 5", blogs.get(3).getPosts().get(0).getSubject());
+      assertTrue(blogs.get(4).getPosts().isEmpty());
+      assertEquals(2, StatementCounter.statements.size());
+    }
+  }
+
+  @Test
+  void shouldSelectPerRowWithResultHandler() {
+    List<Blog> blogs = new ArrayList<>();
+    try (SqlSession sqlSession = sqlSessionFactory.openSession()) {
+      sqlSession.getMapper(BlogMapper.class).getBlogs(context -> blogs.add(context.getResultObject()));
+    }
+    assertBlogs(blogs);
+    // 行在处理器中即时可见，嵌套查询按行执行（重复的作者命中本地缓存）
+    assertEquals(9, StatementCounter.statements.size());
+  }
+
+  private void assertBlogs(List<Blog> blogs) {
+    assertEquals(5, blogs.size());
+    assertEquals("jim", blogs.get(0).getAuthor().getName());
+    assertEquals("sally", blogs.get(1).getAuthor().getName());
+    assertEquals("jim", blogs.get(2).getAuthor().getName());
+    assertEquals("bob", blogs.get(3).getAuthor().getName());
+    assertNull(blogs.get(4).getAuthor());
+    assertEquals(2, blogs.get(0).getPosts().size());
+    assertEquals("Post 1", blogs.get(0).getPosts().get(0).getSubject());
+    assertEquals("Post 2", blogs.get(0).getPosts().get(1).getSubject());
+    assertEquals(1, blogs.get(1).getPosts().size());
+    assertEquals(1, blogs.get(2).getPosts().size());
+    assertEquals(3, blogs.get(3).getPosts().size());
+    assertTrue(blogs.get(4).getPosts().isEmpty());
+  }
+
+}
@@ -0,0 +1,39 @@
+--
+--    Copyright 2009-2016 the original author or authors.
+--
+--    Licensed under the Apache License, Version 2.0 (the "License");
+--    you may not use this file except in compliance with the License.
+--    You may obtain a copy of the License at
+--
+--       http://www.apache.org/licenses/LICENSE-2.0
+--
+--    Unless required by applicable law or agreed to in writing, software
+--    distributed under the License is distributed on an "AS IS" BASIS,
+--    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+--    See the License for the specific language governing permissions and
+--    limitations under the License.
+--
+
+
+drop table product if exists;
+drop table category if exists;
+
+create table category (
+  id int primary key,
+  name varchar(20)
+);
+
+create table product (
+  id int primary key,
+  product_code varchar(20),
+  name varchar(20),
+  stock int,
+  active boolean,
+  description varchar(100),
+  category_id int
+);
+
+insert into category (id, name) values (1, 'Tools');
+
+insert into product (id, product_code, name, stock, active, description, category_id) values (1, 'P-1', 'Hammer', 10, true, 'Steel hammer', 1);
+insert into product (id, product_code, name, stock, active, description, category_id) values (2, 'P-2', 'Saw', null, null, null, 1);
@@ -0,0 +1,127 @@
+/**
+ *    Copyright 2009-2019 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.submitted.row_mapping_plan;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.ibatis.BaseDataTest;
+import org.apache.ibatis.executor.resultset.RowMappingPlan;
+import org.apache.ibatis.io.Resources;
+import org.apache.ibatis.session.Configuration;
+import org.apache.ibatis.session.SqlSession;
+import org.apache.ibatis.session.SqlSessionFactory;
+import org.apache.ibatis.session.SqlSessionFactoryBuilder;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class RowMappingPlanTest {
+
+  private SqlSessionFactory sqlSessionFactory;
+
+  @BeforeEach
+  void setUp() throws Exception {
+    try (Reader reader = Resources.getResourceAsReader("org/apache/ibatis/submitted/row_mapping_plan/mybatis-config.xml")) {
+      sqlSessionFactory = new SqlSessionFactoryBuilder().build(reader);
+    }
+    BaseDataTest.runScript(sqlSessionFactory.getConfiguration().getEnvironment().getDataSource(),
+        "org/apache/ibatis/submitted/row_mapping_plan/CreateDB.sql");
+  }
+
+  @Test
+  void shouldMapExplicitAndAutomaticMappingsThroughPlan() {
+    try (SqlSession sqlSession = sqlSessionFactory.openSession()) {
+      List<Product> products = sqlSession.getMapper(ProductMapper.class).getProducts();
+      assertProducts(products);
+    }
+    List<RowMappingPlan> plans = plans();
+    assertEquals(1, plans.size());
+    assertEquals(Product.class, plans.get(0).getType());
+    // id, product_code 与自动映射的 name, stock, active, description
+    assertEquals(6, plans.get(0).getColumnCount());
+  }
+
+  @Test
+  void shouldMapLikeMetaObjects() {
+    List<Product> compiled;
+    try (SqlSession sqlSession = sqlSessionFactory.openSession()) {
+      compiled = sqlSession.getMapper(ProductMapper.class).getProductsByType();
+    }
+    sqlSessionFactory.getConfiguration().setRowMappingPlansEnabled(false);
+    List<Product> reflective;
+    try (SqlSession sqlSession = sqlSessionFactory.openSession()) {
+      reflective = sqlSession.getMapper(ProductMapper.class).getProductsByType();
+    }
+    assertEquals(reflective.size(), compiled.size());
+    for (int i = 0; i < compiled.size(); i++) {
+      assertEquals(reflective.get(i).getId(), compiled.get(i).getId());
+      assertEquals(reflective.get(i).getCode(), compiled.get(i).getCode());
+      assertEquals(reflective.get(i).getName(), compiled.get(i).getName());
+      assertEquals(reflective.get(i).getStock(), compiled.get(i).getStock());
+      assertEquals(reflective.get(i).isActive(), compiled.get(i).isActive());
+      assertEquals(reflective.get(i).getDescription(), compiled.get(i).getDescription());
+    }
+    assertProducts(compiled);
+  }
+
+  @Test
+  void shouldCallSettersOnNulls() {
+    sqlSessionFactory.getConfiguration().setCallSettersOnNulls(true);
+    try (SqlSession sqlSession = sqlSessionFactory.openSession()) {
+      Product saw = sqlSession.getMapper(ProductMapper.class).getProducts().get(1);
+      assertNull(saw.getDescription());
+      assertNull(saw.getStock());
+      assertFalse(saw.isActive());
+    }
+  }
+
+  @Test
+  void shouldNotCompileNestedSelects() {
+    try (SqlSession sqlSession = sqlSessionFactory.openSession()) {
+      List<Product> products = sqlSession.getMapper(ProductMapper.class).getProductsWithCategory();
+      assertEquals("Tools", products.get(0).getCategoryName());
+      assertEquals("Hammer", products.get(0).getName());
+    }
+    assertTrue(plans().stream().anyMatch(plan -> plan.getType() == null));
+  }
+
+  private List<RowMappingPlan> plans() {
+    Configuration configuration = sqlSessionFactory.getConfiguration();
+    return new ArrayList<>(configuration.getRowMappingPlans());
+  }
+
+  private void assertProducts(List<Product> products) {
+    assertEquals(2, products.size());
+    Product hammer = products.get(0);
+    assertEquals(1, hammer.getId());
+    assertEquals("P-1", hammer.getCode());
+    assertEquals("Hammer", hammer.getName());
+    assertEquals(Integer.valueOf(10), hammer.getStock());
+    assertTrue(hammer.isActive());
+    assertEquals("Steel hammer", hammer.getDescription());
+    Product saw = products.get(1);
+    assertEquals("Saw", saw.getName());
+    assertNull(saw.getStock());
+    assertEquals("none", saw.getDescription());
+  }
+
+}